@@ -19,7 +19,10 @@
  */
 package org.xwiki.cache;
 
+import java.util.function.Function;
+
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.stability.Unstable;
 
 /**
  * Cache interface. Used to add/get/remove value from cache which can be local or distributed, with a limited capacity
@@ -51,6 +54,37 @@
      */
     T get(String key);
 
+    /**
+     * Return the value associated with the provided key, computing and storing it with the provided loader if it's not
+     * in the cache yet.
+     * <p>
+     * Implementations based on {@link org.xwiki.cache.util.AbstractCache} make sure that concurrent calls for the same
+     * key wait for a single computation of the value while values associated with different keys are computed in
+     * parallel.
+     * 
+     * @param key the key used to access the value in the cache
+     * @param loader the function used to compute the value when it's not in the cache; if it returns {@code null},
+     *            nothing is stored in the cache
+     * @return the value associated with the provided key, or {@code null} if there is no value and the loader did not
+     *         return any
+     * @since 12.4RC1
+     */
+    @Unstable
+    default T get(String key, Function<String, ? extends T> loader)
+    {
+        T value = get(key);
+
+        if (value == null) {
+            value = loader.apply(key);
+
+            if (value != null) {
+                set(key, value);
+            }
+        }
+
+        return value;
+    }
+
     /**
      * Remove the entry associated with the provided key from the cache.
      * <p>
@@ -83,6 +117,16 @@
      */
     void removeCacheEntryListener(CacheEntryListener<T> listener);
 
+    /**
+     * @return the statistics about the usage of the cache, or {@code null} if the implementation does not record any
+     * @since 12.4RC1
+     */
+    @Unstable
+    default CacheStatistics getStatistics()
+    {
+        return null;
+    }
+
     /**
      * Release all the resources this cache use.
      */
@@ -20,6 +20,7 @@
 package org.xwiki.cache;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Get {@link CacheManager} configuration.
@@ -38,4 +39,15 @@
      * @return the role hint of configured default local cache component.
      */
     String getDefaultLocalCache();
+
+    /**
+     * @return true if the statistics of the caches created with a configuration identifier should be published as
+     *         JMX MBeans
+     * @since 12.4RC1
+     */
+    @Unstable
+    default boolean isStatisticsJMXEnabled()
+    {
+        return false;
+    }
 }
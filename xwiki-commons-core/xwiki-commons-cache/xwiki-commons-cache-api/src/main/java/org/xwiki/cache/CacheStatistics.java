@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Statistics about the usage of a {@link Cache} since its creation.
+ * 
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public interface CacheStatistics
+{
+    /**
+     * @return the number of times a value was found in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times a value was not found in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of requests which found the value in the cache, 1 when the cache was never requested
+     */
+    default double getHitRatio()
+    {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of values computed by a loader (see {@link Cache#get(String, java.util.function.Function)})
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of loaders which failed with an exception
+     */
+    long getLoadFailureCount();
+
+    /**
+     * @return the total time spent computing values (including the failed loads), in nanoseconds
+     */
+    long getTotalLoadTime();
+
+    /**
+     * @return the average time spent computing a value, in nanoseconds
+     */
+    default double getAverageLoadTime()
+    {
+        long loads = getLoadCount() + getLoadFailureCount();
+
+        return loads == 0 ? 0.0 : (double) getTotalLoadTime() / loads;
+    }
+
+    /**
+     * @return the number of entries removed by the cache itself because it was full or the entry expired
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the current number of entries in the cache, -1 if unknown
+     */
+    long getSize();
+}
@@ -0,0 +1,40 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * If the value inserted in a cache bounded by weight implement this interface, the {@link #getCacheWeight()} method
+ * will be used to know how much of the cache capacity it takes, unless a specific
+ * {@link org.xwiki.cache.eviction.Weigher} is configured.
+ * 
+ * @version $Id$
+ * @since 12.4RC1
+ * @see org.xwiki.cache.eviction.WeightEvictionConfiguration
+ */
+@Unstable
+public interface SizedCacheValue
+{
+    /**
+     * @return the weight of this value in the cache, usually an estimation of its memory size in bytes
+     */
+    long getCacheWeight();
+}
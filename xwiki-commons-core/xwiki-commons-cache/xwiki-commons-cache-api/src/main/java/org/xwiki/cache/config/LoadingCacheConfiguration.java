@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.config;
+
+import java.util.function.Function;
+
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Cache configuration associating a loader to the cache: the missing values are automatically computed and stored
+ * when calling {@link org.xwiki.cache.Cache#get(String)}.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class LoadingCacheConfiguration<T> extends CacheConfiguration
+{
+    /**
+     * The key of the loader in the configuration.
+     */
+    public static final String LOADER_ID = "loader";
+
+    /**
+     * Unique id for serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param configurationId the configuration identifier
+     * @param loader the function used to compute the values missing from the cache
+     */
+    public LoadingCacheConfiguration(String configurationId, Function<String, ? extends T> loader)
+    {
+        this(configurationId, null, loader);
+    }
+
+    /**
+     * @param configurationId the configuration identifier
+     * @param evictionConfiguration describes details of entry eviction method
+     * @param loader the function used to compute the values missing from the cache
+     */
+    public LoadingCacheConfiguration(String configurationId, EntryEvictionConfiguration evictionConfiguration,
+        Function<String, ? extends T> loader)
+    {
+        super(configurationId, evictionConfiguration);
+
+        setLoader(loader);
+    }
+
+    /**
+     * @param loader the function used to compute the values missing from the cache
+     */
+    public void setLoader(Function<String, ? extends T> loader)
+    {
+        put(LOADER_ID, loader);
+    }
+
+    /**
+     * @return the function used to compute the values missing from the cache
+     */
+    public Function<String, ? extends T> getLoader()
+    {
+        return getLoader(this);
+    }
+
+    /**
+     * @param <T> the class of the data stored in the cache
+     * @param configuration the configuration of the cache
+     * @return the function used to compute the values missing from the cache, {@code null} if none is configured
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Function<String, ? extends T> getLoader(CacheConfiguration configuration)
+    {
+        Object loader = configuration != null ? configuration.get(LOADER_ID) : null;
+
+        return loader instanceof Function ? (Function<String, ? extends T>) loader : null;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.eviction;
+
+import org.xwiki.cache.SizedCacheValue;
+import org.xwiki.stability.Unstable;
+
+/**
+ * An helper for {@link EntryEvictionConfiguration.Algorithm#LRU} cache algorithm bounding the cache by the total weight
+ * of its entries instead of (or in addition to) their number.
+ * <p>
+ * The weight of an entry is calculated by the configured {@link Weigher} or, when none is configured, by
+ * {@link SizedCacheValue#getCacheWeight()} for values implementing {@link SizedCacheValue} (other values weigh 1).
+ * 
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class WeightEvictionConfiguration extends LRUEvictionConfiguration
+{
+    /**
+     * The key to access the maximum total weight of the cache entries.
+     */
+    public static final String MAXWEIGHT_ID = "maxweight";
+
+    /**
+     * The key to access the {@link Weigher} used to calculate the weight of the entries.
+     */
+    public static final String WEIGHER_ID = "weigher";
+
+    /**
+     * The weigher used when none is configured.
+     */
+    private static final Weigher<Object> DEFAULT_WEIGHER =
+        (key, value) -> value instanceof SizedCacheValue ? ((SizedCacheValue) value).getCacheWeight() : 1;
+
+    /**
+     * Create a new EntryEvictionConfiguration based on LRU algorithm.
+     */
+    public WeightEvictionConfiguration()
+    {
+    }
+
+    /**
+     * Create a new EntryEvictionConfiguration with given total weight, eviction will be based on LRU algorithm.
+     * 
+     * @param maxWeight the maximum total weight of the cache entries
+     */
+    public WeightEvictionConfiguration(long maxWeight)
+    {
+        setMaxWeight(maxWeight);
+    }
+
+    /**
+     * @param maxWeight see {@link #getMaxWeight()}
+     */
+    public void setMaxWeight(long maxWeight)
+    {
+        put(MAXWEIGHT_ID, maxWeight);
+    }
+
+    /**
+     * @return the maximum total weight of the cache entries. When the cache reaches it, the defined eviction algorithm
+     *         kicks in to remove existing cache entries. 0 means that the cache is not bounded by weight.
+     */
+    public long getMaxWeight()
+    {
+        Object obj = get(MAXWEIGHT_ID);
+
+        return obj instanceof Number ? ((Number) obj).longValue() : 0;
+    }
+
+    /**
+     * @param weigher see {@link #getWeigher()}
+     */
+    public void setWeigher(Weigher<?> weigher)
+    {
+        put(WEIGHER_ID, weigher);
+    }
+
+    /**
+     * @param <T> the class of the data stored in the cache
+     * @return the weigher used to calculate the weight of the entries
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Weigher<T> getWeigher()
+    {
+        Object weigher = get(WEIGHER_ID);
+
+        return weigher instanceof Weigher ? (Weigher<T>) weigher : (Weigher<T>) DEFAULT_WEIGHER;
+    }
+}
@@ -19,18 +19,30 @@
  */
 package org.xwiki.cache.internal;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
+import org.slf4j.Logger;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheFactory;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.CacheManagerConfiguration;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.util.AbstractCache;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.management.JMXBeanRegistration;
 
 /**
  * The default implementation of CacheManager. It uses ConfigurationManager to find the cache an local cache hints to
@@ -55,6 +67,19 @@ public class DefaultCacheManager implements CacheManager
     @Inject
     private CacheManagerConfiguration configuration;
 
+    @Inject
+    private Provider<JMXBeanRegistration> jmxRegistration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The names of the statistics MBeans registered for the living caches.
+     */
+    private final Set<String> statisticsNames = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong statisticsCounter = new AtomicLong();
+
     @Override
     public CacheFactory getCacheFactory() throws ComponentLookupException
     {
@@ -109,6 +134,54 @@ public <T> Cache<T> createNewCache(CacheConfiguration config, String cacheHint)
             throw new CacheException("Failed to get cache factory for role hint [" + cacheHint + "]", e);
         }
 
-        return cacheFactory.newCache(config);
+        Cache<T> cache = cacheFactory.newCache(config);
+
+        if (config != null && config.getConfigurationId() != null && this.configuration.isStatisticsJMXEnabled()) {
+            registerStatistics(cache, config.getConfigurationId());
+        }
+
+        return cache;
+    }
+
+    private void registerStatistics(Cache<?> cache, String configurationId)
+    {
+        CacheStatistics statistics = cache.getStatistics();
+
+        // Only AbstractCache based caches let us know when to unregister the MBean
+        if (statistics != null && cache instanceof AbstractCache) {
+            String name = getStatisticsName(configurationId);
+
+            try {
+                StandardMBean mbean = new StandardMBean(statistics, CacheStatistics.class);
+
+                JMXBeanRegistration registration = this.jmxRegistration.get();
+                registration.registerMBean(mbean, name);
+                ((AbstractCache<?>) cache).addDisposeHandler(() -> {
+                    registration.unregisterMBean(name);
+                    this.statisticsNames.remove(name);
+                });
+            } catch (NotCompliantMBeanException e) {
+                this.statisticsNames.remove(name);
+
+                this.logger.warn("Failed to create the statistics MBean of cache [{}]", configurationId, e);
+            }
+        }
+    }
+
+    /**
+     * @param configurationId the identifier of the cache configuration
+     * @return a name which is not used by the statistics of another living cache, so that disposing a cache never
+     *         unregisters the statistics of another one
+     */
+    private String getStatisticsName(String configurationId)
+    {
+        String baseName = "type=Cache,name=" + ObjectName.quote(configurationId);
+
+        String name = baseName;
+        while (!this.statisticsNames.add(name)) {
+            name = baseName + ",instance=" + this.statisticsCounter.incrementAndGet();
+        }
+
+        return name;
     }
 }
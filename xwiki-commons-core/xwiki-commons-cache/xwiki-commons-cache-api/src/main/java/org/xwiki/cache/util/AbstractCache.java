@@ -19,18 +19,30 @@
  */
 package org.xwiki.cache.util;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
 import javax.swing.event.EventListenerList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.DisposableCacheValue;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LoadingCacheConfiguration;
 import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.stability.Unstable;
 
 /**
- * Base class for {@link Cache} implementations. It provides events {@link DisposableCacheValue} management.
+ * Base class for {@link Cache} implementations. It provides events {@link DisposableCacheValue} management,
+ * single-flight loading of the missing values and statistics.
  * 
  * @param <T> the class of the data stored in the cache.
  * @version $Id$
@@ -52,6 +64,30 @@
      */
     protected final EventListenerList cacheEntryListeners = new EventListenerList();
 
+    /**
+     * The values currently being computed.
+     */
+    private final ConcurrentMap<String, LoadingValue<T>> loadingValues = new ConcurrentHashMap<>();
+
+    /**
+     * The loader configured with a {@link LoadingCacheConfiguration}.
+     */
+    private final Function<String, ? extends T> configuredLoader;
+
+    private final CacheStatisticsRecorder statistics = new CacheStatisticsRecorder(this::getEntryCount);
+
+    private final List<Runnable> disposeHandlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * A value being computed by a thread.
+     * 
+     * @param <T> the class of the data stored in the cache.
+     */
+    private static final class LoadingValue<T> extends CompletableFuture<T>
+    {
+        private final Thread thread = Thread.currentThread();
+    }
+
     /**
      * @deprecated since 8.3RC1, use {@link #AbstractCache(CacheConfiguration)} instead
      */
@@ -67,11 +103,216 @@ public AbstractCache()
     public AbstractCache(CacheConfiguration configuration)
     {
         this.configuration = configuration;
+        this.configuredLoader = LoadingCacheConfiguration.getLoader(configuration);
+    }
+
+    /**
+     * @return the loader configured with a {@link LoadingCacheConfiguration}, {@code null} if none is configured
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected Function<String, ? extends T> getLoader()
+    {
+        return this.configuredLoader;
+    }
+
+    /**
+     * Implementations supporting {@link LoadingCacheConfiguration} should override this method to return the value
+     * stored in the cache without trying to compute it.
+     * 
+     * @param key the key used to access the value in the cache
+     * @return the value associated with the provided key, or {@code null} if there is no value
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected T getIfPresent(String key)
+    {
+        return get(key);
+    }
+
+    @Override
+    public T get(String key, Function<String, ? extends T> loader)
+    {
+        return getOrLoad(key, loader);
+    }
+
+    /**
+     * Return the value stored in the cache or compute it with the passed loader, and record the corresponding
+     * statistics.
+     * 
+     * @param key the key used to access the value in the cache
+     * @param loader the function used to compute the value when it's not in the cache, can be {@code null}
+     * @return the value associated with the provided key, or {@code null} if there is no value
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected T getOrLoad(String key, Function<String, ? extends T> loader)
+    {
+        T value = getIfPresent(key);
+
+        if (value != null) {
+            this.statistics.recordHit();
+        } else {
+            this.statistics.recordMiss();
+
+            if (loader != null) {
+                value = load(key, loader);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the current number of entries in the cache, -1 if unknown
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected long getEntryCount()
+    {
+        return -1;
+    }
+
+    /**
+     * @return the recorder of the cache statistics
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected CacheStatisticsRecorder getStatisticsRecorder()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Implementations routing {@link #get(String)} through {@link #getOrLoad(String, Function)} (or recording the hits
+     * and misses themselves) should override this method to return {@code true} so that {@link #getStatistics()}
+     * exposes the recorded statistics.
+     * 
+     * @return true if the implementation records the hits and misses of the cache
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected boolean isRecordingStatistics()
+    {
+        return false;
+    }
+
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return isRecordingStatistics() ? this.statistics : null;
+    }
+
+    /**
+     * @param handler called when the cache is disposed
+     * @since 12.4RC1
+     */
+    @Unstable
+    public void addDisposeHandler(Runnable handler)
+    {
+        this.disposeHandlers.add(handler);
+    }
+
+    /**
+     * Compute the value associated to the passed key and store it in the cache. If the value is already being computed
+     * by another thread, wait for that computation instead.
+     * <p>
+     * Implementations are expected to call this method after checking with {@link #getIfPresent(String)} that the value
+     * is not already in the cache.
+     * 
+     * @param key the key used to access the value in the cache
+     * @param loader the function used to compute the value; if it returns {@code null}, nothing is stored in the cache
+     * @return the computed value
+     * @since 12.4RC1
+     */
+    @Unstable
+    protected T load(String key, Function<String, ? extends T> loader)
+    {
+        if (key == null) {
+            // Some implementations accept null keys but they can't be used to synchronize the computation
+            return compute(key, loader);
+        }
+
+        LoadingValue<T> loadingValue = new LoadingValue<>();
+        LoadingValue<T> currentLoadingValue = this.loadingValues.putIfAbsent(key, loadingValue);
+
+        if (currentLoadingValue != null) {
+            return waitForValue(key, currentLoadingValue);
+        }
+
+        try {
+            // The value might have been stored by a computation which finished since the caller checked the cache
+            T value = getIfPresent(key);
+            if (value != null) {
+                loadingValue.complete(value);
+
+                return value;
+            }
+
+            // Make the value available in the cache before other threads stop waiting for the computation
+            value = compute(key, loader);
+
+            loadingValue.complete(value);
+
+            return value;
+        } catch (RuntimeException | Error e) {
+            loadingValue.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            this.loadingValues.remove(key, loadingValue);
+        }
+    }
+
+    private T compute(String key, Function<String, ? extends T> loader)
+    {
+        long start = System.nanoTime();
+        T value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            this.statistics.recordLoadFailure(System.nanoTime() - start);
+
+            throw e;
+        }
+        this.statistics.recordLoad(System.nanoTime() - start);
+
+        if (value != null) {
+            set(key, value);
+        }
+
+        return value;
+    }
+
+    private T waitForValue(String key, LoadingValue<T> loadingValue)
+    {
+        if (loadingValue.thread == Thread.currentThread()) {
+            throw new IllegalStateException(
+                String.format("Recursive computation of the value associated with key [%s]", key));
+        }
+
+        try {
+            return loadingValue.join();
+        } catch (CompletionException e) {
+            // Throw the same error as the thread which computed the value
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
     }
 
     @Override
     public void dispose()
     {
+        for (Runnable handler : this.disposeHandlers) {
+            handler.run();
+        }
+        this.disposeHandlers.clear();
+
         for (CacheEntryListener<T> listener : this.cacheEntryListeners.getListeners(CacheEntryListener.class)) {
             this.cacheEntryListeners.remove(CacheEntryListener.class, listener);
         }
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.util;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Regularly run the removal of the expired entries of the caches created by a {@link org.xwiki.cache.CacheFactory}.
+ * The thread is only started when the first task is scheduled.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class CacheExpirationScheduler
+{
+    /**
+     * The interval between two removals of the expired entries, in milliseconds.
+     */
+    private static final long EXPIRATION_INTERVAL = 1000;
+
+    private final String threadName;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param threadName the name of the thread removing the expired entries
+     */
+    public CacheExpirationScheduler(String threadName)
+    {
+        this.threadName = threadName;
+    }
+
+    /**
+     * @param expiration the task removing the expired entries of a cache
+     * @return the scheduled task, to cancel when the cache is disposed
+     */
+    public synchronized Future<?> schedule(Runnable expiration)
+    {
+        if (this.executor == null) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern(this.threadName)
+                .daemon(true).priority(Thread.MIN_PRIORITY).build();
+            ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+            // Don't keep disposed caches in the queue until their next scheduled execution
+            scheduledExecutor.setRemoveOnCancelPolicy(true);
+
+            this.executor = scheduledExecutor;
+        }
+
+        return this.executor.scheduleWithFixedDelay(expiration, EXPIRATION_INTERVAL, EXPIRATION_INTERVAL,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the thread removing the expired entries.
+     */
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
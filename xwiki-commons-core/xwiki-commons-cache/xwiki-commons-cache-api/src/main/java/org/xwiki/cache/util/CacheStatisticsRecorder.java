@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.util;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.xwiki.cache.CacheStatistics;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Record the {@link CacheStatistics} of a cache using striped counters so that concurrent threads don't contend on the
+ * same counter.
+ * 
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class CacheStatisticsRecorder implements CacheStatistics
+{
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder loadTime = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongSupplier size;
+
+    /**
+     * @param size provide the current number of entries in the cache, -1 if unknown
+     */
+    public CacheStatisticsRecorder(LongSupplier size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * Record a value found in the cache.
+     */
+    public void recordHit()
+    {
+        this.hits.increment();
+    }
+
+    /**
+     * Record a value not found in the cache.
+     */
+    public void recordMiss()
+    {
+        this.misses.increment();
+    }
+
+    /**
+     * @param time the time spent computing the value, in nanoseconds
+     */
+    public void recordLoad(long time)
+    {
+        this.loads.increment();
+        this.loadTime.add(time);
+    }
+
+    /**
+     * @param time the time spent before the failure, in nanoseconds
+     */
+    public void recordLoadFailure(long time)
+    {
+        this.loadFailures.increment();
+        this.loadTime.add(time);
+    }
+
+    /**
+     * Record an entry removed because the cache was full or the entry expired.
+     */
+    public void recordEviction()
+    {
+        this.evictions.increment();
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.misses.sum();
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return this.loads.sum();
+    }
+
+    @Override
+    public long getLoadFailureCount()
+    {
+        return this.loadFailures.sum();
+    }
+
+    @Override
+    public long getTotalLoadTime()
+    {
+        return this.loadTime.sum();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public long getSize()
+    {
+        return this.size.getAsLong();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.util;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A {@link CacheEntry} holding directly its key and value, to be used by the cache implementations which don't have
+ * their own entry representation.
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class SimpleCacheEntry<T> implements CacheEntry<T>
+{
+    private final Cache<T> cache;
+
+    private final String key;
+
+    private final T value;
+
+    /**
+     * @param cache the cache where the entry is stored
+     * @param key the key of the entry
+     * @param value the value of the entry
+     */
+    public SimpleCacheEntry(Cache<T> cache, String key, T value)
+    {
+        this.cache = cache;
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public Cache<T> getCache()
+    {
+        return this.cache;
+    }
+
+    @Override
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    @Override
+    public T getValue()
+    {
+        return this.value;
+    }
+}
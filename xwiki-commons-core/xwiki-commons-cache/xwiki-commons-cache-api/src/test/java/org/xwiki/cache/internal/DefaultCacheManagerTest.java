@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal;
+
+import javax.inject.Named;
+import javax.management.StandardMBean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheManagerConfiguration;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultCacheManager}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+public class DefaultCacheManagerTest
+{
+    private static final String NAME = "type=Cache,name=\"id\"";
+
+    @MockComponent
+    private CacheManagerConfiguration configuration;
+
+    @MockComponent
+    private JMXBeanRegistration jmxRegistration;
+
+    @MockComponent
+    @Named("test")
+    private CacheFactory cacheFactory;
+
+    @InjectMockComponents
+    private DefaultCacheManager cacheManager;
+
+    private MapCache<Object> cache = new MapCache<Object>()
+    {
+        @Override
+        protected boolean isRecordingStatistics()
+        {
+            return true;
+        }
+    };
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        when(this.configuration.getDefaultCache()).thenReturn("test");
+        doReturn(this.cache).when(this.cacheFactory).newCache(any());
+    }
+
+    @Test
+    public void createNewCacheWithStatisticsJMX() throws Exception
+    {
+        when(this.configuration.isStatisticsJMXEnabled()).thenReturn(true);
+
+        assertSame(this.cache, this.cacheManager.createNewCache(new CacheConfiguration("id")));
+
+        verify(this.jmxRegistration).registerMBean(any(StandardMBean.class), eq(NAME));
+
+        this.cache.set("key", "value");
+        this.cache.get("key", key -> "other");
+        this.cache.get("key2", key -> "value2");
+
+        assertEquals(1, this.cache.getStatistics().getHitCount());
+        assertEquals(1, this.cache.getStatistics().getMissCount());
+        assertEquals(1, this.cache.getStatistics().getLoadCount());
+
+        this.cache.dispose();
+
+        verify(this.jmxRegistration).unregisterMBean(NAME);
+    }
+
+    @Test
+    public void createNewCachesWithSameConfigurationId() throws Exception
+    {
+        when(this.configuration.isStatisticsJMXEnabled()).thenReturn(true);
+
+        MapCache<Object> otherCache = new MapCache<Object>()
+        {
+            @Override
+            protected boolean isRecordingStatistics()
+            {
+                return true;
+            }
+        };
+
+        this.cacheManager.createNewCache(new CacheConfiguration("id"));
+        doReturn(otherCache).when(this.cacheFactory).newCache(any());
+        this.cacheManager.createNewCache(new CacheConfiguration("id"));
+
+        verify(this.jmxRegistration).registerMBean(any(StandardMBean.class), eq(NAME));
+        verify(this.jmxRegistration).registerMBean(any(StandardMBean.class), eq(NAME + ",instance=1"));
+
+        // Disposing the second cache does not unregister the statistics of the first one
+        otherCache.dispose();
+
+        verify(this.jmxRegistration).unregisterMBean(NAME + ",instance=1");
+        verify(this.jmxRegistration, never()).unregisterMBean(NAME);
+
+        this.cache.dispose();
+
+        verify(this.jmxRegistration).unregisterMBean(NAME);
+    }
+
+    @Test
+    public void createNewCacheNotRecordingStatistics() throws Exception
+    {
+        when(this.configuration.isStatisticsJMXEnabled()).thenReturn(true);
+
+        MapCache<Object> mapCache = new MapCache<>();
+        doReturn(mapCache).when(this.cacheFactory).newCache(any());
+
+        assertSame(mapCache, this.cacheManager.createNewCache(new CacheConfiguration("id")));
+
+        assertNull(mapCache.getStatistics());
+
+        mapCache.dispose();
+
+        verify(this.jmxRegistration, never()).registerMBean(any(), anyString());
+        verify(this.jmxRegistration, never()).unregisterMBean(anyString());
+    }
+
+    @Test
+    public void createNewCacheWithoutStatisticsJMX() throws Exception
+    {
+        assertSame(this.cache, this.cacheManager.createNewCache(new CacheConfiguration("id")));
+
+        this.cache.dispose();
+
+        verify(this.jmxRegistration, never()).registerMBean(any(), anyString());
+        verify(this.jmxRegistration, never()).unregisterMBean(anyString());
+    }
+}
@@ -21,7 +21,6 @@
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.infinispan.Cache;
 import org.infinispan.manager.EmbeddedCacheManager;
@@ -58,13 +57,18 @@
     /**
      * The state of the node before modification.
      */
-    private ConcurrentMap<String, T> preEventData = new ConcurrentHashMap<>();
+    private Map<String, T> preEventData = new ConcurrentHashMap<>();
 
     /**
      * The Infinispan cache manager.
      */
     private EmbeddedCacheManager cacheManager;
 
+    /**
+     * Enforce the maximum total weight of the entries, null when the cache is not bounded by weight.
+     */
+    private WeightEvictor<T> weightEvictor;
+
     /**
      * @param cacheManager the Infinispan cache manager
      * @param configuration the XWiki Cache configuration
@@ -77,6 +81,9 @@
         this.cache = cacheManager.getCache(configuration.getConfigurationId());
 
         this.cache.addListener(this);
+
+        // Infinispan is not able to weigh the entries stored as objects so it's done here
+        this.weightEvictor = WeightEvictor.create(configuration);
     }
 
     @Override
@@ -90,6 +97,13 @@ public void set(String key, T obj)
     {
         if (obj != null) {
             this.cache.put(key, obj);
+
+            if (this.weightEvictor != null) {
+                for (String evictedKey : this.weightEvictor.add(key, obj)) {
+                    // Trigger a standard eviction event
+                    this.cache.evict(evictedKey);
+                }
+            }
         } else {
             this.cache.remove(key);
         }
@@ -98,13 +112,41 @@ public void set(String key, T obj)
     @Override
     public T get(String key)
     {
-        return this.cache.get(key);
+        return getOrLoad(key, getLoader());
+    }
+
+    @Override
+    protected boolean isRecordingStatistics()
+    {
+        return true;
+    }
+
+    @Override
+    protected T getIfPresent(String key)
+    {
+        T value = this.cache.get(key);
+
+        if (value != null && this.weightEvictor != null) {
+            this.weightEvictor.access(key);
+        }
+
+        return value;
+    }
+
+    @Override
+    protected long getEntryCount()
+    {
+        return this.cache.size();
     }
 
     @Override
     public void removeAll()
     {
         this.cache.clear();
+
+        if (this.weightEvictor != null) {
+            this.weightEvictor.clear();
+        }
     }
 
     @Override
@@ -131,6 +173,8 @@ public void nodeEvicted(CacheEntriesEvictedEvent<String, T> event)
 
             // Looks like eviction does not produce any pre event
             cacheEntryRemoved(key, value);
+
+            getStatisticsRecorder().recordEviction();
         }
     }
 
@@ -145,6 +189,8 @@ public void nodeExpired(CacheEntryExpiredEvent<String, T> event)
 
         // Looks like eviction does not produce any pre event
         cacheEntryRemoved(key, value);
+
+        getStatisticsRecorder().recordEviction();
     }
 
     /**
@@ -223,6 +269,10 @@ private void cacheEntryInserted(String key, T value)
      */
     private void cacheEntryRemoved(String key, T value)
     {
+        if (this.weightEvictor != null) {
+            this.weightEvictor.remove(key);
+        }
+
         InfinispanCacheEntryEvent<T> event =
             new InfinispanCacheEntryEvent<>(new InfinispanCacheEntry<>(this, key, value));
 
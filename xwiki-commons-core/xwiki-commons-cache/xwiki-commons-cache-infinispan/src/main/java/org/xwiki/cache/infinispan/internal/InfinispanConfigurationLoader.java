@@ -34,6 +34,7 @@
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.eviction.WeightEvictionConfiguration;
 import org.xwiki.cache.util.AbstractCacheConfigurationLoader;
 import org.xwiki.environment.Environment;
 
@@ -78,6 +79,8 @@ private void customizeEviction(ConfigurationBuilder builder)
         if (eec != null && eec.getAlgorithm() == EntryEvictionConfiguration.Algorithm.LRU) {
             ////////////////////
             // Eviction
+            // Max weight
+            customizeEvictionMaxWeight(builder, eec);
             // Max entries
             customizeEvictionMaxEntries(builder, eec);
 
@@ -94,6 +97,18 @@ private void customizeEviction(ConfigurationBuilder builder)
         }
     }
 
+    private void customizeEvictionMaxWeight(ConfigurationBuilder builder, EntryEvictionConfiguration eec)
+    {
+        // Infinispan can't weigh entries stored as objects, the weight is checked by InfinispanCache which explicitly
+        // evict the entries so we only need to enable eviction (the number of entries is bounded separately when
+        // needed)
+        Object maxWeight = eec.get(WeightEvictionConfiguration.MAXWEIGHT_ID);
+        if (maxWeight instanceof Number && ((Number) maxWeight).longValue() > 0) {
+            builder.memory().evictionStrategy(EvictionStrategy.REMOVE);
+            builder.memory().evictionType(EvictionType.COUNT).size(Long.MAX_VALUE);
+        }
+    }
+
     private void customizeEvictionMaxEntries(ConfigurationBuilder builder, EntryEvictionConfiguration eec)
     {
         Object maxEntries = eec.get(LRUEvictionConfiguration.MAXENTRIES_ID);
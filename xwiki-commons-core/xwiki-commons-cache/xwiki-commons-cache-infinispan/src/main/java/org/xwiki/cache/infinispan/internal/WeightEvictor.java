@@ -0,0 +1,173 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.infinispan.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.Weigher;
+import org.xwiki.cache.eviction.WeightEvictionConfiguration;
+
+/**
+ * Keep track of the weight of the entries of a cache and select the least recently used entries to evict when the
+ * total weight goes above the maximum.
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+class WeightEvictor<T>
+{
+    private final Weigher<T> weigher;
+
+    private final long maximumWeight;
+
+    /**
+     * The weight of each entry, ordered from the least recently accessed to the most recently accessed.
+     */
+    private final Map<String, Long> weights = new LinkedHashMap<>(16, 0.75F, true);
+
+    private final Lock lock = new ReentrantLock();
+
+    private long totalWeight;
+
+    /**
+     * @param weigher the weigher of the entries
+     * @param maximumWeight the maximum total weight of the entries
+     */
+    WeightEvictor(Weigher<T> weigher, long maximumWeight)
+    {
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+    }
+
+    /**
+     * @param <T> the class of the data stored in the cache
+     * @param configuration the configuration of the cache
+     * @return the evictor enforcing the configured maximum weight, null if the cache is not bounded by weight
+     */
+    static <T> WeightEvictor<T> create(CacheConfiguration configuration)
+    {
+        WeightEvictionConfiguration eviction = new WeightEvictionConfiguration();
+        Object entryEviction = configuration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+        if (entryEviction instanceof EntryEvictionConfiguration) {
+            eviction.putAll((EntryEvictionConfiguration) entryEviction);
+        }
+
+        return eviction.getMaxWeight() > 0 ? new WeightEvictor<>(eviction.getWeigher(), eviction.getMaxWeight())
+            : null;
+    }
+
+    /**
+     * @param key the key of the accessed entry
+     */
+    void access(String key)
+    {
+        // Don't make readers wait for each other, losing a few accesses does not really matter
+        if (this.lock.tryLock()) {
+            try {
+                this.weights.get(key);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param key the key of the stored entry
+     * @param value the value of the stored entry
+     * @return the keys of the entries to evict
+     */
+    List<String> add(String key, T value)
+    {
+        long weight = Math.max(0, this.weigher.weigh(key, value));
+
+        this.lock.lock();
+
+        try {
+            return add(key, weight);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private List<String> add(String key, long weight)
+    {
+        Long previousWeight = this.weights.put(key, weight);
+        this.totalWeight += weight - (previousWeight != null ? previousWeight : 0);
+
+        if (this.totalWeight <= this.maximumWeight) {
+            return Collections.emptyList();
+        }
+
+        List<String> evicted = new ArrayList<>();
+        for (Iterator<Map.Entry<String, Long>> it = this.weights.entrySet().iterator();
+            it.hasNext() && this.totalWeight > this.maximumWeight;) {
+            Map.Entry<String, Long> entry = it.next();
+
+            this.totalWeight -= entry.getValue();
+            evicted.add(entry.getKey());
+            it.remove();
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @param key the key of the removed entry
+     */
+    void remove(String key)
+    {
+        this.lock.lock();
+
+        try {
+            Long weight = this.weights.remove(key);
+
+            if (weight != null) {
+                this.totalWeight -= weight;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forget all the entries.
+     */
+    void clear()
+    {
+        this.lock.lock();
+
+        try {
+            this.weights.clear();
+            this.totalWeight = 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.infinispan.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link WeightEvictor}.
+ *
+ * @version $Id$
+ */
+public class WeightEvictorTest
+{
+    @Test
+    void evictLeastRecentlyAccessed()
+    {
+        WeightEvictor<String> evictor = new WeightEvictor<>((key, value) -> value.length(), 10);
+
+        assertTrue(evictor.add("key1", "12345").isEmpty());
+        assertTrue(evictor.add("key2", "1234").isEmpty());
+
+        evictor.access("key1");
+
+        assertEquals(Arrays.asList("key2"), evictor.add("key3", "123"));
+        assertEquals(Arrays.asList("key1", "key3"), evictor.add("key4", "123456789"));
+    }
+
+    @Test
+    void accessDoesNotWait() throws Exception
+    {
+        WeightEvictor<String> evictor = new WeightEvictor<>((key, value) -> value.length(), 10);
+
+        evictor.add("key1", "12345");
+        evictor.add("key2", "1234");
+
+        Lock lock = (Lock) FieldUtils.readField(evictor, "lock", true);
+        lock.lock();
+
+        try {
+            CompletableFuture.runAsync(() -> evictor.access("key1")).get(10, TimeUnit.SECONDS);
+        } finally {
+            lock.unlock();
+        }
+
+        // The access has been dropped
+        assertEquals(Arrays.asList("key1"), evictor.add("key3", "123"));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap;
+
+import java.util.HashMap;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Configure the storage of the off-heap cache implementation. The number of entries and their expiration are still
+ * configured with {@link org.xwiki.cache.eviction.LRUEvictionConfiguration}.
+ * <p>
+ * <code>
+ * CacheConfiguration conf = new CacheConfiguration();
+ * OffHeapConfiguration offHeap = new OffHeapConfiguration();
+ * offHeap.setCapacity(256 * 1024 * 1024);
+ * offHeap.setHeapEntries(100);
+ * conf.put(OffHeapConfiguration.CONFIGURATIONID, offHeap);
+ * </code>
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class OffHeapConfiguration extends HashMap<String, Object>
+{
+    /**
+     * The key use to access off-heap configuration in the {@link org.xwiki.cache.config.CacheConfiguration}.
+     */
+    public static final String CONFIGURATIONID = "offheap";
+
+    /**
+     * @see #getCapacity()
+     */
+    public static final String CAPACITY_ID = "capacity";
+
+    /**
+     * @see #getPageSize()
+     */
+    public static final String PAGESIZE_ID = "pagesize";
+
+    /**
+     * @see #getCodec()
+     */
+    public static final String CODEC_ID = "codec";
+
+    /**
+     * @see #getHeapEntries()
+     */
+    public static final String HEAPENTRIES_ID = "heapentries";
+
+    /**
+     * The default maximum number of bytes stored outside of the heap.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    /**
+     * The default size of the pages in which the serialized values are stored.
+     */
+    public static final int DEFAULT_PAGESIZE = 512;
+
+    /**
+     * The hint of the default {@link OffHeapValueCodec}. It relies on the standard Java serialization which either
+     * restores the whole value or fails: values which are not {@link java.io.Serializable} are rejected (i.e. not
+     * stored in the cache) instead of being silently returned incomplete. The {@code xstream} codec supports any value
+     * but skips the fields it does not consider serializable (components, etc.) so it should only be used for values
+     * known to be fully supported by XStream.
+     */
+    public static final String DEFAULT_CODEC = "binary";
+
+    /**
+     * Unique id for serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param capacity see {@link #getCapacity()}
+     */
+    public void setCapacity(long capacity)
+    {
+        put(CAPACITY_ID, capacity);
+    }
+
+    /**
+     * @return the maximum number of bytes stored outside of the heap. When there is not enough space left for a new
+     *         value the least recently used entries are evicted.
+     */
+    public long getCapacity()
+    {
+        Object obj = get(CAPACITY_ID);
+
+        return obj == null ? DEFAULT_CAPACITY : ((Number) obj).longValue();
+    }
+
+    /**
+     * @param pageSize see {@link #getPageSize()}
+     */
+    public void setPageSize(int pageSize)
+    {
+        put(PAGESIZE_ID, pageSize);
+    }
+
+    /**
+     * @return the size of the pages in which the serialized values are stored, in bytes. A value always uses a whole
+     *         number of pages so a smaller page size wastes less memory while a bigger page size makes big values
+     *         faster to read and write.
+     */
+    public int getPageSize()
+    {
+        Object obj = get(PAGESIZE_ID);
+
+        return obj == null ? DEFAULT_PAGESIZE : (Integer) obj;
+    }
+
+    /**
+     * @param codec see {@link #getCodec()}
+     */
+    public void setCodec(String codec)
+    {
+        put(CODEC_ID, codec);
+    }
+
+    /**
+     * @return the hint of the {@link OffHeapValueCodec} component used to serialize the values
+     */
+    public String getCodec()
+    {
+        Object obj = get(CODEC_ID);
+
+        return obj == null ? DEFAULT_CODEC : (String) obj;
+    }
+
+    /**
+     * @param heapEntries see {@link #getHeapEntries()}
+     */
+    public void setHeapEntries(int heapEntries)
+    {
+        put(HEAPENTRIES_ID, heapEntries);
+    }
+
+    /**
+     * @return the maximum number of most recently used values to also keep deserialized in the heap in front of the
+     *         off-heap storage, 0 to always deserialize the values
+     */
+    public int getHeapEntries()
+    {
+        Object obj = get(HEAPENTRIES_ID);
+
+        return obj == null ? 0 : (Integer) obj;
+    }
+}
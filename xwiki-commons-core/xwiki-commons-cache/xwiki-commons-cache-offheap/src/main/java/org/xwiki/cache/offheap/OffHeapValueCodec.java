@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Convert the values stored in an off-heap cache to and from bytes. The hint of the codec to use is indicated with
+ * {@link OffHeapConfiguration#setCodec(String)}.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Role
+@Unstable
+public interface OffHeapValueCodec
+{
+    /**
+     * @param value the value to serialize
+     * @param stream the stream where to write the serialized value
+     * @throws IOException when failing to serialize the value
+     */
+    void encode(Object value, OutputStream stream) throws IOException;
+
+    /**
+     * @param stream the stream containing the serialized value
+     * @return the value
+     * @throws IOException when failing to read the value
+     */
+    Object decode(InputStream stream) throws IOException;
+}
@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.offheap.OffHeapValueCodec;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Serialize the values using the standard Java binary serialization. Faster and more compact than
+ * {@link XStreamOffHeapValueCodec} but the values must be {@link java.io.Serializable}: the ones which are not are
+ * rejected.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Component
+@Named("binary")
+@Singleton
+public class BinaryOffHeapValueCodec implements OffHeapValueCodec
+{
+    /**
+     * Resolve the classes with the context class loader since the values generally don't come from the same class
+     * loader as the cache.
+     */
+    private static final class ContextObjectInputStream extends ObjectInputStream
+    {
+        ContextObjectInputStream(InputStream stream) throws IOException
+        {
+            super(stream);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // Fallback on the standard resolution
+                }
+            }
+
+            return super.resolveClass(desc);
+        }
+    }
+
+    @Override
+    public void encode(Object value, OutputStream stream) throws IOException
+    {
+        ObjectOutputStream objectStream = new ObjectOutputStream(stream);
+        objectStream.writeObject(value);
+        objectStream.flush();
+    }
+
+    @Override
+    public Object decode(InputStream stream) throws IOException
+    {
+        try {
+            return new ContextObjectInputStream(stream).readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to unserialize the value", e);
+        }
+    }
+}
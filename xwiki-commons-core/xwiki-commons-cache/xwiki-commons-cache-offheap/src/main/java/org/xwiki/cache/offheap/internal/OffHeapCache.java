@@ -0,0 +1,620 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.offheap.OffHeapConfiguration;
+import org.xwiki.cache.offheap.OffHeapValueCodec;
+import org.xwiki.cache.util.AbstractCache;
+import org.xwiki.cache.util.SimpleCacheEntry;
+import org.xwiki.cache.util.SimpleCacheEntryEvent;
+
+/**
+ * Local cache implementation storing the serialized values outside of the Java heap so that big values don't make the
+ * garbage collection longer.
+ * <p>
+ * Only a small index of the keys is kept in the heap. The values are serialized with a {@link OffHeapValueCodec} and
+ * stored in pages of direct {@link java.nio.ByteBuffer} slabs. When there is not enough space left for a new value, or
+ * when the maximum number of entries is reached, the least recently used entries are evicted. The most recently used
+ * values can also be kept deserialized in the heap (see {@link OffHeapConfiguration#setHeapEntries(int)}) to avoid
+ * unserializing the hottest values for each access.
+ * <p>
+ * The values are read concurrently. The order of the entries is only updated after a read when no other thread is
+ * modifying the cache, losing a few accesses does not really matter.
+ * <p>
+ * Since the values are copies, {@link #get(String)} generally returns a different instance than the one which has been
+ * stored, and {@link org.xwiki.cache.DisposableCacheValue#dispose()} is only called on the values still kept in the
+ * heap. For the same reason, the entries removed by {@link #removeAll()} are notified with their value only if it is
+ * still kept in the heap, to not load the whole content of the cache in the heap at once.
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class OffHeapCache<T> extends AbstractCache<T>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapCache.class);
+
+    private final OffHeapValueCodec codec;
+
+    private final OffHeapStore store;
+
+    /**
+     * Protect the index, the heap values and the store: the read lock to read values and the write lock to modify
+     * them.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The location of the values in the store, from the least recently used to the most recently used. The order is
+     * maintained explicitly (and not with an access ordered map) so that reading the map does not modify it.
+     */
+    private final Map<String, Slot> index = new LinkedHashMap<>();
+
+    /**
+     * The deserialized values kept in the heap, from the least recently used to the most recently used.
+     */
+    private final Map<String, T> heapValues = new LinkedHashMap<>();
+
+    private final int heapEntries;
+
+    /**
+     * The maximum number of entries, 0 when unlimited.
+     */
+    private final int maximumSize;
+
+    /**
+     * The maximum idle time of an entry in nanoseconds, 0 when unlimited.
+     */
+    private final long maxIdle;
+
+    /**
+     * The maximum lifespan of an entry in nanoseconds, 0 when unlimited.
+     */
+    private final long lifespan;
+
+    /**
+     * The task regularly removing the expired entries.
+     */
+    private Future<?> expiration;
+
+    /**
+     * The location of a value in the store.
+     */
+    private static final class Slot
+    {
+        private final String key;
+
+        private final int[] pages;
+
+        private final int length;
+
+        private final long writeTime;
+
+        /**
+         * Updated by concurrent readers, the exact time of the last access does not really matter.
+         */
+        private volatile long accessTime;
+
+        Slot(String key, int[] pages, int length, long writeTime)
+        {
+            this.key = key;
+            this.pages = pages;
+            this.length = length;
+            this.writeTime = writeTime;
+            this.accessTime = writeTime;
+        }
+    }
+
+    /**
+     * An entry removed from the cache for which an event has to be sent.
+     *
+     * @param <T> the class of the data stored in the cache.
+     */
+    private static final class RemovedEntry<T>
+    {
+        private final String key;
+
+        private final T value;
+
+        /**
+         * The serialized value when the value was not in the heap, null when no listener needs it.
+         */
+        private final byte[] bytes;
+
+        RemovedEntry(String key, T value, byte[] bytes)
+        {
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * @param configuration the configuration of the cache
+     * @param codec the codec used to serialize the values
+     */
+    public OffHeapCache(CacheConfiguration configuration, OffHeapValueCodec codec)
+    {
+        super(configuration);
+
+        this.codec = codec;
+
+        OffHeapConfiguration offHeap = new OffHeapConfiguration();
+        LRUEvictionConfiguration eviction = new LRUEvictionConfiguration();
+        if (configuration != null) {
+            OffHeapConfiguration offHeapConfiguration =
+                (OffHeapConfiguration) configuration.get(OffHeapConfiguration.CONFIGURATIONID);
+            if (offHeapConfiguration != null) {
+                offHeap.putAll(offHeapConfiguration);
+            }
+            EntryEvictionConfiguration entryEviction =
+                (EntryEvictionConfiguration) configuration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+            if (entryEviction != null) {
+                eviction.putAll(entryEviction);
+            }
+        }
+
+        this.store = new OffHeapStore(offHeap.getCapacity(), offHeap.getPageSize());
+        this.heapEntries = Math.max(0, offHeap.getHeapEntries());
+
+        this.maximumSize = Math.max(0, eviction.getMaxEntries());
+        this.maxIdle = TimeUnit.SECONDS.toNanos(Math.max(0, eviction.getMaxIdle()));
+        this.lifespan = TimeUnit.SECONDS.toNanos(Math.max(0, eviction.getLifespan()));
+    }
+
+    /**
+     * @return true if the entries of this cache can expire
+     */
+    public boolean isExpiring()
+    {
+        return this.maxIdle > 0 || this.lifespan > 0;
+    }
+
+    /**
+     * @param expiration the task regularly removing the expired entries, cancelled when the cache is disposed
+     */
+    void setExpiration(Future<?> expiration)
+    {
+        this.expiration = expiration;
+    }
+
+    /**
+     * @return the number of bytes currently allocated outside of the heap
+     */
+    public long getAllocatedSize()
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.store.getAllocatedSize();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected long getEntryCount()
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void set(String key, T value)
+    {
+        if (value == null) {
+            remove(key);
+
+            return;
+        }
+
+        byte[] bytes = encode(key, value);
+        if (bytes == null || !this.store.fits(bytes.length)) {
+            // The value can't be stored
+            remove(key);
+
+            return;
+        }
+
+        Slot previous;
+        T previousValue;
+        List<RemovedEntry<T>> evicted = new ArrayList<>();
+        this.lock.writeLock().lock();
+        try {
+            previous = this.index.remove(key);
+            previousValue = this.heapValues.remove(key);
+            if (previous != null) {
+                this.store.free(previous.pages);
+            }
+
+            store(key, value, bytes, evicted);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        if (previous != null) {
+            sendEntryModifiedEvent(createEvent(key, value));
+            if (previousValue != null && previousValue != value) {
+                disposeCacheValue(previousValue);
+            }
+        } else {
+            sendEntryAddedEvent(createEvent(key, value));
+        }
+
+        sendEntryRemovedEvents(evicted, true);
+    }
+
+    private void store(String key, T value, byte[] bytes, List<RemovedEntry<T>> evicted)
+    {
+        int pageCount = this.store.getPageCount(bytes.length);
+        Iterator<Slot> iterator = this.index.values().iterator();
+        while (this.store.getAvailablePageCount() < pageCount) {
+            Slot slot = iterator.next();
+            iterator.remove();
+            // The values copied for the listeners are never much bigger than the new value
+            evicted.add(release(slot, true));
+        }
+
+        this.index.put(key, new Slot(key, this.store.write(bytes), bytes.length, System.nanoTime()));
+        putHeapValue(key, value);
+
+        if (this.maximumSize > 0 && this.index.size() > this.maximumSize) {
+            iterator = this.index.values().iterator();
+            while (this.index.size() > this.maximumSize) {
+                Slot slot = iterator.next();
+                iterator.remove();
+                evicted.add(release(slot, true));
+            }
+        }
+    }
+
+    private void putHeapValue(String key, T value)
+    {
+        if (this.heapEntries > 0) {
+            this.heapValues.put(key, value);
+
+            if (this.heapValues.size() > this.heapEntries) {
+                // The value stays in the store, only its deserialized version is forgotten
+                Iterator<T> iterator = this.heapValues.values().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Free the pages of an entry which has been removed from the index.
+     *
+     * @param slot the location of the value
+     * @param copy true if the serialized value should be copied in the heap for the listeners when the value is not
+     *            kept in the heap
+     */
+    private RemovedEntry<T> release(Slot slot, boolean copy)
+    {
+        T value = this.heapValues.remove(slot.key);
+
+        // Only unserialize the value when someone is going to look at it
+        byte[] bytes = null;
+        if (copy && value == null && this.cacheEntryListeners.getListenerCount() > 0) {
+            bytes = this.store.read(slot.pages, slot.length);
+        }
+
+        this.store.free(slot.pages);
+
+        return new RemovedEntry<>(slot.key, value, bytes);
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.expiration != null) {
+            this.expiration.cancel(false);
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            this.index.clear();
+            this.heapValues.clear();
+            this.store.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        super.dispose();
+    }
+
+    @Override
+    public T get(String key)
+    {
+        return getOrLoad(key, getLoader());
+    }
+
+    @Override
+    protected boolean isRecordingStatistics()
+    {
+        return true;
+    }
+
+    @Override
+    protected T getIfPresent(String key)
+    {
+        Slot slot;
+        boolean expired = false;
+        T value = null;
+        byte[] bytes = null;
+        this.lock.readLock().lock();
+        try {
+            slot = this.index.get(key);
+
+            if (slot != null) {
+                long now = System.nanoTime();
+                if (isExpired(slot, now)) {
+                    expired = true;
+                } else {
+                    slot.accessTime = now;
+                    value = this.heapValues.get(key);
+                    if (value == null) {
+                        bytes = this.store.read(slot.pages, slot.length);
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        if (slot == null) {
+            return null;
+        }
+
+        if (expired) {
+            removeExpired(slot);
+
+            return null;
+        }
+
+        onAccess(slot);
+
+        if (bytes != null) {
+            // Unserialize the value outside of the lock
+            value = decode(key, bytes);
+
+            if (value != null) {
+                cacheHeapValue(slot, value);
+            } else {
+                remove(key);
+            }
+        }
+
+        return value;
+    }
+
+    private void onAccess(Slot slot)
+    {
+        // Don't make readers wait for the writers, losing a few accesses does not really matter
+        if (this.lock.writeLock().tryLock()) {
+            try {
+                // Make sure the value was not modified in the meantime
+                if (this.index.get(slot.key) == slot) {
+                    // Move the entry at the end (most recently used)
+                    this.index.remove(slot.key);
+                    this.index.put(slot.key, slot);
+
+                    T value = this.heapValues.remove(slot.key);
+                    if (value != null) {
+                        this.heapValues.put(slot.key, value);
+                    }
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void removeExpired(Slot slot)
+    {
+        RemovedEntry<T> expired = null;
+        this.lock.writeLock().lock();
+        try {
+            // Make sure the value was not modified in the meantime
+            if (this.index.get(slot.key) == slot) {
+                this.index.remove(slot.key);
+                expired = release(slot, true);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        if (expired != null) {
+            sendEntryRemovedEvents(Collections.singletonList(expired), true);
+        }
+    }
+
+    private void cacheHeapValue(Slot slot, T value)
+    {
+        if (this.heapEntries > 0) {
+            this.lock.writeLock().lock();
+            try {
+                // Make sure the value was not modified in the meantime
+                if (this.index.get(slot.key) == slot) {
+                    putHeapValue(slot.key, value);
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        RemovedEntry<T> removed = null;
+        this.lock.writeLock().lock();
+        try {
+            Slot slot = this.index.remove(key);
+            if (slot != null) {
+                removed = release(slot, true);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        if (removed != null) {
+            sendEntryRemovedEvents(Collections.singletonList(removed), false);
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        List<RemovedEntry<T>> removed = new ArrayList<>();
+        this.lock.writeLock().lock();
+        try {
+            for (Slot slot : this.index.values()) {
+                // Copying all the values would load the whole cache in the heap
+                removed.add(release(slot, false));
+            }
+            this.index.clear();
+
+            // Release the direct memory
+            this.store.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        sendEntryRemovedEvents(removed, false);
+    }
+
+    /**
+     * Remove all the expired entries.
+     */
+    public void expire()
+    {
+        List<String> expiredKeys = new ArrayList<>();
+        long now = System.nanoTime();
+        this.lock.writeLock().lock();
+        try {
+            for (Slot slot : this.index.values()) {
+                if (isExpired(slot, now)) {
+                    expiredKeys.add(slot.key);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        // Remove the entries one by one so that the values copied for the listeners are not all in the heap at once
+        for (String key : expiredKeys) {
+            RemovedEntry<T> expired = null;
+            this.lock.writeLock().lock();
+            try {
+                Slot slot = this.index.get(key);
+                if (slot != null && isExpired(slot, now)) {
+                    this.index.remove(key);
+                    expired = release(slot, true);
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            if (expired != null) {
+                sendEntryRemovedEvents(Collections.singletonList(expired), true);
+            }
+        }
+    }
+
+    private boolean isExpired(Slot slot, long now)
+    {
+        return (this.lifespan > 0 && now - slot.writeTime >= this.lifespan)
+            || (this.maxIdle > 0 && now - slot.accessTime >= this.maxIdle);
+    }
+
+    private byte[] encode(String key, T value)
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try {
+            this.codec.encode(value, stream);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to serialize the value associated with key [{}] in cache [{}]: {}", key,
+                this.configuration != null ? this.configuration.getConfigurationId() : null,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+
+        return stream.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decode(String key, byte[] bytes)
+    {
+        try {
+            return (T) this.codec.decode(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to unserialize the value associated with key [{}] in cache [{}]: {}", key,
+                this.configuration != null ? this.configuration.getConfigurationId() : null,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
+    private SimpleCacheEntryEvent<T> createEvent(String key, T value)
+    {
+        return new SimpleCacheEntryEvent<>(new SimpleCacheEntry<>(this, key, value));
+    }
+
+    private void sendEntryRemovedEvents(List<RemovedEntry<T>> entries, boolean eviction)
+    {
+        for (RemovedEntry<T> entry : entries) {
+            if (eviction) {
+                getStatisticsRecorder().recordEviction();
+            }
+
+            T value = entry.value;
+            if (value == null && entry.bytes != null) {
+                value = decode(entry.key, entry.bytes);
+            }
+
+            sendEntryRemovedEvent(createEvent(entry.key, value));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.util.CacheExpirationScheduler;
+import org.xwiki.cache.offheap.OffHeapConfiguration;
+import org.xwiki.cache.offheap.OffHeapValueCodec;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+
+/**
+ * Implements {@link org.xwiki.cache.CacheFactory} storing the serialized values outside of the Java heap.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Component
+@Named("offheap")
+@Singleton
+public class OffHeapCacheFactory implements CacheFactory, Disposable
+{
+    @Inject
+    private ComponentManager componentManager;
+
+    /**
+     * Remove the expired entries from the caches which have a maximum idle time or lifespan.
+     */
+    private final CacheExpirationScheduler expirationScheduler =
+        new CacheExpirationScheduler("XWiki off-heap cache expiration");
+
+    @Override
+    public <T> Cache<T> newCache(CacheConfiguration configuration) throws CacheException
+    {
+        OffHeapConfiguration offHeap = new OffHeapConfiguration();
+        if (configuration != null && configuration.get(OffHeapConfiguration.CONFIGURATIONID) != null) {
+            offHeap.putAll((OffHeapConfiguration) configuration.get(OffHeapConfiguration.CONFIGURATIONID));
+        }
+
+        OffHeapValueCodec codec;
+        try {
+            codec = this.componentManager.getInstance(OffHeapValueCodec.class, offHeap.getCodec());
+        } catch (ComponentLookupException e) {
+            throw new CacheException(String.format("Failed to get the value codec [%s]", offHeap.getCodec()), e);
+        }
+
+        OffHeapCache<T> cache;
+        try {
+            cache = new OffHeapCache<>(configuration, codec);
+        } catch (IllegalArgumentException e) {
+            throw new CacheException("Invalid off-heap cache configuration", e);
+        }
+
+        if (cache.isExpiring()) {
+            cache.setExpiration(this.expirationScheduler.schedule(cache::expire));
+        }
+
+        return cache;
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.expirationScheduler.dispose();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Store bytes in fixed size pages allocated in direct {@link ByteBuffer} slabs. The slabs are allocated only when
+ * needed, up to the configured capacity, and the freed pages are reused for the next values.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class OffHeapStore
+{
+    /**
+     * The maximum size of a slab.
+     */
+    private static final int SLAB_SIZE = 1024 * 1024;
+
+    private final int pageSize;
+
+    private final int pagesPerSlab;
+
+    private final int pageCount;
+
+    private ByteBuffer[] slabs;
+
+    /**
+     * The pages which have been freed and can be reused.
+     */
+    private int[] freePages;
+
+    private int freeCount;
+
+    /**
+     * The first page which has never been allocated.
+     */
+    private int nextPage;
+
+    /**
+     * @param capacity the maximum number of bytes to store
+     * @param pageSize the size of the pages
+     */
+    public OffHeapStore(long capacity, int pageSize)
+    {
+        if (pageSize <= 0 || pageSize > SLAB_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid page size [%s]", pageSize));
+        }
+
+        this.pageSize = pageSize;
+        this.pagesPerSlab = SLAB_SIZE / pageSize;
+        this.pageCount = (int) Math.min(Integer.MAX_VALUE, Math.max(0, capacity) / pageSize);
+        this.slabs = new ByteBuffer[(this.pageCount + this.pagesPerSlab - 1) / this.pagesPerSlab];
+        this.freePages = new int[0];
+    }
+
+    /**
+     * @param length the number of bytes
+     * @return the number of pages needed to store the passed number of bytes
+     */
+    public int getPageCount(int length)
+    {
+        return Math.max(1, (length + this.pageSize - 1) / this.pageSize);
+    }
+
+    /**
+     * @param length the number of bytes
+     * @return true if the passed number of bytes can fit in the store when it's empty
+     */
+    public boolean fits(int length)
+    {
+        return getPageCount(length) <= this.pageCount;
+    }
+
+    /**
+     * @return the number of pages which can still be allocated
+     */
+    public int getAvailablePageCount()
+    {
+        return this.freeCount + this.pageCount - this.nextPage;
+    }
+
+    /**
+     * @return the number of bytes currently allocated outside of the heap
+     */
+    public long getAllocatedSize()
+    {
+        long size = 0;
+        for (ByteBuffer slab : this.slabs) {
+            if (slab != null) {
+                size += slab.capacity();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Allocate pages and write the passed bytes in them.
+     *
+     * @param bytes the bytes to store
+     * @return the pages where the bytes have been written, or {@code null} if there is not enough pages available
+     */
+    public int[] write(byte[] bytes)
+    {
+        int count = getPageCount(bytes.length);
+        if (count > getAvailablePageCount()) {
+            return null;
+        }
+
+        int[] pages = new int[count];
+        for (int i = 0; i < count; ++i) {
+            pages[i] = allocatePage();
+
+            int offset = i * this.pageSize;
+            getPage(pages[i]).put(bytes, offset, Math.min(this.pageSize, bytes.length - offset));
+        }
+
+        return pages;
+    }
+
+    /**
+     * @param pages the pages where the bytes are stored
+     * @param length the number of stored bytes
+     * @return a copy of the stored bytes
+     */
+    public byte[] read(int[] pages, int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < pages.length; ++i) {
+            int offset = i * this.pageSize;
+            getPage(pages[i]).get(bytes, offset, Math.min(this.pageSize, length - offset));
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @param pages the pages to make available for new values
+     */
+    public void free(int[] pages)
+    {
+        if (this.freeCount + pages.length > this.freePages.length) {
+            int[] newFreePages = new int[Math.max(this.freeCount + pages.length, this.freePages.length * 2)];
+            System.arraycopy(this.freePages, 0, newFreePages, 0, this.freeCount);
+            this.freePages = newFreePages;
+        }
+
+        System.arraycopy(pages, 0, this.freePages, this.freeCount, pages.length);
+        this.freeCount += pages.length;
+    }
+
+    /**
+     * Forget all the stored bytes and release the slabs.
+     */
+    public void clear()
+    {
+        // The direct memory is released when the slabs are garbage collected
+        this.slabs = new ByteBuffer[this.slabs.length];
+        this.freePages = new int[0];
+        this.freeCount = 0;
+        this.nextPage = 0;
+    }
+
+    private int allocatePage()
+    {
+        if (this.freeCount > 0) {
+            return this.freePages[--this.freeCount];
+        }
+
+        int page = this.nextPage++;
+
+        int slabIndex = page / this.pagesPerSlab;
+        if (this.slabs[slabIndex] == null) {
+            int slabPages = Math.min(this.pagesPerSlab, this.pageCount - slabIndex * this.pagesPerSlab);
+            this.slabs[slabIndex] = ByteBuffer.allocateDirect(slabPages * this.pageSize);
+        }
+
+        return page;
+    }
+
+    private ByteBuffer getPage(int page)
+    {
+        ByteBuffer buffer = this.slabs[page / this.pagesPerSlab].duplicate();
+
+        int position = (page % this.pagesPerSlab) * this.pageSize;
+        buffer.limit(position + this.pageSize);
+        buffer.position(position);
+
+        return buffer;
+    }
+}
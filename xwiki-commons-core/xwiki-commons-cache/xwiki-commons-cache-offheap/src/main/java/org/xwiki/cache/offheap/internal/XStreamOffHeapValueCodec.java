@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.offheap.OffHeapValueCodec;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.xstream.internal.SafeXStream;
+
+import com.thoughtworks.xstream.XStreamException;
+
+/**
+ * Serialize the values as XML using XStream. Slower than {@link BinaryOffHeapValueCodec} but supports values which are
+ * not {@link java.io.Serializable}.
+ * <p>
+ * The fields which are not considered safe to serialize (components, etc.) are skipped so the values returned by the
+ * cache might be missing some data: this codec should only be used for values which are fully supported.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Component
+@Named("xstream")
+@Singleton
+public class XStreamOffHeapValueCodec implements OffHeapValueCodec
+{
+    @Inject
+    private SafeXStream xstream;
+
+    @Override
+    public void encode(Object value, OutputStream stream) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+
+        try {
+            this.xstream.toXML(value, writer);
+        } catch (XStreamException e) {
+            throw new IOException("Failed to serialize the value", e);
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    public Object decode(InputStream stream) throws IOException
+    {
+        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+
+        try {
+            return this.xstream.fromXML(reader);
+        } catch (XStreamException e) {
+            throw new IOException("Failed to unserialize the value", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap;
+
+import org.xwiki.cache.internal.DefaultCacheFactory;
+import org.xwiki.cache.internal.DefaultCacheManager;
+import org.xwiki.cache.internal.DefaultCacheManagerConfiguration;
+import org.xwiki.cache.offheap.internal.OffHeapCacheFactory;
+import org.xwiki.cache.offheap.internal.BinaryOffHeapValueCodec;
+import org.xwiki.cache.test.AbstractGenericTestCache;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+
+/**
+ * Unit tests for {@link org.xwiki.cache.offheap.internal.OffHeapCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList({
+    OffHeapCacheFactory.class,
+    BinaryOffHeapValueCodec.class,
+    DefaultCacheManager.class,
+    DefaultCacheFactory.class,
+    DefaultCacheManagerConfiguration.class
+})
+public class OffHeapCacheTest extends AbstractGenericTestCache
+{
+    public OffHeapCacheTest()
+    {
+        super("offheap");
+    }
+}
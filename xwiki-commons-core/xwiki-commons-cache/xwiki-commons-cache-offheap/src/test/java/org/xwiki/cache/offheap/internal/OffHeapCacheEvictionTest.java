@@ -0,0 +1,259 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.offheap.OffHeapConfiguration;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate the storage and eviction of {@link OffHeapCache}.
+ *
+ * @version $Id$
+ */
+public class OffHeapCacheEvictionTest
+{
+    private static final int SIZE = 100;
+
+    private static final String KEY = "key";
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    /**
+     * Remember the removed entries.
+     */
+    private static class RemovedListener implements CacheEntryListener<Object>
+    {
+        private final List<CacheEntryEvent<Object>> removed = new ArrayList<>();
+
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<Object> event)
+        {
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<Object> event)
+        {
+            this.removed.add(event);
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<Object> event)
+        {
+        }
+    }
+
+    private static CacheConfiguration configuration(int maxEntries, OffHeapConfiguration offHeap)
+    {
+        CacheConfiguration configuration = new LRUCacheConfiguration("test", maxEntries);
+        configuration.put(OffHeapConfiguration.CONFIGURATIONID, offHeap);
+
+        return configuration;
+    }
+
+    @Test
+    void maximumSize()
+    {
+        OffHeapCache<Object> cache =
+            new OffHeapCache<>(configuration(SIZE, new OffHeapConfiguration()), new BinaryOffHeapValueCodec());
+        RemovedListener listener = new RemovedListener();
+        cache.addCacheEntryListener(listener);
+
+        for (int i = 0; i < SIZE * 2; ++i) {
+            cache.set(String.valueOf(i), i);
+        }
+
+        assertEquals(SIZE, cache.getStatistics().getSize());
+        assertEquals(SIZE, listener.removed.size());
+        assertEquals("0", listener.removed.get(0).getEntry().getKey());
+        assertEquals(0, listener.removed.get(0).getEntry().getValue());
+        assertNull(cache.get("0"));
+        assertEquals(SIZE * 2 - 1, cache.get(String.valueOf(SIZE * 2 - 1)));
+
+        cache.removeAll();
+
+        assertEquals(0, cache.getStatistics().getSize());
+        assertEquals(0, cache.getAllocatedSize());
+    }
+
+    @Test
+    void readWhileLocked() throws Exception
+    {
+        OffHeapCache<Object> cache =
+            new OffHeapCache<>(configuration(2, new OffHeapConfiguration()), new BinaryOffHeapValueCodec());
+        RemovedListener listener = new RemovedListener();
+        cache.addCacheEntryListener(listener);
+
+        cache.set("0", 0);
+        cache.set("1", 1);
+
+        // Another reader holding the lock does not block the read but prevents the order update
+        ReentrantReadWriteLock lock = (ReentrantReadWriteLock) FieldUtils.readField(cache, "lock", true);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch read = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            lock.readLock().lock();
+            try {
+                locked.countDown();
+                read.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+        reader.start();
+        locked.await();
+
+        assertEquals(0, cache.get("0"));
+
+        read.countDown();
+        reader.join();
+
+        cache.set("2", 2);
+
+        assertEquals("0", listener.removed.get(0).getEntry().getKey());
+
+        // Uncontended reads update the order
+        assertEquals(1, cache.get("1"));
+        cache.set("3", 3);
+
+        assertEquals("2", listener.removed.get(1).getEntry().getKey());
+        assertEquals(1, cache.get("1"));
+    }
+
+    @Test
+    void capacity()
+    {
+        OffHeapConfiguration offHeap = new OffHeapConfiguration();
+        offHeap.setCapacity(4096);
+        offHeap.setPageSize(64);
+        OffHeapCache<Object> cache = new OffHeapCache<>(configuration(0, offHeap), new BinaryOffHeapValueCodec());
+
+        char[] chars = new char[1000];
+        for (int i = 0; i < SIZE; ++i) {
+            chars[0] = (char) ('a' + i % 26);
+            cache.set(String.valueOf(i), new String(chars));
+        }
+
+        assertTrue(cache.getAllocatedSize() <= 4096);
+        assertTrue(cache.getStatistics().getSize() < SIZE);
+        assertNull(cache.get("0"));
+        assertEquals('a' + (SIZE - 1) % 26, ((String) cache.get(String.valueOf(SIZE - 1))).charAt(0));
+
+        // Too big for the cache
+        cache.set(KEY, new String(new char[4096]));
+
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    void copies()
+    {
+        OffHeapCache<Object> cache =
+            new OffHeapCache<>(configuration(SIZE, new OffHeapConfiguration()), new BinaryOffHeapValueCodec());
+
+        List<String> value = new ArrayList<>();
+        value.add(KEY);
+        cache.set(KEY, value);
+
+        assertEquals(value, cache.get(KEY));
+        assertNotSame(value, cache.get(KEY));
+    }
+
+    @Test
+    void heapEntries()
+    {
+        OffHeapConfiguration offHeap = new OffHeapConfiguration();
+        offHeap.setHeapEntries(1);
+        OffHeapCache<Object> cache = new OffHeapCache<>(configuration(SIZE, offHeap), new BinaryOffHeapValueCodec());
+
+        List<String> value = new ArrayList<>();
+        value.add(KEY);
+        cache.set(KEY, value);
+
+        assertSame(value, cache.get(KEY));
+
+        // Push the value out of the heap
+        cache.set("other", "other");
+
+        Object copy = cache.get(KEY);
+        assertEquals(value, copy);
+        assertNotSame(value, copy);
+
+        // The unserialized value is now kept in the heap
+        assertSame(copy, cache.get(KEY));
+    }
+
+    @Test
+    void removeAllDoesNotCopyValues()
+    {
+        OffHeapConfiguration offHeap = new OffHeapConfiguration();
+        offHeap.setHeapEntries(1);
+        OffHeapCache<Object> cache = new OffHeapCache<>(configuration(SIZE, offHeap), new BinaryOffHeapValueCodec());
+        RemovedListener listener = new RemovedListener();
+        cache.addCacheEntryListener(listener);
+
+        cache.set(KEY, "value");
+        cache.set("other", "other");
+
+        cache.removeAll();
+
+        // Only the value still kept in the heap is notified
+        assertEquals(2, listener.removed.size());
+        assertEquals(KEY, listener.removed.get(0).getEntry().getKey());
+        assertNull(listener.removed.get(0).getEntry().getValue());
+        assertEquals("other", listener.removed.get(1).getEntry().getValue());
+        assertEquals(0, cache.getAllocatedSize());
+    }
+
+    @Test
+    void notSerializable()
+    {
+        OffHeapCache<Object> cache =
+            new OffHeapCache<>(configuration(SIZE, new OffHeapConfiguration()), new BinaryOffHeapValueCodec());
+
+        cache.set(KEY, "value");
+        cache.set(KEY, new Object());
+
+        assertNull(cache.get(KEY));
+        assertEquals("Failed to serialize the value associated with key [key] in cache [test]: "
+            + "NotSerializableException: java.lang.Object", this.logCapture.getMessage(0));
+    }
+}
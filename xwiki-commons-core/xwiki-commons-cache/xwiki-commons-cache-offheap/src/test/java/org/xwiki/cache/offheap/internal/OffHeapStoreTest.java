@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.offheap.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link OffHeapStore}.
+ *
+ * @version $Id$
+ */
+public class OffHeapStoreTest
+{
+    private static final int PAGE_SIZE = 16;
+
+    private static byte[] bytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = (byte) i;
+        }
+
+        return bytes;
+    }
+
+    @Test
+    void writeAndRead()
+    {
+        OffHeapStore store = new OffHeapStore(PAGE_SIZE * 10, PAGE_SIZE);
+
+        assertEquals(0, store.getAllocatedSize());
+
+        byte[] small = bytes(3);
+        byte[] big = bytes(PAGE_SIZE * 3 + 1);
+
+        int[] smallPages = store.write(small);
+        int[] bigPages = store.write(big);
+
+        assertEquals(1, smallPages.length);
+        assertEquals(4, bigPages.length);
+        assertEquals(5, store.getAvailablePageCount());
+        assertEquals(PAGE_SIZE * 10, store.getAllocatedSize());
+
+        assertArrayEquals(small, store.read(smallPages, small.length));
+        assertArrayEquals(big, store.read(bigPages, big.length));
+    }
+
+    @Test
+    void freeAndReuse()
+    {
+        OffHeapStore store = new OffHeapStore(PAGE_SIZE * 4, PAGE_SIZE);
+
+        int[] pages = store.write(bytes(PAGE_SIZE * 3));
+
+        assertNull(store.write(bytes(PAGE_SIZE * 2)));
+
+        store.free(pages);
+
+        assertEquals(4, store.getAvailablePageCount());
+
+        byte[] value = bytes(PAGE_SIZE * 4);
+        int[] newPages = store.write(value);
+
+        assertNotNull(newPages);
+        assertArrayEquals(value, store.read(newPages, value.length));
+        assertEquals(0, store.getAvailablePageCount());
+
+        store.clear();
+
+        assertEquals(4, store.getAvailablePageCount());
+        assertEquals(0, store.getAllocatedSize());
+    }
+
+    @Test
+    void fits()
+    {
+        OffHeapStore store = new OffHeapStore(PAGE_SIZE * 2, PAGE_SIZE);
+
+        assertTrue(store.fits(PAGE_SIZE * 2));
+        assertFalse(store.fits(PAGE_SIZE * 2 + 1));
+
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStore(PAGE_SIZE, 0));
+    }
+}
@@ -22,13 +22,17 @@
 import org.junit.jupiter.api.Test;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.DisposableCacheValue;
+import org.xwiki.cache.SizedCacheValue;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.eviction.WeightEvictionConfiguration;
 import org.xwiki.cache.test.CacheEntryListenerTest.EventType;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -59,6 +63,33 @@ protected AbstractEvictionGenericTestCache(String roleHint, boolean supportEvict
         this.supportEvictionEvent = supportEvictionEvent;
     }
 
+    /**
+     * A value with a weight which remembers if it has been disposed.
+     */
+    private static class SizedValue implements SizedCacheValue, DisposableCacheValue
+    {
+        private final long weight;
+
+        private boolean disposed;
+
+        SizedValue(long weight)
+        {
+            this.weight = weight;
+        }
+
+        @Override
+        public long getCacheWeight()
+        {
+            return this.weight;
+        }
+
+        @Override
+        public void dispose() throws Exception
+        {
+            this.disposed = true;
+        }
+    }
+
     protected void customizeEviction(EntryEvictionConfiguration eviction)
     {
 
@@ -109,6 +140,10 @@ public void createAndDestroyCacheLRUMaxEntries() throws Exception
         assertNull(cache.get(KEY));
         assertEquals(VALUE2, cache.get(KEY2));
 
+        if (eventListener != null) {
+            assertEquals(1, cache.getStatistics().getEvictionCount());
+        }
+
         cache.dispose();
     }
 
@@ -241,4 +276,79 @@ public void createAndDestroyCacheLRUAll() throws Exception
 
         cache.dispose();
     }
+
+    /**
+     * Validate the maximum total weight constraint.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void createAndDestroyCacheMaxWeight() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        CacheConfiguration conf = new CacheConfiguration();
+        WeightEvictionConfiguration wec = new WeightEvictionConfiguration(10);
+        customizeEviction(wec);
+        conf.put(EntryEvictionConfiguration.CONFIGURATIONID, wec);
+
+        Cache<Object> cache = factory.newCache(conf);
+
+        assertNotNull(cache);
+
+        CacheEntryListenerTest eventListener = new CacheEntryListenerTest();
+        cache.addCacheEntryListener(eventListener);
+
+        SizedValue value = new SizedValue(6);
+        SizedValue value2 = new SizedValue(6);
+
+        cache.set(KEY, value);
+
+        assertSame(value, cache.get(KEY));
+
+        cache.set(KEY2, value2);
+
+        assertTrue(eventListener.waitForEntryEvent(EventType.REMOVE),
+            "No value has been evicted from the cache after reaching the maximum weight");
+
+        // Depending on the eviction policy any of the two entries can be evicted
+        SizedValue evicted = (SizedValue) eventListener.getRemovedEvent().getEntry().getValue();
+        assertTrue(evicted.disposed);
+        assertFalse(evicted == value ? value2.disposed : value.disposed);
+        assertTrue(cache.get(KEY) == null ^ cache.get(KEY2) == null);
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate the maximum total weight constraint with a specific weigher.
+     *
+     * @throws Exception error
+     */
+    @Test
+    public void createAndDestroyCacheMaxWeightWithWeigher() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        CacheConfiguration conf = new CacheConfiguration();
+        WeightEvictionConfiguration wec = new WeightEvictionConfiguration(10);
+        wec.setWeigher((key, obj) -> obj.toString().length());
+        customizeEviction(wec);
+        conf.put(EntryEvictionConfiguration.CONFIGURATIONID, wec);
+
+        Cache<Object> cache = factory.newCache(conf);
+
+        // VALUE weighs 5
+        cache.set(KEY, VALUE);
+        cache.set(KEY2, VALUE);
+
+        assertEquals(VALUE, cache.get(KEY));
+        assertEquals(VALUE, cache.get(KEY2));
+
+        cache.set(KEY2, VALUE + VALUE2);
+
+        assertTrue(cache.get(KEY) == null ^ cache.get(KEY2) == null);
+
+        cache.dispose();
+    }
 }
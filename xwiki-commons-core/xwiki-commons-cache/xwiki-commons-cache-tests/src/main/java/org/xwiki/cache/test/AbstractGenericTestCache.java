@@ -19,15 +19,28 @@
  */
 package org.xwiki.cache.test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Test;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LoadingCacheConfiguration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Base class for testing cache component implementation.
@@ -222,4 +235,144 @@ public void recreateCache() throws Exception
 
         assertEquals(VALUE, cache.get(KEY));
     }
+
+    /**
+     * Validate {@link Cache#get(String, java.util.function.Function)}.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getWithLoader() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(VALUE, cache.get(KEY, key -> {
+            calls.incrementAndGet();
+            return VALUE;
+        }));
+        assertEquals(VALUE, cache.get(KEY, key -> VALUE2));
+        assertEquals(VALUE, cache.get(KEY));
+        assertEquals(1, calls.get());
+
+        // Nothing is stored when the loader does not return any value
+        assertNull(cache.get(KEY2, key -> null));
+        assertNull(cache.get(KEY2));
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate {@link LoadingCacheConfiguration}.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getWithConfiguredLoader() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new LoadingCacheConfiguration<>(null, key -> key + VALUE));
+
+        assertEquals(KEY + VALUE, cache.get(KEY));
+
+        cache.set(KEY2, VALUE2);
+
+        assertEquals(VALUE2, cache.get(KEY2));
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate that concurrent misses wait for a single computation of the value.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void getWithLoaderConcurrently() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        int threads = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger calls = new AtomicInteger();
+
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit(() -> cache.get(KEY, key -> {
+                    calls.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    return VALUE;
+                })));
+            }
+
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+            // Other keys are not blocked by the current computation
+            assertEquals(VALUE2, cache.get(KEY2, key -> VALUE2));
+
+            release.countDown();
+
+            for (Future<Object> future : futures) {
+                assertEquals(VALUE, future.get(10, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        cache.dispose();
+    }
+
+    /**
+     * Validate {@link Cache#getStatistics()}.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void statistics() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        CacheStatistics statistics = cache.getStatistics();
+
+        assertNull(cache.get(KEY));
+
+        cache.set(KEY, VALUE);
+
+        assertEquals(VALUE, cache.get(KEY));
+        assertEquals(VALUE2, cache.get(KEY2, key -> VALUE2));
+        assertThrows(IllegalStateException.class, () -> cache.get(VALUE, key -> {
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(3, statistics.getMissCount());
+        assertEquals(0.25, statistics.getHitRatio());
+        assertEquals(1, statistics.getLoadCount());
+        assertEquals(1, statistics.getLoadFailureCount());
+        assertTrue(statistics.getTotalLoadTime() >= 0);
+        assertEquals(0, statistics.getEvictionCount());
+        assertEquals(2, statistics.getSize());
+
+        cache.dispose();
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * A probabilistic estimation of the access frequency of the cache keys.
+ * <p>
+ * This is a Count-Min sketch: each key is associated with one small counter in each of the {@value #DEPTH} rows and its
+ * frequency is estimated as the smallest of these counters. The counters are saturated at {@value #MAX_FREQUENCY}
+ * (the admission policy only needs to compare frequencies) and are all halved once the number of increments reaches
+ * {@value #SAMPLE_FACTOR} times the maximum size of the cache, so that the estimation reflects the recent history.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class FrequencySketch
+{
+    private static final int DEPTH = 4;
+
+    private static final int MAX_FREQUENCY = 15;
+
+    private static final int SAMPLE_FACTOR = 10;
+
+    private static final int MAXIMUM_WIDTH = 1 << 26;
+
+    /**
+     * The counters of all the rows, row after row.
+     */
+    private byte[] counters;
+
+    private int width;
+
+    /**
+     * The number of increments after which the counters are halved.
+     */
+    private int sampleSize;
+
+    private int increments;
+
+    /**
+     * @param maximumSize the maximum number of entries in the cache
+     */
+    FrequencySketch(int maximumSize)
+    {
+        ensureCapacity(maximumSize);
+    }
+
+    /**
+     * Make sure the sketch is big enough to estimate the frequency of the passed number of entries. The counters are
+     * lost when the sketch is resized.
+     *
+     * @param maximumSize the maximum number of entries in the cache
+     */
+    void ensureCapacity(int maximumSize)
+    {
+        int expectedWidth = Math.min(Math.max(maximumSize, 1), MAXIMUM_WIDTH);
+
+        if (this.counters == null || this.width < expectedWidth) {
+            // Use a power of two to compute the index of a counter with a mask
+            this.width = expectedWidth == 1 ? 1 : Integer.highestOneBit(expectedWidth - 1) << 1;
+            this.counters = new byte[DEPTH * this.width];
+            this.sampleSize = SAMPLE_FACTOR * this.width;
+            this.increments = 0;
+        }
+    }
+
+    /**
+     * @param hashCode the hash code of the key
+     * @return the estimated number of recent accesses to the key, up to {@value #MAX_FREQUENCY}
+     */
+    int frequency(int hashCode)
+    {
+        int hash = mix(hashCode);
+        int step = secondaryHash(hash);
+
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < DEPTH; ++row) {
+            frequency = Math.min(frequency, this.counters[indexOf(hash, step, row)]);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * @param hashCode the hash code of the accessed key
+     */
+    void increment(int hashCode)
+    {
+        int frequency = frequency(hashCode);
+
+        if (frequency < MAX_FREQUENCY) {
+            int hash = mix(hashCode);
+            int step = secondaryHash(hash);
+
+            // Conservative update: only the counters holding the current estimation need to grow, which limits the
+            // overestimation caused by the collisions
+            for (int row = 0; row < DEPTH; ++row) {
+                int index = indexOf(hash, step, row);
+                if (this.counters[index] == frequency) {
+                    ++this.counters[index];
+                }
+            }
+
+            if (++this.increments >= this.sampleSize) {
+                age();
+            }
+        }
+    }
+
+    /**
+     * Halve all the counters.
+     */
+    private void age()
+    {
+        for (int i = 0; i < this.counters.length; ++i) {
+            this.counters[i] >>>= 1;
+        }
+
+        this.increments /= 2;
+    }
+
+    /**
+     * Double hashing: the position in each row is derived from two independent hashes of the key.
+     */
+    private int indexOf(int hash, int step, int row)
+    {
+        return row * this.width + ((hash + row * step) & (this.width - 1));
+    }
+
+    /**
+     * Spread the bits of the hash code since the hash codes of the keys are often not well distributed in the low bits
+     * (MurmurHash3 finalizer).
+     */
+    private static int mix(int hashCode)
+    {
+        int hash = hashCode;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+
+    /**
+     * @return an odd step so that the rows use different positions for keys colliding in the first row
+     */
+    private static int secondaryHash(int hash)
+    {
+        return Integer.rotateLeft(hash, 16) * 0x9e3779b9 | 1;
+    }
+}
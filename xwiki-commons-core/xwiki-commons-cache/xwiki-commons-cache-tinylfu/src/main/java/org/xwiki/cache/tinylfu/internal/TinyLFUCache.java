@@ -0,0 +1,468 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.Weigher;
+import org.xwiki.cache.eviction.WeightEvictionConfiguration;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCacheNode.NodeList;
+import org.xwiki.cache.tinylfu.internal.TinyLFUCacheNode.Queue;
+import org.xwiki.cache.util.AbstractCache;
+import org.xwiki.cache.util.SimpleCacheEntry;
+import org.xwiki.cache.util.SimpleCacheEntryEvent;
+
+/**
+ * Local cache implementation using the W-TinyLFU eviction policy.
+ * <p>
+ * The cache can be bounded by number of entries and/or by total weight of the entries (see
+ * {@link WeightEvictionConfiguration}).
+ * <p>
+ * New entries are first stored in a small admission window (1% of the maximum size) handled as a LRU. Entries leaving
+ * the window enter the main space where they compete with the entries already there: when the cache is full, the
+ * entry with the lowest estimated access frequency is evicted. The main space is split between a probation and a
+ * protected segment so that entries accessed several times are protected from a scan of entries accessed only once.
+ * <p>
+ * Reads never wait for the eviction policy lock: when the lock is not available the access is simply not recorded.
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class TinyLFUCache<T> extends AbstractCache<T>
+{
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final int PERCENT = 100;
+
+    /**
+     * The initial size of the frequency sketch of caches bounded only by weight.
+     */
+    private static final int DEFAULT_SKETCH_SIZE = 1024;
+
+    private final ConcurrentMap<String, TinyLFUCacheNode<T>> map = new ConcurrentHashMap<>();
+
+    /**
+     * Protect the eviction policy queues and the frequency sketch.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final NodeList<T> window = new NodeList<>();
+
+    private final NodeList<T> probation = new NodeList<>();
+
+    private final NodeList<T> protectedSegment = new NodeList<>();
+
+    /**
+     * The maximum number of entries, 0 when unlimited.
+     */
+    private final int maximumSize;
+
+    /**
+     * The maximum total weight of the entries, 0 when unlimited.
+     */
+    private final long maximumWeight;
+
+    /**
+     * The weigher of the entries, null when the cache is not bounded by weight (all entries weigh 1).
+     */
+    private final Weigher<T> weigher;
+
+    /**
+     * The maximum weight of the window (a number of entries when the cache is not bounded by weight).
+     */
+    private final long windowMaximum;
+
+    /**
+     * The maximum weight of the protected segment (a number of entries when the cache is not bounded by weight).
+     */
+    private final long protectedMaximum;
+
+    private final FrequencySketch sketch;
+
+    /**
+     * The maximum idle time of an entry in nanoseconds, 0 when unlimited.
+     */
+    private final long maxIdle;
+
+    /**
+     * The maximum lifespan of an entry in nanoseconds, 0 when unlimited.
+     */
+    private final long lifespan;
+
+    /**
+     * The task regularly removing the expired entries.
+     */
+    private Future<?> expiration;
+
+    /**
+     * @param configuration the configuration of the cache
+     */
+    public TinyLFUCache(CacheConfiguration configuration)
+    {
+        super(configuration);
+
+        WeightEvictionConfiguration eviction = new WeightEvictionConfiguration();
+        EntryEvictionConfiguration entryEviction = configuration != null
+            ? (EntryEvictionConfiguration) configuration.get(EntryEvictionConfiguration.CONFIGURATIONID) : null;
+        if (entryEviction != null) {
+            eviction.putAll(entryEviction);
+        }
+
+        this.maximumSize = Math.max(0, eviction.getMaxEntries());
+        this.maximumWeight = Math.max(0, eviction.getMaxWeight());
+        this.weigher = this.maximumWeight > 0 ? eviction.getWeigher() : null;
+
+        // The segments are sized in weight when the cache is bounded by weight
+        long capacity = this.maximumWeight > 0 ? this.maximumWeight : this.maximumSize;
+        this.windowMaximum = Math.max(1, capacity * WINDOW_PERCENT / PERCENT);
+        this.protectedMaximum = (capacity - this.windowMaximum) * PROTECTED_PERCENT / PERCENT;
+        if (capacity > 0) {
+            this.sketch = new FrequencySketch(this.maximumSize > 0 ? this.maximumSize : DEFAULT_SKETCH_SIZE);
+        } else {
+            this.sketch = null;
+        }
+
+        this.maxIdle = TimeUnit.SECONDS.toNanos(Math.max(0, eviction.getMaxIdle()));
+        this.lifespan = TimeUnit.SECONDS.toNanos(Math.max(0, eviction.getLifespan()));
+    }
+
+    /**
+     * @return true if the entries of this cache can expire
+     */
+    public boolean isExpiring()
+    {
+        return this.maxIdle > 0 || this.lifespan > 0;
+    }
+
+    /**
+     * @param expiration the task regularly removing the expired entries, cancelled when the cache is disposed
+     */
+    void setExpiration(Future<?> expiration)
+    {
+        this.expiration = expiration;
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size()
+    {
+        return this.map.size();
+    }
+
+    @Override
+    protected long getEntryCount()
+    {
+        return this.map.size();
+    }
+
+    @Override
+    public void set(String key, T value)
+    {
+        if (value == null) {
+            remove(key);
+
+            return;
+        }
+
+        TinyLFUCacheNode<T> node = new TinyLFUCacheNode<>(key, value, weigh(key, value), System.nanoTime());
+        TinyLFUCacheNode<T> previous = this.map.put(key, node);
+
+        List<TinyLFUCacheNode<T>> evicted = null;
+        if (this.sketch != null) {
+            this.evictionLock.lock();
+            try {
+                unlink(previous);
+                if (this.maximumSize == 0) {
+                    // The number of entries of a cache bounded only by weight is not known in advance
+                    this.sketch.ensureCapacity(this.map.size());
+                }
+                this.sketch.increment(key.hashCode());
+                if (this.map.get(key) == node) {
+                    node.setQueue(Queue.WINDOW);
+                    this.window.addLast(node);
+                }
+                evicted = evict();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+
+        if (previous != null) {
+            sendEntryModifiedEvent(createEvent(node));
+            if (previous.getValue() != value) {
+                disposeCacheValue(previous.getValue());
+            }
+        } else {
+            sendEntryAddedEvent(createEvent(node));
+        }
+
+        sendEntryRemovedEvents(evicted);
+    }
+
+    private long weigh(String key, T value)
+    {
+        return this.weigher != null ? Math.max(0, this.weigher.weigh(key, value)) : 1;
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.expiration != null) {
+            this.expiration.cancel(false);
+        }
+
+        super.dispose();
+    }
+
+    @Override
+    public T get(String key)
+    {
+        return getOrLoad(key, getLoader());
+    }
+
+    @Override
+    protected boolean isRecordingStatistics()
+    {
+        return true;
+    }
+
+    @Override
+    protected T getIfPresent(String key)
+    {
+        TinyLFUCacheNode<T> node = this.map.get(key);
+
+        long now = System.nanoTime();
+        if (node != null && isExpired(node, now)) {
+            if (this.map.remove(key, node)) {
+                getStatisticsRecorder().recordEviction();
+                removed(node);
+            }
+
+            node = null;
+        }
+
+        if (node != null) {
+            node.setAccessTime(now);
+        }
+
+        onAccess(key, node);
+
+        return node != null ? node.getValue() : null;
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        TinyLFUCacheNode<T> node = this.map.remove(key);
+
+        if (node != null) {
+            removed(node);
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        for (TinyLFUCacheNode<T> node : this.map.values()) {
+            if (this.map.remove(node.getKey(), node)) {
+                removed(node);
+            }
+        }
+    }
+
+    /**
+     * Remove all the expired entries.
+     */
+    public void expire()
+    {
+        long now = System.nanoTime();
+        for (TinyLFUCacheNode<T> node : this.map.values()) {
+            if (isExpired(node, now) && this.map.remove(node.getKey(), node)) {
+                getStatisticsRecorder().recordEviction();
+                removed(node);
+            }
+        }
+    }
+
+    private boolean isExpired(TinyLFUCacheNode<T> node, long now)
+    {
+        return (this.lifespan > 0 && now - node.getWriteTime() >= this.lifespan)
+            || (this.maxIdle > 0 && now - node.getAccessTime() >= this.maxIdle);
+    }
+
+    private SimpleCacheEntryEvent<T> createEvent(TinyLFUCacheNode<T> node)
+    {
+        return new SimpleCacheEntryEvent<>(new SimpleCacheEntry<>(this, node.getKey(), node.getValue()));
+    }
+
+    private void sendEntryRemovedEvents(List<TinyLFUCacheNode<T>> nodes)
+    {
+        if (nodes != null) {
+            for (TinyLFUCacheNode<T> node : nodes) {
+                getStatisticsRecorder().recordEviction();
+                sendEntryRemovedEvent(createEvent(node));
+            }
+        }
+    }
+
+    /**
+     * Called when a node has been removed from the map.
+     */
+    private void removed(TinyLFUCacheNode<T> node)
+    {
+        if (this.sketch != null) {
+            this.evictionLock.lock();
+            try {
+                unlink(node);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+
+        sendEntryRemovedEvent(createEvent(node));
+    }
+
+    private void onAccess(String key, TinyLFUCacheNode<T> node)
+    {
+        // Don't make readers wait for the policy, losing a few accesses does not really matter
+        if (this.sketch != null && this.evictionLock.tryLock()) {
+            try {
+                this.sketch.increment(key.hashCode());
+
+                if (node != null && node.getQueue() != null) {
+                    reorder(node);
+                }
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    private void reorder(TinyLFUCacheNode<T> node)
+    {
+        if (node.getQueue() == Queue.WINDOW) {
+            this.window.moveToLast(node);
+        } else if (node.getQueue() == Queue.PROTECTED) {
+            this.protectedSegment.moveToLast(node);
+        } else {
+            // Promote the entry to the protected segment
+            this.probation.remove(node);
+            node.setQueue(Queue.PROTECTED);
+            this.protectedSegment.addLast(node);
+
+            // Demote the least recently used protected entries
+            while (this.protectedSegment.weight() > this.protectedMaximum) {
+                TinyLFUCacheNode<T> demoted = this.protectedSegment.peekFirst();
+                this.protectedSegment.remove(demoted);
+                demoted.setQueue(Queue.PROBATION);
+                this.probation.addLast(demoted);
+            }
+        }
+    }
+
+    private void unlink(TinyLFUCacheNode<T> node)
+    {
+        if (node != null && node.getQueue() != null) {
+            getList(node.getQueue()).remove(node);
+            node.setQueue(null);
+        }
+    }
+
+    private NodeList<T> getList(Queue queue)
+    {
+        if (queue == Queue.WINDOW) {
+            return this.window;
+        } else if (queue == Queue.PROBATION) {
+            return this.probation;
+        }
+
+        return this.protectedSegment;
+    }
+
+    private List<TinyLFUCacheNode<T>> evict()
+    {
+        // Move the entries overflowing the window to the main space
+        while (this.window.weight() > this.windowMaximum) {
+            TinyLFUCacheNode<T> node = this.window.peekFirst();
+            this.window.remove(node);
+            node.setQueue(Queue.PROBATION);
+            this.probation.addLast(node);
+        }
+
+        List<TinyLFUCacheNode<T>> evicted = null;
+        while (isOverflowing()) {
+            TinyLFUCacheNode<T> node = selectVictim();
+
+            unlink(node);
+            if (this.map.remove(node.getKey(), node)) {
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(node);
+            }
+        }
+
+        return evicted;
+    }
+
+    private boolean isOverflowing()
+    {
+        if (this.maximumSize > 0
+            && this.window.size() + this.probation.size() + this.protectedSegment.size() > this.maximumSize) {
+            return true;
+        }
+
+        return this.maximumWeight > 0
+            && this.window.weight() + this.probation.weight() + this.protectedSegment.weight() > this.maximumWeight;
+    }
+
+    private TinyLFUCacheNode<T> selectVictim()
+    {
+        // The least recently used entry of the main space
+        TinyLFUCacheNode<T> victim = this.probation.peekFirst();
+        // The last entry admitted in the main space
+        TinyLFUCacheNode<T> candidate = this.probation.peekLast();
+
+        if (victim == null) {
+            victim = this.protectedSegment.peekFirst();
+            if (victim == null) {
+                victim = this.window.peekFirst();
+            }
+        } else if (victim != candidate && this.sketch.frequency(candidate.getKey().hashCode()) <= this.sketch
+            .frequency(victim.getKey().hashCode())) {
+            // The candidate is not accessed more often than the victim, reject it
+            victim = candidate;
+        }
+
+        return victim;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.util.CacheExpirationScheduler;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+
+/**
+ * Implements {@link org.xwiki.cache.CacheFactory} based on a W-TinyLFU eviction policy.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Component
+@Named("tinylfu")
+@Singleton
+public class TinyLFUCacheFactory implements CacheFactory, Disposable
+{
+    /**
+     * Remove the expired entries from the caches which have a maximum idle time or lifespan.
+     */
+    private final CacheExpirationScheduler expirationScheduler =
+        new CacheExpirationScheduler("XWiki TinyLFU cache expiration");
+
+    @Override
+    public <T> Cache<T> newCache(CacheConfiguration configuration) throws CacheException
+    {
+        TinyLFUCache<T> cache = new TinyLFUCache<>(configuration);
+
+        if (cache.isExpiring()) {
+            cache.setExpiration(this.expirationScheduler.schedule(cache::expire));
+        }
+
+        return cache;
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.expirationScheduler.dispose();
+    }
+}
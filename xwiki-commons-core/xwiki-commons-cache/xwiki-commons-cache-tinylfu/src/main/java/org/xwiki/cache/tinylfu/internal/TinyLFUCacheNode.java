@@ -0,0 +1,246 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * An entry stored in a {@link TinyLFUCache}, also used as a link of the eviction policy queues.
+ *
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class TinyLFUCacheNode<T>
+{
+    /**
+     * The queues of the eviction policy.
+     *
+     * @version $Id$
+     */
+    enum Queue
+    {
+        /**
+         * The recently added entries.
+         */
+        WINDOW,
+
+        /**
+         * The entries admitted in the main space, candidates for eviction.
+         */
+        PROBATION,
+
+        /**
+         * The entries accessed while in probation.
+         */
+        PROTECTED
+    }
+
+    private final String key;
+
+    private final T value;
+
+    private final long weight;
+
+    /**
+     * The last time the value was set (as returned by {@link System#nanoTime()}).
+     */
+    private final long writeTime;
+
+    /**
+     * The last time the value was accessed (as returned by {@link System#nanoTime()}).
+     */
+    private volatile long accessTime;
+
+    // The following fields are protected by the cache eviction lock
+
+    private Queue queue;
+
+    private TinyLFUCacheNode<T> previous;
+
+    private TinyLFUCacheNode<T> next;
+
+    /**
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @param weight the weight of the entry
+     * @param now the current time
+     */
+    TinyLFUCacheNode(String key, T value, long weight, long now)
+    {
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+        this.writeTime = now;
+        this.accessTime = now;
+    }
+
+    /**
+     * @return the key of the entry
+     */
+    String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the value of the entry
+     */
+    T getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * @return the weight of the entry
+     */
+    long getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @return the last time the value was set
+     */
+    long getWriteTime()
+    {
+        return this.writeTime;
+    }
+
+    /**
+     * @return the last time the value was accessed
+     */
+    long getAccessTime()
+    {
+        return this.accessTime;
+    }
+
+    /**
+     * @param accessTime the last time the value was accessed
+     */
+    void setAccessTime(long accessTime)
+    {
+        this.accessTime = accessTime;
+    }
+
+    /**
+     * @return the queue containing the node, null if the node is not part of the eviction policy
+     */
+    Queue getQueue()
+    {
+        return this.queue;
+    }
+
+    /**
+     * @param queue the queue containing the node
+     */
+    void setQueue(Queue queue)
+    {
+        this.queue = queue;
+    }
+
+    /**
+     * A double linked list of nodes ordered from the least recently used to the most recently used.
+     *
+     * @param <T> the class of the data stored in the cache.
+     * @version $Id$
+     */
+    static final class NodeList<T>
+    {
+        private TinyLFUCacheNode<T> first;
+
+        private TinyLFUCacheNode<T> last;
+
+        private int size;
+
+        private long weight;
+
+        int size()
+        {
+            return this.size;
+        }
+
+        long weight()
+        {
+            return this.weight;
+        }
+
+        TinyLFUCacheNode<T> peekFirst()
+        {
+            return this.first;
+        }
+
+        TinyLFUCacheNode<T> peekLast()
+        {
+            return this.last;
+        }
+
+        void addLast(TinyLFUCacheNode<T> node)
+        {
+            node.previous = this.last;
+            node.next = null;
+
+            if (this.last != null) {
+                this.last.next = node;
+            } else {
+                this.first = node;
+            }
+            this.last = node;
+
+            ++this.size;
+            this.weight += node.weight;
+        }
+
+        void remove(TinyLFUCacheNode<T> node)
+        {
+            if (node.previous != null) {
+                node.previous.next = node.next;
+            } else {
+                this.first = node.next;
+            }
+
+            if (node.next != null) {
+                node.next.previous = node.previous;
+            } else {
+                this.last = node.previous;
+            }
+
+            node.previous = null;
+            node.next = null;
+
+            --this.size;
+            this.weight -= node.weight;
+        }
+
+        void moveToLast(TinyLFUCacheNode<T> node)
+        {
+            if (node != this.last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear()
+        {
+            this.first = null;
+            this.last = null;
+            this.size = 0;
+            this.weight = 0;
+        }
+    }
+}
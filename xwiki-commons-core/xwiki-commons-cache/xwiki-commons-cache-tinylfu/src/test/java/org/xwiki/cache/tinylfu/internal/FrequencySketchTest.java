@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link FrequencySketch}.
+ *
+ * @version $Id$
+ */
+public class FrequencySketchTest
+{
+    @Test
+    void increment()
+    {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        assertEquals(0, sketch.frequency("key".hashCode()));
+
+        for (int i = 0; i < 5; ++i) {
+            sketch.increment("key".hashCode());
+        }
+
+        assertEquals(5, sketch.frequency("key".hashCode()));
+
+        for (int i = 0; i < 20; ++i) {
+            sketch.increment("key".hashCode());
+        }
+
+        // The counters are saturated
+        assertEquals(15, sketch.frequency("key".hashCode()));
+    }
+
+    @Test
+    void age()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+
+        for (int i = 0; i < 8; ++i) {
+            sketch.increment("old".hashCode());
+        }
+
+        // Access enough other keys to reach the sample size
+        for (int i = 0; i < 200; ++i) {
+            sketch.increment(String.valueOf(i).hashCode());
+        }
+
+        assertTrue(sketch.frequency("old".hashCode()) < 8);
+    }
+
+    @Test
+    void ensureCapacity()
+    {
+        FrequencySketch sketch = new FrequencySketch(1);
+
+        sketch.increment("key".hashCode());
+        sketch.ensureCapacity(1000);
+
+        // The counters are lost when the sketch grows
+        assertEquals(0, sketch.frequency("key".hashCode()));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.DisposableCacheValue;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.eviction.WeightEvictionConfiguration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate the eviction policy of {@link TinyLFUCache}.
+ *
+ * @version $Id$
+ */
+public class TinyLFUCacheEvictionTest
+{
+    private static final int SIZE = 1000;
+
+    @Test
+    void maximumSize()
+    {
+        TinyLFUCache<Integer> cache = new TinyLFUCache<>(new LRUCacheConfiguration("test", SIZE));
+
+        for (int i = 0; i < SIZE * 10; ++i) {
+            cache.set(String.valueOf(i), i);
+
+            assertTrue(cache.size() <= SIZE);
+        }
+
+        assertEquals(SIZE, cache.size());
+
+        cache.removeAll();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void maximumWeight()
+    {
+        WeightEvictionConfiguration eviction = new WeightEvictionConfiguration(SIZE);
+        eviction.setWeigher((key, value) -> (Integer) value);
+        TinyLFUCache<Integer> cache = new TinyLFUCache<>(new CacheConfiguration(eviction));
+
+        for (int i = 0; i < SIZE * 10; ++i) {
+            cache.set(String.valueOf(i), i % 100);
+        }
+
+        long weight = 0;
+        for (int i = 0; i < SIZE * 10; ++i) {
+            Integer value = cache.get(String.valueOf(i));
+            if (value != null) {
+                weight += value;
+            }
+        }
+
+        assertTrue(weight <= SIZE, "Unexpected total weight: " + weight);
+        assertTrue(weight > SIZE / 2, "Unexpected total weight: " + weight);
+
+        // An entry heavier than the cache is immediately evicted
+        cache.set("heavy", SIZE + 1);
+
+        assertNull(cache.get("heavy"));
+    }
+
+    @Test
+    void scanResistance()
+    {
+        TinyLFUCache<Integer> cache = new TinyLFUCache<>(new LRUCacheConfiguration("test", SIZE));
+
+        // Frequently accessed entries
+        int hotSize = SIZE / 2;
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < hotSize; ++i) {
+                if (cache.get("hot" + i) == null) {
+                    cache.set("hot" + i, i);
+                }
+            }
+        }
+
+        // A scan of entries accessed only once, much bigger than the cache
+        for (int i = 0; i < SIZE * 10; ++i) {
+            if (cache.get("scan" + i) == null) {
+                cache.set("scan" + i, i);
+            }
+        }
+
+        // A LRU would have lost all the frequently accessed entries
+        int hits = 0;
+        for (int i = 0; i < hotSize; ++i) {
+            if (cache.get("hot" + i) != null) {
+                ++hits;
+            }
+        }
+
+        assertTrue(hits > hotSize * 9 / 10, "Unexpected hit count: " + hits);
+    }
+
+    @Test
+    void setDisposePreviousValue()
+    {
+        TinyLFUCache<DisposableCacheValue> cache = new TinyLFUCache<>(new LRUCacheConfiguration("test", 1));
+
+        List<DisposableCacheValue> disposed = new ArrayList<>();
+        DisposableCacheValue value1 = () -> disposed.add(null);
+        DisposableCacheValue value2 = () -> disposed.add(null);
+
+        cache.set("key", value1);
+        cache.set("key", value1);
+
+        assertEquals(0, disposed.size());
+
+        cache.set("key", value2);
+
+        assertEquals(1, disposed.size());
+
+        // Evict the entry
+        cache.set("key2", value1);
+
+        assertEquals(2, disposed.size());
+        assertNull(cache.get("key"));
+        assertNotNull(cache.get("key2"));
+
+        cache.set("key2", null);
+
+        assertNull(cache.get("key2"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.xwiki.stability.Unstable;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * <p>
+ * Indicate that a singleton Component is safe to be instantiated (and initialized) in a background thread, in parallel
+ * with other Components, when the Component Manager is initialized in parallel mode instead of being instantiated the
+ * first time it's looked up.
+ * </p>
+ * <p>
+ * The Component dependencies are always instantiated before the Component itself and Components involved in a
+ * dependency cycle are left to be instantiated on first lookup.
+ * </p>
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Inherited
+@Unstable
+public @interface WarmUp
+{
+}
@@ -20,27 +20,35 @@
 package org.xwiki.component.annotation;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.inject.Provider;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -79,6 +87,12 @@
      */
     private static final String COMPONENT_LIST_ENCODING = "UTF-8";
 
+    /**
+     * The name of the component index file, relative to the component list.
+     */
+    private static final String COMPONENT_INDEX_NAME =
+        ComponentIndex.COMPONENT_INDEX.substring(ComponentIndex.COMPONENT_INDEX.lastIndexOf('/') + 1);
+
     /**
      * Logger to use for logging...
      */
@@ -89,6 +103,26 @@
      */
     private ComponentDescriptorFactory factory = new ComponentDescriptorFactory();
 
+    /**
+     * Used to read the component descriptors indexed at build time.
+     */
+    private ComponentIndex index = new ComponentIndex(this);
+
+    /**
+     * @see #setParallel(boolean)
+     */
+    private boolean parallel;
+
+    /**
+     * @param parallel true if the component implementations should be parsed in parallel
+     * @since 12.4RC1
+     */
+    @Unstable
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
     /**
      * Loads all components defined using annotations.
      *
@@ -99,8 +133,11 @@
     public void initialize(ComponentManager manager, ClassLoader classLoader)
     {
         try {
-            // Find all declared components by retrieving the list defined in COMPONENT_LIST.
-            List<ComponentDeclaration> componentDeclarations = getDeclaredComponents(classLoader, COMPONENT_LIST);
+            // Find all declared components by retrieving the list defined in COMPONENT_LIST and the descriptors
+            // already indexed at build time.
+            Map<String, List<ComponentDescriptor<?>>> indexedDescriptors = new HashMap<>();
+            List<ComponentDeclaration> componentDeclarations =
+                getIndexedDeclaredComponents(classLoader, COMPONENT_LIST, indexedDescriptors);
 
             // Find all the Component overrides and adds them to the bottom of the list as component declarations with
             // the highest priority of 0. This is purely for backward compatibility since the override files is now
@@ -117,7 +154,7 @@ public void initialize(ComponentManager manager, ClassLoader classLoader)
                     .getImplementationClassName(), 0));
             }
 
-            initialize(manager, classLoader, componentDeclarations);
+            register(manager, getIndexedOrParsedDescriptors(classLoader, componentDeclarations, indexedDescriptors));
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
@@ -150,39 +187,70 @@ public void initialize(ComponentManager manager, ClassLoader classLoader,
     private Collection<ComponentDescriptor<?>> getComponentsDescriptors(ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
     {
-        // For each component class name found, load its class and use introspection to find the necessary
-        // annotations required to create a Component Descriptor.
+        return getIndexedOrParsedDescriptors(classLoader, componentDeclarations,
+            Collections.<String, List<ComponentDescriptor<?>>>emptyMap());
+    }
+
+    private Collection<ComponentDescriptor<?>> getIndexedOrParsedDescriptors(ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, Map<String, List<ComponentDescriptor<?>>> indexedDescriptors)
+    {
+        // For each component class name found, use the indexed descriptors or load its class and use introspection to
+        // find the necessary annotations required to create a Component Descriptor.
         Map<RoleHint<?>, ComponentDescriptor<?>> descriptorMap = new HashMap<>();
         Map<RoleHint<?>, Integer> priorityMap = new HashMap<>();
 
-        for (ComponentDeclaration componentDeclaration : componentDeclarations) {
-            Class<?> componentClass;
-            try {
-                componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
-            } catch (Exception e) {
-                throw new RuntimeException(
-                    String.format("Failed to load component class [%s] for annotation parsing",
-                        componentDeclaration.getImplementationClassName()), e);
-            }
+        // Parsing each component implementation is independent so it can be done in parallel but the result is
+        // collected in the declarations order to keep priorities resolution deterministic
+        Stream<ComponentDeclaration> declarationsStream =
+            this.parallel ? componentDeclarations.parallelStream() : componentDeclarations.stream();
+        List<List<ComponentDescriptor<?>>> declarationsDescriptors = declarationsStream.map(componentDeclaration -> {
+            List<ComponentDescriptor<?>> componentDescriptors =
+                indexedDescriptors.get(componentDeclaration.getImplementationClassName());
 
-            // Look for ComponentRole annotations and register one component per ComponentRole found
-            for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                for (ComponentDescriptor<?> componentDescriptor : this.factory.createComponentDescriptors(
-                    componentClass, componentRoleType)) {
-                    // If there's already a existing role/hint in the list of descriptors then decide which one
-                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                    RoleHint<?> roleHint =
-                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                        true);
-                }
+            return componentDescriptors != null ? componentDescriptors
+                : parseComponentsDescriptors(classLoader, componentDeclaration);
+        }).collect(Collectors.toList());
+
+        for (int i = 0; i < componentDeclarations.size(); ++i) {
+            ComponentDeclaration componentDeclaration = componentDeclarations.get(i);
+
+            for (ComponentDescriptor<?> componentDescriptor : declarationsDescriptors.get(i)) {
+                // If there's already a existing role/hint in the list of descriptors then decide which one
+                // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                RoleHint<?> roleHint =
+                    new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration, true);
             }
         }
 
         return descriptorMap.values();
     }
 
+    private List<ComponentDescriptor<?>> parseComponentsDescriptors(ClassLoader classLoader,
+        ComponentDeclaration componentDeclaration)
+    {
+        Class<?> componentClass;
+        try {
+            componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Failed to load component class [%s] for annotation parsing",
+                componentDeclaration.getImplementationClassName()), e);
+        }
+
+        List<ComponentDescriptor<?>> componentDescriptors = new ArrayList<>();
+
+        // Look for ComponentRole annotations and register one component per ComponentRole found
+        for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
+            for (ComponentDescriptor<?> componentDescriptor : this.factory.createComponentDescriptors(componentClass,
+                componentRoleType)) {
+                componentDescriptors.add(componentDescriptor);
+            }
+        }
+
+        return componentDescriptors;
+    }
+
     /**
      * @param manager the component manager to use to dynamically register components
      * @param componentDescriptors the descriptors of components to register
@@ -485,6 +553,74 @@ public List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader,
         return annotatedClassNames;
     }
 
+    private List<ComponentDeclaration> getIndexedDeclaredComponents(ClassLoader classLoader, String location,
+        Map<String, List<ComponentDescriptor<?>>> indexedDescriptors) throws IOException
+    {
+        List<ComponentDeclaration> annotatedClassNames = new ArrayList<>();
+        Enumeration<URL> urls = classLoader.getResources(location);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+
+            LOGGER.debug("Loading declared component definitions from [{}]", url);
+
+            byte[] componentList;
+            try (InputStream componentListStream = url.openStream()) {
+                componentList = toByteArray(componentListStream);
+            }
+
+            annotatedClassNames.addAll(getDeclaredComponents(new ByteArrayInputStream(componentList)));
+
+            Map<String, List<ComponentDescriptor<?>>> index = readComponentIndex(url, componentList, classLoader);
+            if (index != null) {
+                indexedDescriptors.putAll(index);
+            }
+        }
+
+        return annotatedClassNames;
+    }
+
+    private Map<String, List<ComponentDescriptor<?>>> readComponentIndex(URL componentListURL,
+        byte[] componentList, ClassLoader classLoader)
+    {
+        URL indexURL;
+        try {
+            // The index is located next to the component list
+            indexURL = new URL(componentListURL, COMPONENT_INDEX_NAME);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+
+        try (InputStream indexStream = indexURL.openStream()) {
+            Map<String, List<ComponentDescriptor<?>>> index =
+                this.index.read(indexStream, componentList, classLoader);
+
+            if (index == null) {
+                LOGGER.debug("Ignoring stale component index [{}]", indexURL);
+            }
+
+            return index;
+        } catch (FileNotFoundException e) {
+            // No index
+            return null;
+        } catch (Exception e) {
+            getLogger().warn("Failed to read component index [{}], falling back on annotations parsing: {}",
+                indexURL, ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
+    private static byte[] toByteArray(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) {
+            output.write(buffer, 0, read);
+        }
+
+        return output.toByteArray();
+    }
+
     /**
      * Get all components listed in the passed resource stream. The format is:
      * {@code (priority level):(fully qualified component implementation name)}.
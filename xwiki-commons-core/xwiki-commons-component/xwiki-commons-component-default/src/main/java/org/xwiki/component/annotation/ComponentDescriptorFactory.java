@@ -47,9 +47,20 @@
      * Load all Component Descriptor Factories implementations using the JDK's Service Loader facility. Note that we
      * cannot use Components to do this since it would be a chicken and egg issue since this factory class is used to
      * initialize Components...
+     * <p>
+     * The factories are loaded once since {@link ServiceLoader} can't be iterated by several threads at the same time.
      */
-    private ServiceLoader<ComponentDependencyFactory> componentDependencyFactories = ServiceLoader
-        .load(ComponentDependencyFactory.class);
+    private final List<ComponentDependencyFactory> componentDependencyFactories = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     */
+    public ComponentDescriptorFactory()
+    {
+        for (ComponentDependencyFactory factory : ServiceLoader.load(ComponentDependencyFactory.class)) {
+            this.componentDependencyFactories.add(factory);
+        }
+    }
 
     /**
      * Create component descriptors for the passed component implementation class and component role class. There can be
@@ -0,0 +1,447 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Read and write the index of the component descriptors declared in a {@code META-INF/components.txt} file.
+ * <p>
+ * The index is generated at build time next to the component list and allows {@link ComponentAnnotationLoader} to
+ * create the component descriptors without parsing the annotations of each component implementation. It contains the
+ * checksum of the component list it was generated from so that a stale index is ignored. Components which can't be
+ * indexed (custom dependency factories, wildcard or variable types, etc.) are not part of the index and are still
+ * discovered through reflection.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public class ComponentIndex
+{
+    /**
+     * Location in the classloader of the component descriptors index.
+     */
+    public static final String COMPONENT_INDEX = "META-INF/components.index";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentIndex.class);
+
+    private static final int MAGIC = 0x58434958;
+
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_CLASS = 0;
+
+    private static final byte TYPE_PARAMETERIZED = 1;
+
+    private static final byte TYPE_NULL = 2;
+
+    private final ComponentAnnotationLoader loader;
+
+    /**
+     * Default constructor.
+     */
+    public ComponentIndex()
+    {
+        this(new ComponentAnnotationLoader());
+    }
+
+    /**
+     * @param loader the loader used to find the component descriptors to index
+     */
+    public ComponentIndex(ComponentAnnotationLoader loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * @param componentList the content of the component list file
+     * @return the checksum used to make sure the index matches the component list
+     */
+    public static long getChecksum(byte[] componentList)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(componentList);
+
+        return crc.getValue();
+    }
+
+    /**
+     * Write the index of the passed component declarations.
+     *
+     * @param componentList the content of the component list file from which the declarations were parsed
+     * @param classLoader the classloader used to load the component implementations
+     * @param outputStream the stream where to write the index
+     * @return the number of component implementations which have been indexed
+     * @throws IOException when failing to parse the component list or to write the index
+     * @throws ClassNotFoundException when failing to load a component implementation
+     */
+    public int write(byte[] componentList, ClassLoader classLoader, OutputStream outputStream)
+        throws IOException, ClassNotFoundException
+    {
+        List<ComponentDeclaration> declarations =
+            this.loader.getDeclaredComponents(new ByteArrayInputStream(componentList));
+
+        Map<String, List<ComponentDescriptor>> indexed = new HashMap<>();
+        List<String> implementations = new ArrayList<>();
+        for (ComponentDeclaration declaration : declarations) {
+            String implementation = declaration.getImplementationClassName();
+            if (!indexed.containsKey(implementation)) {
+                List<ComponentDescriptor> descriptors =
+                    this.loader.getComponentsDescriptors(classLoader.loadClass(implementation));
+                if (isIndexable(descriptors)) {
+                    indexed.put(implementation, descriptors);
+                    implementations.add(implementation);
+                } else {
+                    LOGGER.debug("Component [{}] can't be indexed", implementation);
+                }
+            }
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(getChecksum(componentList));
+
+        output.writeInt(implementations.size());
+        for (String implementation : implementations) {
+            output.writeUTF(implementation);
+
+            writeDescriptors(indexed.get(implementation), output);
+        }
+
+        output.flush();
+
+        return implementations.size();
+    }
+
+    private void writeDescriptors(List<ComponentDescriptor> descriptors, DataOutputStream output) throws IOException
+    {
+        output.writeInt(descriptors.size());
+        for (ComponentDescriptor<?> descriptor : descriptors) {
+            writeType(descriptor.getRoleType(), output);
+            output.writeUTF(descriptor.getRoleHint());
+            output.writeUTF(descriptor.getInstantiationStrategy().name());
+
+            output.writeInt(descriptor.getComponentDependencies().size());
+            for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+                output.writeUTF(dependency.getName());
+                writeType(dependency.getRoleType(), output);
+                writeString(dependency.getRoleHint(), output);
+                writeStrings(dependency.getHints(), output);
+            }
+        }
+    }
+
+    private boolean isIndexable(List<ComponentDescriptor> descriptors)
+    {
+        for (ComponentDescriptor<?> descriptor : descriptors) {
+            // Only standard descriptors and dependencies can be recreated from the index
+            if (descriptor.getClass() != DefaultComponentDescriptor.class || !isIndexable(descriptor.getRoleType())) {
+                return false;
+            }
+
+            for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+                if (dependency.getClass() != DefaultComponentDependency.class
+                    || !isIndexable(dependency.getRoleType())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isIndexable(Type type)
+    {
+        if (type instanceof Class) {
+            return !((Class<?>) type).isPrimitive();
+        }
+
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            if (parameterizedType.getOwnerType() != null && !isIndexable(parameterizedType.getOwnerType())) {
+                return false;
+            }
+
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                if (!isIndexable(argument)) {
+                    return false;
+                }
+            }
+
+            return isIndexable(parameterizedType.getRawType());
+        }
+
+        return false;
+    }
+
+    private void writeType(Type type, DataOutputStream output) throws IOException
+    {
+        if (type == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (type instanceof Class) {
+            output.writeByte(TYPE_CLASS);
+            output.writeUTF(((Class<?>) type).getName());
+        } else {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            output.writeByte(TYPE_PARAMETERIZED);
+            writeType(parameterizedType.getOwnerType(), output);
+            writeType(parameterizedType.getRawType(), output);
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            output.writeInt(arguments.length);
+            for (Type argument : arguments) {
+                writeType(argument, output);
+            }
+        }
+    }
+
+    private void writeString(String value, DataOutputStream output) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private void writeStrings(String[] values, DataOutputStream output) throws IOException
+    {
+        if (values == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(values.length);
+            for (String value : values) {
+                output.writeUTF(value);
+            }
+        }
+    }
+
+    /**
+     * Read the component descriptors stored in the passed index.
+     *
+     * @param inputStream the stream to read the index from
+     * @param componentList the content of the component list file the index is supposed to match
+     * @param classLoader the classloader used to load the component implementations and roles
+     * @return the component descriptors indexed by implementation class name or {@code null} if the index does not
+     *         match the passed component list
+     * @throws IOException when failing to read the index
+     */
+    public Map<String, List<ComponentDescriptor<?>>> read(InputStream inputStream, byte[] componentList,
+        ClassLoader classLoader) throws IOException
+    {
+        DataInputStream input = new DataInputStream(inputStream);
+
+        if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != getChecksum(componentList)) {
+            return null;
+        }
+
+        int size = input.readInt();
+        Map<String, List<ComponentDescriptor<?>>> descriptors = new HashMap<>(size * 2);
+        for (int i = 0; i < size; ++i) {
+            String implementation = input.readUTF();
+            List<IndexedDescriptor> indexedDescriptors = readDescriptors(input);
+
+            try {
+                descriptors.put(implementation, createDescriptors(implementation, indexedDescriptors, classLoader));
+            } catch (Exception | LinkageError e) {
+                // Let the reflection based loading report the problem
+                LOGGER.debug("Failed to create indexed descriptors of component [{}]", implementation, e);
+            }
+        }
+
+        return descriptors;
+    }
+
+    private List<IndexedDescriptor> readDescriptors(DataInputStream input) throws IOException
+    {
+        int descriptorsSize = input.readInt();
+        List<IndexedDescriptor> descriptors = new ArrayList<>(descriptorsSize);
+        for (int i = 0; i < descriptorsSize; ++i) {
+            IndexedDescriptor descriptor = new IndexedDescriptor();
+            descriptor.roleType = readType(input);
+            descriptor.roleHint = input.readUTF();
+            descriptor.instantiationStrategy = input.readUTF();
+
+            int dependenciesSize = input.readInt();
+            descriptor.dependencies = new ArrayList<>(dependenciesSize);
+            for (int j = 0; j < dependenciesSize; ++j) {
+                IndexedDependency dependency = new IndexedDependency();
+                dependency.name = input.readUTF();
+                dependency.roleType = readType(input);
+                dependency.roleHint = readString(input);
+                dependency.hints = readStrings(input);
+
+                descriptor.dependencies.add(dependency);
+            }
+
+            descriptors.add(descriptor);
+        }
+
+        return descriptors;
+    }
+
+    private IndexedType readType(DataInputStream input) throws IOException
+    {
+        byte kind = input.readByte();
+
+        if (kind == TYPE_NULL) {
+            return null;
+        }
+
+        IndexedType type = new IndexedType();
+        if (kind == TYPE_CLASS) {
+            type.className = input.readUTF();
+        } else if (kind == TYPE_PARAMETERIZED) {
+            type.ownerType = readType(input);
+            type.rawType = readType(input);
+            type.arguments = new IndexedType[input.readInt()];
+            for (int i = 0; i < type.arguments.length; ++i) {
+                type.arguments[i] = readType(input);
+            }
+        } else {
+            throw new IOException("Unknown type kind [" + kind + "]");
+        }
+
+        return type;
+    }
+
+    private String readString(DataInputStream input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private String[] readStrings(DataInputStream input) throws IOException
+    {
+        int size = input.readInt();
+        if (size < 0) {
+            return null;
+        }
+
+        String[] values = new String[size];
+        for (int i = 0; i < size; ++i) {
+            values[i] = input.readUTF();
+        }
+
+        return values;
+    }
+
+    private List<ComponentDescriptor<?>> createDescriptors(String implementation,
+        List<IndexedDescriptor> indexedDescriptors, ClassLoader classLoader) throws ClassNotFoundException
+    {
+        Class implementationClass = classLoader.loadClass(implementation);
+
+        List<ComponentDescriptor<?>> descriptors = new ArrayList<>(indexedDescriptors.size());
+        for (IndexedDescriptor indexedDescriptor : indexedDescriptors) {
+            DefaultComponentDescriptor descriptor = new DefaultComponentDescriptor();
+            descriptor.setRoleType(indexedDescriptor.roleType.resolve(classLoader));
+            descriptor.setImplementation(implementationClass);
+            descriptor.setRoleHint(indexedDescriptor.roleHint);
+            descriptor.setInstantiationStrategy(
+                ComponentInstantiationStrategy.valueOf(indexedDescriptor.instantiationStrategy));
+
+            for (IndexedDependency indexedDependency : indexedDescriptor.dependencies) {
+                DefaultComponentDependency dependency = new DefaultComponentDependency();
+                dependency.setName(indexedDependency.name);
+                dependency.setRoleType(indexedDependency.roleType.resolve(classLoader));
+                dependency.setRoleHint(indexedDependency.roleHint);
+                dependency.setHints(indexedDependency.hints);
+
+                descriptor.addComponentDependency(dependency);
+            }
+
+            descriptors.add(descriptor);
+        }
+
+        return descriptors;
+    }
+
+    private static final class IndexedDescriptor
+    {
+        private IndexedType roleType;
+
+        private String roleHint;
+
+        private String instantiationStrategy;
+
+        private List<IndexedDependency> dependencies;
+    }
+
+    private static final class IndexedDependency
+    {
+        private String name;
+
+        private IndexedType roleType;
+
+        private String roleHint;
+
+        private String[] hints;
+    }
+
+    private static final class IndexedType
+    {
+        private String className;
+
+        private IndexedType ownerType;
+
+        private IndexedType rawType;
+
+        private IndexedType[] arguments;
+
+        private Type resolve(ClassLoader classLoader) throws ClassNotFoundException
+        {
+            if (this.className != null) {
+                return Class.forName(this.className, false, classLoader);
+            }
+
+            Type[] resolvedArguments = new Type[this.arguments.length];
+            for (int i = 0; i < resolvedArguments.length; ++i) {
+                resolvedArguments[i] = this.arguments[i].resolve(classLoader);
+            }
+
+            return new DefaultParameterizedType(this.ownerType != null ? this.ownerType.resolve(classLoader) : null,
+                (Class<?>) this.rawType.resolve(classLoader), resolvedArguments);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Collection;
+
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Create instances of a component implementation and inject its dependencies using method handles resolved once for
+ * the component registration instead of looking up the constructor and each field for every new instance.
+ *
+ * @param <T> the type of the component implementation
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class ComponentInstantiator<T>
+{
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MethodHandle constructor;
+
+    private final ComponentDependency<?>[] dependencies;
+
+    /**
+     * The setter of each dependency, null when the implementation does not have a matching field.
+     */
+    private final MethodHandle[] setters;
+
+    /**
+     * @param descriptor the descriptor of the component to instantiate
+     */
+    ComponentInstantiator(ComponentDescriptor<T> descriptor)
+    {
+        Class<? extends T> implementation = descriptor.getImplementation();
+
+        this.constructor = createConstructor(implementation);
+
+        Collection<ComponentDependency<?>> descriptorDependencies = descriptor.getComponentDependencies();
+        this.dependencies = descriptorDependencies.toArray(new ComponentDependency<?>[descriptorDependencies.size()]);
+        this.setters = new MethodHandle[this.dependencies.length];
+        for (int i = 0; i < this.dependencies.length; ++i) {
+            this.setters[i] = createSetter(implementation, this.dependencies[i].getName());
+        }
+    }
+
+    private static MethodHandle createConstructor(Class<?> implementation)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            Constructor<?> implementationConstructor = implementation.getDeclaredConstructor();
+            implementationConstructor.setAccessible(true);
+
+            return lookup.unreflectConstructor(implementationConstructor).asType(CONSTRUCTOR_TYPE);
+        } catch (Exception e) {
+            // Keep the standard behavior (and errors) when the constructor can't be accessed directly
+            try {
+                return lookup.findVirtual(Class.class, "newInstance", CONSTRUCTOR_TYPE).bindTo(implementation);
+            } catch (ReflectiveOperationException e1) {
+                // Should never happen
+                throw new IllegalStateException("Failed to access method Class#newInstance()", e1);
+            }
+        }
+    }
+
+    private static MethodHandle createSetter(Class<?> implementation, String fieldName)
+    {
+        // Use the same logic as ReflectionUtils#setFieldValue to find the field
+        Field field = null;
+        for (Class<?> targetClass = implementation; targetClass != null && field == null;
+            targetClass = targetClass.getSuperclass()) {
+            for (Field declaredField : targetClass.getDeclaredFields()) {
+                if (declaredField.getName().equalsIgnoreCase(fieldName)) {
+                    field = declaredField;
+                    break;
+                }
+            }
+        }
+
+        if (field == null) {
+            return null;
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            field.setAccessible(true);
+
+            return lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (Exception e) {
+            // Fallback on standard reflection (final fields, security manager, etc.)
+            try {
+                return MethodHandles.insertArguments(lookup.findStatic(ReflectionUtils.class, "setFieldValue",
+                    MethodType.methodType(void.class, Object.class, String.class, Object.class)), 1, fieldName);
+            } catch (ReflectiveOperationException e1) {
+                // Should never happen
+                throw new IllegalStateException("Failed to access method ReflectionUtils#setFieldValue()", e1);
+            }
+        }
+    }
+
+    /**
+     * @return the dependencies to inject in each new instance
+     */
+    ComponentDependency<?>[] getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * @return a new instance of the component implementation
+     * @throws Exception when failing to create the instance
+     */
+    @SuppressWarnings("unchecked")
+    T newInstance() throws Exception
+    {
+        try {
+            return (T) this.constructor.invokeExact();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Exception("Failed to create component instance", e);
+        }
+    }
+
+    /**
+     * @param instance the component instance
+     * @param index the index of the dependency in {@link #getDependencies()}
+     * @param value the value to inject
+     */
+    void setDependency(Object instance, int index, Object value)
+    {
+        MethodHandle setter = this.setters[index];
+
+        if (setter != null) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(String.format("Failed to set field [%s] in instance of [%s]",
+                    this.dependencies[index].getName(), instance.getClass().getName()), e);
+            }
+        }
+    }
+}
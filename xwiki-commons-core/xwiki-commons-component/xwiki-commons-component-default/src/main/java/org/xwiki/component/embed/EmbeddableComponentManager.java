@@ -24,18 +24,29 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Provider;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.ComponentAnnotationLoader;
 import org.xwiki.component.annotation.DisposePriority;
+import org.xwiki.component.annotation.WarmUp;
 import org.xwiki.component.descriptor.ComponentDependency;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -50,6 +61,7 @@
 import org.xwiki.component.manager.NamespacedComponentManager;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.stability.Unstable;
 
 /**
  * Simple implementation of {@link ComponentManager} to be used when using some XWiki modules standalone.
@@ -64,6 +76,12 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
      */
     private static final Logger SHUTDOWN_LOGGER = LoggerFactory.getLogger("org.xwiki.shutdown");
 
+    /**
+     * The maximum time (in seconds) to wait for the components to be warmed up before moving on with the
+     * initialization.
+     */
+    private static final long WARMUP_TIMEOUT = 60;
+
     /**
      * @see #getNamespace()
      */
@@ -96,17 +114,81 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
          */
         public boolean disposing = false;
 
+        /**
+         * Used to create new instances of the component. Lazily initialized when needed.
+         */
+        private volatile ComponentInstantiator<R> instantiator;
+
         public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         {
             this.descriptor = descriptor;
             this.instance = instance;
         }
+
+        public ComponentInstantiator<R> getInstantiator()
+        {
+            if (this.instantiator == null) {
+                // No need to synchronize, the worst that can happen is to resolve it more than once
+                this.instantiator = new ComponentInstantiator<>(this.descriptor);
+            }
+
+            return this.instantiator;
+        }
+    }
+
+    /**
+     * The result of the lookups of singleton components with a given role (local or coming from parents which are all
+     * {@link EmbeddableComponentManager}s).
+     */
+    private static final class LookupCache
+    {
+        /**
+         * The modification stamps of this component manager and each of its parents for the role when the cache was
+         * created.
+         */
+        private final long[] stamps;
+
+        private final Map<String, Object> instances = new ConcurrentHashMap<>();
+
+        private volatile Map<String, ?> instanceMap;
+
+        private volatile List<?> instanceList;
+
+        LookupCache(long[] stamps)
+        {
+            this.stamps = stamps;
+        }
     }
 
     private Map<Type, Map<String, ComponentEntry<?>>> componentEntries = new ConcurrentHashMap<>();
 
+    /**
+     * Incremented each time the parent is modified or the component manager is disposed. Used to invalidate the
+     * lookup caches of this component manager and its children.
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Incremented each time a component with the role is registered, unregistered or released (i.e. each time a
+     * component event is sent). Used to invalidate the lookup caches of this role in this component manager and its
+     * children.
+     */
+    private final Map<Type, AtomicLong> roleModifications = new ConcurrentHashMap<>();
+
+    private final Map<Type, LookupCache> lookupCaches = new ConcurrentHashMap<>();
+
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
+    /**
+     * @see #setParallelInitialization(boolean)
+     */
+    private boolean parallelInitialization;
+
+    /**
+     * @see #WARMUP_TIMEOUT
+     */
+    private long warmUpTimeout = WARMUP_TIMEOUT;
+
     /**
      * Finds all lifecycle handlers to use when instantiating a Component.
      */
@@ -153,6 +235,7 @@ private void registerThis()
     public void initialize(ClassLoader classLoader)
     {
         ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        loader.setParallel(this.parallelInitialization);
         loader.initialize(this, classLoader);
 
         // Extension point to allow component to manipulate ComponentManager initialized state.
@@ -165,6 +248,199 @@ public void initialize(ClassLoader classLoader)
             // Should never happen
             this.logger.error("Failed to lookup ComponentManagerInitializer components", e);
         }
+
+        if (this.parallelInitialization) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Enable or disable the parallel initialization mode (disabled by default). When enabled,
+     * {@link #initialize(ClassLoader)} parses the component implementations in parallel and instantiates in parallel
+     * the singleton components annotated with {@link WarmUp} (and their dependencies), each component being
+     * instantiated after its dependencies.
+     *
+     * @param parallelInitialization true if the component manager should be initialized in parallel
+     * @since 12.4RC1
+     */
+    @Unstable
+    public void setParallelInitialization(boolean parallelInitialization)
+    {
+        this.parallelInitialization = parallelInitialization;
+    }
+
+    /**
+     * Instantiate in parallel the local singletons annotated with {@link WarmUp}, following the order of their
+     * dependencies. Components involved in a dependency cycle (or depending on one) are left to be instantiated on
+     * first lookup.
+     */
+    private void warmUp()
+    {
+        // Build the dependency graph of the components to warm up
+        Map<ComponentEntry<?>, List<ComponentEntry<?>>> graph = new LinkedHashMap<>();
+        for (Map<String, ComponentEntry<?>> entries : this.componentEntries.values()) {
+            for (ComponentEntry<?> entry : entries.values()) {
+                Class<?> implementation = entry.descriptor.getImplementation();
+                if (entry.instance == null
+                    && entry.descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON
+                    && implementation != null && implementation.isAnnotationPresent(WarmUp.class)) {
+                    addWarmUpDependencies(entry, graph);
+                }
+            }
+        }
+
+        if (graph.isEmpty()) {
+            return;
+        }
+
+        Map<ComponentEntry<?>, Boolean> warmable = new HashMap<>();
+        for (ComponentEntry<?> entry : graph.keySet()) {
+            isWarmable(entry, graph, warmable);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new BasicThreadFactory.Builder().namingPattern("Component warm-up %d").daemon(true).build());
+        try {
+            Map<ComponentEntry<?>, CompletableFuture<Void>> futures = new HashMap<>();
+            for (ComponentEntry<?> entry : graph.keySet()) {
+                if (warmable.get(entry)) {
+                    getWarmUpFuture(entry, graph, futures, executor);
+                } else {
+                    this.logger.debug("Component [{}] is part of a dependency cycle and won't be warmed up",
+                        entry.descriptor.getImplementation());
+                }
+            }
+
+            waitForWarmUp(futures);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void waitForWarmUp(Map<ComponentEntry<?>, CompletableFuture<Void>> futures)
+    {
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()]))
+                .get(this.warmUpTimeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // The pending components keep being warmed up in the background (or are instantiated on first lookup)
+            List<Class<?>> pending = new ArrayList<>();
+            for (Map.Entry<ComponentEntry<?>, CompletableFuture<Void>> future : futures.entrySet()) {
+                if (!future.getValue().isDone()) {
+                    pending.add(future.getKey().descriptor.getImplementation());
+                }
+            }
+            this.logger.warn("Components still not warmed up after [{}] seconds: {}", this.warmUpTimeout, pending);
+        } catch (InterruptedException e) {
+            this.logger.warn("Interrupted while waiting for the components to be warmed up");
+
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Should never happen since warmUp(ComponentEntry, ClassLoader) doesn't throw
+            this.logger.error("Failed to warm up the components", e);
+        }
+    }
+
+    private void addWarmUpDependencies(ComponentEntry<?> entry, Map<ComponentEntry<?>, List<ComponentEntry<?>>> graph)
+    {
+        if (!graph.containsKey(entry)) {
+            List<ComponentEntry<?>> dependencies = new ArrayList<>();
+            graph.put(entry, dependencies);
+
+            // Only the dependencies which are looked up when creating the instance and registered in this component
+            // manager are taken into account, the same way getDependencyInstance() resolves them
+            for (ComponentDependency<?> dependency : entry.descriptor.getComponentDependencies()) {
+                Type roleType = dependency.getRoleType();
+                Class<?> roleClass = ReflectionUtils.getTypeClass(roleType);
+
+                if (roleClass.isAssignableFrom(Logger.class) || roleClass.isAssignableFrom(ComponentDescriptor.class)) {
+                    continue;
+                }
+
+                if (roleClass.isAssignableFrom(List.class) || roleClass.isAssignableFrom(Map.class)) {
+                    Map<String, ComponentEntry<?>> entries =
+                        this.componentEntries.get(ReflectionUtils.getLastTypeGenericArgument(roleType));
+                    if (entries != null) {
+                        dependencies.addAll(entries.values());
+                    }
+                } else {
+                    ComponentEntry<?> dependencyEntry = getComponentEntry(roleType, dependency.getRoleHint());
+                    if (dependencyEntry != null) {
+                        dependencies.add(dependencyEntry);
+                    }
+                }
+            }
+
+            for (ComponentEntry<?> dependency : dependencies) {
+                addWarmUpDependencies(dependency, graph);
+            }
+        }
+    }
+
+    /**
+     * @return false if the passed entry is part of a cycle or depends on a component which is part of a cycle
+     */
+    private boolean isWarmable(ComponentEntry<?> entry, Map<ComponentEntry<?>, List<ComponentEntry<?>>> graph,
+        Map<ComponentEntry<?>, Boolean> warmable)
+    {
+        if (warmable.containsKey(entry)) {
+            // A null value means the entry is currently being visited: we found a cycle
+            return warmable.get(entry) == Boolean.TRUE;
+        }
+
+        warmable.put(entry, null);
+
+        boolean result = true;
+        for (ComponentEntry<?> dependency : graph.get(entry)) {
+            // Visit all dependencies to mark all the components involved in a cycle
+            result &= isWarmable(dependency, graph, warmable);
+        }
+
+        warmable.put(entry, result);
+
+        return result;
+    }
+
+    private CompletableFuture<Void> getWarmUpFuture(ComponentEntry<?> entry,
+        Map<ComponentEntry<?>, List<ComponentEntry<?>>> graph, Map<ComponentEntry<?>, CompletableFuture<Void>> futures,
+        ExecutorService executor)
+    {
+        CompletableFuture<Void> future = futures.get(entry);
+
+        if (future == null) {
+            List<ComponentEntry<?>> dependencies = graph.get(entry);
+            CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[dependencies.size()];
+            for (int i = 0; i < dependencyFutures.length; ++i) {
+                dependencyFutures[i] = getWarmUpFuture(dependencies.get(i), graph, futures, executor);
+            }
+
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            future = CompletableFuture.allOf(dependencyFutures)
+                .thenRunAsync(() -> warmUp(entry, contextClassLoader), executor);
+
+            futures.put(entry, future);
+        }
+
+        return future;
+    }
+
+    private void warmUp(ComponentEntry<?> entry, ClassLoader contextClassLoader)
+    {
+        // Per lookup components are only part of the graph for their dependencies
+        if (entry.descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON) {
+            Thread currentThread = Thread.currentThread();
+            ClassLoader currentClassLoader = currentThread.getContextClassLoader();
+            currentThread.setContextClassLoader(contextClassLoader);
+            try {
+                getComponentInstance(entry);
+            } catch (Throwable e) {
+                // The error will be reported again when the component is looked up
+                this.logger.warn("Failed to warm up component [{}]: {}", entry.descriptor.getImplementation(),
+                    ExceptionUtils.getRootCauseMessage(e));
+            } finally {
+                currentThread.setContextClassLoader(currentClassLoader);
+            }
+        }
     }
 
     @Override
@@ -191,6 +467,24 @@ public <T> T getInstance(Type roleType) throws ComponentLookupException
 
     @Override
     public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupException
+    {
+        LookupCache cache = getLookupCache(roleType);
+        String key = roleHint != null ? roleHint : RoleHint.DEFAULT_HINT;
+
+        T instance = (T) cache.instances.get(key);
+
+        if (instance == null) {
+            instance = lookupInstance(roleType, roleHint);
+
+            if (instance != null && isCacheable(roleType, roleHint, instance)) {
+                cache.instances.put(key, instance);
+            }
+        }
+
+        return instance;
+    }
+
+    private <T> T lookupInstance(Type roleType, String roleHint) throws ComponentLookupException
     {
         T instance;
 
@@ -218,18 +512,52 @@ public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupE
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> List<T> getInstanceList(Type role) throws ComponentLookupException
     {
-        // Reuse getInstanceMap to make sure to not return components from parent Component Manager overridden by this
-        // Component Manager
-        Map<String, T> objects = getInstanceMap(role);
+        LookupCache cache = getLookupCache(role);
 
-        return objects.isEmpty() ? Collections.<T>emptyList() : new ArrayList<>(objects.values());
+        List<T> objects = (List<T>) cache.instanceList;
+
+        if (objects == null) {
+            // Reuse getInstanceMap to make sure to not return components from parent Component Manager overridden by
+            // this Component Manager
+            objects = new ArrayList<>(this.<T>getCachedInstanceMap(cache, role).values());
+
+            if (isCacheable(role)) {
+                cache.instanceList = objects;
+            }
+        }
+
+        // Return a copy since the caller is allowed to modify the returned list
+        return objects.isEmpty() ? Collections.<T>emptyList() : new ArrayList<>(objects);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> Map<String, T> getInstanceMap(Type roleType) throws ComponentLookupException
+    {
+        // Return a copy since the caller is allowed to modify the returned map
+        return new HashMap<>(getCachedInstanceMap(getLookupCache(roleType), roleType));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> getCachedInstanceMap(LookupCache cache, Type roleType) throws ComponentLookupException
+    {
+        Map<String, T> components = (Map<String, T>) cache.instanceMap;
+
+        if (components == null) {
+            components = lookupInstanceMap(roleType);
+
+            if (isCacheable(roleType)) {
+                cache.instanceMap = components;
+            }
+        }
+
+        return components;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> lookupInstanceMap(Type roleType) throws ComponentLookupException
     {
         Map<String, T> components = new HashMap<>();
 
@@ -260,6 +588,124 @@ public <T> Map<String, T> getInstanceMap(Type roleType) throws ComponentLookupEx
         return components;
     }
 
+    /**
+     * @param roleType the role of the components
+     * @return the lookup cache of the role, a new one if the role was modified in this component manager or one of its
+     *         parents since the current one was created
+     */
+    private LookupCache getLookupCache(Type roleType)
+    {
+        LookupCache cache = this.lookupCaches.get(roleType);
+
+        if (cache == null || !isUpToDate(cache.stamps, roleType)) {
+            cache = new LookupCache(getModificationStamps(roleType));
+            this.lookupCaches.put(roleType, cache);
+        }
+
+        return cache;
+    }
+
+    /**
+     * @return the modification stamp of the role in this component manager, which increases each time a component with
+     *         this role is modified or the parent is modified
+     */
+    private long getModificationStamp(Type roleType)
+    {
+        AtomicLong roleModification = this.roleModifications.get(roleType);
+
+        return this.modifications.get() + (roleModification != null ? roleModification.get() : 0);
+    }
+
+    private long[] getModificationStamps(Type roleType)
+    {
+        int size = 0;
+        for (ComponentManager manager = this; manager instanceof EmbeddableComponentManager;
+            manager = ((EmbeddableComponentManager) manager).getParent()) {
+            ++size;
+        }
+
+        long[] stamps = new long[size];
+        ComponentManager manager = this;
+        for (int i = 0; i < size; ++i) {
+            stamps[i] = ((EmbeddableComponentManager) manager).getModificationStamp(roleType);
+            manager = ((EmbeddableComponentManager) manager).getParent();
+        }
+
+        return stamps;
+    }
+
+    private boolean isUpToDate(long[] stamps, Type roleType)
+    {
+        int i = 0;
+        for (ComponentManager manager = this; manager instanceof EmbeddableComponentManager;
+            manager = ((EmbeddableComponentManager) manager).getParent()) {
+            if (i == stamps.length
+                || stamps[i] != ((EmbeddableComponentManager) manager).getModificationStamp(roleType)) {
+                return false;
+            }
+            ++i;
+        }
+
+        return i == stamps.length;
+    }
+
+    /**
+     * Invalidate the lookup caches of all the roles in this component manager and its children.
+     */
+    private void invalidateLookupCaches()
+    {
+        this.modifications.incrementAndGet();
+    }
+
+    /**
+     * Invalidate the lookup caches of the passed role in this component manager and its children.
+     */
+    private void invalidateLookupCaches(Type roleType)
+    {
+        this.roleModifications.computeIfAbsent(roleType, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @return true if the passed instance is the singleton registered with the passed role and hint in this component
+     *         manager or one of its parents, all of them being {@link EmbeddableComponentManager}s
+     */
+    private boolean isCacheable(Type roleType, String roleHint, Object instance)
+    {
+        ComponentEntry<?> componentEntry = getComponentEntry(roleType, roleHint);
+
+        if (componentEntry != null) {
+            return componentEntry.instance == instance
+                && componentEntry.descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON;
+        }
+
+        ComponentManager parentComponentManager = getParent();
+
+        return parentComponentManager instanceof EmbeddableComponentManager
+            && ((EmbeddableComponentManager) parentComponentManager).isCacheable(roleType, roleHint, instance);
+    }
+
+    /**
+     * @return true if all the components with the passed role registered in this component manager and its parents are
+     *         singletons, all the parents being {@link EmbeddableComponentManager}s
+     */
+    private boolean isCacheable(Type roleType)
+    {
+        Map<String, ComponentEntry<?>> entries = this.componentEntries.get(roleType);
+
+        if (entries != null) {
+            for (ComponentEntry<?> entry : entries.values()) {
+                if (entry.descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.SINGLETON) {
+                    return false;
+                }
+            }
+        }
+
+        ComponentManager parentComponentManager = getParent();
+
+        return parentComponentManager == null || (parentComponentManager instanceof EmbeddableComponentManager
+            && ((EmbeddableComponentManager) parentComponentManager).isCacheable(roleType));
+    }
+
     private ComponentEntry<?> getComponentEntry(Type role, String hint)
     {
         Map<String, ComponentEntry<?>> entries = this.componentEntries.get(role);
@@ -340,23 +786,31 @@ public ComponentManager getParent()
     public void setParent(ComponentManager parentComponentManager)
     {
         this.parent = parentComponentManager;
+
+        invalidateLookupCaches();
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
     {
-        T instance = descriptor.getImplementation().newInstance();
+        ComponentDescriptor<T> descriptor = componentEntry.descriptor;
+
+        // Reuse the constructor and fields setters resolved the first time an instance was created
+        ComponentInstantiator<T> instantiator = componentEntry.getInstantiator();
+
+        T instance = instantiator.newInstance();
 
         // Set each dependency
-        for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+        ComponentDependency<?>[] dependencies = instantiator.getDependencies();
+        for (int i = 0; i < dependencies.length; ++i) {
 
             // TODO: Handle dependency cycles
 
             // Handle different field types
-            Object fieldValue = getDependencyInstance(descriptor, instance, dependency);
+            Object fieldValue = getDependencyInstance(descriptor, instance, dependencies[i]);
 
-            // Set the field by introspection
+            // Set the field
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                instantiator.setDependency(instance, i, fieldValue);
             }
         }
 
@@ -448,13 +902,13 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
                     if (componentEntry.instance != null) {
                         instance = componentEntry.instance;
                     } else {
-                        componentEntry.instance = createInstance(descriptor);
+                        componentEntry.instance = createInstance(componentEntry);
                         instance = componentEntry.instance;
                     }
                 }
             }
         } else {
-            instance = createInstance(descriptor);
+            instance = createInstance(componentEntry);
         }
 
         return instance;
@@ -490,6 +944,8 @@ private <T> void addComponent(ComponentDescriptor<T> descriptor, T instance)
         }
         entries.put(descriptor.getRoleHint(), componentEntry);
 
+        invalidateLookupCaches(descriptor.getRoleType());
+
         // Send event about component registration
         if (this.eventManager != null) {
             this.eventManager.notifyComponentRegistered(descriptor, this);
@@ -534,6 +990,8 @@ public void release(Object component) throws ComponentLifecycleException
             // Release the entry
             releaseInstance(componentEntry);
 
+            invalidateLookupCaches(componentEntry.descriptor.getRoleType());
+
             // Warn others about it:
             // - fire an unregistration event, to tell the world that this reference is now dead
             // - fire a registration event, to tell the world that it could get a new reference for this component
@@ -581,6 +1039,8 @@ private void removeComponent(Type role, String hint) throws ComponentLifecycleEx
             ComponentEntry<?> componentEntry = entries.remove(hint != null ? hint : RoleHint.DEFAULT_HINT);
 
             if (componentEntry != null) {
+                invalidateLookupCaches(role);
+
                 ComponentDescriptor<?> oldDescriptor = componentEntry.descriptor;
 
                 // We don't want the component manager to dispose itself just because it's not registered as component*
@@ -698,6 +1158,8 @@ private int getPriority(RoleHint<?> rh)
         for (RoleHint<?> key : keys) {
             this.componentEntries.get(key.getRoleType()).remove(key.getHint());
         }
+
+        invalidateLookupCaches();
     }
 
     // Deprecated
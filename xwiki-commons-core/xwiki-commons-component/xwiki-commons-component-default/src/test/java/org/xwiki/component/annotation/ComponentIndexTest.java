@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.ProviderTest;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.test.XWikiTempDirUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link ComponentIndex}.
+ *
+ * @version $Id$
+ */
+public class ComponentIndexTest
+{
+    public static class IndexedProvider implements Provider<Long>
+    {
+        @Override
+        public Long get()
+        {
+            return 0L;
+        }
+    }
+
+    private static final String INDEXED_HINT = "indexed";
+
+    private static final byte[] COMPONENT_LIST =
+        (ProviderTest.TestComponentWithProviders.class.getName() + "\n100:" + ProviderTest.TestProvider1.class.getName()
+            + '\n' + ComponentAnnotationLoaderTest.DeprecatedSimpleRole.class.getName())
+                .getBytes(StandardCharsets.UTF_8);
+
+    private final ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+
+    @Test
+    void writeAndRead() throws Exception
+    {
+        ComponentIndex index = new ComponentIndex();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(3, index.write(COMPONENT_LIST, getClass().getClassLoader(), output));
+
+        Map<String, List<ComponentDescriptor<?>>> descriptors = index
+            .read(new ByteArrayInputStream(output.toByteArray()), COMPONENT_LIST, getClass().getClassLoader());
+
+        assertEquals(3, descriptors.size());
+        assertDescriptors(ProviderTest.TestComponentWithProviders.class, descriptors);
+        assertDescriptors(ProviderTest.TestProvider1.class, descriptors);
+        assertDescriptors(ComponentAnnotationLoaderTest.DeprecatedSimpleRole.class, descriptors);
+    }
+
+    private void assertDescriptors(Class<?> componentClass, Map<String, List<ComponentDescriptor<?>>> descriptors)
+    {
+        List<ComponentDescriptor<?>> indexedDescriptors = descriptors.get(componentClass.getName());
+
+        assertFalse(indexedDescriptors.isEmpty());
+        assertEquals(new ArrayList<>(this.loader.getComponentsDescriptors(componentClass)), indexedDescriptors);
+    }
+
+    @Test
+    void readWhenStale() throws Exception
+    {
+        ComponentIndex index = new ComponentIndex();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.write(COMPONENT_LIST, getClass().getClassLoader(), output);
+
+        assertNull(index.read(new ByteArrayInputStream(output.toByteArray()),
+            "other.Component".getBytes(StandardCharsets.UTF_8), getClass().getClassLoader()));
+    }
+
+    @Test
+    void initializeWithIndex() throws Exception
+    {
+        File directory = XWikiTempDirUtil.createTemporaryDirectory();
+        File metaInf = new File(directory, "META-INF");
+        metaInf.mkdirs();
+
+        byte[] componentList = IndexedProvider.class.getName().getBytes(StandardCharsets.UTF_8);
+        Files.write(new File(metaInf, "components.txt").toPath(), componentList);
+
+        // Modify the indexed descriptors to make sure they are the ones registered
+        ComponentIndex index = new ComponentIndex(new ComponentAnnotationLoader()
+        {
+            @Override
+            public List<ComponentDescriptor> getComponentsDescriptors(Class<?> componentClass)
+            {
+                List<ComponentDescriptor> descriptors = super.getComponentsDescriptors(componentClass);
+                for (ComponentDescriptor descriptor : descriptors) {
+                    ((DefaultComponentDescriptor) descriptor).setRoleHint(INDEXED_HINT);
+                }
+
+                return descriptors;
+            }
+        });
+        try (OutputStream output = new FileOutputStream(new File(metaInf, "components.index"))) {
+            index.write(componentList, getClass().getClassLoader(), output);
+        }
+
+        ComponentDescriptor<?> expected = this.loader.getComponentsDescriptors(IndexedProvider.class).get(0);
+        ((DefaultComponentDescriptor<?>) expected).setRoleHint(INDEXED_HINT);
+
+        ComponentManager componentManager = mock(ComponentManager.class);
+        try (URLClassLoader classLoader =
+            new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass().getClassLoader())) {
+            this.loader.initialize(componentManager, classLoader);
+        }
+
+        verify(componentManager).registerComponent(expected);
+    }
+
+    @Test
+    void initializeWithStaleIndex() throws Exception
+    {
+        File directory = XWikiTempDirUtil.createTemporaryDirectory();
+        File metaInf = new File(directory, "META-INF");
+        metaInf.mkdirs();
+
+        Files.write(new File(metaInf, "components.txt").toPath(),
+            IndexedProvider.class.getName().getBytes(StandardCharsets.UTF_8));
+        try (OutputStream output = new FileOutputStream(new File(metaInf, "components.index"))) {
+            new ComponentIndex().write(COMPONENT_LIST, getClass().getClassLoader(), output);
+        }
+
+        ComponentManager componentManager = mock(ComponentManager.class);
+        try (URLClassLoader classLoader =
+            new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass().getClassLoader())) {
+            this.loader.initialize(componentManager, classLoader);
+        }
+
+        verify(componentManager)
+            .registerComponent(this.loader.getComponentsDescriptors(IndexedProvider.class).get(0));
+    }
+}
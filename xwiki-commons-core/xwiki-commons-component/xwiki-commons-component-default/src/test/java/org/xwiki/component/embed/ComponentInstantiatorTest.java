@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link ComponentInstantiator}.
+ *
+ * @version $Id$
+ */
+public class ComponentInstantiatorTest
+{
+    public static class ParentComponent
+    {
+        private Object parentField;
+    }
+
+    public static class Component extends ParentComponent
+    {
+        private Object field;
+
+        private final Object finalField = null;
+    }
+
+    public static class ComponentWithString
+    {
+        private String field;
+    }
+
+    public static class ComponentWithoutDefaultConstructor
+    {
+        public ComponentWithoutDefaultConstructor(String parameter)
+        {
+        }
+    }
+
+    private static DefaultComponentDependency<Object> dependency(String name)
+    {
+        DefaultComponentDependency<Object> dependency = new DefaultComponentDependency<>();
+        dependency.setRoleType(Object.class);
+        dependency.setName(name);
+
+        return dependency;
+    }
+
+    @Test
+    public void newInstanceAndSetDependencies() throws Exception
+    {
+        DefaultComponentDescriptor<Component> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setImplementation(Component.class);
+        descriptor.addComponentDependency(dependency("field"));
+        descriptor.addComponentDependency(dependency("PARENTFIELD"));
+        descriptor.addComponentDependency(dependency("finalField"));
+        descriptor.addComponentDependency(dependency("unknown"));
+
+        ComponentInstantiator<Component> instantiator = new ComponentInstantiator<>(descriptor);
+
+        assertEquals(Arrays.asList("field", "PARENTFIELD", "finalField", "unknown"),
+            Arrays.asList(Arrays.stream(instantiator.getDependencies()).map(d -> d.getName()).toArray()));
+
+        Component instance = instantiator.newInstance();
+        assertNotSame(instance, instantiator.newInstance());
+
+        Object value1 = new Object();
+        Object value2 = new Object();
+        Object value3 = new Object();
+        instantiator.setDependency(instance, 0, value1);
+        instantiator.setDependency(instance, 1, value2);
+        instantiator.setDependency(instance, 2, value3);
+        instantiator.setDependency(instance, 3, new Object());
+
+        assertSame(value1, instance.field);
+        assertSame(value2, ((ParentComponent) instance).parentField);
+    }
+
+    @Test
+    public void setDependencyWithWrongType() throws Exception
+    {
+        DefaultComponentDescriptor<ComponentWithString> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setImplementation(ComponentWithString.class);
+        descriptor.addComponentDependency(dependency("field"));
+
+        ComponentInstantiator<ComponentWithString> instantiator = new ComponentInstantiator<>(descriptor);
+
+        ComponentWithString instance = instantiator.newInstance();
+
+        assertThrows(ClassCastException.class, () -> instantiator.setDependency(instance, 0, new Object()));
+    }
+
+    @Test
+    public void newInstanceWithoutDefaultConstructor()
+    {
+        DefaultComponentDescriptor<ComponentWithoutDefaultConstructor> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setImplementation(ComponentWithoutDefaultConstructor.class);
+
+        ComponentInstantiator<ComponentWithoutDefaultConstructor> instantiator =
+            new ComponentInstantiator<>(descriptor);
+
+        assertThrows(InstantiationException.class, () -> instantiator.newInstance());
+    }
+}
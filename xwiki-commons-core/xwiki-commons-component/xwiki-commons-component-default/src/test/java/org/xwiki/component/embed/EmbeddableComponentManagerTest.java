@@ -31,12 +31,19 @@
 import static org.mockito.Mockito.verify;
 
 import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.DisposePriority;
+import org.xwiki.component.annotation.WarmUp;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDependency;
@@ -122,6 +129,52 @@ public boolean isFinalized()
         }
     }
 
+    @WarmUp
+    public static class WarmUpRoleImpl implements Role, Initializable
+    {
+        private Role dependency;
+
+        private Thread initializationThread;
+
+        private boolean dependencyInitialized;
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            this.initializationThread = Thread.currentThread();
+            this.dependencyInitialized = ((InitializableRoleImpl) this.dependency).isInitialized();
+        }
+    }
+
+    private static final AtomicInteger CYCLIC_INSTANCES = new AtomicInteger();
+
+    @WarmUp
+    public static class CyclicWarmUpRoleImpl implements Role
+    {
+        private Role dependency;
+
+        public CyclicWarmUpRoleImpl()
+        {
+            CYCLIC_INSTANCES.incrementAndGet();
+        }
+    }
+
+    private static final CountDownLatch SLOW_WARMUP_LATCH = new CountDownLatch(1);
+
+    @WarmUp
+    public static class SlowWarmUpRoleImpl implements Role, Initializable
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            try {
+                SLOW_WARMUP_LATCH.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     public static class LoggingRoleImpl implements Role
     {
         private Logger logger;
@@ -310,6 +363,133 @@ public void getInstanceListAndMapWhenSomeComponentsInParent() throws Exception
         assertSame(roleImpl, instances.get("default"));
     }
 
+    @Test
+    public void getInstanceWhenComponentModifiedInParents() throws Exception
+    {
+        EmbeddableComponentManager root = new EmbeddableComponentManager();
+        EmbeddableComponentManager wiki = new EmbeddableComponentManager();
+        wiki.setParent(root);
+        EmbeddableComponentManager user = new EmbeddableComponentManager();
+        user.setParent(wiki);
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        root.registerComponent(cd);
+
+        Role rootInstance = user.getInstance(Role.class);
+        assertTrue(rootInstance instanceof RoleImpl);
+        assertSame(rootInstance, user.getInstance(Role.class));
+        assertEquals(1, user.getInstanceList(Role.class).size());
+
+        // Override the component in the middle of the hierarchy
+        DefaultComponentDescriptor<Role> wikiCD = new DefaultComponentDescriptor<>();
+        wikiCD.setRoleType(Role.class);
+        wikiCD.setImplementation(OtherRoleImpl.class);
+        wiki.registerComponent(wikiCD);
+
+        Role wikiInstance = user.getInstance(Role.class);
+        assertTrue(wikiInstance instanceof OtherRoleImpl);
+        assertSame(wikiInstance, user.getInstance(Role.class));
+        assertSame(wikiInstance, user.getInstanceList(Role.class).get(0));
+        assertSame(wikiInstance, user.getInstanceMap(Role.class).get("default"));
+
+        // Remove the override
+        wiki.unregisterComponent(Role.class, "default");
+
+        assertSame(rootInstance, user.getInstance(Role.class));
+        assertSame(rootInstance, user.getInstanceList(Role.class).get(0));
+
+        // Release the root instance
+        root.release(rootInstance);
+
+        assertNotSame(rootInstance, user.getInstance(Role.class));
+
+        // Change the parent
+        user.setParent(null);
+
+        assertThrows(ComponentLookupException.class, () -> user.getInstance(Role.class));
+        assertTrue(user.getInstanceList(Role.class).isEmpty());
+    }
+
+    @Test
+    public void getInstanceWhenOtherComponentModified() throws Exception
+    {
+        EmbeddableComponentManager root = new EmbeddableComponentManager();
+        EmbeddableComponentManager wiki = new EmbeddableComponentManager();
+        wiki.setParent(root);
+        EmbeddableComponentManager otherWiki = new EmbeddableComponentManager();
+        otherWiki.setParent(root);
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        root.registerComponent(cd);
+
+        Role instance = wiki.getInstance(Role.class);
+        Map<Type, ?> lookupCaches = (Map<Type, ?>) FieldUtils.readField(wiki, "lookupCaches", true);
+        Object cache = lookupCaches.get(Role.class);
+
+        // Modify the same role in another component manager
+        DefaultComponentDescriptor<Role> otherWikiCD = new DefaultComponentDescriptor<>();
+        otherWikiCD.setRoleType(Role.class);
+        otherWikiCD.setImplementation(OtherRoleImpl.class);
+        otherWiki.registerComponent(otherWikiCD);
+
+        // Modify another role in the parent
+        DefaultComponentDescriptor<OtherRoleImpl> otherRoleCD = new DefaultComponentDescriptor<>();
+        otherRoleCD.setRoleType(OtherRoleImpl.class);
+        otherRoleCD.setImplementation(OtherRoleImpl.class);
+        root.registerComponent(otherRoleCD);
+
+        assertSame(instance, wiki.getInstance(Role.class));
+        assertSame(cache, lookupCaches.get(Role.class));
+
+        // Modify the role in the parent
+        DefaultComponentDescriptor<Role> hintCD = new DefaultComponentDescriptor<>();
+        hintCD.setRoleType(Role.class);
+        hintCD.setRoleHint("other");
+        hintCD.setImplementation(OtherRoleImpl.class);
+        root.registerComponent(hintCD);
+
+        assertSame(instance, wiki.getInstance(Role.class));
+        assertNotSame(cache, lookupCaches.get(Role.class));
+        assertEquals(2, wiki.getInstanceList(Role.class).size());
+    }
+
+    @Test
+    public void getInstanceWhenPerLookup() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(cd);
+
+        assertNotSame(ecm.getInstance(Role.class), ecm.getInstance(Role.class));
+        assertNotSame(ecm.getInstanceList(Role.class).get(0), ecm.getInstanceList(Role.class).get(0));
+        assertNotSame(ecm.getInstanceMap(Role.class).get("default"), ecm.getInstanceMap(Role.class).get("default"));
+    }
+
+    @Test
+    public void getInstanceListAndMapCanBeModified() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        ecm.<Role>getInstanceList(Role.class).clear();
+        ecm.<Role>getInstanceMap(Role.class).clear();
+
+        assertEquals(1, ecm.getInstanceList(Role.class).size());
+        assertEquals(1, ecm.getInstanceMap(Role.class).size());
+    }
+
     @Test
     public void hasComponent() throws Exception
     {
@@ -597,6 +777,108 @@ public ComponentDescriptor<ComponentDescriptorRoleImpl> getComponentDescriptor()
         }
     }
 
+    private void registerWithDependency(EmbeddableComponentManager ecm, Class<? extends Role> implementation,
+        String hint, String dependencyHint) throws Exception
+    {
+        DefaultComponentDescriptor<Role> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(Role.class);
+        descriptor.setRoleHint(hint);
+        descriptor.setImplementation(implementation);
+
+        if (dependencyHint != null) {
+            DefaultComponentDependency<Role> dependency = new DefaultComponentDependency<>();
+            dependency.setRoleType(Role.class);
+            dependency.setRoleHint(dependencyHint);
+            dependency.setName("dependency");
+            descriptor.addComponentDependency(dependency);
+        }
+
+        ecm.registerComponent(descriptor);
+    }
+
+    @Test
+    public void initializeInParallel() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParallelInitialization(true);
+
+        registerWithDependency(ecm, WarmUpRoleImpl.class, "warmup", "initializable");
+        registerWithDependency(ecm, InitializableRoleImpl.class, "initializable", null);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+            ecm.initialize(classLoader);
+        }
+
+        WarmUpRoleImpl instance = ecm.getInstance(Role.class, "warmup");
+        assertNotSame(Thread.currentThread(), instance.initializationThread);
+        assertTrue(instance.dependencyInitialized);
+    }
+
+    @Test
+    public void initializeInParallelWithCycle() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParallelInitialization(true);
+
+        registerWithDependency(ecm, CyclicWarmUpRoleImpl.class, "cycle1", "cycle2");
+        registerWithDependency(ecm, CyclicWarmUpRoleImpl.class, "cycle2", "cycle1");
+        registerWithDependency(ecm, WarmUpRoleImpl.class, "warmup", "initializable");
+        registerWithDependency(ecm, InitializableRoleImpl.class, "initializable", null);
+
+        CYCLIC_INSTANCES.set(0);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+            ecm.initialize(classLoader);
+        }
+
+        // The components involved in the cycle are left to be instantiated on first lookup
+        assertEquals(0, CYCLIC_INSTANCES.get());
+
+        WarmUpRoleImpl instance = ecm.getInstance(Role.class, "warmup");
+        assertNotSame(Thread.currentThread(), instance.initializationThread);
+    }
+
+    @Test
+    public void initializeInParallelWithTimeout() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParallelInitialization(true);
+
+        Logger logger = mock(Logger.class);
+        FieldUtils.writeField(ecm, "logger", logger, true);
+        FieldUtils.writeField(ecm, "warmUpTimeout", 0L, true);
+
+        registerWithDependency(ecm, SlowWarmUpRoleImpl.class, "slow", null);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+            ecm.initialize(classLoader);
+        } finally {
+            SLOW_WARMUP_LATCH.countDown();
+        }
+
+        verify(logger).warn("Components still not warmed up after [{}] seconds: {}", 0L,
+            Collections.singletonList(SlowWarmUpRoleImpl.class));
+
+        assertNotNull(ecm.getInstance(Role.class, "slow"));
+    }
+
+    @Test
+    public void initializeWithoutParallel() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerWithDependency(ecm, WarmUpRoleImpl.class, "warmup", "initializable");
+        registerWithDependency(ecm, InitializableRoleImpl.class, "initializable", null);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+            ecm.initialize(classLoader);
+        }
+
+        WarmUpRoleImpl instance = ecm.getInstance(Role.class, "warmup");
+        assertSame(Thread.currentThread(), instance.initializationThread);
+        assertTrue(instance.dependencyInitialized);
+    }
+
     @Test
     public void componentDescriptorInjection() throws Exception
     {
@@ -23,6 +23,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@
 import org.xwiki.diff.xml.StringSplitter;
 import org.xwiki.diff.xml.XMLDiff;
 import org.xwiki.diff.xml.XMLDiffConfiguration;
+import org.xwiki.diff.xml.XMLDiffFilter;
 
 import difflib.DiffUtils;
 
@@ -61,15 +63,74 @@
 @Singleton
 public class DefaultXMLDiff implements XMLDiff
 {
+    /**
+     * The state of a diff computation, passed as configuration to the methods called recursively so that it's shared by
+     * the whole diff.
+     *
+     * @version $Id$
+     */
+    private static final class DiffContext implements XMLDiffConfiguration
+    {
+        private final XMLDiffConfiguration config;
+
+        /**
+         * The fingerprints of the text content of the nodes, computed at most once for each node during a diff.
+         */
+        private final Map<Node, TextFingerprint> fingerprints = new IdentityHashMap<>();
+
+        DiffContext(XMLDiffConfiguration config)
+        {
+            this.config = config;
+        }
+
+        TextFingerprint getFingerprint(Node node)
+        {
+            return this.fingerprints.computeIfAbsent(node, key -> {
+                String text = key.getTextContent();
+                return text != null ? new TextFingerprint(split(text)) : null;
+            });
+        }
+
+        List<Object> split(String text)
+        {
+            // Use the text node splitter because the difference percentage is computed on the inner text.
+            return this.config.getSplitterForNodeType(Node.TEXT_NODE).split(text);
+        }
+
+        @Override
+        public List<XMLDiffFilter> getFilters()
+        {
+            return this.config.getFilters();
+        }
+
+        @Override
+        public StringSplitter getSplitterForNodeType(short nodeType)
+        {
+            return this.config.getSplitterForNodeType(nodeType);
+        }
+
+        @Override
+        public double getSimilarityThreshold()
+        {
+            return this.config.getSimilarityThreshold();
+        }
+    }
+
+    private static DiffContext getContext(XMLDiffConfiguration config)
+    {
+        return config instanceof DiffContext ? (DiffContext) config : new DiffContext(config);
+    }
+
     @Override
     public Map<Node, Patch<?>> diff(Node left, Node right, XMLDiffConfiguration config) throws DiffException
     {
+        DiffContext context = getContext(config);
         Map<Node, Patch<?>> patches = new LinkedHashMap<>();
         Patch<Node> rootPatch = new DefaultPatch<>();
 
         if (areSimilar(left, right)) {
             if (left != null) {
-                patches.putAll(diffSimilarNodes(left, right, config));
+                patches.putAll(diffSimilarNodes(left, right, context));
             }
         } else if (left == null) {
             // Insert right.
@@ -94,7 +155,7 @@ public Map<Node, Patch<?>> diff(Node left, Node right, XMLDiffConfiguration conf
         return patches;
     }
 
-    private Map<Node, Patch<?>> diffSimilarNodes(Node left, Node right, XMLDiffConfiguration config)
+    private Map<Node, Patch<?>> diffSimilarNodes(Node left, Node right, DiffContext context)
         throws DiffException
     {
         Map<Node, Patch<?>> patches = new LinkedHashMap<>();
@@ -102,19 +163,19 @@ private Map<Node, Patch<?>> diffSimilarNodes(Node left, Node right, XMLDiffConfi
         if (left.getNodeValue() != null) {
             // These are value nodes (e.g. text, attributes, comments) so compute the value difference.
             if (!left.getNodeValue().equals(right.getNodeValue())) {
-                StringSplitter splitter = config.getSplitterForNodeType(left.getNodeType());
+                StringSplitter splitter = context.getSplitterForNodeType(left.getNodeType());
                 patches.put(left, diff(left.getNodeValue(), right.getNodeValue(), splitter));
             }
         } else {
             // Compute the difference between attributes.
             if (left.getAttributes() != null) {
                 // Compute the difference between element attributes.
-                extend(patches, diff(left.getAttributes(), right.getAttributes(), config), left);
+                extend(patches, diff(left.getAttributes(), right.getAttributes(), context), left);
             }
 
             // Compute the difference between child nodes. We do this only for non-value node types because depending on
             // the implementation some value nodes (attributes for instance) may have children.
-            extend(patches, diff(left.getChildNodes(), right.getChildNodes(), config), left);
+            extend(patches, diff(left.getChildNodes(), right.getChildNodes(), context), left);
         }
 
         return patches;
@@ -151,11 +212,12 @@ protected Patch<?> diff(String left, String right, StringSplitter splitter) thro
     protected Map<Node, Patch<?>> diff(List<Node> left, List<Node> right, XMLDiffConfiguration config)
         throws DiffException
     {
+        DiffContext context = getContext(config);
         Map<Node, Patch<?>> patches = new LinkedHashMap<>();
 
         // First compute the difference between the direct children.
         Patch<Node> patch =
-            new DefaultPatch<>(DiffUtils.diff(left, right, (alice, bob) -> this.areVerySimilar(alice, bob, config)));
+            new DefaultPatch<>(DiffUtils.diff(left, right, (alice, bob) -> this.areVerySimilar(alice, bob, context)));
 
         // Then compute the difference inside the child elements that are very similar (for all the descendants).
         Set<Node> leftModified = patch.stream().map(Delta::getPrevious).map(Chunk::getElements).flatMap(List::stream)
@@ -169,12 +231,12 @@ protected Map<Node, Patch<?>> diff(List<Node> left, List<Node> right, XMLDiffCon
         assert leftVerySimilar.size() == rightVerySimilar.size();
         // We add the patches for the very similar nodes first because they don't change the node index at this level.
         for (int i = 0; i < leftVerySimilar.size(); i++) {
-            patches.putAll(diff(leftVerySimilar.get(i), rightVerySimilar.get(i), config));
+            patches.putAll(diff(leftVerySimilar.get(i), rightVerySimilar.get(i), context));
         }
 
         // This patch can change the index of the child nodes at this level (by adding and removing child nodes) so we
         // add it at the end, in order for it to be applied after the child nodes have been modified.
-        addPatch(patch, patches, config);
+        addPatch(patch, patches, context);
 
         return patches;
     }
@@ -182,6 +244,7 @@ protected Map<Node, Patch<?>> diff(List<Node> left, List<Node> right, XMLDiffCon
     protected Map<Node, Patch<?>> diff(Map<String, Node> left, Map<String, Node> right, XMLDiffConfiguration config)
         throws DiffException
     {
+        DiffContext context = getContext(config);
         Map<Node, Patch<?>> patches = new LinkedHashMap<>();
         Patch<Node> patch = new DefaultPatch<>();
 
@@ -202,13 +265,13 @@ protected Map<Node, Patch<?>> diff(Map<String, Node> left, Map<String, Node> rig
         }
 
         // Add the patch for the deleted / added attributes.
-        addPatch(patch, patches, config);
+        addPatch(patch, patches, context);
 
         // Add the patches for the modified attributes.
         Set<String> keptKeys = new HashSet<>(left.keySet());
         keptKeys.retainAll(right.keySet());
         for (String keptKey : keptKeys) {
-            patches.putAll(diff(left.get(keptKey), right.get(keptKey), config));
+            patches.putAll(diff(left.get(keptKey), right.get(keptKey), context));
         }
 
         return patches;
@@ -253,34 +316,25 @@ protected boolean areSimilar(List<Node> left, List<Node> right)
 
     protected boolean areVerySimilar(Node left, Node right, XMLDiffConfiguration config)
     {
-        return areSimilar(left, right) && (left == null || getDiffPercentage(left.getTextContent(),
-            right.getTextContent(), config) < config.getSimilarityThreshold());
+        if (!areSimilar(left, right)) {
+            return false;
+        } else if (left == null) {
+            return true;
+        }
+
+        DiffContext context = getContext(config);
+        double threshold = context.getSimilarityThreshold();
+        return getDiffPercentage(left, right, context, threshold) < threshold;
     }
 
-    private double getDiffPercentage(String left, String right, XMLDiffConfiguration config)
+    private double getDiffPercentage(Node left, Node right, DiffContext context, double threshold)
     {
-        if (left != null && right != null) {
-            // Use the text node splitter because the difference percentage is computed on the inner text.
-            StringSplitter splitter = config.getSplitterForNodeType(Node.TEXT_NODE);
-            List<Object> leftList = splitter.split(left);
-            List<Object> rightList = splitter.split(right);
-            if (leftList.equals(rightList)) {
-                return 0;
-            } else {
-                // Note that the max length can't be zero because leftList and rightList are different.
-                int maxLength = Math.max(leftList.size(), rightList.size());
-                try {
-                    Patch<?> patch = new DefaultPatch<>(DiffUtils.diff(leftList, rightList));
-                    int levenshteinDistance =
-                        patch.stream().map(delta -> Math.max(delta.getPrevious().size(), delta.getNext().size()))
-                            .reduce(0, Integer::sum);
-                    return (double) levenshteinDistance / maxLength;
-                } catch (DiffException e) {
-                    // This shouldn't happen. Let's assume the strings are completely different.
-                    return 1;
-                }
-            }
-        } else if (left == right) {
+        TextFingerprint leftFingerprint = context.getFingerprint(left);
+        TextFingerprint rightFingerprint = context.getFingerprint(right);
+
+        if (leftFingerprint != null && rightFingerprint != null) {
+            return getDiffPercentageOfTexts(left, leftFingerprint, right, rightFingerprint, context, threshold);
+        } else if (leftFingerprint == rightFingerprint) {
             // Both are null.
             return 0;
         } else {
@@ -289,6 +343,45 @@ private double getDiffPercentage(String left, String right, XMLDiffConfiguration
         }
     }
 
+    private double getDiffPercentageOfTexts(Node left, TextFingerprint leftFingerprint, Node right,
+        TextFingerprint rightFingerprint, DiffContext context, double threshold)
+    {
+        if (leftFingerprint.mayBeSameText(rightFingerprint)) {
+            if (left.getTextContent().equals(right.getTextContent())) {
+                return 0;
+            }
+        } else {
+            // Note that the max length can't be zero because left and right have different tokens.
+            int maxLength = Math.max(leftFingerprint.getSize(), rightFingerprint.getSize());
+
+            // Avoid computing the actual difference when we already know the texts are not similar enough.
+            double minimumPercentage = (double) leftFingerprint.getMinimumDistance(rightFingerprint) / maxLength;
+            if (minimumPercentage >= threshold) {
+                return minimumPercentage;
+            }
+        }
+
+        // The tokens are not kept in the fingerprints so split the texts again.
+        List<Object> leftTokens = context.split(left.getTextContent());
+        List<Object> rightTokens = context.split(right.getTextContent());
+        if (leftTokens.equals(rightTokens)) {
+            return 0;
+        }
+
+        int maxLength = Math.max(leftTokens.size(), rightTokens.size());
+
+        try {
+            Patch<?> patch = new DefaultPatch<>(DiffUtils.diff(leftTokens, rightTokens));
+            int levenshteinDistance =
+                patch.stream().map(delta -> Math.max(delta.getPrevious().size(), delta.getNext().size()))
+                    .reduce(0, Integer::sum);
+            return (double) levenshteinDistance / maxLength;
+        } catch (DiffException e) {
+            // This shouldn't happen. Let's assume the strings are completely different.
+            return 1;
+        }
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     private void extend(Map<Node, Patch<?>> left, Map<Node, Patch<?>> right, Node context)
     {
@@ -300,7 +393,7 @@ private void extend(Map<Node, Patch<?>> left, Map<Node, Patch<?>> right, Node co
         }
     }
 
-    private void addPatch(Patch<Node> patch, Map<Node, Patch<?>> patches, XMLDiffConfiguration config)
+    private void addPatch(Patch<Node> patch, Map<Node, Patch<?>> patches, DiffContext context)
         throws DiffException
     {
         // Compute the lower level difference for nodes that are similar (within a change delta).
@@ -312,7 +405,7 @@ && areSimilar(delta.getPrevious().getElements(), delta.getNext().getElements()))
                 for (int i = 0; i < delta.getPrevious().size(); i++) {
                     Node left = delta.getPrevious().getElements().get(i);
                     Node right = delta.getNext().getElements().get(i);
-                    extend(patches, diff(left, right, config), left);
+                    extend(patches, diff(left, right, context), left);
                 }
             }
         }
@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.diff.xml.internal;
+
+import java.util.List;
+
+/**
+ * Precomputed data about the tokens of the text content of a node, used to quickly compare it with the text content of
+ * other nodes before computing the actual difference. The tokens themselves are not kept to limit the memory used
+ * during a diff.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class TextFingerprint
+{
+    /**
+     * The number of buckets used to count the tokens.
+     */
+    private static final int SKETCH_SIZE = 64;
+
+    private final int size;
+
+    private final int hashCode;
+
+    /**
+     * The number of tokens in each bucket (based on the token hash code).
+     */
+    private final int[] sketch = new int[SKETCH_SIZE];
+
+    /**
+     * @param tokens the tokens of the text
+     */
+    TextFingerprint(List<Object> tokens)
+    {
+        this.size = tokens.size();
+        this.hashCode = tokens.hashCode();
+
+        for (Object token : tokens) {
+            int tokenHash = token != null ? token.hashCode() : 0;
+            this.sketch[(tokenHash ^ (tokenHash >>> 16)) & (SKETCH_SIZE - 1)]++;
+        }
+    }
+
+    /**
+     * @return the number of tokens of the text
+     */
+    int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param other the fingerprint to compare with
+     * @return {@code false} if both texts have different tokens, {@code true} if they may have the same tokens
+     */
+    boolean mayBeSameText(TextFingerprint other)
+    {
+        return this.hashCode == other.hashCode && this.size == other.size;
+    }
+
+    /**
+     * Compute a lower bound of the number of tokens which need to be changed to go from one text to the other, without
+     * computing the actual difference. Each bucket can't match more tokens than the smallest of its two counts so the
+     * remaining tokens have to be deleted on one side or inserted on the other side.
+     *
+     * @param other the fingerprint to compare with
+     * @return a lower bound of the edit distance between the two texts
+     */
+    int getMinimumDistance(TextFingerprint other)
+    {
+        int deleted = 0;
+        int inserted = 0;
+        for (int i = 0; i < SKETCH_SIZE; i++) {
+            int difference = this.sketch[i] - other.sketch[i];
+            if (difference > 0) {
+                deleted += difference;
+            } else {
+                inserted -= difference;
+            }
+        }
+
+        return Math.max(deleted, inserted);
+    }
+}
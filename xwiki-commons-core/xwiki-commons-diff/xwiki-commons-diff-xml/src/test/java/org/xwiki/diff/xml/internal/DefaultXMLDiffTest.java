@@ -19,12 +19,15 @@
  */
 package org.xwiki.diff.xml.internal;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.ls.DOMImplementationLS;
@@ -38,6 +41,9 @@
 import org.xwiki.xml.XMLUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for {@link DefaultXMLDiff}.
@@ -113,4 +119,83 @@ public void nonSimilarNodeChange() throws Exception
         assertEquals(Collections.singletonList(child), delta.getPrevious().getElements());
         assertEquals(Collections.singletonList(text), delta.getNext().getElements());
     }
+
+    @Test
+    public void areVerySimilar() throws Exception
+    {
+        when(this.config.getSplitterForNodeType(Node.TEXT_NODE)).thenReturn(new WordStringSplitter());
+        when(this.config.getSimilarityThreshold()).thenReturn(0.5);
+
+        Element root = this.document.getDocumentElement();
+        Node first = this.document.createElement("p");
+        first.setTextContent("one two three four");
+        Node second = this.document.createElement("p");
+        second.setTextContent("one two three five");
+        Node third = this.document.createElement("p");
+        third.setTextContent("six seven eight nine ten");
+
+        // Same text.
+        assertTrue(this.defaultXMLDiff.areVerySimilar(first, first.cloneNode(true), this.config));
+        // One word out of four changed.
+        assertTrue(this.defaultXMLDiff.areVerySimilar(first, second, this.config));
+        // All the words changed.
+        assertFalse(this.defaultXMLDiff.areVerySimilar(first, third, this.config));
+        // Not the same element.
+        assertFalse(this.defaultXMLDiff.areVerySimilar(root, first, this.config));
+    }
+
+    @Test
+    public void diffChildrenWithDifferentText() throws Exception
+    {
+        when(this.config.getSplitterForNodeType(Node.TEXT_NODE)).thenReturn(new WordStringSplitter());
+        when(this.config.getSimilarityThreshold()).thenReturn(0.5);
+
+        Element left = this.document.createElement("div");
+        Element right = this.document.createElement("div");
+        for (String text : Arrays.asList("one two three", "four five six", "seven eight nine")) {
+            Element paragraph = this.document.createElement("p");
+            paragraph.setTextContent(text);
+            left.appendChild(paragraph);
+            right.appendChild(paragraph.cloneNode(true));
+        }
+        right.getLastChild().setTextContent("ten eleven twelve");
+
+        Map<Node, Patch<?>> patches = this.defaultXMLDiff.diff(left, right, this.config);
+        assertEquals(1, patches.size());
+
+        // Only the text of the last paragraph is modified.
+        Patch<?> patch = patches.get(left.getLastChild().getFirstChild());
+        assertEquals(1, patch.size());
+        assertEquals(Delta.Type.CHANGE, patch.get(0).getType());
+        assertEquals(Arrays.asList("seven", "eight", "nine"), patch.get(0).getPrevious().getElements());
+        assertEquals(Arrays.asList("ten", "eleven", "twelve"), patch.get(0).getNext().getElements());
+    }
+
+    @Test
+    public void diffUsesOverriddenSimilarity() throws Exception
+    {
+        when(this.config.getSplitterForNodeType(Node.TEXT_NODE)).thenReturn(new WordStringSplitter());
+        when(this.config.getSimilarityThreshold()).thenReturn(0.5);
+
+        AtomicInteger calls = new AtomicInteger();
+        DefaultXMLDiff extendedXMLDiff = new DefaultXMLDiff()
+        {
+            @Override
+            protected boolean areVerySimilar(Node left, Node right, XMLDiffConfiguration config)
+            {
+                calls.incrementAndGet();
+
+                return super.areVerySimilar(left, right, config);
+            }
+        };
+
+        Element left = this.document.createElement("div");
+        left.appendChild(this.document.createElement("p")).setTextContent("one two three");
+        Element right = (Element) left.cloneNode(true);
+        right.getFirstChild().setTextContent("one two four");
+
+        Map<Node, Patch<?>> patches = extendedXMLDiff.diff(left, right, this.config);
+        assertEquals(1, patches.size());
+        assertTrue(calls.get() > 0);
+    }
 }
@@ -30,6 +30,7 @@
 import javax.inject.Provider;
 
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -43,9 +44,11 @@
 import org.xwiki.job.event.JobFinishedEvent;
 import org.xwiki.job.event.JobFinishingEvent;
 import org.xwiki.job.event.JobStartedEvent;
+import org.xwiki.job.event.status.JobProgress;
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.job.internal.DefaultJobProgress;
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.logging.marker.BeginTranslationMarker;
 import org.xwiki.logging.marker.EndTranslationMarker;
@@ -246,6 +249,25 @@ protected void runInContext()
         }
     }
 
+    private void configureProgress()
+    {
+        JobProgress progress = this.status.getProgress();
+
+        if (progress instanceof DefaultJobProgress
+            && this.componentManager.hasComponent(JobManagerConfiguration.class)) {
+            try {
+                JobManagerConfiguration configuration =
+                    this.componentManager.getInstance(JobManagerConfiguration.class);
+
+                ((DefaultJobProgress) progress).setMaximumLiveChildren(
+                    configuration.getJobProgressMaximumLevelSteps());
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to get the job manager configuration: {}",
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
     /**
      * Called when the job is starting.
      */
@@ -259,6 +281,8 @@ protected void jobStarting()
             ((AbstractJobStatus<R>) this.status).setStartDate(new Date());
             ((AbstractJobStatus<R>) this.status).setState(JobStatus.State.RUNNING);
 
+            configureProgress();
+
             ((AbstractJobStatus) this.status).startListening();
         }
 
@@ -195,8 +195,8 @@ public AbstractJobStatus(String jobType, R request, JobStatus parentJobStatus,
      */
     public void startListening()
     {
-        // Register progress listener
-        this.observationManager.addListener(new WrappedThreadEventListener(this.progress));
+        // Receive the progress of the current thread directly from the job progress manager
+        this.progress.bind();
 
         // Isolate log for the job status
         this.logListener = new LoggerListener(LoggerListener.class.getName() + '_' + hashCode(), getLoggerTail());
@@ -217,7 +217,7 @@ public void stopListening()
         } else {
             this.observationManager.removeListener(this.logListener.getName());
         }
-        this.observationManager.removeListener(this.progress.getName());
+        this.progress.unbind();
 
         // Make sure the progress is closed
         this.progress.getRootStep().finish();
@@ -22,6 +22,7 @@
 import java.io.File;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Some job manager related configuration.
@@ -42,4 +43,25 @@
      * @since 7.2M2
      */
     int getJobStatusCacheSize();
+
+    /**
+     * @return true if the job statuses should be compressed when written to the file system
+     * @since 12.4RC1
+     */
+    @Unstable
+    default boolean isJobStatusCompressed()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of steps to keep in each level of a job progress, the oldest finished steps being
+     *         folded into a summary when reached; 0 or less for no limit
+     * @since 12.4RC1
+     */
+    @Unstable
+    default int getJobProgressMaximumLevelSteps()
+    {
+        return 0;
+    }
 }
@@ -19,12 +19,14 @@
  */
 package org.xwiki.job;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.tail.LoggerTail;
+import org.xwiki.stability.Unstable;
 
 /**
  * Store and retrieve {@link JobStatus} instances.
@@ -41,6 +43,36 @@
      */
     JobStatus getJobStatus(List<String> id);
 
+    /**
+     * Same as {@link #getJobStatus(List)} but the returned status might only be partially loaded: the job type, state
+     * and dates are available right away while the rest of the status is loaded on first access. It's much faster when
+     * only the state of many jobs is needed.
+     *
+     * @param id the id of the job
+     * @return the job status or null if there's no matching job id
+     * @since 12.4RC1
+     */
+    @Unstable
+    default JobStatus getLazyJobStatus(List<String> id)
+    {
+        return getJobStatus(id);
+    }
+
+    /**
+     * Find stored job statuses without having to load them.
+     *
+     * @param prefix the beginning of the ids of the jobs, null or empty for all the jobs
+     * @param state the state of the jobs, null for any state
+     * @return the stored job statuses matching the passed prefix and state, sorted by id (see
+     *         {@link #getLazyJobStatus(List)} for what is available without loading the complete status)
+     * @since 12.4RC1
+     */
+    @Unstable
+    default List<JobStatus> getJobStatuses(List<String> prefix, JobStatus.State state)
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * @param status the job status
      */
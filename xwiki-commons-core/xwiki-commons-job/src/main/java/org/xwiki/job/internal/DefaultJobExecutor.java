@@ -19,17 +19,15 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -38,6 +36,7 @@
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -62,73 +61,115 @@
 @Singleton
 public class DefaultJobExecutor implements JobExecutor, Initializable, Disposable
 {
-    private class JobGroupExecutor extends JobThreadExecutor implements ThreadFactory
-    {
-        private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+    /**
+     * The maximum number of idle groups for which the metrics are kept.
+     */
+    private static final int IDLE_GROUP_METRICS_SIZE = 1000;
 
+    /**
+     * Execute the jobs of a group one after the other using the threads of the shared job executor, instead of
+     * dedicating a thread to each group.
+     */
+    private class JobGroupExecutor
+    {
         private final JobGroupPath path;
 
-        private Job currentJob;
+        /**
+         * The jobs waiting for their turn (protected by the {@link DefaultJobExecutor#groupExecutors} lock).
+         */
+        private final Queue<GroupedJobRunnable> queue = new ArrayDeque<>();
+
+        private final JobGroupMetrics metrics;
 
-        private String groupThreadName;
+        /**
+         * True when a job of the group has been submitted to the shared executor (protected by the
+         * {@link DefaultJobExecutor#groupExecutors} lock).
+         */
+        private boolean active;
+
+        private volatile Job currentJob;
 
         JobGroupExecutor(JobGroupPath path)
         {
-            super(1, 36000L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            this.path = path;
+            JobGroupMetrics idleMetrics = DefaultJobExecutor.this.idleGroupMetrics.remove(path);
+            this.metrics = idleMetrics != null ? idleMetrics : new JobGroupMetrics();
+        }
 
-            setThreadFactory(this);
+        void execute(GroupedJob job)
+        {
+            this.queue.offer(new GroupedJobRunnable(this, job));
+            this.metrics.onQueued();
 
-            this.path = path;
-            this.groupThreadName = this.path + " job group daemon thread";
+            if (!this.active) {
+                executeNext();
+            }
         }
 
-        @Override
-        protected void beforeExecute(Thread t, Runnable r)
+        void executeNext()
         {
-            DefaultJobExecutor.this.lockTree.lock(this.path);
+            GroupedJobRunnable next = this.queue.poll();
+
+            this.active = next != null;
 
-            this.currentJob = (Job) r;
+            if (next != null) {
+                try {
+                    DefaultJobExecutor.this.jobExecutor.execute(next);
+                } catch (RejectedExecutionException e) {
+                    // The shared executor is shut down: none of the jobs of the group will ever be executed
+                    this.active = false;
 
-            Thread.currentThread().setName(this.groupThreadName + " - " + this.currentJob);
+                    removeGroupedJob(next.job);
+                    for (GroupedJobRunnable queued : this.queue) {
+                        removeGroupedJob(queued.job);
+                    }
+                    this.queue.clear();
 
-            super.beforeExecute(t, r);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private class GroupedJobRunnable implements Runnable
+    {
+        private final JobGroupExecutor group;
+
+        private final Job job;
+
+        private final long queuedTime = System.nanoTime();
+
+        GroupedJobRunnable(JobGroupExecutor group, Job job)
+        {
+            this.group = group;
+            this.job = job;
         }
 
         @Override
-        protected void afterExecute(Runnable r, Throwable t)
+        public void run()
         {
-            Thread.currentThread().setName(this.groupThreadName);
+            DefaultJobExecutor.this.lockTree.lock(this.group.path);
 
-            DefaultJobExecutor.this.lockTree.unlock(this.path);
+            try {
+                this.group.metrics.onStarted(System.nanoTime() - this.queuedTime);
+                this.group.currentJob = this.job;
 
-            this.currentJob = null;
+                this.job.run();
+            } finally {
+                this.group.currentJob = null;
 
-            super.afterExecute(r, t);
+                DefaultJobExecutor.this.lockTree.unlock(this.group.path);
 
-            Job job = (Job) r;
+                removeGroupedJob(this.job);
 
-            List<String> jobId = job.getRequest().getId();
-            if (jobId != null) {
-                synchronized (DefaultJobExecutor.this.groupedJobs) {
-                    Queue<Job> jobQueue = DefaultJobExecutor.this.groupedJobs.get(jobId);
-                    if (jobQueue != null) {
-                        if (jobQueue.peek() == job) {
-                            jobQueue.poll();
-                        }
-                    }
-                }
+                executeNext(this.group);
             }
         }
 
         @Override
-        public Thread newThread(Runnable r)
+        public String toString()
         {
-            Thread thread = this.threadFactory.newThread(r);
-
-            thread.setDaemon(true);
-            thread.setName(this.groupThreadName);
-
-            return thread;
+            return this.group.path + " job group - " + this.job;
         }
     }
 
@@ -149,13 +190,11 @@ protected void beforeExecute(Thread t, Runnable r)
         @Override
         protected void afterExecute(Runnable r, Throwable t)
         {
-            Job job = (Job) r;
-
-            List<String> jobId = job.getRequest().getId();
+            List<String> jobId = r instanceof Job ? ((Job) r).getRequest().getId() : null;
             if (jobId != null) {
                 synchronized (DefaultJobExecutor.this.jobs) {
                     Job storedJob = DefaultJobExecutor.this.jobs.get(jobId);
-                    if (storedJob == job) {
+                    if (storedJob == r) {
                         DefaultJobExecutor.this.jobs.remove(jobId);
                     }
                 }
@@ -183,11 +222,17 @@ protected void afterExecute(Runnable r, Throwable t)
     private final JobGroupPathLockTree lockTree = new JobGroupPathLockTree();
 
     /**
-     * Map<groupname, group executor>.
+     * Map<groupname, group executor>. Only the groups with running or waiting jobs are kept.
      */
     private final Map<JobGroupPath, JobGroupExecutor> groupExecutors =
         new ConcurrentHashMap<>();
 
+    /**
+     * The metrics of the most recent idle groups, kept when the group executor is forgotten (protected by the
+     * {@link #groupExecutors} lock).
+     */
+    private final Map<JobGroupPath, JobGroupMetrics> idleGroupMetrics = new LRUMap<>(IDLE_GROUP_METRICS_SIZE);
+
     /**
      * Execute non grouped jobs.
      */
@@ -209,8 +254,9 @@ public void dispose() throws ComponentLifecycleException
             this.disposed = true;
 
             this.jobExecutor.shutdownNow();
-            for (JobGroupExecutor executor : this.groupExecutors.values()) {
-                executor.shutdownNow();
+
+            synchronized (this.groupExecutors) {
+                this.groupExecutors.clear();
             }
         }
     }
@@ -225,6 +271,21 @@ public Job getCurrentJob(JobGroupPath path)
         return executor != null ? executor.currentJob : null;
     }
 
+    /**
+     * @param path the group path
+     * @return various counters about the jobs executed in the group since the executor started, or null if no job was
+     *         executed in the group or if it has been idle for too long
+     * @since 12.4RC1
+     */
+    public JobGroupMetrics getGroupMetrics(JobGroupPath path)
+    {
+        synchronized (this.groupExecutors) {
+            JobGroupExecutor executor = this.groupExecutors.get(path);
+
+            return executor != null ? executor.metrics : this.idleGroupMetrics.get(path);
+        }
+    }
+
     @Override
     public Job getJob(List<String> id)
     {
@@ -321,8 +382,6 @@ private void executeGroupedJob(GroupedJob job)
                 this.groupExecutors.put(path, groupExecutor);
             }
 
-            groupExecutor.execute(job);
-
             List<String> jobId = job.getRequest().getId();
             if (jobId != null) {
                 synchronized (this.groupedJobs) {
@@ -334,6 +393,48 @@ private void executeGroupedJob(GroupedJob job)
                     jobQueue.offer(job);
                 }
             }
+
+            try {
+                groupExecutor.execute(job);
+            } finally {
+                forgetIdleGroup(groupExecutor);
+            }
+        }
+    }
+
+    private void removeGroupedJob(Job job)
+    {
+        List<String> jobId = job.getRequest().getId();
+        if (jobId != null) {
+            synchronized (this.groupedJobs) {
+                Queue<Job> jobQueue = this.groupedJobs.get(jobId);
+                if (jobQueue != null && jobQueue.peek() == job) {
+                    jobQueue.poll();
+                }
+            }
+        }
+    }
+
+    private void executeNext(JobGroupExecutor groupExecutor)
+    {
+        synchronized (this.groupExecutors) {
+            if (!this.disposed) {
+                try {
+                    groupExecutor.executeNext();
+                } catch (RejectedExecutionException e) {
+                    // The executor is being shut down
+                } finally {
+                    forgetIdleGroup(groupExecutor);
+                }
+            }
+        }
+    }
+
+    private void forgetIdleGroup(JobGroupExecutor groupExecutor)
+    {
+        if (!groupExecutor.active) {
+            this.groupExecutors.remove(groupExecutor.path);
+            this.idleGroupMetrics.put(groupExecutor.path, groupExecutor.metrics);
         }
     }
 }
@@ -88,4 +88,16 @@ public int getJobStatusCacheSize()
     {
         return this.configuration.get().getProperty("job.statusCacheSize", 50);
     }
+
+    @Override
+    public boolean isJobStatusCompressed()
+    {
+        return this.configuration.get().getProperty("job.statusCompressed", false);
+    }
+
+    @Override
+    public int getJobProgressMaximumLevelSteps()
+    {
+        return this.configuration.get().getProperty("job.progress.maximumLevelSteps", 0);
+    }
 }
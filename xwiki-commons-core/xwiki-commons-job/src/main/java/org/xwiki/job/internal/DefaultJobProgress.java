@@ -26,6 +26,7 @@
 import org.slf4j.LoggerFactory;
 import org.xwiki.job.event.status.EndStepProgressEvent;
 import org.xwiki.job.event.status.JobProgress;
+import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.job.event.status.PopLevelProgressEvent;
 import org.xwiki.job.event.status.PushLevelProgressEvent;
 import org.xwiki.job.event.status.StartStepProgressEvent;
@@ -58,6 +59,11 @@ public class DefaultJobProgress implements EventListener, JobProgress
 
     private transient DefaultJobProgressStep currentStep;
 
+    /**
+     * The channel of the thread this progress is bound to.
+     */
+    private transient JobProgressChannel channel;
+
     /**
      * Default constructor.
      */
@@ -78,6 +84,16 @@ public DefaultJobProgress(String name)
         this.currentStep = this.rootStep;
     }
 
+    /**
+     * @param maximumLiveChildren the maximum number of children to keep in each level, the oldest finished children
+     *            being folded into a summary when reached; 0 or less for no limit
+     * @since 12.4RC1
+     */
+    public void setMaximumLiveChildren(int maximumLiveChildren)
+    {
+        this.rootStep.setMaximumLiveChildren(maximumLiveChildren);
+    }
+
     // EventListener
 
     @Override
@@ -95,6 +111,11 @@ public List<Event> getEvents()
     @Override
     public void onEvent(Event event, Object source, Object message)
     {
+        // Ignore the events already received directly from the job progress manager
+        if (this.channel != null && this.channel.isPublishing(this)) {
+            return;
+        }
+
         if (event instanceof PushLevelProgressEvent) {
             onPushLevelProgress(((PushLevelProgressEvent) event).getSteps(), source, false);
         } else if (event instanceof PopLevelProgressEvent) {
@@ -108,10 +129,37 @@ public void onEvent(Event event, Object source, Object message)
         }
     }
 
+    /**
+     * Receive the progress of the current thread directly from the {@link JobProgressManager} (in addition to the
+     * progress events received as an {@link EventListener}).
+     *
+     * @since 12.4RC1
+     */
+    public void bind()
+    {
+        unbind();
+
+        this.channel = JobProgressChannel.get();
+        this.channel.add(this);
+    }
+
+    /**
+     * Stop receiving the progress of the thread passed to {@link #bind()}.
+     *
+     * @since 12.4RC1
+     */
+    public void unbind()
+    {
+        if (this.channel != null) {
+            this.channel.remove(this);
+            this.channel = null;
+        }
+    }
+
     /**
      * Adds a new level to the progress stack.
      */
-    private void onPushLevelProgress(int steps, Object source, boolean singlesteplevel)
+    void onPushLevelProgress(int steps, Object source, boolean singlesteplevel)
     {
         if (this.currentStep.isLevelFinished()) {
             // If current step is done move to next one
@@ -125,7 +173,7 @@ private void onPushLevelProgress(int steps, Object source, boolean singlesteplev
     /**
      * Close current step.
      */
-    private void onEndStepProgress(Object source)
+    void onEndStepProgress(Object source)
     {
         // Try to find the right step based on the source
         DefaultJobProgressStep step = findStep(this.currentStep, source);
@@ -141,7 +189,7 @@ private void onEndStepProgress(Object source)
         this.currentStep.finish();
     }
 
-    private void onStartStepProgress(Message message, Object source)
+    void onStartStepProgress(Message message, Object source)
     {
         if (this.currentStep.getParent() == null) {
             // If we are still on root node, create a level
@@ -165,12 +213,12 @@ private void onStartStepProgress(Message message, Object source)
      * @deprecated since 7.1M2, use {@link #onStartStepProgress(Message)} instead
      */
     @Deprecated
-    private void onStepProgress(Object source)
+    void onStepProgress(Object source)
     {
         onStartStepProgress(null, source);
 
         // if there is only one step close it and move to the next one
-        if (this.currentStep.getParent().getChildren().size() == 1) {
+        if (this.currentStep.getParent().getChildCount() == 1) {
             this.currentStep = this.currentStep.getParent().nextStep(null, source);
         }
     }
@@ -178,7 +226,7 @@ private void onStepProgress(Object source)
     /**
      * Called when a {@link PopLevelProgressEvent} is fired.
      */
-    private void onPopLevelProgress(Object source)
+    void onPopLevelProgress(Object source)
     {
         DefaultJobProgressStep parent = this.currentStep.getParent();
 
@@ -33,9 +33,15 @@
 import org.xwiki.job.event.status.StepProgressEvent;
 import org.xwiki.logging.Message;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 /**
  * Default implementation of {@link JobProgressManager}.
+ * <p>
+ * The progress is sent directly to the job progresses bound to the current thread (see
+ * {@link DefaultJobProgress#bind()}). The corresponding events are only sent to the {@link ObservationManager} when
+ * some listener is registered for them, and the deprecated {@link StepProgressEvent} at most once every 100ms for the
+ * thread when some job progress is bound to it.
  *
  * @version $Id$
  * @since 6.1M1
@@ -50,20 +56,36 @@ public class DefaultJobProgressManager implements JobProgressManager
     @Override
     public void pushLevelProgress(Object source)
     {
-        this.observationManager.notify(new PushLevelProgressEvent(), source);
+        pushLevelProgress(0, source);
     }
 
     @Override
     public void pushLevelProgress(int steps, Object source)
     {
-        this.observationManager.notify(new PushLevelProgressEvent(steps), source);
+        JobProgressChannel channel = JobProgressChannel.get();
+
+        for (DefaultJobProgress progress : channel.getProgresses()) {
+            progress.onPushLevelProgress(steps, source, false);
+        }
+
+        if (isListened(PushLevelProgressEvent.class) && channel.startPublishing(false)) {
+            notify(channel, new PushLevelProgressEvent(steps), source);
+        }
     }
 
     @Override
     @Deprecated
     public void stepPropress(Object source)
     {
-        this.observationManager.notify(StepProgressEvent.INSTANCE, source);
+        JobProgressChannel channel = JobProgressChannel.get();
+
+        for (DefaultJobProgress progress : channel.getProgresses()) {
+            progress.onStepProgress(source);
+        }
+
+        if (isListened(StepProgressEvent.class) && channel.startPublishing(true)) {
+            notify(channel, StepProgressEvent.INSTANCE, source);
+        }
     }
 
     @Override
@@ -81,7 +103,15 @@ public void startStep(Object source, String name)
     @Override
     public void startStep(Object source, Message message)
     {
-        this.observationManager.notify(StartStepProgressEvent.INSTANCE, source, message);
+        JobProgressChannel channel = JobProgressChannel.get();
+
+        for (DefaultJobProgress progress : channel.getProgresses()) {
+            progress.onStartStepProgress(message, source);
+        }
+
+        if (isListened(StartStepProgressEvent.class) && channel.startPublishing(false)) {
+            notify(channel, StartStepProgressEvent.INSTANCE, source, message);
+        }
     }
 
     @Override
@@ -93,13 +123,52 @@ public void startStep(Object source, String translationKey, String message, Obje
     @Override
     public void endStep(Object source)
     {
-        this.observationManager.notify(EndStepProgressEvent.INSTANCE, source);
+        JobProgressChannel channel = JobProgressChannel.get();
+
+        for (DefaultJobProgress progress : channel.getProgresses()) {
+            progress.onEndStepProgress(source);
+        }
+
+        if (isListened(EndStepProgressEvent.class) && channel.startPublishing(false)) {
+            notify(channel, EndStepProgressEvent.INSTANCE, source);
+        }
     }
 
     @Override
     public void popLevelProgress(Object source)
     {
-        this.observationManager.notify(PopLevelProgressEvent.INSTANCE, source);
+        JobProgressChannel channel = JobProgressChannel.get();
+
+        for (DefaultJobProgress progress : channel.getProgresses()) {
+            progress.onPopLevelProgress(source);
+        }
+
+        if (isListened(PopLevelProgressEvent.class) && channel.startPublishing(false)) {
+            notify(channel, PopLevelProgressEvent.INSTANCE, source);
+        }
+    }
+
+    private boolean isListened(Class<? extends Event> eventClass)
+    {
+        return this.observationManager.hasListener(eventClass);
+    }
+
+    private void notify(JobProgressChannel channel, Event event, Object source)
+    {
+        try {
+            this.observationManager.notify(event, source);
+        } finally {
+            channel.stopPublishing();
+        }
+    }
+
+    private void notify(JobProgressChannel channel, Event event, Object source, Object data)
+    {
+        try {
+            this.observationManager.notify(event, source, data);
+        } finally {
+            channel.stopPublishing();
+        }
     }
 
     @Override
@@ -42,6 +42,12 @@ public class DefaultJobProgressStep implements JobProgressStep
 
     protected transient boolean levelStep;
 
+    /**
+     * The maximum number of children to keep, the oldest finished children are folded into {@link #childrenSummary}
+     * when reached.
+     */
+    protected transient int maximumLiveChildren;
+
     // Stored data
 
     protected final Message message;
@@ -56,6 +62,16 @@ public class DefaultJobProgressStep implements JobProgressStep
 
     protected List<DefaultJobProgressStep> children;
 
+    /**
+     * The total number of children added to the level, including the ones folded into {@link #childrenSummary}.
+     */
+    protected int childCount;
+
+    /**
+     * The finished children which have been removed from {@link #children}.
+     */
+    protected JobProgressStepSummary childrenSummary;
+
     private final long startTime;
 
     private boolean finished;
@@ -76,7 +92,8 @@ public DefaultJobProgressStep(Message message, Object source, DefaultJobProgress
         this.source = source;
 
         if (this.parent != null) {
-            this.index = this.parent.children.size();
+            this.index = this.parent.childCount;
+            this.maximumLiveChildren = this.parent.maximumLiveChildren;
             this.startTime = this.index == 0 ? this.parent.startTime : System.nanoTime();
         } else {
             this.index = 0;
@@ -106,12 +123,48 @@ public DefaultJobProgressStep getParent()
         return this.parent;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The oldest finished children might have been folded into {@link #getChildrenSummary()}.
+     */
     @Override
     public List<DefaultJobProgressStep> getChildren()
     {
         return this.children != null ? this.children : Collections.<DefaultJobProgressStep>emptyList();
     }
 
+    /**
+     * @return the total number of children added to the level, including the ones folded into
+     *         {@link #getChildrenSummary()}
+     * @since 12.4RC1
+     */
+    public int getChildCount()
+    {
+        // The count is not stored in old serialized statuses
+        return Math.max(this.childCount, getChildren().size());
+    }
+
+    /**
+     * @return the finished children which have been removed from {@link #getChildren()}, or null if none have been
+     *         removed
+     * @since 12.4RC1
+     */
+    public JobProgressStepSummary getChildrenSummary()
+    {
+        return this.childrenSummary;
+    }
+
+    /**
+     * @param maximumLiveChildren the maximum number of children to keep in each level, the oldest finished children
+     *            being folded into a summary when reached; 0 or less for no limit
+     * @since 12.4RC1
+     */
+    public void setMaximumLiveChildren(int maximumLiveChildren)
+    {
+        this.maximumLiveChildren = maximumLiveChildren;
+    }
+
     @Override
     public double getOffset()
     {
@@ -150,17 +203,45 @@ public DefaultJobProgressStep addStep(Message stepMessage, Object newStepSource)
         DefaultJobProgressStep step = new DefaultJobProgressStep(stepMessage, newStepSource, this);
 
         this.children.add(step);
+        ++this.childCount;
 
         // Update offset if needed
         if (this.maximumChildren <= 0) {
-            this.childSize = 1.0D / this.children.size();
-            double newOffset = this.childSize * (this.children.size() - 1);
+            this.childSize = 1.0D / this.childCount;
+            double newOffset = this.childSize * (this.childCount - 1);
             move(newOffset - this.offset);
         }
 
+        compactChildren();
+
         return step;
     }
 
+    /**
+     * Fold the oldest finished children into the summary when there is too many of them. The children are folded
+     * until only half of the maximum is left so that the remaining ones are not moved each time a step is added.
+     */
+    private void compactChildren()
+    {
+        if (this.maximumLiveChildren > 0 && this.children.size() > this.maximumLiveChildren) {
+            int remaining = this.maximumLiveChildren / 2;
+            int toRemove = 0;
+            for (DefaultJobProgressStep child : this.children) {
+                if (this.children.size() - toRemove <= remaining || !child.isFinished()) {
+                    break;
+                }
+
+                if (this.childrenSummary == null) {
+                    this.childrenSummary = new JobProgressStepSummary();
+                }
+                this.childrenSummary.add(child);
+                ++toRemove;
+            }
+
+            this.children.subList(0, toRemove).clear();
+        }
+    }
+
     /**
      * Add level with unknown number of steps to the step and return a virtual step as child of the level.
      * 
@@ -192,10 +273,13 @@ public DefaultJobProgressStep addLevel(int steps, Object newLevelSource, boolean
         }
 
         if (this.maximumChildren > 0) {
-            this.children = new ArrayList<>(this.maximumChildren);
+            this.children = new ArrayList<>(this.maximumLiveChildren > 0
+                ? Math.min(this.maximumChildren, this.maximumLiveChildren + 1) : this.maximumChildren);
         } else {
             this.children = new ArrayList<>();
         }
+        this.childCount = 0;
+        this.childrenSummary = null;
 
         this.levelStep = levelStep;
 
@@ -23,11 +23,16 @@
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -41,12 +46,15 @@
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.job.AbstractJobStatus;
@@ -55,6 +63,7 @@
 import org.xwiki.job.JobStatusStore;
 import org.xwiki.job.annotation.Serializable;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.logging.tail.LoggerTail;
@@ -67,23 +76,33 @@
  */
 @Component
 @Singleton
-public class DefaultJobStatusStore implements JobStatusStore, Initializable
+public class DefaultJobStatusStore implements JobStatusStore, Initializable, Disposable
 {
     /**
      * The current version of the store. Should be upgraded if any change is made.
      */
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
 
     /**
      * The name of the file where the job status is stored.
      */
     private static final String FILENAME_STATUS = "status.xml";
 
+    /**
+     * The name of the file where the header of the job status is stored.
+     */
+    private static final String FILENAME_HEADER = "status.properties";
+
     /**
      * The name of the file where various information about the status store are stored (like the version of the store).
      */
     private static final String INDEX_FILE = "store.properties";
 
+    /**
+     * The name of the file where the headers of all the stored job statuses are indexed.
+     */
+    private static final String FILENAME_STATUS_INDEX = "status.index";
+
     /**
      * The name of the property containing the version of the store.
      */
@@ -101,8 +120,21 @@ public class DefaultJobStatusStore implements JobStatusStore, Initializable
 
     private static final String STATUS_LOG_PREFIX = "log";
 
+    /**
+     * The maximum time to wait for the pending writes when the store is disposed, in seconds.
+     */
+    private static final long DISPOSE_TIMEOUT = 60;
+
     private static final JobStatus NOSTATUS = new DefaultJobStatus<>(null, null, null, null, null);
 
+    /**
+     * The maximum number of job statuses waiting to be written asynchronously. When reached, the asynchronous writes
+     * are executed in the calling thread.
+     */
+    private static final int MAX_PENDING_WRITES = 100;
+
+    private static final int WRITE_LOCKS = 32;
+
     /**
      * Used to get the storage directory.
      */
@@ -130,43 +162,73 @@ public class DefaultJobStatusStore implements JobStatusStore, Initializable
 
     private final WriteLock writeLock = lock.writeLock();
 
+    /**
+     * The locks used to make sure a given job status is not written by several threads at the same time (the id of the
+     * job status indicates which one to use).
+     */
+    private final Lock[] writeLocks = new Lock[WRITE_LOCKS];
+
+    /**
+     * The job statuses waiting to be written asynchronously, indexed by id.
+     */
+    private final Map<String, JobStatus> pendingWrites = new HashMap<>();
+
+    private final JobStatusStoreMetrics metrics = new JobStatusStoreMetrics();
+
     private ExecutorService executorService;
 
     private Cache<JobStatus> cache;
 
+    private JobStatusIndex index;
+
     class JobStatusSerializerRunnable implements Runnable
     {
         /**
-         * The status to store.
+         * The id of the status to store.
          */
-        private final JobStatus status;
+        private final String id;
 
-        JobStatusSerializerRunnable(JobStatus status)
+        JobStatusSerializerRunnable(String id)
         {
-            this.status = status;
+            this.id = id;
         }
 
         @Override
         public void run()
         {
-            saveJobStatus(this.status);
+            saveJobStatus(this.id, null);
+        }
+    }
+
+    /**
+     * Default constructor.
+     */
+    public DefaultJobStatusStore()
+    {
+        for (int i = 0; i < this.writeLocks.length; ++i) {
+            this.writeLocks[i] = new ReentrantLock();
         }
     }
 
     @Override
     public void initialize() throws InitializationException
     {
+        long initializationTime = System.currentTimeMillis();
+
         try {
             // Check if the store need to be upgraded
             File folder = this.configuration.getStorage();
             File file = new File(folder, INDEX_FILE);
 
+            this.index = new JobStatusIndex(new File(folder, FILENAME_STATUS_INDEX));
+
             FileBasedConfigurationBuilder<PropertiesConfiguration> builder =
                 new FileBasedConfigurationBuilder<>(PropertiesConfiguration.class, null, true)
                     .configure(new Parameters().properties().setFile(file));
             PropertiesConfiguration properties = builder.getConfiguration();
             int version = properties.getInt(INDEX_FILE_VERSION, 0);
-            if (VERSION > version) {
+            // Rebuild the index when it's missing or corrupted
+            if (VERSION > version || !this.index.exists() || !this.index.load()) {
                 repair();
 
                 // Update version
@@ -179,8 +241,14 @@ public void initialize() throws InitializationException
 
         BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("Job status serializer")
             .daemon(true).priority(Thread.MIN_PRIORITY).build();
-        this.executorService =
-            new ThreadPoolExecutor(0, 10, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+        // The number of queued tasks is limited by the number of pending writes
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(10, 10, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        this.executorService = executor;
+
+        // Clean the temporary files left by writes interrupted by a crash without delaying the initialization
+        executor.execute(() -> deleteTemporaryFiles(this.configuration.getStorage(), initializationTime));
 
         // Initialize cache
         LRUCacheConfiguration cacheConfiguration =
@@ -192,6 +260,29 @@ public void initialize() throws InitializationException
         }
     }
 
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executorService != null) {
+            // Give a chance to the pending writes to finish
+            this.executorService.shutdown();
+
+            try {
+                this.executorService.awaitTermination(DISPOSE_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (this.index != null) {
+            try {
+                this.index.close();
+            } catch (IOException e) {
+                throw new ComponentLifecycleException("Failed to close the job status index", e);
+            }
+        }
+    }
+
     private String toUniqueString(List<String> id)
     {
         return StringUtils.join(id, '/');
@@ -229,6 +320,8 @@ private void repair() throws IOException
     {
         File folder = this.configuration.getStorage();
 
+        this.index.clear();
+
         if (folder.exists()) {
             if (!folder.isDirectory()) {
                 throw new IOException("Not a directory: " + folder);
@@ -248,20 +341,7 @@ private void repairFolder(File folder)
                 repairFolder(file);
             } else if (file.getName().equals(FILENAME_STATUS)) {
                 try {
-                    JobStatus status = loadStatus(folder);
-
-                    if (status != null) {
-                        File properFolder = getJobFolder(status.getRequest().getId());
-
-                        if (!folder.equals(properFolder)) {
-                            // Move the status in its right place
-                            try {
-                                FileUtils.moveFileToDirectory(file, properFolder, true);
-                            } catch (IOException e) {
-                                this.logger.error("Failed to move job status file", e);
-                            }
-                        }
-                    }
+                    repairStatus(folder, file);
                 } catch (Exception e) {
                     this.logger.warn("Failed to load job status in folder [{}]", folder, e);
                 }
@@ -269,6 +349,74 @@ private void repairFolder(File folder)
         }
     }
 
+    /**
+     * @param folder the folder where to look for temporary files
+     * @param before the date before which the temporary files have been left by a previous execution
+     */
+    private void deleteTemporaryFiles(File folder, long before)
+    {
+        File[] files = folder.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteTemporaryFiles(file, before);
+                } else if (this.serializer.isTemporaryFile(file) && file.lastModified() < before) {
+                    deleteTemporaryFile(file);
+                }
+            }
+        }
+    }
+
+    private void deleteTemporaryFile(File file)
+    {
+        // Don't delete files in a folder being removed
+        this.readLock.lock();
+
+        try {
+            if (!file.delete() && file.exists()) {
+                this.logger.warn("Failed to delete temporary file [{}]", file);
+            }
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    private void repairStatus(File folder, File file) throws IOException
+    {
+        JobStatusHeader header = loadHeader(folder);
+
+        if (header == null) {
+            JobStatus status = loadStatus(folder);
+
+            if (status == null) {
+                return;
+            }
+
+            header = new JobStatusHeader(status);
+        }
+
+        File properFolder = getJobFolder(header.getId());
+
+        if (!folder.equals(properFolder)) {
+            // Move the status in its right place
+            try {
+                FileUtils.moveFileToDirectory(file, properFolder, true);
+            } catch (IOException e) {
+                this.logger.error("Failed to move job status file", e);
+
+                return;
+            }
+        }
+
+        File headerFile = new File(properFolder, FILENAME_HEADER);
+        if (!headerFile.exists() || !folder.equals(properFolder)) {
+            this.serializer.writeHeader(header, headerFile);
+        }
+
+        this.index.put(header);
+    }
+
     private JobStatus loadStatus(List<String> id)
     {
         return loadStatus(getJobFolder(id));
@@ -322,6 +470,25 @@ private JobStatus loadJobStatus(File statusFile)
         return this.serializer.read(statusFile);
     }
 
+    private JobStatusHeader loadHeader(File folder)
+    {
+        this.readLock.lock();
+
+        try {
+            File headerFile = new File(folder, FILENAME_HEADER);
+            if (headerFile.exists()) {
+                return this.serializer.readHeader(headerFile);
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to load job status header in folder [{}]: {}", folder,
+                ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            this.readLock.unlock();
+        }
+
+        return null;
+    }
+
     // JobStatusStorage
 
     /**
@@ -347,24 +514,60 @@ private File getJobLogBaseFile(List<String> id)
     }
 
     /**
-     * @param status the job status to save
-     * @throws IOException when falling to store the provided status
+     * @param id the unique id of the job status to save
+     * @param status the job status to save or null to save the pending job status with the passed id
      */
-    private void saveJobStatus(JobStatus status)
+    private void saveJobStatus(String id, JobStatus status)
     {
+        long lockStart = System.nanoTime();
+
+        Lock idLock = this.writeLocks[Math.floorMod(id.hashCode(), this.writeLocks.length)];
+        idLock.lock();
+
         try {
-            this.writeLock.lock();
+            this.readLock.lock();
 
             try {
-                File statusFile = getJobFolder(status.getRequest().getId());
-                statusFile = new File(statusFile, FILENAME_STATUS);
+                long saveStart = System.nanoTime();
+
+                JobStatus pendingStatus;
+                synchronized (this.pendingWrites) {
+                    // Get the most recent pending version or forget about it if a more recent one is saved
+                    pendingStatus = this.pendingWrites.remove(id);
+                }
 
-                this.logger.debug("Serializing status [{}] in [{}]", status.getRequest().getId(), statusFile);
+                JobStatus statusToSave = status != null ? status : pendingStatus;
+                if (statusToSave != null) {
+                    saveJobStatus(statusToSave);
 
-                this.serializer.write(status, statusFile);
+                    this.metrics.onSave(saveStart - lockStart, System.nanoTime() - saveStart);
+                }
             } finally {
-                this.writeLock.unlock();
+                this.readLock.unlock();
             }
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * @param status the job status to save
+     */
+    private void saveJobStatus(JobStatus status)
+    {
+        try {
+            File folder = getJobFolder(status.getRequest().getId());
+            File statusFile = new File(folder, FILENAME_STATUS);
+
+            this.logger.debug("Serializing status [{}] in [{}]", status.getRequest().getId(), statusFile);
+
+            this.serializer.write(status, statusFile, this.configuration.isJobStatusCompressed());
+
+            // Store the header after the status so that it never exist without the status
+            JobStatusHeader header = new JobStatusHeader(status);
+            this.serializer.writeHeader(header, new File(folder, FILENAME_HEADER));
+
+            this.index.put(header);
         } catch (Exception e) {
             this.logger.warn("Failed to save job status [{}]", status, e);
         }
@@ -384,19 +587,65 @@ public JobStatus getJobStatus(List<String> id)
         return status == NOSTATUS ? null : status;
     }
 
-    private synchronized JobStatus maybeLoadStatus(List<String> id, String idString)
+    @Override
+    public JobStatus getLazyJobStatus(List<String> id)
     {
+        String idString = toUniqueString(id);
+
         JobStatus status = this.cache.get(idString);
 
+        if (status == null) {
+            JobStatusHeader header = loadHeader(getJobFolder(id));
+
+            if (header != null) {
+                return new LazyJobStatus(header, () -> getJobStatus(id));
+            }
+
+            status = maybeLoadStatus(id, idString);
+        }
+
+        return status == NOSTATUS ? null : status;
+    }
+
+    @Override
+    public List<JobStatus> getJobStatuses(List<String> prefix, State state)
+    {
+        List<JobStatusHeader> headers = this.index.getHeaders(prefix, null);
+
+        List<JobStatus> statuses = new ArrayList<>(headers.size());
+        for (JobStatusHeader header : headers) {
+            // Prefer the status in memory which might be more up to date
+            JobStatus status = this.cache.get(toUniqueString(header.getId()));
+            if (status == null || status == NOSTATUS) {
+                status = new LazyJobStatus(header, () -> getJobStatus(header.getId()));
+            }
+
+            if (state == null || status.getState() == state) {
+                statuses.add(status);
+            }
+        }
+
+        return statuses;
+    }
+
+    private JobStatus maybeLoadStatus(List<String> id, String idString)
+    {
+        // Concurrent loads of the same status wait for a single load while other statuses are loaded in parallel
+        return this.cache.get(idString, key -> loadStatusForCache(id, key));
+    }
+
+    private JobStatus loadStatusForCache(List<String> id, String idString)
+    {
+        JobStatus status;
+        synchronized (this.pendingWrites) {
+            status = this.pendingWrites.get(idString);
+        }
+
         if (status == null) {
             try {
                 status = loadStatus(id);
-
-                this.cache.set(idString, status);
             } catch (Exception e) {
                 this.logger.warn("Failed to load job status for id {}", id, e);
-
-                this.cache.remove(idString);
             }
         }
 
@@ -418,9 +667,9 @@ public void storeAsync(JobStatus status)
     private void store(JobStatus status, boolean async)
     {
         if (status != null && status.getRequest() != null && status.getRequest().getId() != null) {
-            synchronized (this.cache) {
-                String id = toUniqueString(status.getRequest().getId());
+            String id = toUniqueString(status.getRequest().getId());
 
+            synchronized (this.cache) {
                 this.logger.debug("Store status [{}] in cache", id);
 
                 this.cache.set(id, status);
@@ -428,15 +677,53 @@ private void store(JobStatus status, boolean async)
 
             // Only store Serializable job status on file system
             if (isSerializable(status)) {
-                if (async) {
-                    this.executorService.execute(new JobStatusSerializerRunnable(status));
-                } else {
-                    saveJobStatus(status);
+                if (!async || !saveJobStatusAsync(id, status)) {
+                    saveJobStatus(id, status);
                 }
             }
         }
     }
 
+    /**
+     * @param id the unique id of the job status
+     * @param status the job status to save
+     * @return false if too many job statuses are already waiting to be saved
+     */
+    private boolean saveJobStatusAsync(String id, JobStatus status)
+    {
+        synchronized (this.pendingWrites) {
+            if (this.pendingWrites.containsKey(id)) {
+                // Replace the pending version, only the last one will be written
+                this.pendingWrites.put(id, status);
+
+                this.metrics.onCoalescedWrite();
+
+                return true;
+            }
+
+            if (this.pendingWrites.size() >= MAX_PENDING_WRITES) {
+                this.metrics.onRejectedWrite();
+
+                return false;
+            }
+
+            this.pendingWrites.put(id, status);
+        }
+
+        this.executorService.execute(new JobStatusSerializerRunnable(id));
+
+        return true;
+    }
+
+    /**
+     * @return various counters about the job statuses written to the file system
+     * @since 12.4RC1
+     */
+    public JobStatusStoreMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     private boolean isSerializable(JobStatus status)
     {
         if (!status.isSerialized()) {
@@ -467,7 +754,17 @@ public void remove(List<String> id)
                 }
             }
 
-            this.cache.remove(toUniqueString(id));
+            try {
+                this.index.remove(id);
+            } catch (IOException e) {
+                this.logger.warn("Failed to remove job status [{}] from the index", id, e);
+            }
+
+            String idString = toUniqueString(id);
+            synchronized (this.pendingWrites) {
+                this.pendingWrites.remove(idString);
+            }
+            this.cache.remove(idString);
         } finally {
             this.writeLock.unlock();
         }
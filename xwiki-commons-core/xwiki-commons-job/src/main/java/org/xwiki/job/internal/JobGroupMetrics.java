@@ -0,0 +1,76 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Various counters about the jobs executed in a group by {@link DefaultJobExecutor}.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class JobGroupMetrics
+{
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final LongAdder startedJobs = new LongAdder();
+
+    private final LongAdder waitTime = new LongAdder();
+
+    void onQueued()
+    {
+        this.queueSize.incrementAndGet();
+    }
+
+    void onStarted(long waitNanos)
+    {
+        this.queueSize.decrementAndGet();
+        this.startedJobs.increment();
+        this.waitTime.add(waitNanos);
+    }
+
+    /**
+     * @return the number of jobs waiting for their turn in the group
+     */
+    public int getQueueSize()
+    {
+        return this.queueSize.get();
+    }
+
+    /**
+     * @return the number of jobs which started in the group
+     */
+    public long getStartedJobCount()
+    {
+        return this.startedJobs.sum();
+    }
+
+    /**
+     * @param unit the unit of the returned time
+     * @return the total time the started jobs spent waiting for their turn in the group
+     */
+    public long getWaitTime(TimeUnit unit)
+    {
+        return unit.convert(this.waitTime.sum(), TimeUnit.NANOSECONDS);
+    }
+}
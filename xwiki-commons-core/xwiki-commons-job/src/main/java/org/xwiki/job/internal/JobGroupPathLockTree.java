@@ -19,44 +19,158 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.xwiki.job.JobGroupPath;
 
 /**
  * Helper for hierarchical locking.
+ * <p>
+ * Locking a path excludes any other lock on the same path, on its parents and on its children. The locks are not owned
+ * by a thread: a path is unlocked by calling {@link #unlock(JobGroupPath)}, whatever the thread. Conflicting requests
+ * are granted in the order they were made.
+ * <p>
+ * When nobody is waiting, a path is locked and unlocked with a compare-and-set on the state of the path and of each of
+ * its parents, without taking any shared lock. Only the requests which have to wait go through the queue protected by
+ * a mutex.
  *
  * @version $Id$
  * @since 6.1M2
  */
 public class JobGroupPathLockTree
 {
-    private final Map<JobGroupPath, ReadWriteLock> tree = new ConcurrentHashMap<>();
+    /**
+     * The state of a locked path.
+     */
+    private static final int LOCKED = -1;
+
+    /**
+     * The state of a node which has been removed from the tree and should not be used anymore.
+     */
+    private static final int REMOVED = Integer.MIN_VALUE;
 
-    private synchronized ReadWriteLock getLock(JobGroupPath key)
+    /**
+     * The state of a path which is locked or has locked children.
+     */
+    private static final class Node
     {
-        ReadWriteLock lock = this.tree.get(key);
+        /**
+         * {@link #LOCKED}, {@link #REMOVED} or the number of locked children.
+         */
+        private final AtomicInteger state = new AtomicInteger();
+    }
 
-        if (lock == null) {
-            lock = new ReentrantReadWriteLock(true);
-            this.tree.put(key, lock);
-        }
+    /**
+     * A request waiting for a conflicting path to be unlocked.
+     */
+    private static final class Waiter
+    {
+        private final JobGroupPath path;
+
+        private final Condition condition;
 
-        return lock;
+        private boolean granted;
+
+        Waiter(JobGroupPath path, Condition condition)
+        {
+            this.path = path;
+            this.condition = condition;
+        }
     }
 
+    /**
+     * The paths which are locked or have locked children. Other paths are not kept.
+     */
+    private final Map<JobGroupPath, Node> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Protect {@link #waiters}.
+     */
+    private final ReentrantLock mutex = new ReentrantLock();
+
+    /**
+     * The requests waiting for their turn, in the order they were made.
+     */
+    private final LinkedList<Waiter> waiters = new LinkedList<>();
+
+    /**
+     * The number of requests in {@link #waiters}, readable without the mutex.
+     */
+    private volatile int waiting;
+
     /**
      * @param key lock provided job group and all its parents
      */
     public void lock(JobGroupPath key)
     {
-        getLock(key).writeLock().lock();
+        if (this.waiting == 0 && acquire(key)) {
+            return;
+        }
 
-        for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
-            getLock(path).readLock().lock();
+        this.mutex.lock();
+
+        try {
+            if (!tryAcquire(key)) {
+                Waiter waiter = enqueue(key);
+
+                while (!waiter.granted) {
+                    waiter.condition.awaitUninterruptibly();
+                }
+            }
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
+    /**
+     * @param key lock provided job group and all its parents
+     * @param timeout the maximum time to wait for the lock
+     * @param unit the time unit of the timeout argument
+     * @return true if the lock was acquired and false if the waiting time elapsed before the lock was acquired
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @since 12.4RC1
+     */
+    public boolean tryLock(JobGroupPath key, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        if (this.waiting == 0 && acquire(key)) {
+            return true;
+        }
+
+        this.mutex.lockInterruptibly();
+
+        try {
+            if (tryAcquire(key)) {
+                return true;
+            }
+
+            Waiter waiter = enqueue(key);
+
+            try {
+                long nanos = unit.toNanos(timeout);
+                while (!waiter.granted && nanos > 0) {
+                    nanos = waiter.condition.awaitNanos(nanos);
+                }
+            } finally {
+                if (!waiter.granted) {
+                    // Giving up might allow waiters which were queued after this one to go
+                    this.waiters.remove(waiter);
+                    this.waiting--;
+                    grantWaiters();
+                }
+            }
+
+            return waiter.granted;
+        } finally {
+            this.mutex.unlock();
         }
     }
 
@@ -65,10 +179,222 @@ public void lock(JobGroupPath key)
      */
     public void unlock(JobGroupPath key)
     {
-        getLock(key).writeLock().unlock();
+        release(key);
+
+        // Read after the release so that either a new waiter sees the release or the release sees the new waiter
+        if (this.waiting > 0) {
+            this.mutex.lock();
+
+            try {
+                grantWaiters();
+            } finally {
+                this.mutex.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the number of paths currently locked or with locked children
+     */
+    int size()
+    {
+        return this.nodes.size();
+    }
+
+    /**
+     * Must be called with the mutex.
+     */
+    private boolean tryAcquire(JobGroupPath key)
+    {
+        if (!this.waiters.isEmpty()) {
+            // A conflicting path might have been released (or a failed attempt rolled back) after the last grant
+            grantWaiters();
+
+            // Don't overtake the conflicting requests already waiting
+            if (conflictsWithWaiters(key)) {
+                return false;
+            }
+        }
+
+        return acquire(key);
+    }
+
+    /**
+     * Must be called with the mutex.
+     */
+    private Waiter enqueue(JobGroupPath key)
+    {
+        Waiter waiter = new Waiter(key, this.mutex.newCondition());
+        this.waiters.add(waiter);
+        this.waiting++;
+
+        // The conflicting path might have been released before the waiter was visible
+        grantWaiters();
+
+        return waiter;
+    }
 
+    private Node getNode(JobGroupPath path)
+    {
+        Node node = this.nodes.get(path);
+
+        if (node == null) {
+            Node newNode = new Node();
+            node = this.nodes.putIfAbsent(path, newNode);
+            if (node == null) {
+                node = newNode;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Mark the parents and then the path itself, rolling back when one of them is not available.
+     * 
+     * @return true if the path has been locked
+     */
+    private boolean acquire(JobGroupPath key)
+    {
         for (JobGroupPath path = key.getParent(); path != null; path = path.getParent()) {
-            getLock(path).readLock().unlock();
+            if (!addLockedChild(path)) {
+                removeLockedChild(key.getParent(), path);
+
+                return false;
+            }
+        }
+
+        if (!lockNode(key)) {
+            removeLockedChild(key.getParent(), null);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean addLockedChild(JobGroupPath path)
+    {
+        while (true) {
+            Node node = getNode(path);
+            int state = node.state.get();
+
+            if (state == LOCKED) {
+                return false;
+            } else if (state == REMOVED) {
+                this.nodes.remove(path, node);
+            } else if (node.state.compareAndSet(state, state + 1)) {
+                return true;
+            }
         }
     }
+
+    private boolean lockNode(JobGroupPath key)
+    {
+        while (true) {
+            Node node = getNode(key);
+            int state = node.state.get();
+
+            if (state == REMOVED) {
+                this.nodes.remove(key, node);
+            } else if (state != 0) {
+                return false;
+            } else if (node.state.compareAndSet(0, LOCKED)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(JobGroupPath key)
+    {
+        Node node = this.nodes.get(key);
+        if (node == null || !node.state.compareAndSet(LOCKED, 0)) {
+            throw new IllegalMonitorStateException("The path [" + key + "] is not locked");
+        }
+
+        removeIfUnused(key, node);
+
+        removeLockedChild(key.getParent(), null);
+    }
+
+    /**
+     * @param from the first parent to update
+     * @param to the parent where to stop (excluded), null for all the parents
+     */
+    private void removeLockedChild(JobGroupPath from, JobGroupPath to)
+    {
+        for (JobGroupPath path = from; path != to; path = path.getParent()) {
+            Node node = this.nodes.get(path);
+
+            if (node.state.decrementAndGet() == 0) {
+                removeIfUnused(path, node);
+            }
+        }
+    }
+
+    private void removeIfUnused(JobGroupPath path, Node node)
+    {
+        if (node.state.compareAndSet(0, REMOVED)) {
+            this.nodes.remove(path, node);
+        }
+    }
+
+    /**
+     * Must be called with the mutex.
+     */
+    private void grantWaiters()
+    {
+        // The paths of the requests which have to keep waiting, later requests conflicting with them have to wait too
+        List<JobGroupPath> blocked = new ArrayList<>();
+
+        for (Iterator<Waiter> it = this.waiters.iterator(); it.hasNext();) {
+            Waiter waiter = it.next();
+
+            if (!conflicts(waiter.path, blocked) && acquire(waiter.path)) {
+                waiter.granted = true;
+                waiter.condition.signal();
+
+                it.remove();
+                this.waiting--;
+            } else {
+                blocked.add(waiter.path);
+            }
+        }
+    }
+
+    private boolean conflictsWithWaiters(JobGroupPath key)
+    {
+        for (Waiter waiter : this.waiters) {
+            if (conflicts(key, waiter.path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean conflicts(JobGroupPath key, List<JobGroupPath> paths)
+    {
+        for (JobGroupPath path : paths) {
+            if (conflicts(key, path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean conflicts(JobGroupPath key, JobGroupPath path)
+    {
+        return isSameOrParent(key, path) || isSameOrParent(path, key);
+    }
+
+    private boolean isSameOrParent(JobGroupPath parent, JobGroupPath child)
+    {
+        List<String> parentPath = parent.getPath();
+        List<String> childPath = child.getPath();
+
+        return parentPath.size() <= childPath.size()
+            && parentPath.equals(childPath.subList(0, parentPath.size()));
+    }
 }
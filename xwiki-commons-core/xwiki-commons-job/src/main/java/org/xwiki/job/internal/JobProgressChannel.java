@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * The job progresses bound to a thread, which receive the progress of this thread directly from
+ * {@link DefaultJobProgressManager} instead of going through the observation manager.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class JobProgressChannel
+{
+    /**
+     * The minimum time between two step progress events sent to the observation manager for the same thread.
+     */
+    private static final long PUBLISH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final DefaultJobProgress[] EMPTY = new DefaultJobProgress[0];
+
+    private static final ThreadLocal<JobProgressChannel> CHANNELS = ThreadLocal.withInitial(JobProgressChannel::new);
+
+    private volatile DefaultJobProgress[] progresses = EMPTY;
+
+    // The following fields are only used from the channel thread
+
+    private long lastPublished = System.nanoTime() - PUBLISH_INTERVAL;
+
+    /**
+     * The number of progress events currently being sent to the observation manager (a listener can report some
+     * progress while receiving one).
+     */
+    private int publishing;
+
+    /**
+     * @return the channel of the current thread
+     */
+    static JobProgressChannel get()
+    {
+        return CHANNELS.get();
+    }
+
+    /**
+     * @param progress the progress to add
+     */
+    synchronized void add(DefaultJobProgress progress)
+    {
+        this.progresses = ArrayUtils.add(this.progresses, progress);
+    }
+
+    /**
+     * @param progress the progress to remove
+     */
+    synchronized void remove(DefaultJobProgress progress)
+    {
+        this.progresses = ArrayUtils.removeElement(this.progresses, progress);
+    }
+
+    /**
+     * @return the progresses bound to the thread
+     */
+    DefaultJobProgress[] getProgresses()
+    {
+        return this.progresses;
+    }
+
+    /**
+     * @param progress the progress
+     * @return true if the passed progress is bound to the thread and it's currently publishing an event in the
+     *         observation manager
+     */
+    boolean isPublishing(DefaultJobProgress progress)
+    {
+        return this.publishing > 0 && ArrayUtils.contains(this.progresses, progress);
+    }
+
+    /**
+     * Indicate if a progress event should be sent to the observation manager: always for the events changing the
+     * structure of the progress (levels and steps) or if no progress is bound to the thread, otherwise at most once per
+     * {@link #PUBLISH_INTERVAL}.
+     * 
+     * @param coalesce true if the event is a simple step tick which can be skipped if the previous one is too recent
+     * @return true if the event should be sent, in which case {@link #stopPublishing()} must be called after that
+     */
+    boolean startPublishing(boolean coalesce)
+    {
+        if (coalesce && this.progresses.length > 0) {
+            long now = System.nanoTime();
+            if (now - this.lastPublished < PUBLISH_INTERVAL) {
+                return false;
+            }
+
+            this.lastPublished = now;
+        }
+
+        ++this.publishing;
+
+        return true;
+    }
+
+    /**
+     * Called after a progress event was sent to the observation manager.
+     */
+    void stopPublishing()
+    {
+        --this.publishing;
+    }
+}
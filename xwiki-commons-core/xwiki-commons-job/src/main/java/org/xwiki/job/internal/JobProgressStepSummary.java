@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import org.xwiki.logging.Message;
+
+/**
+ * Aggregated information about finished progress steps which have been removed from their level to save memory.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class JobProgressStepSummary
+{
+    private int count;
+
+    private long totalElapsedTime;
+
+    private long minimumElapsedTime;
+
+    private long maximumElapsedTime;
+
+    private Message firstMessage;
+
+    private Message lastMessage;
+
+    /**
+     * @param step the finished step to add to the summary
+     */
+    void add(DefaultJobProgressStep step)
+    {
+        long elapsedTime = step.getElapsedTime();
+
+        if (this.count == 0) {
+            this.firstMessage = step.getMessage();
+            this.minimumElapsedTime = elapsedTime;
+            this.maximumElapsedTime = elapsedTime;
+        } else {
+            this.minimumElapsedTime = Math.min(this.minimumElapsedTime, elapsedTime);
+            this.maximumElapsedTime = Math.max(this.maximumElapsedTime, elapsedTime);
+        }
+
+        this.lastMessage = step.getMessage();
+        this.totalElapsedTime += elapsedTime;
+        ++this.count;
+    }
+
+    /**
+     * @return the number of steps in the summary
+     */
+    public int getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @return the total time spent in the steps, in nanoseconds
+     */
+    public long getTotalElapsedTime()
+    {
+        return this.totalElapsedTime;
+    }
+
+    /**
+     * @return the shortest time spent in a step, in nanoseconds
+     */
+    public long getMinimumElapsedTime()
+    {
+        return this.minimumElapsedTime;
+    }
+
+    /**
+     * @return the longest time spent in a step, in nanoseconds
+     */
+    public long getMaximumElapsedTime()
+    {
+        return this.maximumElapsedTime;
+    }
+
+    /**
+     * @return the message of the first step
+     */
+    public Message getFirstMessage()
+    {
+        return this.firstMessage;
+    }
+
+    /**
+     * @return the message of the last step
+     */
+    public Message getLastMessage()
+    {
+        return this.lastMessage;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+
+/**
+ * The small part of a job status which is stored separately to be loaded quickly (mostly for listing jobs), without
+ * having to unserialize the whole status.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class JobStatusHeader
+{
+    private final List<String> id;
+
+    private final String jobType;
+
+    private final State state;
+
+    private final Date startDate;
+
+    private final Date endDate;
+
+    private final Request request;
+
+    /**
+     * @param status the job status
+     */
+    public JobStatusHeader(JobStatus status)
+    {
+        this(status.getRequest().getId(), status.getJobType(), status.getState(), status.getStartDate(),
+            status.getEndDate(), summarize(status.getRequest()));
+    }
+
+    /**
+     * @param id the identifier of the job
+     * @param jobType the type of the job
+     * @param state the state of the job
+     * @param startDate the date when the job started
+     * @param endDate the date when the job ended
+     */
+    public JobStatusHeader(List<String> id, String jobType, State state, Date startDate, Date endDate)
+    {
+        this(id, jobType, state, startDate, endDate, null);
+    }
+
+    /**
+     * @param id the identifier of the job
+     * @param jobType the type of the job
+     * @param state the state of the job
+     * @param startDate the date when the job started
+     * @param endDate the date when the job ended
+     * @param request the summary of the request (see {@link #getRequest()}), null if unknown
+     */
+    public JobStatusHeader(List<String> id, String jobType, State state, Date startDate, Date endDate,
+        Request request)
+    {
+        this.id = id != null ? Collections.unmodifiableList(new ArrayList<>(id)) : null;
+        this.jobType = jobType;
+        this.state = state;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.request = request;
+    }
+
+    /**
+     * @param id the identifier of the job
+     * @param remote see {@link Request#isRemote()}
+     * @param interactive see {@link Request#isInteractive()}
+     * @param verbose see {@link Request#isVerbose()}
+     * @return the summary of the request
+     */
+    public static Request createRequest(List<String> id, boolean remote, boolean interactive, boolean verbose)
+    {
+        DefaultRequest summary = new DefaultRequest();
+        summary.setId(id);
+        summary.setRemote(remote);
+        summary.setInteractive(interactive);
+        summary.setVerbose(verbose);
+
+        return summary;
+    }
+
+    private static Request summarize(Request request)
+    {
+        return createRequest(request.getId(), request.isRemote(), request.isInteractive(), request.isVerbose());
+    }
+
+    /**
+     * @return the identifier of the job
+     */
+    public List<String> getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the type of the job
+     */
+    public String getJobType()
+    {
+        return this.jobType;
+    }
+
+    /**
+     * @return the state of the job
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return the date when the job started
+     */
+    public Date getStartDate()
+    {
+        return this.startDate;
+    }
+
+    /**
+     * @return the date when the job ended
+     */
+    public Date getEndDate()
+    {
+        return this.endDate;
+    }
+
+    /**
+     * @return a summary of the request (identifier and flags, without the properties), null if unknown
+     */
+    public Request getRequest()
+    {
+        return this.request;
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus.State;
+
+/**
+ * Keep track of the stored job statuses headers in a journal file to be able to list them without walking the store
+ * folders.
+ * <p>
+ * Each line of the journal is either the header of a stored job status or the removal of a job status (and all the job
+ * statuses with an id starting with it). The journal is rewritten when it contains too many obsolete lines.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class JobStatusIndex
+{
+    private static final String DEFAULT_ENCODING = StandardCharsets.UTF_8.name();
+
+    private static final String NULL = "&null";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final char ID_SEPARATOR = '/';
+
+    /**
+     * The character following {@link #ID_SEPARATOR}, used to find all the keys starting with a prefix.
+     */
+    private static final char ID_SEPARATOR_NEXT = ID_SEPARATOR + 1;
+
+    private static final String PUT = "+";
+
+    private static final String REMOVE = "-";
+
+    private static final int MIN_COMPACT_SIZE = 1000;
+
+    /**
+     * The flags used to store the summary of the request.
+     */
+    private static final int REQUEST_REMOTE = 1;
+
+    private static final int REQUEST_INTERACTIVE = 2;
+
+    private static final int REQUEST_VERBOSE = 4;
+
+    private final File file;
+
+    private final NavigableMap<String, JobStatusHeader> headers = new TreeMap<>();
+
+    private Writer writer;
+
+    private int journalSize;
+
+    /**
+     * @param file the journal file
+     */
+    public JobStatusIndex(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return true if the journal file exist
+     */
+    public boolean exists()
+    {
+        return this.file.exists();
+    }
+
+    /**
+     * Load the journal file.
+     * <p>
+     * An invalid last line is ignored (the journal was not completely written) but an invalid line anywhere else means
+     * the journal is corrupted and cannot be trusted.
+     *
+     * @return false if the journal is corrupted and should be rebuilt
+     * @throws IOException when failing to read the journal file
+     */
+    public synchronized boolean load() throws IOException
+    {
+        this.headers.clear();
+        this.journalSize = 0;
+
+        boolean invalidLine = false;
+
+        if (this.file.exists()) {
+            try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(this.file), DEFAULT_ENCODING))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (invalidLine) {
+                        // The invalid line was not the last one
+                        return false;
+                    }
+
+                    invalidLine = !readLine(line);
+                    ++this.journalSize;
+                }
+            }
+        }
+
+        if (invalidLine) {
+            // Rewrite the journal so that the next lines are not appended to the incomplete one
+            compact();
+        }
+
+        return true;
+    }
+
+    private boolean readLine(String line) throws UnsupportedEncodingException
+    {
+        String[] elements = line.split(String.valueOf(SEPARATOR), -1);
+
+        try {
+            if (elements[0].equals(PUT) && (elements.length == 6 || elements.length == 7)) {
+                List<String> id = decodeId(elements[1]);
+                // Older journals don't contain the request summary
+                Request request = elements.length == 7 ? decodeRequest(id, elements[6]) : null;
+                JobStatusHeader header = new JobStatusHeader(id, decode(elements[2]),
+                    elements[3].equals(NULL) ? null : State.valueOf(elements[3]), decodeDate(elements[4]),
+                    decodeDate(elements[5]), request);
+                this.headers.put(elements[1], header);
+
+                return true;
+            } else if (elements[0].equals(REMOVE) && elements.length == 2) {
+                removeHeaders(elements[1]);
+
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            // Unknown state, invalid date or invalid encoding
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove all the entries from the index and the journal file.
+     *
+     * @throws IOException when failing to write the journal file
+     */
+    public synchronized void clear() throws IOException
+    {
+        this.headers.clear();
+
+        compact();
+    }
+
+    /**
+     * @param header the header of the stored job status
+     * @throws IOException when failing to write the journal file
+     */
+    public synchronized void put(JobStatusHeader header) throws IOException
+    {
+        String key = encodeId(header.getId());
+
+        this.headers.put(key, header);
+
+        StringBuilder builder = new StringBuilder();
+        appendHeader(key, header, builder);
+        append(builder.toString());
+    }
+
+    /**
+     * Remove the job status with the passed id and all the job statuses with an id starting with it.
+     *
+     * @param id the id of the removed job status
+     * @throws IOException when failing to write the journal file
+     */
+    public synchronized void remove(List<String> id) throws IOException
+    {
+        String key = encodeId(id);
+
+        if (removeHeaders(key)) {
+            append(REMOVE + SEPARATOR + key);
+        }
+    }
+
+    private boolean removeHeaders(String key)
+    {
+        Map<String, JobStatusHeader> removed = getSubMap(key);
+
+        boolean found = !removed.isEmpty();
+
+        removed.clear();
+
+        return found;
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the header of the job status or null if there is none
+     */
+    public synchronized JobStatusHeader get(List<String> id)
+    {
+        return this.headers.get(encodeId(id));
+    }
+
+    /**
+     * @param prefix the beginning of the job ids, null or empty for all the job statuses
+     * @param state the state of the job statuses, null for any state
+     * @return the headers of the matching job statuses, sorted by id
+     */
+    public synchronized List<JobStatusHeader> getHeaders(List<String> prefix, State state)
+    {
+        List<JobStatusHeader> result = new ArrayList<>();
+
+        for (JobStatusHeader header : getSubMap(encodeId(prefix)).values()) {
+            if (state == null || state == header.getState()) {
+                result.add(header);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of job statuses in the index
+     */
+    public synchronized int size()
+    {
+        return this.headers.size();
+    }
+
+    /**
+     * Close the journal file.
+     *
+     * @throws IOException when failing to close the journal file
+     */
+    public synchronized void close() throws IOException
+    {
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+
+    private Map<String, JobStatusHeader> getSubMap(String key)
+    {
+        if (key.isEmpty()) {
+            return this.headers;
+        }
+
+        // All the keys starting with the passed key (which always ends with the separator)
+        return this.headers.subMap(key, true, key.substring(0, key.length() - 1) + ID_SEPARATOR_NEXT, false);
+    }
+
+    private void append(String line) throws IOException
+    {
+        if (this.journalSize >= MIN_COMPACT_SIZE && this.journalSize > this.headers.size() * 2) {
+            // Too many obsolete lines
+            compact();
+        } else {
+            if (this.writer == null) {
+                this.file.getParentFile().mkdirs();
+                this.writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(this.file, true), DEFAULT_ENCODING));
+            }
+
+            this.writer.write(line);
+            this.writer.write('\n');
+            this.writer.flush();
+
+            ++this.journalSize;
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        close();
+
+        // Create the temporary file next to the journal to make sure the move can be atomic
+        this.file.getParentFile().mkdirs();
+        File tempFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+                Writer tempWriter = new BufferedWriter(new OutputStreamWriter(stream, DEFAULT_ENCODING));
+                StringBuilder builder = new StringBuilder();
+                for (Map.Entry<String, JobStatusHeader> entry : this.headers.entrySet()) {
+                    builder.setLength(0);
+                    appendHeader(entry.getKey(), entry.getValue(), builder);
+                    tempWriter.write(builder.toString());
+                    tempWriter.write('\n');
+                }
+                tempWriter.flush();
+
+                // Make sure the content is on the disk before replacing the journal
+                stream.getFD().sync();
+            }
+
+            move(tempFile);
+        } catch (IOException | RuntimeException e) {
+            // Don't leave the temporary file behind
+            Files.deleteIfExists(tempFile.toPath());
+
+            throw e;
+        }
+
+        this.journalSize = this.headers.size();
+    }
+
+    private void move(File tempFile) throws IOException
+    {
+        try {
+            Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void appendHeader(String key, JobStatusHeader header, StringBuilder builder)
+    {
+        builder.append(PUT);
+        builder.append(SEPARATOR);
+        builder.append(key);
+        builder.append(SEPARATOR);
+        builder.append(encode(header.getJobType()));
+        builder.append(SEPARATOR);
+        builder.append(header.getState() != null ? header.getState().name() : NULL);
+        builder.append(SEPARATOR);
+        builder.append(encodeDate(header.getStartDate()));
+        builder.append(SEPARATOR);
+        builder.append(encodeDate(header.getEndDate()));
+        builder.append(SEPARATOR);
+        builder.append(encodeRequest(header.getRequest()));
+    }
+
+    private static String encodeRequest(Request request)
+    {
+        if (request == null) {
+            return NULL;
+        }
+
+        int flags = 0;
+        if (request.isRemote()) {
+            flags |= REQUEST_REMOTE;
+        }
+        if (request.isInteractive()) {
+            flags |= REQUEST_INTERACTIVE;
+        }
+        if (request.isVerbose()) {
+            flags |= REQUEST_VERBOSE;
+        }
+
+        return String.valueOf(flags);
+    }
+
+    private static Request decodeRequest(List<String> id, String value)
+    {
+        if (value.equals(NULL)) {
+            return null;
+        }
+
+        int flags = Integer.parseInt(value);
+
+        return JobStatusHeader.createRequest(id, (flags & REQUEST_REMOTE) != 0, (flags & REQUEST_INTERACTIVE) != 0,
+            (flags & REQUEST_VERBOSE) != 0);
+    }
+
+    private static String encodeDate(Date date)
+    {
+        return date != null ? String.valueOf(date.getTime()) : NULL;
+    }
+
+    private static Date decodeDate(String value)
+    {
+        return value.equals(NULL) ? null : new Date(Long.parseLong(value));
+    }
+
+    private static String encode(String value)
+    {
+        if (value == null) {
+            return NULL;
+        }
+
+        try {
+            return URLEncoder.encode(value, DEFAULT_ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            // Should never happen
+            return value;
+        }
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException
+    {
+        return value.equals(NULL) ? null : URLDecoder.decode(value, DEFAULT_ENCODING);
+    }
+
+    private static String encodeId(List<String> id)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        if (id != null) {
+            for (String element : id) {
+                builder.append(encode(element));
+                builder.append(ID_SEPARATOR);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static List<String> decodeId(String key) throws UnsupportedEncodingException
+    {
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        String[] elements = key.substring(0, key.length() - 1).split(String.valueOf(ID_SEPARATOR), -1);
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = decode(elements[i]);
+        }
+
+        return Arrays.asList(elements);
+    }
+}
@@ -19,26 +19,38 @@
  */
 package org.xwiki.job.internal;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.io.FileUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
 import org.xwiki.xstream.internal.SafeXStream;
 
+import com.thoughtworks.xstream.io.StreamException;
+
 /**
  * Serialize/unserialize tool for job statuses.
  *
@@ -54,6 +66,28 @@
      */
     private static final Charset DEFAULT_ENCODING = StandardCharsets.UTF_8;
 
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String HEADER_ID_SIZE = "id.size";
+
+    private static final String HEADER_ID = "id.";
+
+    private static final String HEADER_JOBTYPE = "jobType";
+
+    private static final String HEADER_STATE = "state";
+
+    private static final String HEADER_STARTDATE = "startDate";
+
+    private static final String HEADER_ENDDATE = "endDate";
+
+    private static final String HEADER_REQUEST_REMOTE = "request.remote";
+
+    private static final String HEADER_REQUEST_INTERACTIVE = "request.interactive";
+
+    private static final String HEADER_REQUEST_VERBOSE = "request.verbose";
+
     /**
      * Used to serialize and unserialize status.
      */
@@ -67,29 +101,69 @@
      */
     public void write(JobStatus status, File file) throws IOException
     {
-        File tempFile = File.createTempFile(file.getName(), ".tmp");
+        write(status, file, false);
+    }
 
-        try (FileOutputStream stream = FileUtils.openOutputStream(tempFile)) {
-            write(status, stream);
-        }
+    /**
+     * @param status the status to serialize
+     * @param file the file to serialize the status to
+     * @param compressed true if the file should be compressed with gzip
+     * @throws IOException when failing to serialize the status
+     * @since 12.4RC1
+     */
+    public void write(JobStatus status, File file, boolean compressed) throws IOException
+    {
+        // Create the temporary file next to the target file to make sure the move can be atomic
+        File tempFile = createTempFile(file);
 
-        // Copy the file to its final destination
-        file.mkdirs();
-        for (int i = 0; i < 10; ++i) {
-            try {
-                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-                // Stop the retry loop if it succeeded
-                break;
-            } catch (FileAlreadyExistsException e) {
-                // Yes it sounds pretty weird but it can happen so we try 10 times before giving up
-                // Wait a bit before retrying
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ei) {
-                    throw e;
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+                if (compressed) {
+                    GZIPOutputStream gzipStream = new GZIPOutputStream(stream, BUFFER_SIZE);
+                    write(status, gzipStream);
+                    gzipStream.finish();
+                } else {
+                    write(status, stream);
                 }
+
+                // Make sure the content is on the disk before the file is made visible
+                stream.getFD().sync();
             }
+
+            move(tempFile, file);
+        } catch (IOException | RuntimeException e) {
+            // Don't leave the temporary file behind
+            Files.deleteIfExists(tempFile.toPath());
+
+            throw e;
+        }
+    }
+
+    /**
+     * @param file a file of the job status store
+     * @return true if the file is a temporary file created while writing another file
+     * @since 12.4RC1
+     */
+    public boolean isTemporaryFile(File file)
+    {
+        return file.getName().endsWith(TEMP_EXTENSION);
+    }
+
+    private File createTempFile(File file) throws IOException
+    {
+        File folder = file.getAbsoluteFile().getParentFile();
+        folder.mkdirs();
+
+        return File.createTempFile(file.getName(), TEMP_EXTENSION, folder);
+    }
+
+    private void move(File tempFile, File file) throws IOException
+    {
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -112,15 +186,130 @@ public void write(JobStatus status, OutputStream stream) throws IOException
      */
     public JobStatus read(File file)
     {
-        return (JobStatus) this.xstream.fromXML(file);
+        try (InputStream stream = new FileInputStream(file)) {
+            return read(stream);
+        } catch (IOException e) {
+            throw new StreamException(e);
+        }
     }
 
     /**
-     * @param stream the stream to read
+     * @param stream the stream to read, automatically uncompressed if it contains gzip compressed content
      * @return the status
      */
     public JobStatus read(InputStream stream)
     {
-        return (JobStatus) this.xstream.fromXML(stream);
+        try {
+            return (JobStatus) this.xstream.fromXML(uncompress(new BufferedInputStream(stream, BUFFER_SIZE)));
+        } catch (IOException e) {
+            throw new StreamException(e);
+        }
+    }
+
+    private InputStream uncompress(InputStream stream) throws IOException
+    {
+        stream.mark(2);
+        int magic = stream.read() | (stream.read() << 8);
+        stream.reset();
+
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(stream, BUFFER_SIZE) : stream;
+    }
+
+    /**
+     * @param header the header of the job status to serialize
+     * @param file the file to serialize the header to
+     * @throws IOException when failing to serialize the header
+     * @since 12.4RC1
+     */
+    public void writeHeader(JobStatusHeader header, File file) throws IOException
+    {
+        Properties properties = new Properties();
+
+        List<String> id = header.getId();
+        if (id != null) {
+            properties.setProperty(HEADER_ID_SIZE, String.valueOf(id.size()));
+            for (int i = 0; i < id.size(); ++i) {
+                if (id.get(i) != null) {
+                    properties.setProperty(HEADER_ID + i, id.get(i));
+                }
+            }
+        }
+        setProperty(properties, HEADER_JOBTYPE, header.getJobType());
+        setProperty(properties, HEADER_STATE, header.getState());
+        setProperty(properties, HEADER_STARTDATE, header.getStartDate());
+        setProperty(properties, HEADER_ENDDATE, header.getEndDate());
+        if (header.getRequest() != null) {
+            setProperty(properties, HEADER_REQUEST_REMOTE, header.getRequest().isRemote());
+            setProperty(properties, HEADER_REQUEST_INTERACTIVE, header.getRequest().isInteractive());
+            setProperty(properties, HEADER_REQUEST_VERBOSE, header.getRequest().isVerbose());
+        }
+
+        File tempFile = createTempFile(file);
+
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+                OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
+                properties.store(writer, null);
+                writer.flush();
+
+                stream.getFD().sync();
+            }
+
+            move(tempFile, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile.toPath());
+
+            throw e;
+        }
+    }
+
+    private void setProperty(Properties properties, String key, Object value)
+    {
+        if (value != null) {
+            properties.setProperty(key, value instanceof Date ? String.valueOf(((Date) value).getTime())
+                : value.toString());
+        }
+    }
+
+    /**
+     * @param file the file to read
+     * @return the header of the job status
+     * @throws IOException when failing to read the file
+     * @since 12.4RC1
+     */
+    public JobStatusHeader readHeader(File file) throws IOException
+    {
+        Properties properties = new Properties();
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), DEFAULT_ENCODING)) {
+            properties.load(reader);
+        }
+
+        List<String> id = null;
+        String idSize = properties.getProperty(HEADER_ID_SIZE);
+        if (idSize != null) {
+            int size = Integer.parseInt(idSize);
+            id = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                id.add(properties.getProperty(HEADER_ID + i));
+            }
+        }
+
+        String state = properties.getProperty(HEADER_STATE);
+
+        // Older headers don't contain the request summary
+        return new JobStatusHeader(id, properties.getProperty(HEADER_JOBTYPE), state != null ? State.valueOf(state)
+            : null, getDate(properties, HEADER_STARTDATE), getDate(properties, HEADER_ENDDATE),
+            properties.containsKey(HEADER_REQUEST_REMOTE) ? JobStatusHeader.createRequest(id,
+                Boolean.parseBoolean(properties.getProperty(HEADER_REQUEST_REMOTE)),
+                Boolean.parseBoolean(properties.getProperty(HEADER_REQUEST_INTERACTIVE)),
+                Boolean.parseBoolean(properties.getProperty(HEADER_REQUEST_VERBOSE))) : null);
+    }
+
+    private Date getDate(Properties properties, String key)
+    {
+        String value = properties.getProperty(key);
+
+        return value != null ? new Date(Long.parseLong(value)) : null;
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Various counters about the job statuses persisted by {@link DefaultJobStatusStore}.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class JobStatusStoreMetrics
+{
+    private final LongAdder saves = new LongAdder();
+
+    private final LongAdder saveTime = new LongAdder();
+
+    private final LongAdder lockWaitTime = new LongAdder();
+
+    private final LongAdder coalescedWrites = new LongAdder();
+
+    private final LongAdder rejectedWrites = new LongAdder();
+
+    void onSave(long lockWaitNanos, long saveNanos)
+    {
+        this.saves.increment();
+        this.lockWaitTime.add(lockWaitNanos);
+        this.saveTime.add(saveNanos);
+    }
+
+    void onCoalescedWrite()
+    {
+        this.coalescedWrites.increment();
+    }
+
+    void onRejectedWrite()
+    {
+        this.rejectedWrites.increment();
+    }
+
+    /**
+     * @return the number of job statuses written to the file system
+     */
+    public long getSaveCount()
+    {
+        return this.saves.sum();
+    }
+
+    /**
+     * @param unit the unit of the returned time
+     * @return the total time spent writing job statuses to the file system
+     */
+    public long getSaveTime(TimeUnit unit)
+    {
+        return unit.convert(this.saveTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit the unit of the returned time
+     * @return the total time spent waiting for locks before writing job statuses to the file system
+     */
+    public long getLockWaitTime(TimeUnit unit)
+    {
+        return unit.convert(this.lockWaitTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of asynchronous writes which replaced a pending write of the same job status
+     */
+    public long getCoalescedWriteCount()
+    {
+        return this.coalescedWrites.sum();
+    }
+
+    /**
+     * @return the number of asynchronous writes which were executed synchronously because too many writes were
+     *         pending
+     */
+    public long getRejectedWriteCount()
+    {
+        return this.rejectedWrites.sum();
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobProgress;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.tail.LogTail;
+
+/**
+ * A job status initialized from its {@link JobStatusHeader} which loads the complete status only when something which
+ * is not part of the header is requested.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class LazyJobStatus implements JobStatus
+{
+    private final JobStatusHeader header;
+
+    private final Supplier<JobStatus> loader;
+
+    private final Request request;
+
+    private volatile JobStatus status;
+
+    /**
+     * A request which provides the summary stored in the header and loads the complete status only when the properties
+     * are requested.
+     */
+    private final class LazyRequest implements Request
+    {
+        private final Request summary;
+
+        LazyRequest(Request summary)
+        {
+            this.summary = summary;
+        }
+
+        private Request getCompleteRequest()
+        {
+            return getStatus().getRequest();
+        }
+
+        @Override
+        public List<String> getId()
+        {
+            return this.summary.getId();
+        }
+
+        @Override
+        public boolean isRemote()
+        {
+            return this.summary.isRemote();
+        }
+
+        @Override
+        public boolean isInteractive()
+        {
+            return this.summary.isInteractive();
+        }
+
+        @Override
+        public boolean isVerbose()
+        {
+            return this.summary.isVerbose();
+        }
+
+        @Override
+        public <T> T getProperty(String key)
+        {
+            return getCompleteRequest().getProperty(key);
+        }
+
+        @Override
+        public <T> T getProperty(String key, T def)
+        {
+            return getCompleteRequest().getProperty(key, def);
+        }
+
+        @Override
+        public Collection<String> getPropertyNames()
+        {
+            return getCompleteRequest().getPropertyNames();
+        }
+
+        @Override
+        public boolean containsProperty(String key)
+        {
+            return getCompleteRequest().containsProperty(key);
+        }
+
+        @Override
+        public Boolean isStatusSerialized()
+        {
+            return getCompleteRequest().isStatusSerialized();
+        }
+
+        @Override
+        public Boolean isStatusLogIsolated()
+        {
+            return getCompleteRequest().isStatusLogIsolated();
+        }
+
+        @Override
+        public Map<String, Serializable> getContext()
+        {
+            return getCompleteRequest().getContext();
+        }
+
+        @Override
+        public void setContext(Map<String, Serializable> context)
+        {
+            getCompleteRequest().setContext(context);
+        }
+    }
+
+    /**
+     * @param header the header of the job status
+     * @param loader used to load the complete job status
+     */
+    public LazyJobStatus(JobStatusHeader header, Supplier<JobStatus> loader)
+    {
+        this.header = header;
+        this.loader = loader;
+        this.request = header.getRequest() != null ? new LazyRequest(header.getRequest()) : null;
+    }
+
+    /**
+     * @return the identifier of the job
+     */
+    public List<String> getId()
+    {
+        return this.header.getId();
+    }
+
+    /**
+     * @return true if the complete job status has been loaded
+     */
+    public boolean isLoaded()
+    {
+        return this.status != null;
+    }
+
+    /**
+     * @return the complete job status
+     */
+    public JobStatus getStatus()
+    {
+        JobStatus currentStatus = this.status;
+
+        if (currentStatus == null) {
+            synchronized (this) {
+                currentStatus = this.status;
+
+                if (currentStatus == null) {
+                    currentStatus = this.loader.get();
+
+                    if (currentStatus == null) {
+                        // The status does not exist anymore, fallback on what we know about it
+                        currentStatus = createHeaderStatus();
+                    }
+
+                    this.status = currentStatus;
+                }
+            }
+        }
+
+        return currentStatus;
+    }
+
+    private JobStatus createHeaderStatus()
+    {
+        Request summary = this.header.getRequest();
+        if (summary == null) {
+            DefaultRequest defaultRequest = new DefaultRequest();
+            defaultRequest.setId(this.header.getId());
+            summary = defaultRequest;
+        }
+
+        DefaultJobStatus<Request> defaultStatus =
+            new DefaultJobStatus<>(this.header.getJobType(), summary, null, null, null);
+        defaultStatus.setState(this.header.getState());
+        defaultStatus.setStartDate(this.header.getStartDate());
+        defaultStatus.setEndDate(this.header.getEndDate());
+
+        return defaultStatus;
+    }
+
+    @Override
+    public String getJobType()
+    {
+        JobStatus currentStatus = this.status;
+
+        return currentStatus != null ? currentStatus.getJobType() : this.header.getJobType();
+    }
+
+    @Override
+    public State getState()
+    {
+        JobStatus currentStatus = this.status;
+
+        return currentStatus != null ? currentStatus.getState() : this.header.getState();
+    }
+
+    @Override
+    public Throwable getError()
+    {
+        return getStatus().getError();
+    }
+
+    @Override
+    public Request getRequest()
+    {
+        // Serve the summary stored in the header until the complete status is loaded
+        if (this.status == null && this.request != null) {
+            return this.request;
+        }
+
+        return getStatus().getRequest();
+    }
+
+    @Override
+    public LogTail getLogTail()
+    {
+        return getStatus().getLogTail();
+    }
+
+    @Override
+    public JobProgress getProgress()
+    {
+        return getStatus().getProgress();
+    }
+
+    @Override
+    public void ask(Object question) throws InterruptedException
+    {
+        getStatus().ask(question);
+    }
+
+    @Override
+    public boolean ask(Object question, long time, TimeUnit unit) throws InterruptedException
+    {
+        return getStatus().ask(question, time, unit);
+    }
+
+    @Override
+    public long getQuestionTimeLeft(TimeUnit unit)
+    {
+        return getStatus().getQuestionTimeLeft(unit);
+    }
+
+    @Override
+    public Object getQuestion()
+    {
+        return getStatus().getQuestion();
+    }
+
+    @Override
+    public void answered()
+    {
+        getStatus().answered();
+    }
+
+    @Override
+    public Date getStartDate()
+    {
+        JobStatus currentStatus = this.status;
+
+        return currentStatus != null ? currentStatus.getStartDate() : this.header.getStartDate();
+    }
+
+    @Override
+    public Date getEndDate()
+    {
+        JobStatus currentStatus = this.status;
+
+        return currentStatus != null ? currentStatus.getEndDate() : this.header.getEndDate();
+    }
+
+    @Override
+    public boolean isIsolated()
+    {
+        return getStatus().isIsolated();
+    }
+
+    @Override
+    @Deprecated
+    public LogQueue getLog()
+    {
+        return getStatus().getLog();
+    }
+
+    @Override
+    @Deprecated
+    public List<LogEvent> getLog(LogLevel level)
+    {
+        return getStatus().getLog(level);
+    }
+}
@@ -20,7 +20,10 @@
 package org.xwiki.job.internal;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.Test;
 import org.xwiki.component.internal.ContextComponentManagerProvider;
 import org.xwiki.job.DefaultRequest;
@@ -32,8 +35,11 @@
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -150,6 +156,75 @@ public void matchingGroupPathAreBlocked()
         assertSame(State.FINISHED, job1.getStatus().getState());
     }
 
+    @Test
+    public void groupMetricsAndIdleGroups() throws InterruptedException
+    {
+        TestBasicGroupedJob job1 = groupedJob("A");
+        TestBasicGroupedJob job2 = groupedJob("A");
+
+        job1.lock();
+        job2.lock();
+
+        this.executor.execute(job1);
+        this.executor.execute(job2);
+
+        waitJobWaiting(job1);
+
+        JobGroupPath path = new JobGroupPath(Arrays.asList("A"));
+        JobGroupMetrics metrics = this.executor.getGroupMetrics(path);
+        assertNotNull(metrics);
+        assertEquals(1, metrics.getQueueSize());
+        assertEquals(1, metrics.getStartedJobCount());
+        assertSame(job1, this.executor.getCurrentJob(path));
+
+        job1.unlock();
+        waitJobWaiting(job2);
+
+        assertEquals(0, metrics.getQueueSize());
+        assertEquals(2, metrics.getStartedJobCount());
+        assertSame(job2, this.executor.getCurrentJob(path));
+
+        job2.unlock();
+        waitJobFinished(job2);
+
+        // Wait for the group to be released
+        for (int i = 0; i < 1000 && this.executor.getCurrentJob(path) != null; ++i) {
+            Thread.sleep(1);
+        }
+
+        assertNull(this.executor.getCurrentJob(path));
+
+        // The metrics outlive the idle group
+        assertSame(metrics, this.executor.getGroupMetrics(path));
+
+        TestBasicGroupedJob job3 = groupedJob("A");
+        this.executor.execute(job3);
+        waitJobFinished(job3);
+
+        assertSame(metrics, this.executor.getGroupMetrics(path));
+        assertEquals(3, metrics.getStartedJobCount());
+        assertNull(this.executor.getGroupMetrics(new JobGroupPath(Arrays.asList("B"))));
+    }
+
+    @Test
+    public void groupedJobRejected() throws Exception
+    {
+        ExecutorService jobExecutor = (ExecutorService) FieldUtils.readField(this.executor, "jobExecutor", true);
+        jobExecutor.shutdown();
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId("job1");
+        TestBasicGroupedJob job1 =
+            new TestBasicGroupedJob("type", new JobGroupPath(Arrays.asList("A")), request);
+
+        assertThrows(RejectedExecutionException.class, () -> this.executor.execute(job1));
+        assertNull(this.executor.getJob(request.getId()));
+
+        // The group is not left active with a queued job
+        assertThrows(RejectedExecutionException.class, () -> this.executor.execute(groupedJob("A")));
+        assertNull(this.executor.getCurrentJob(new JobGroupPath(Arrays.asList("A"))));
+    }
+
     private TestBasicGroupedJob groupedJob(String... path)
     {
         return new TestBasicGroupedJob("type", new JobGroupPath(Arrays.asList(path)), new DefaultRequest());
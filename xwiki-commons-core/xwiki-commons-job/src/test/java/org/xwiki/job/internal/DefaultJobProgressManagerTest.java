@@ -19,19 +19,27 @@
  */
 package org.xwiki.job.internal;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.xwiki.job.event.status.EndStepProgressEvent;
 import org.xwiki.job.event.status.PopLevelProgressEvent;
 import org.xwiki.job.event.status.PushLevelProgressEvent;
 import org.xwiki.job.event.status.StartStepProgressEvent;
+import org.xwiki.job.event.status.StepProgressEvent;
 import org.xwiki.logging.Message;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.ignoreStubs;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * Validate {@link DefaultJobProgressManager}.
@@ -47,6 +55,12 @@
     @MockComponent
     private ObservationManager observation;
 
+    @BeforeEach
+    public void beforeEach()
+    {
+        when(this.observation.hasListener(any())).thenReturn(true);
+    }
+
     @Test
     public void pushLevelProgress()
     {
@@ -95,4 +109,70 @@ public void popLevelProgress()
 
         verify(this.observation).notify(PopLevelProgressEvent.INSTANCE, this);
     }
+
+    @Test
+    public void progressWithBoundJobProgress()
+    {
+        DefaultJobProgress jobProgress = new DefaultJobProgress();
+        jobProgress.bind();
+
+        try {
+            this.progress.pushLevelProgress(2, this);
+            this.progress.startStep(this);
+            this.progress.endStep(this);
+            this.progress.startStep(this);
+
+            assertEquals(0.5D, jobProgress.getOffset());
+
+            this.progress.pushLevelProgress(3, this);
+            this.progress.stepPropress(this);
+            this.progress.stepPropress(this);
+            this.progress.stepPropress(this);
+            this.progress.popLevelProgress(this);
+            this.progress.endStep(this);
+            this.progress.popLevelProgress(this);
+
+            assertEquals(1.0D, jobProgress.getOffset());
+
+            // The other listeners still receive the structure of the progress
+            verify(this.observation).notify(new PushLevelProgressEvent(2), this);
+            verify(this.observation).notify(new PushLevelProgressEvent(3), this);
+            verify(this.observation, times(2)).notify(StartStepProgressEvent.INSTANCE, this, null);
+            verify(this.observation, times(2)).notify(EndStepProgressEvent.INSTANCE, this);
+            verify(this.observation, times(2)).notify(PopLevelProgressEvent.INSTANCE, this);
+            // Only the first step tick is sent to the observation manager, the others are too close
+            verify(this.observation).notify(StepProgressEvent.INSTANCE, this);
+            verifyNoMoreInteractions(ignoreStubs(this.observation));
+        } finally {
+            jobProgress.unbind();
+        }
+
+        this.progress.stepPropress(this);
+
+        verify(this.observation, times(2)).notify(StepProgressEvent.INSTANCE, this);
+    }
+
+    @Test
+    public void progressWithoutListener()
+    {
+        when(this.observation.hasListener(any())).thenReturn(false);
+
+        DefaultJobProgress jobProgress = new DefaultJobProgress();
+        jobProgress.bind();
+
+        try {
+            this.progress.pushLevelProgress(2, this);
+            this.progress.startStep(this);
+            this.progress.endStep(this);
+            this.progress.stepPropress(this);
+            this.progress.popLevelProgress(this);
+        } finally {
+            jobProgress.unbind();
+        }
+
+        assertEquals(1.0D, jobProgress.getOffset());
+
+        verify(this.observation, never()).notify(any(), any());
+        verify(this.observation, never()).notify(any(), any(), any());
+    }
 }
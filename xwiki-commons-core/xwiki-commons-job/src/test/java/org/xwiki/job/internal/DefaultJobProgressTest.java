@@ -35,6 +35,7 @@
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 
 @ComponentTest
@@ -95,6 +96,44 @@ public void progressSteps()
         assertEquals(0.5D, this.progress.getCurrentLevelOffset(), 0D);
     }
 
+    @Test
+    public void compactSteps()
+    {
+        this.progress.setMaximumLiveChildren(2);
+
+        this.observation.notify(new PushLevelProgressEvent(10), null, null);
+
+        for (int i = 0; i < 5; ++i) {
+            this.observation.notify(new StartStepProgressEvent(), null, new Message("step" + i));
+
+            // Sub levels are dropped with their step
+            this.observation.notify(new PushLevelProgressEvent(1), null, null);
+            this.observation.notify(new PopLevelProgressEvent(), null, null);
+
+            this.observation.notify(new EndStepProgressEvent(), null, null);
+        }
+
+        assertEquals(0.5D, this.progress.getOffset(), 0D);
+
+        DefaultJobProgressStep level = this.progress.getRootStep();
+        assertEquals(5, level.getChildCount());
+        // The steps are folded until half the maximum is left
+        assertEquals(1, level.getChildren().size());
+        assertEquals(4, level.getChildren().get(0).index);
+        assertEquals(new Message("step4"), level.getChildren().get(0).getMessage());
+
+        JobProgressStepSummary summary = level.getChildrenSummary();
+        assertEquals(4, summary.getCount());
+        assertEquals(new Message("step0"), summary.getFirstMessage());
+        assertEquals(new Message("step3"), summary.getLastMessage());
+        assertTrue(summary.getMinimumElapsedTime() <= summary.getMaximumElapsedTime());
+        assertTrue(summary.getTotalElapsedTime() >= summary.getMaximumElapsedTime());
+
+        this.observation.notify(new PopLevelProgressEvent(), null, null);
+
+        assertEquals(1.0D, this.progress.getOffset(), 0D);
+    }
+
     @Test
     public void stepProgressEvent()
     {
@@ -23,10 +23,12 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Provider;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -220,6 +222,8 @@ public Object getCustom()
 
     private File storeDirectory;
 
+    private File staleTemporaryFile;
+
     @BeforeComponent
     public void before() throws Exception
     {
@@ -227,6 +231,11 @@ public void before() throws Exception
 
         FileUtils.copyDirectory(new File("src/test/resources/jobs/status/"), this.storeDirectory);
 
+        // A temporary file left by a crash
+        this.staleTemporaryFile = new File(this.storeDirectory, "status.xml123.tmp");
+        this.staleTemporaryFile.createNewFile();
+        this.staleTemporaryFile.setLastModified(System.currentTimeMillis() - 3600000);
+
         when(this.jobManagerConfiguration.getStorage()).thenReturn(this.storeDirectory);
         when(this.jobManagerConfiguration.getJobStatusCacheSize()).thenReturn(100);
 
@@ -284,6 +293,16 @@ private <S extends JobStatus> S storeGet(S status) throws Exception
 
     // Tests
 
+    @Test
+    public void deleteStaleTemporaryFiles() throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && this.staleTemporaryFile.exists(); ++i) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(this.staleTemporaryFile.exists());
+    }
+
     @Test
     public void getJobStatusWithNullId()
     {
@@ -438,6 +457,72 @@ public void storeJobStatusWhenSerializable()
         assertTrue(new File(this.storeDirectory, "newstatus/status.xml").exists());
     }
 
+    @Test
+    public void storeJobStatus()
+    {
+        DefaultJobStatus<Request> status = createStatus(false);
+
+        this.store.store(status);
+
+        assertEquals(1, this.store.getMetrics().getSaveCount());
+        assertEquals(0, this.store.getMetrics().getCoalescedWriteCount());
+    }
+
+    @Test
+    public void storeAsyncCoalescePendingWrites() throws Exception
+    {
+        DefaultJobStatus<Request> status1 = createStatus(false);
+        status1.setState(JobStatus.State.RUNNING);
+        DefaultJobStatus<Request> status2 = createStatus(false);
+        status2.setState(JobStatus.State.FINISHED);
+
+        // Block the writes
+        Lock lock = (Lock) FieldUtils.readField(this.store, "writeLock", true);
+        lock.lock();
+
+        try {
+            this.store.storeAsync(status1);
+            this.store.storeAsync(status2);
+
+            assertEquals(1, this.store.getMetrics().getCoalescedWriteCount());
+
+            // The pending version is used when the status is not in the cache
+            this.store.flushCache();
+            assertSame(status2, getStatus());
+        } finally {
+            lock.unlock();
+        }
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (this.store.getMetrics().getSaveCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, this.store.getMetrics().getSaveCount());
+        assertEquals(0, this.store.getMetrics().getRejectedWriteCount());
+
+        this.store.flushCache();
+        assertEquals(JobStatus.State.FINISHED, getStatus().getState());
+    }
+
+    @Test
+    public void disposeWaitsForPendingWrites() throws Exception
+    {
+        DefaultJobStatus<Request> status = createStatus(false);
+        status.setState(JobStatus.State.FINISHED);
+
+        this.store.storeAsync(status);
+
+        this.store.dispose();
+
+        assertEquals(1, this.store.getMetrics().getSaveCount());
+        assertTrue(new File(this.storeDirectory, "test/status.xml").exists());
+
+        // The index journal is closed
+        JobStatusIndex index = (JobStatusIndex) FieldUtils.readField(this.store, "index", true);
+        assertNull(FieldUtils.readField(index, "writer", true));
+    }
+
     @Test
     public void serializeUnserializeWhenLogMessage() throws Exception
     {
@@ -728,4 +813,87 @@ public void createLoggerTailWithNullId()
     {
         assertNotNull(this.store.createLoggerTail(null, true));
     }
+
+    @Test
+    public void getLazyJobStatus() throws Exception
+    {
+        DefaultJobStatus<Request> status = createStatus();
+        status.setState(JobStatus.State.FINISHED);
+        status.getLoggerTail().close();
+        ((DefaultRequest) status.getRequest()).setInteractive(true);
+        ((DefaultRequest) status.getRequest()).setProperty("key", "value");
+
+        this.store.store(status);
+
+        // Served from the cache
+        assertSame(status, this.store.getLazyJobStatus(ID));
+
+        this.store.flushCache();
+
+        JobStatus lazyStatus = this.store.getLazyJobStatus(ID);
+
+        assertTrue(lazyStatus instanceof LazyJobStatus);
+        assertEquals("type", lazyStatus.getJobType());
+        assertEquals(JobStatus.State.FINISHED, lazyStatus.getState());
+        assertFalse(((LazyJobStatus) lazyStatus).isLoaded());
+
+        // The request summary is stored in the header
+        assertEquals(ID, lazyStatus.getRequest().getId());
+        assertTrue(lazyStatus.getRequest().isInteractive());
+        assertFalse(((LazyJobStatus) lazyStatus).isLoaded());
+
+        assertEquals("value", lazyStatus.getRequest().getProperty("key"));
+        assertTrue(((LazyJobStatus) lazyStatus).isLoaded());
+        assertSame(this.store.getJobStatus(ID), ((LazyJobStatus) lazyStatus).getStatus());
+    }
+
+    @Test
+    public void getLazyJobStatusWithoutHeader()
+    {
+        new File(this.storeDirectory, "id1/id2/status.properties").delete();
+
+        JobStatus jobStatus = this.store.getLazyJobStatus(Arrays.asList("id1", "id2"));
+
+        assertFalse(jobStatus instanceof LazyJobStatus);
+        assertEquals(Arrays.asList("id1", "id2"), jobStatus.getRequest().getId());
+
+        assertNull(this.store.getLazyJobStatus(Arrays.asList("nostatus")));
+    }
+
+    @Test
+    public void getJobStatuses() throws Exception
+    {
+        assertEquals(4, this.store.getJobStatuses(null, null).size());
+        assertEquals(4, this.store.getJobStatuses(null, JobStatus.State.FINISHED).size());
+        assertEquals(0, this.store.getJobStatuses(null, JobStatus.State.RUNNING).size());
+
+        List<JobStatus> statuses = this.store.getJobStatuses(Arrays.asList("id1"), null);
+        assertEquals(2, statuses.size());
+        assertEquals(Arrays.asList("id1", "id2"), ((LazyJobStatus) statuses.get(0)).getId());
+        assertEquals(Arrays.asList("id1", "id2", "id3"), ((LazyJobStatus) statuses.get(1)).getId());
+        assertFalse(((LazyJobStatus) statuses.get(0)).isLoaded());
+
+        assertEquals(1, this.store.getJobStatuses(Arrays.asList("id1", "id2", "id3"), null).size());
+        assertEquals(0, this.store.getJobStatuses(Arrays.asList("id"), null).size());
+
+        DefaultJobStatus<Request> status = createStatus();
+        status.setState(JobStatus.State.RUNNING);
+        status.getLoggerTail().close();
+        this.store.store(status);
+
+        assertSame(status, this.store.getJobStatuses(ID, null).get(0));
+        assertEquals(1, this.store.getJobStatuses(null, JobStatus.State.RUNNING).size());
+
+        // The index is persisted
+        JobStatusIndex index = new JobStatusIndex(new File(this.storeDirectory, "status.index"));
+        index.load();
+        assertEquals(5, index.size());
+        assertEquals(JobStatus.State.RUNNING, index.get(ID).getState());
+
+        this.store.remove(Arrays.asList("id1", "id2"));
+
+        assertEquals(0, this.store.getJobStatuses(Arrays.asList("id1"), null).size());
+        index.load();
+        assertEquals(3, index.size());
+    }
 }
@@ -0,0 +1,266 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.Test;
+import org.xwiki.job.JobGroupPath;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link JobGroupPathLockTree}.
+ *
+ * @version $Id$
+ */
+public class JobGroupPathLockTreeTest
+{
+    private static final JobGroupPath A = new JobGroupPath(Arrays.asList("A"));
+
+    private static final JobGroupPath AB = new JobGroupPath("B", A);
+
+    private static final JobGroupPath AC = new JobGroupPath("C", A);
+
+    private static final JobGroupPath B = new JobGroupPath(Arrays.asList("B"));
+
+    private final JobGroupPathLockTree tree = new JobGroupPathLockTree();
+
+    @Test
+    public void lockConflicts() throws InterruptedException
+    {
+        this.tree.lock(A);
+
+        assertFalse(this.tree.tryLock(A, 1, TimeUnit.MILLISECONDS));
+        assertFalse(this.tree.tryLock(AB, 1, TimeUnit.MILLISECONDS));
+        assertTrue(this.tree.tryLock(B, 1, TimeUnit.MILLISECONDS));
+
+        this.tree.unlock(A);
+
+        assertTrue(this.tree.tryLock(AB, 1, TimeUnit.MILLISECONDS));
+        assertTrue(this.tree.tryLock(AC, 1, TimeUnit.MILLISECONDS));
+        assertFalse(this.tree.tryLock(A, 1, TimeUnit.MILLISECONDS));
+
+        this.tree.unlock(AB);
+        this.tree.unlock(AC);
+        this.tree.unlock(B);
+
+        // Unused paths are forgotten
+        assertEquals(0, this.tree.size());
+    }
+
+    @Test
+    public void unlockNotLocked()
+    {
+        assertThrows(IllegalMonitorStateException.class, () -> this.tree.unlock(A));
+
+        this.tree.lock(AB);
+
+        assertThrows(IllegalMonitorStateException.class, () -> this.tree.unlock(A));
+    }
+
+    @Test
+    public void conflictingRequestsAreFair() throws Exception
+    {
+        this.tree.lock(AB);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch locked = new CountDownLatch(1);
+            Future<?> future = executor.submit(() -> {
+                this.tree.lock(A);
+                locked.countDown();
+            });
+
+            // Wait for the parent request to be queued
+            while (this.tree.tryLock(AC, 0, TimeUnit.MILLISECONDS)) {
+                this.tree.unlock(AC);
+                Thread.sleep(1);
+            }
+
+            // A sibling is free but should not overtake the parent request
+            assertFalse(this.tree.tryLock(AC, 10, TimeUnit.MILLISECONDS));
+            assertEquals(1, locked.getCount());
+
+            this.tree.unlock(AB);
+
+            future.get(10, TimeUnit.SECONDS);
+            assertFalse(this.tree.tryLock(AC, 1, TimeUnit.MILLISECONDS));
+
+            this.tree.unlock(A);
+
+            assertEquals(0, this.tree.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void unrelatedRequestsDontWait() throws Exception
+    {
+        this.tree.lock(AB);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicReference<Thread> waitingThread = new AtomicReference<>();
+            Future<?> future = executor.submit(() -> {
+                waitingThread.set(Thread.currentThread());
+                this.tree.lock(AB);
+            });
+
+            // Wait for the conflicting request to be queued
+            while (waitingThread.get() == null || waitingThread.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+
+            // Paths which don't conflict with the queued request are granted right away
+            assertTrue(this.tree.tryLock(B, 0, TimeUnit.MILLISECONDS));
+            assertTrue(this.tree.tryLock(AC, 0, TimeUnit.MILLISECONDS));
+            // but not the ones conflicting with it
+            assertFalse(this.tree.tryLock(A, 1, TimeUnit.MILLISECONDS));
+
+            this.tree.unlock(AB);
+
+            future.get(10, TimeUnit.SECONDS);
+
+            this.tree.unlock(AB);
+            this.tree.unlock(AC);
+            this.tree.unlock(B);
+
+            assertEquals(0, this.tree.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void uncontendedLockDoesNotUseTheMutex() throws Exception
+    {
+        Lock mutex = (Lock) FieldUtils.readField(this.tree, "mutex", true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.submit(() -> {
+                mutex.lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } finally {
+                    mutex.unlock();
+                }
+
+                return null;
+            });
+
+            locked.await();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                this.tree.lock(AB);
+                assertTrue(this.tree.tryLock(AC, 0, TimeUnit.MILLISECONDS));
+                this.tree.unlock(AB);
+                this.tree.unlock(AC);
+            });
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, this.tree.size());
+    }
+
+    @Test
+    public void stress() throws Exception
+    {
+        int threads = 64;
+        int iterations = 1000;
+
+        List<JobGroupPath> children = new ArrayList<>(threads);
+        for (int i = 0; i < threads; ++i) {
+            children.add(new JobGroupPath(String.valueOf(i), A));
+        }
+
+        AtomicInteger lockedParent = new AtomicInteger();
+        AtomicInteger lockedChildren = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; ++i) {
+                JobGroupPath child = children.get(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+
+                    for (int j = 0; j < iterations; ++j) {
+                        // Sometimes lock the common parent
+                        boolean parent = j % 100 == 0;
+
+                        this.tree.lock(parent ? A : child);
+                        if (parent) {
+                            if (lockedParent.incrementAndGet() != 1 || lockedChildren.get() != 0) {
+                                errors.incrementAndGet();
+                            }
+                            lockedParent.decrementAndGet();
+                        } else {
+                            lockedChildren.incrementAndGet();
+                            if (lockedParent.get() != 0) {
+                                errors.incrementAndGet();
+                            }
+                            lockedChildren.decrementAndGet();
+                        }
+                        this.tree.unlock(parent ? A : child);
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(0, this.tree.size());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.test.junit5.XWikiTempDir;
+import org.xwiki.test.junit5.XWikiTempDirExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link JobStatusIndex}.
+ *
+ * @version $Id$
+ */
+@ExtendWith(XWikiTempDirExtension.class)
+public class JobStatusIndexTest
+{
+    @XWikiTempDir
+    private File tmpDir;
+
+    private File file;
+
+    private JobStatusIndex index;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.file = new File(this.tmpDir, "status.index");
+        this.index = new JobStatusIndex(this.file);
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException
+    {
+        this.index.close();
+    }
+
+    private void put(State state, String... id) throws IOException
+    {
+        this.index.put(new JobStatusHeader(Arrays.asList(id), "type", state, new Date(42), null));
+    }
+
+    private List<List<String>> getIds(List<String> prefix, State state)
+    {
+        return this.index.getHeaders(prefix, state).stream().map(JobStatusHeader::getId)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void putGetRemove() throws IOException
+    {
+        put(State.FINISHED, "a", "b");
+        put(State.RUNNING, "a", "b", "c");
+        put(State.FINISHED, "a", "b-c");
+        put(State.FINISHED, "a", "b c");
+        put(State.FINISHED, "a/b", null);
+        this.index.put(new JobStatusHeader(null, null, null, null, null));
+
+        assertEquals(6, this.index.size());
+        assertEquals(State.RUNNING, this.index.get(Arrays.asList("a", "b", "c")).getState());
+        assertEquals(new Date(42), this.index.get(Arrays.asList("a", "b")).getStartDate());
+        assertNull(this.index.get(Arrays.asList("a")));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("a", "b", "c")),
+            getIds(Arrays.asList("a", "b"), null));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), getIds(Arrays.asList("a"), State.RUNNING));
+        assertEquals(Arrays.asList(Arrays.asList("a/b", null)), getIds(Arrays.asList("a/b"), null));
+        assertEquals(6, getIds(null, null).size());
+        assertEquals(6, getIds(Collections.emptyList(), null).size());
+
+        this.index.remove(Arrays.asList("a", "b"));
+
+        assertEquals(4, this.index.size());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b c"), Arrays.asList("a", "b-c")),
+            getIds(Arrays.asList("a"), null));
+
+        // Reload the journal
+        this.index.close();
+        this.index = new JobStatusIndex(this.file);
+        this.index.load();
+
+        assertEquals(4, this.index.size());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b c"), Arrays.asList("a", "b-c")),
+            getIds(Arrays.asList("a"), null));
+        assertEquals(Arrays.asList("a/b", null), this.index.get(Arrays.asList("a/b", null)).getId());
+        assertNull(this.index.get(null).getId());
+        assertNull(this.index.get(null).getState());
+    }
+
+    @Test
+    public void putRequestSummary() throws IOException
+    {
+        this.index.put(new JobStatusHeader(Arrays.asList("a"), "type", State.FINISHED, new Date(42), null,
+            JobStatusHeader.createRequest(Arrays.asList("a"), false, true, true)));
+        put(State.FINISHED, "b");
+        this.index.close();
+
+        // Journal written before the request summary was stored
+        FileUtils.write(this.file, "+\tc/\ttype\tFINISHED\t42\t&null\n", StandardCharsets.UTF_8, true);
+
+        assertTrue(this.index.load());
+
+        assertEquals(Arrays.asList("a"), this.index.get(Arrays.asList("a")).getRequest().getId());
+        assertFalse(this.index.get(Arrays.asList("a")).getRequest().isRemote());
+        assertTrue(this.index.get(Arrays.asList("a")).getRequest().isInteractive());
+        assertTrue(this.index.get(Arrays.asList("a")).getRequest().isVerbose());
+        assertNull(this.index.get(Arrays.asList("b")).getRequest());
+        assertEquals(State.FINISHED, this.index.get(Arrays.asList("c")).getState());
+        assertNull(this.index.get(Arrays.asList("c")).getRequest());
+    }
+
+    @Test
+    public void compact() throws IOException
+    {
+        for (int i = 0; i < 3000; ++i) {
+            put(State.RUNNING, "job");
+        }
+
+        assertEquals(1, this.index.size());
+        assertTrue(this.file.length() < 1000 * 100);
+
+        this.index.close();
+        this.index.load();
+
+        assertEquals(1, this.index.size());
+        assertEquals(State.RUNNING, this.index.get(Arrays.asList("job")).getState());
+    }
+
+    @Test
+    public void loadWithIncompleteLastLine() throws IOException
+    {
+        put(State.FINISHED, "a");
+        put(State.FINISHED, "b");
+        this.index.close();
+
+        FileUtils.write(this.file, "+\tc/\ttype\tFINI", StandardCharsets.UTF_8, true);
+
+        assertTrue(this.index.load());
+        assertEquals(2, this.index.size());
+
+        // The incomplete line is not kept in the journal
+        put(State.FINISHED, "c");
+        this.index.close();
+
+        assertTrue(this.index.load());
+        assertEquals(3, this.index.size());
+    }
+
+    @Test
+    public void loadWithInvalidLine() throws IOException
+    {
+        put(State.FINISHED, "a");
+        this.index.close();
+
+        FileUtils.write(this.file, "+\tb/\ttype\tFINI\n+\tc/\ttype\tFINISHED\t42\t&null\n", StandardCharsets.UTF_8,
+            true);
+
+        assertFalse(this.index.load());
+    }
+}
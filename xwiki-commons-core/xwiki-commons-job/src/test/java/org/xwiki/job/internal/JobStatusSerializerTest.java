@@ -20,13 +20,19 @@
 package org.xwiki.job.internal;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.Message;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
@@ -34,7 +40,11 @@
 import org.xwiki.xstream.internal.XStreamUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Validate {@link JobStatusSerializer}.
@@ -81,4 +91,107 @@ public void serializeUnserializeProgress() throws IOException
         assertEquals(0.0d, status.getProgress().getCurrentLevelOffset(), 0.1d);
         assertEquals("Progress with name [{}]", status.getProgress().getRootStep().getMessage().getMessage());
     }
+
+    @Test
+    public void serializeUnserializeCompressed() throws IOException
+    {
+        JobStatus status = new DefaultJobStatus<Request>("type", new DefaultRequest(), null, null, null);
+
+        this.serializer.write(status, this.testFile, true);
+
+        try (InputStream stream = new FileInputStream(this.testFile)) {
+            assertEquals(0x1f, stream.read());
+            assertEquals(0x8b, stream.read());
+        }
+
+        status = this.serializer.read(this.testFile);
+
+        assertEquals("type", status.getJobType());
+
+        // Overwrite the compressed file with a non compressed one
+        status = writeRead(status);
+
+        assertEquals("type", status.getJobType());
+        assertEquals(0, this.testFile.getParentFile().listFiles((dir, name) -> name.endsWith(".tmp")).length);
+    }
+
+    @Test
+    public void serializeUnserializeCompactedProgress() throws IOException
+    {
+        DefaultJobStatus<Request> status = new DefaultJobStatus<>("type", new DefaultRequest(), null, null, null);
+
+        DefaultJobProgressStep root = (DefaultJobProgressStep) status.getProgress().getRootStep();
+        root.setMaximumLiveChildren(1);
+        root.addLevel(3, null, false);
+        root.nextStep(new Message("step1"), null);
+        root.nextStep(new Message("step2"), null);
+        root.nextStep(new Message("step3"), null);
+
+        JobStatus unserializedStatus = writeRead(status);
+
+        DefaultJobProgressStep unserializedRoot =
+            (DefaultJobProgressStep) unserializedStatus.getProgress().getRootStep();
+        assertEquals(3, unserializedRoot.getChildCount());
+        assertEquals(1, unserializedRoot.getChildren().size());
+        assertEquals(2, unserializedRoot.getChildrenSummary().getCount());
+        assertEquals("step2", unserializedRoot.getChildrenSummary().getLastMessage().getMessage());
+        assertEquals(status.getProgress().getOffset(), unserializedStatus.getProgress().getOffset(), 0D);
+    }
+
+    @Test
+    public void serializeUnserializeHeader() throws IOException
+    {
+        File headerFile = new File("target/test/header/status.properties");
+
+        JobStatusHeader header = new JobStatusHeader(Arrays.asList("id1", null, "id 3"), "type",
+            JobStatus.State.FINISHED, new Date(42), new Date(43));
+
+        this.serializer.writeHeader(header, headerFile);
+        header = this.serializer.readHeader(headerFile);
+
+        assertEquals(Arrays.asList("id1", null, "id 3"), header.getId());
+        assertEquals("type", header.getJobType());
+        assertEquals(JobStatus.State.FINISHED, header.getState());
+        assertEquals(new Date(42), header.getStartDate());
+        assertEquals(new Date(43), header.getEndDate());
+        assertNull(header.getRequest());
+
+        header = new JobStatusHeader(Arrays.asList("id"), "type", JobStatus.State.FINISHED, new Date(42), null,
+            JobStatusHeader.createRequest(Arrays.asList("id"), true, false, true));
+
+        this.serializer.writeHeader(header, headerFile);
+        header = this.serializer.readHeader(headerFile);
+
+        assertEquals(Arrays.asList("id"), header.getRequest().getId());
+        assertTrue(header.getRequest().isRemote());
+        assertFalse(header.getRequest().isInteractive());
+        assertTrue(header.getRequest().isVerbose());
+
+        this.serializer.writeHeader(new JobStatusHeader(null, null, null, null, null), headerFile);
+        header = this.serializer.readHeader(headerFile);
+
+        assertNull(header.getId());
+        assertNull(header.getJobType());
+        assertNull(header.getState());
+        assertNull(header.getStartDate());
+        assertNull(header.getEndDate());
+    }
+
+    @Test
+    public void writeFailureDeletesTemporaryFile() throws IOException
+    {
+        // A non empty folder can't be replaced by the written file
+        File folder = new File("target/test/writeFailure");
+        FileUtils.deleteDirectory(folder);
+        File file = new File(folder, "status.xml");
+        new File(file, "child").mkdirs();
+
+        JobStatus status = new DefaultJobStatus<Request>("type", new DefaultRequest(), null, null, null);
+
+        assertThrows(IOException.class, () -> this.serializer.write(status, file));
+        assertThrows(IOException.class,
+            () -> this.serializer.writeHeader(new JobStatusHeader(status), new File(folder, "status.xml")));
+
+        assertEquals(1, folder.list().length);
+    }
 }
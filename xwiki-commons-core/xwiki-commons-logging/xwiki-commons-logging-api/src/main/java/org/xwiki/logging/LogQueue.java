@@ -21,18 +21,25 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Marker;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.logging.internal.ListLogTailResult;
+import org.xwiki.logging.internal.LogEventArray;
 import org.xwiki.logging.tail.LogTailResult;
 import org.xwiki.logging.tail.LoggerTail;
 
 /**
  * A queue of {@link LogEvent}s.
+ * <p>
+ * The events are also indexed by position and by level so that the {@link LoggerTail} methods don't have to go through
+ * the whole queue.
  *
  * @version $Id$
  * @since 3.2M3
@@ -44,6 +51,48 @@ public class LogQueue extends ConcurrentLinkedQueue<LogEvent> implements LoggerT
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Random access view of the queue, null when it needs to be rebuilt (after a removal or a deserialization).
+     */
+    private transient volatile LogEventArray events;
+
+    /**
+     * Invalidate the random access view of the queue when an event is removed through the iterator.
+     *
+     * @version $Id$
+     */
+    private final class LogQueueIterator implements Iterator<LogEvent>
+    {
+        private final Iterator<LogEvent> iterator;
+
+        LogQueueIterator(Iterator<LogEvent> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            return this.iterator.next();
+        }
+
+        @Override
+        public void remove()
+        {
+            synchronized (LogQueue.this) {
+                this.iterator.remove();
+
+                LogQueue.this.events = null;
+            }
+        }
+    }
+
     /**
      * Copy the stored log into a passed {@link org.slf4j.Logger}.
      *
@@ -129,70 +178,173 @@ public void log(LogEvent logEvent)
         add(logEvent);
     }
 
-    @Override
-    public LogEvent getLogEvent(int index)
+    private LogEventArray getEvents()
     {
-        int size = size();
-        if (index < 0 || index >= size) {
-            return null;
-        }
+        LogEventArray currentEvents = this.events;
 
-        int i = 0;
-        for (LogEvent log : this) {
-            if (i == index) {
-                return log;
+        if (currentEvents == null) {
+            synchronized (this) {
+                currentEvents = this.events;
+                if (currentEvents == null) {
+                    currentEvents = new LogEventArray();
+                    for (LogEvent logEvent : this) {
+                        currentEvents.add(logEvent);
+                    }
+                    this.events = currentEvents;
+                }
             }
-
-            ++i;
         }
 
-        return null;
+        return currentEvents;
     }
 
+    // Queue
+
     @Override
-    public LogEvent getFirstLogEvent(LogLevel from)
+    public boolean offer(LogEvent logEvent)
     {
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(from) <= 0) {
-                return log;
+        synchronized (this) {
+            super.offer(logEvent);
+
+            LogEventArray currentEvents = this.events;
+            if (currentEvents != null) {
+                currentEvents.add(logEvent);
             }
         }
 
-        return null;
+        return true;
     }
 
     @Override
-    public LogEvent getLastLogEvent(LogLevel from)
+    public boolean addAll(Collection<? extends LogEvent> c)
     {
-        LogEvent logEvent = null;
+        if (c == this) {
+            // Same behavior as ConcurrentLinkedQueue
+            throw new IllegalArgumentException();
+        }
 
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(from) <= 0) {
-                logEvent = log;
-            }
+        boolean modified = false;
+        for (LogEvent logEvent : c) {
+            modified |= offer(logEvent);
+        }
+
+        return modified;
+    }
+
+    @Override
+    public synchronized LogEvent poll()
+    {
+        LogEvent logEvent = super.poll();
+
+        if (logEvent != null) {
+            this.events = null;
         }
 
         return logEvent;
     }
 
+    @Override
+    public synchronized boolean remove(Object o)
+    {
+        return removed(super.remove(o));
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> c)
+    {
+        return removed(super.removeAll(c));
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> c)
+    {
+        return removed(super.retainAll(c));
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super LogEvent> filter)
+    {
+        return removed(super.removeIf(filter));
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+
+        this.events = null;
+    }
+
+    private boolean removed(boolean removed)
+    {
+        if (removed) {
+            this.events = null;
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        return new LogQueueIterator(super.iterator());
+    }
+
+    @Override
+    public int size()
+    {
+        return getEvents().size();
+    }
+
+    // LogTail
+
+    @Override
+    public LogEvent getLogEvent(int index)
+    {
+        return getEvents().get(index);
+    }
+
+    @Override
+    public LogEvent getFirstLogEvent(LogLevel from)
+    {
+        LogEventArray currentEvents = getEvents();
+
+        return currentEvents.get(currentEvents.getLevelIndex().getFirstPosition(from));
+    }
+
+    @Override
+    public LogEvent getLastLogEvent(LogLevel from)
+    {
+        LogEventArray currentEvents = getEvents();
+
+        return currentEvents.get(currentEvents.getLevelIndex().getLastPosition(from));
+    }
+
     private List<LogEvent> getLogEvents(LogLevel level, int offset, int limit, boolean exact)
     {
-        List<LogEvent> levelLogs = limit > 0 ? new ArrayList<>(limit) : new ArrayList<>();
+        LogEventArray currentEvents = getEvents();
 
         int actualIndex = offset >= 0 ? offset : 0;
 
-        int i = 0;
-        for (LogEvent log : this) {
-            if (i >= actualIndex
-                && (level == null || (exact ? log.getLevel() == level : log.getLevel().compareTo(level) <= 0))) {
-                levelLogs.add(log);
-
-                if (limit > 0 && levelLogs.size() == limit) {
-                    break;
-                }
+        List<LogEvent> levelLogs;
+        if (level == null) {
+            int size = currentEvents.size();
+            int end = limit > 0 ? Math.min(size, actualIndex + limit) : size;
+            levelLogs = new ArrayList<>(Math.max(end - actualIndex, 0));
+            for (int i = actualIndex; i < end; ++i) {
+                levelLogs.add(currentEvents.get(i));
+            }
+        } else {
+            int[] positions;
+            if (exact) {
+                positions = currentEvents.getLevelIndex().getPositions(level);
+            } else {
+                positions = currentEvents.getLevelIndex().getPositions(level, actualIndex, limit);
+            }
+            levelLogs = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                levelLogs.add(currentEvents.get(position));
             }
-
-            ++i;
         }
 
         return levelLogs;
@@ -207,13 +359,7 @@ public LogTailResult getLogEvents(LogLevel from, int offset, int limit)
     @Override
     public boolean hasLogLevel(LogLevel from)
     {
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(from) <= 0) {
-                return true;
-            }
-        }
-
-        return false;
+        return getEvents().getLevelIndex().hasLogLevel(from);
     }
 
     /**
@@ -249,13 +395,7 @@ public List<LogEvent> getLogsFrom(LogLevel level)
      */
     public boolean containLogsFrom(LogLevel level)
     {
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(level) <= 0) {
-                return true;
-            }
-        }
-
-        return false;
+        return hasLogLevel(level);
     }
 
     // Logger
@@ -36,4 +36,13 @@
      * @return true if logging about use of deprecated APIs or features is enabled
      */
     boolean isDeprecatedLogEnabled();
+
+    /**
+     * @return the format used to store logs in files, {@code xml} (the default) or {@code binary}
+     * @since 12.4RC1
+     */
+    default String getLoggerTailFormat()
+    {
+        return "xml";
+    }
 }
@@ -45,4 +45,10 @@ public boolean isDeprecatedLogEnabled()
     {
         return this.configurationSource.get().getProperty("logging.deprecated.enabled", true);
     }
+
+    @Override
+    public String getLoggerTailFormat()
+    {
+        return this.configurationSource.get().getProperty("logging.tail.format", "xml");
+    }
 }
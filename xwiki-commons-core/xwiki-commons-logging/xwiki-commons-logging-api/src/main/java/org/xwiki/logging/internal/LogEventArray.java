@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal;
+
+import java.util.Arrays;
+
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * An append only list of {@link LogEvent}s stored in fixed size chunks (so that appending never copies the already
+ * stored events) with an index of the events positions for each level.
+ * <p>
+ * Events are expected to be added by a single thread at a time (or under an external lock) but can be read
+ * concurrently without locking.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class LogEventArray
+{
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile LogEvent[][] chunks = new LogEvent[1][];
+
+    private volatile int size;
+
+    private final LogLevelIndex levelIndex = new LogLevelIndex();
+
+    /**
+     * @param logEvent the log event to add at the end of the list
+     */
+    public void add(LogEvent logEvent)
+    {
+        int index = this.size;
+
+        int chunkIndex = index >>> CHUNK_BITS;
+        LogEvent[][] currentChunks = this.chunks;
+        if (chunkIndex == currentChunks.length) {
+            currentChunks = Arrays.copyOf(currentChunks, currentChunks.length * 2);
+            this.chunks = currentChunks;
+        }
+        LogEvent[] chunk = currentChunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new LogEvent[CHUNK_SIZE];
+            currentChunks[chunkIndex] = chunk;
+        }
+
+        chunk[index & CHUNK_MASK] = logEvent;
+
+        // Publish the new event
+        this.size = index + 1;
+
+        // Index the event once published so that any indexed position can be accessed
+        this.levelIndex.add(index, logEvent.getLevel());
+    }
+
+    /**
+     * @param index the index of the log event
+     * @return the log event at the passed index or null if there is no event at this index
+     */
+    public LogEvent get(int index)
+    {
+        if (index < 0 || index >= this.size) {
+            return null;
+        }
+
+        return this.chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * @return the number of log events
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the positions of the events for each level
+     */
+    public LogLevelIndex getLevelIndex()
+    {
+        return this.levelIndex;
+    }
+}
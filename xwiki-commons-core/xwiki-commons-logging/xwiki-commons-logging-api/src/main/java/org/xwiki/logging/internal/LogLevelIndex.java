@@ -0,0 +1,295 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal;
+
+import java.util.Arrays;
+
+import org.xwiki.logging.LogLevel;
+
+/**
+ * Keep, for each {@link LogLevel}, the (increasing) positions of the log events of this level in a log.
+ * <p>
+ * Positions are expected to be added by a single thread at a time (or under an external lock) but can be read
+ * concurrently without locking.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class LogLevelIndex
+{
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    /**
+     * An append only list of int which can be read without locking while another thread is appending.
+     *
+     * @version $Id$
+     */
+    private static final class IntArray
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private volatile int[] array = new int[INITIAL_CAPACITY];
+
+        private volatile int size;
+
+        void add(int value)
+        {
+            int[] currentArray = this.array;
+            if (this.size == currentArray.length) {
+                currentArray = Arrays.copyOf(currentArray, currentArray.length * 2);
+                this.array = currentArray;
+            }
+
+            currentArray[this.size] = value;
+
+            // Publish the new value
+            ++this.size;
+        }
+
+        int get(int index)
+        {
+            return this.array[index];
+        }
+
+        int size()
+        {
+            return this.size;
+        }
+
+        /**
+         * @param value the value to search
+         * @param currentSize the size of the list to take into account
+         * @return the index of the first value greater or equal to the passed value
+         */
+        int lowerBound(int value, int currentSize)
+        {
+            int[] currentArray = this.array;
+
+            int low = 0;
+            int high = currentSize;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (currentArray[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Receive a range of contiguous positions.
+     *
+     * @param <E> the type of exception thrown by the consumer
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface RangeConsumer<E extends Exception>
+    {
+        /**
+         * @param fromIndex the first position of the range (inclusive)
+         * @param toIndex the last position of the range (exclusive)
+         * @throws E when failing to handle the range
+         */
+        void accept(int fromIndex, int toIndex) throws E;
+    }
+
+    private final IntArray[] positions = new IntArray[LEVELS.length];
+
+    /**
+     * Default constructor.
+     */
+    public LogLevelIndex()
+    {
+        for (int i = 0; i < this.positions.length; ++i) {
+            this.positions[i] = new IntArray();
+        }
+    }
+
+    /**
+     * @param position the position of the log event, greater than the position of all the previously added log events
+     * @param level the level of the log event
+     */
+    public void add(int position, LogLevel level)
+    {
+        this.positions[level.ordinal()].add(position);
+    }
+
+    /**
+     * @param level the level of the log events
+     * @return the number of log events with the passed level
+     */
+    public int size(LogLevel level)
+    {
+        return this.positions[level.ordinal()].size();
+    }
+
+    /**
+     * @param from the lowest severity of the log events
+     * @return true if the log contains events of the passed level or a more severe one
+     */
+    public boolean hasLogLevel(LogLevel from)
+    {
+        for (int i = 0; i <= from.ordinal(); ++i) {
+            if (this.positions[i].size() > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param from the lowest severity of the log events
+     * @return the position of the first log event of the passed level or a more severe one, -1 if there is none
+     */
+    public int getFirstPosition(LogLevel from)
+    {
+        int first = -1;
+        for (int i = 0; i <= from.ordinal(); ++i) {
+            IntArray levelPositions = this.positions[i];
+            if (levelPositions.size() > 0) {
+                int position = levelPositions.get(0);
+                if (first == -1 || position < first) {
+                    first = position;
+                }
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * @param from the lowest severity of the log events
+     * @return the position of the last log event of the passed level or a more severe one, -1 if there is none
+     */
+    public int getLastPosition(LogLevel from)
+    {
+        int last = -1;
+        for (int i = 0; i <= from.ordinal(); ++i) {
+            IntArray levelPositions = this.positions[i];
+            int size = levelPositions.size();
+            if (size > 0) {
+                last = Math.max(last, levelPositions.get(size - 1));
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     * @param level the level of the log events
+     * @return the positions of the log events with exactly the passed level
+     */
+    public int[] getPositions(LogLevel level)
+    {
+        IntArray levelPositions = this.positions[level.ordinal()];
+        int size = levelPositions.size();
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; ++i) {
+            result[i] = levelPositions.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param from the lowest severity of the log events
+     * @param offset the position from which to start looking for log events
+     * @param limit the maximum number of positions to return, 0 or less for no limit
+     * @return the positions of the log events of the passed level or a more severe one
+     */
+    public int[] getPositions(LogLevel from, int offset, int limit)
+    {
+        int levels = from.ordinal() + 1;
+
+        // Find where to start in each level
+        int[] sizes = new int[levels];
+        int[] cursors = new int[levels];
+        int total = 0;
+        for (int i = 0; i < levels; ++i) {
+            sizes[i] = this.positions[i].size();
+            cursors[i] = this.positions[i].lowerBound(offset, sizes[i]);
+            total += sizes[i] - cursors[i];
+        }
+
+        int[] result = new int[limit > 0 ? Math.min(limit, total) : total];
+
+        // Merge the positions of the various levels
+        for (int count = 0; count < result.length; ++count) {
+            int selectedLevel = -1;
+            int selectedPosition = Integer.MAX_VALUE;
+            for (int i = 0; i < levels; ++i) {
+                if (cursors[i] < sizes[i]) {
+                    int position = this.positions[i].get(cursors[i]);
+                    if (position < selectedPosition) {
+                        selectedPosition = position;
+                        selectedLevel = i;
+                    }
+                }
+            }
+
+            result[count] = selectedPosition;
+            ++cursors[selectedLevel];
+        }
+
+        return result;
+    }
+
+    /**
+     * Call the passed consumer for each range of contiguous positions of the log events of the passed level or a more
+     * severe one, so that the log events of each range can be read at once.
+     *
+     * @param <E> the type of exception thrown by the consumer
+     * @param from the lowest severity of the log events, null for all the log events
+     * @param fromIndex the position from which to start looking for log events (inclusive)
+     * @param toIndex the position where to stop looking for log events (exclusive)
+     * @param consumer called for each range of positions
+     * @throws E when the consumer fails
+     */
+    public <E extends Exception> void forEachRange(LogLevel from, int fromIndex, int toIndex,
+        RangeConsumer<E> consumer) throws E
+    {
+        if (from == null) {
+            if (fromIndex < toIndex) {
+                consumer.accept(fromIndex, toIndex);
+            }
+        } else {
+            int[] levelPositions = getPositions(from, fromIndex, toIndex - fromIndex);
+
+            int start = 0;
+            while (start < levelPositions.length && levelPositions[start] < toIndex) {
+                int end = start + 1;
+                while (end < levelPositions.length && levelPositions[end] == levelPositions[end - 1] + 1
+                    && levelPositions[end] < toIndex) {
+                    ++end;
+                }
+
+                consumer.accept(levelPositions[start], levelPositions[end - 1] + 1);
+
+                start = end;
+            }
+        }
+    }
+}
@@ -19,8 +19,14 @@
  */
 package org.xwiki.logging;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.logging.event.LogEvent;
@@ -205,4 +211,115 @@ public void getFirstEvent()
         assertEquals("warn", queue.getFirstLogEvent(LogLevel.WARN).getMessage());
         assertEquals("error", queue.getFirstLogEvent(LogLevel.ERROR).getMessage());
     }
+
+    @Test
+    public void getLastEvent()
+    {
+        LogQueue queue = new LogQueue();
+
+        assertNull(queue.getLastLogEvent());
+        assertNull(queue.getLastLogEvent(LogLevel.ERROR));
+
+        queue.error("error");
+        queue.warn("warn");
+        queue.info("info");
+
+        assertEquals("info", queue.getLastLogEvent().getMessage());
+        assertEquals("info", queue.getLastLogEvent(LogLevel.INFO).getMessage());
+        assertEquals("warn", queue.getLastLogEvent(LogLevel.WARN).getMessage());
+        assertEquals("error", queue.getLastLogEvent(LogLevel.ERROR).getMessage());
+    }
+
+    @Test
+    public void getLogEventsWithOffsetAndLimit()
+    {
+        LogQueue queue = new LogQueue();
+
+        // More than a chunk of events
+        for (int i = 0; i < 3000; ++i) {
+            if (i % 3 == 0) {
+                queue.error("{}", i);
+            } else if (i % 3 == 1) {
+                queue.warn("{}", i);
+            } else {
+                queue.info("{}", i);
+            }
+        }
+
+        assertEquals(3000, queue.size());
+        assertEquals("2500", queue.getLogEvent(2500).getFormattedMessage());
+        assertNull(queue.getLogEvent(3000));
+        assertNull(queue.getLogEvent(-1));
+
+        assertEquals(Arrays.asList("2000", "2001", "2002"), queue.getLogEvents(null, 2000, 3).stream()
+            .map(LogEvent::getFormattedMessage).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("1500", "1501", "1503", "1504"), queue.getLogEvents(LogLevel.WARN, 1500, 4)
+            .stream().map(LogEvent::getFormattedMessage).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("2997", "2998"), queue.getLogEvents(LogLevel.WARN, 2997, -1).stream()
+            .map(LogEvent::getFormattedMessage).collect(Collectors.toList()));
+        assertEquals(1000, queue.getLogs(LogLevel.INFO).size());
+        assertEquals(2000, queue.getLogsFrom(LogLevel.WARN).size());
+        assertEquals(3000, queue.getLogsFrom(LogLevel.TRACE).size());
+        assertEquals("2998", queue.getLastLogEvent(LogLevel.WARN).getFormattedMessage());
+    }
+
+    @Test
+    public void removeEvents()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("error");
+        queue.warn("warn");
+        queue.info("info");
+
+        assertTrue(queue.hasLogLevel(LogLevel.ERROR));
+
+        assertEquals("error", queue.poll().getMessage());
+
+        assertFalse(queue.hasLogLevel(LogLevel.ERROR));
+        assertEquals(2, queue.size());
+        assertEquals("warn", queue.getLogEvent(0).getMessage());
+
+        Iterator<LogEvent> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertFalse(queue.hasLogLevel(LogLevel.WARN));
+        assertEquals("info", queue.getFirstLogEvent().getMessage());
+
+        queue.addAll(Arrays.asList(queue.getLogEvent(0), queue.getLogEvent(0)));
+        assertEquals(3, queue.size());
+
+        queue.removeIf(logEvent -> true);
+
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertNull(queue.getFirstLogEvent(LogLevel.TRACE));
+    }
+
+    @Test
+    public void serialize() throws Exception
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("error");
+        queue.warn("warn");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(stream)) {
+            output.writeObject(queue);
+        }
+
+        LogQueue deserializedQueue;
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(stream.toByteArray()))) {
+            deserializedQueue = (LogQueue) input.readObject();
+        }
+
+        assertEquals(2, deserializedQueue.size());
+        assertEquals("warn", deserializedQueue.getLastLogEvent(LogLevel.WARN).getMessage());
+
+        deserializedQueue.info("info");
+
+        assertEquals("info", deserializedQueue.getLogEvent(2).getMessage());
+    }
 }
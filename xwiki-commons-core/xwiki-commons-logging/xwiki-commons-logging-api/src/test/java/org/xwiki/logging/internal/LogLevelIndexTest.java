@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.logging.LogLevel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Validate {@link LogLevelIndex}.
+ * 
+ * @version $Id$
+ */
+public class LogLevelIndexTest
+{
+    private List<String> ranges(LogLevelIndex index, LogLevel from, int fromIndex, int toIndex)
+    {
+        List<String> ranges = new ArrayList<>();
+        index.forEachRange(from, fromIndex, toIndex, (start, end) -> ranges.add(start + "-" + end));
+
+        return ranges;
+    }
+
+    @Test
+    public void forEachRange()
+    {
+        LogLevelIndex index = new LogLevelIndex();
+        index.add(0, LogLevel.ERROR);
+        index.add(1, LogLevel.WARN);
+        index.add(2, LogLevel.INFO);
+        index.add(3, LogLevel.ERROR);
+        index.add(4, LogLevel.ERROR);
+        index.add(5, LogLevel.DEBUG);
+
+        assertEquals(Arrays.asList("0-6"), ranges(index, null, 0, 6));
+        assertEquals(Arrays.asList("0-2", "3-5"), ranges(index, LogLevel.WARN, 0, 6));
+        assertEquals(Arrays.asList("3-5"), ranges(index, LogLevel.ERROR, 1, 6));
+        assertEquals(Arrays.asList("0-1", "3-4"), ranges(index, LogLevel.ERROR, 0, 4));
+        assertEquals(Arrays.asList(), ranges(index, LogLevel.ERROR, 5, 6));
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.logging.internal.tail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -49,6 +50,7 @@
 import org.xwiki.logging.Logger;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.logging.internal.ListLogTailResult;
+import org.xwiki.logging.internal.LogLevelIndex;
 import org.xwiki.logging.tail.EmptyLogTailResult;
 import org.xwiki.logging.tail.LogTailResult;
 
@@ -65,11 +67,23 @@ public abstract class AbstractFileLoggerTail extends AbstractLoggerTail implemen
 
     protected static final String FILE_EXTENSION = ".log";
 
+    protected static final String INDEX_EXTENSION = ".index";
+
+    /**
+     * The maximum number of bytes to read at once when loading several contiguous log events.
+     */
+    private static final int MAX_READ_SIZE = 1024 * 1024;
+
     @Inject
     protected org.slf4j.Logger componentLogger;
 
     protected final List<IndexEntry> index = new CopyOnWriteArrayList<>();
 
+    /**
+     * The positions in {@link #index} of the log events of each level.
+     */
+    private volatile LogLevelIndex levelIndex = new LogLevelIndex();
+
     protected File logFile;
 
     protected RandomAccessFile logStore;
@@ -143,6 +157,35 @@ public static boolean exist(Path path, String extension)
         return getLogFile(path, extension).exists();
     }
 
+    /**
+     * @param path the base path of the log
+     * @param extension the extension of the file containing the log
+     * @return the last time the log stored at this location was modified, 0 if there is none
+     */
+    public static long lastModified(Path path, String extension)
+    {
+        return getLogFile(path, extension).lastModified();
+    }
+
+    /**
+     * Delete the log stored at this location, if any.
+     *
+     * @param path the base path of the log
+     * @param extension the extension of the file containing the log
+     * @param extensions the extensions of the other files associated with the log
+     * @throws IOException when failing to delete the log files
+     */
+    protected static void delete(Path path, String extension, String... extensions) throws IOException
+    {
+        File logFile = getLogFile(path, extension);
+        Files.deleteIfExists(logFile.toPath());
+
+        String baseName = logFile.getName().substring(0, logFile.getName().length() - extension.length());
+        for (String otherExtension : extensions) {
+            Files.deleteIfExists(new File(logFile.getParentFile(), baseName + otherExtension).toPath());
+        }
+    }
+
     protected static File getLogFile(Path path, String extension)
     {
         File logFile = path.toFile();
@@ -170,8 +213,9 @@ public void initialize(Path path, boolean readonly) throws IOException
             this.logFile.getParentFile().mkdirs();
 
             // The index file
-            this.indexFile = new File(this.logFile.getParentFile(),
-                this.logFile.getName().substring(0, this.logFile.getName().length() - extension.length()) + ".index");
+            String baseName =
+                this.logFile.getName().substring(0, this.logFile.getName().length() - extension.length());
+            this.indexFile = new File(this.logFile.getParentFile(), baseName + INDEX_EXTENSION);
 
             if (!readonly) {
                 // Overwrite the current one if it exist
@@ -238,20 +282,46 @@ protected String getFileExtension()
 
     private void loadIndex()
     {
-        this.index.clear();
+        clearIndex();
 
+        List<IndexEntry> entries = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(this.indexFile))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 int i = line.indexOf(':');
 
-                this.index
-                    .add(new IndexEntry(Long.valueOf(line.substring(0, i)), LogLevel.valueOf(line.substring(i + 1))));
+                entries.add(
+                    new IndexEntry(Long.valueOf(line.substring(0, i)), LogLevel.valueOf(line.substring(i + 1))));
             }
         } catch (Exception e) {
             this.componentLogger.warn("Failed to read log index file [{}]: {}", indexFile,
                 ExceptionUtils.getRootCauseMessage(e));
         }
+
+        // Add all the entries at once to avoid copying the index for each entry
+        synchronized (this) {
+            LogLevelIndex currentLevelIndex = this.levelIndex;
+            for (int i = 0; i < entries.size(); ++i) {
+                currentLevelIndex.add(this.index.size() + i, entries.get(i).level);
+            }
+            this.index.addAll(entries);
+        }
+    }
+
+    private void addIndexEntry(IndexEntry indexEntry)
+    {
+        synchronized (this) {
+            this.levelIndex.add(this.index.size(), indexEntry.level);
+            this.index.add(indexEntry);
+        }
+    }
+
+    private void clearIndex()
+    {
+        synchronized (this) {
+            this.index.clear();
+            this.levelIndex = new LogLevelIndex();
+        }
     }
 
     @Override
@@ -270,7 +340,7 @@ private void writeLog(LogEvent logEvent)
             synchronized (this) {
                 try {
                     IndexEntry indexEntry = new IndexEntry(this.logStore.length(), logEvent.getLevel());
-                    this.index.add(indexEntry);
+                    addIndexEntry(indexEntry);
 
                     // Go to the end of the file
                     this.logStore.seek(indexEntry.position);
@@ -345,7 +415,7 @@ private void checkChanged()
         if (isReadOnly() && !this.index.isEmpty()
             && (!this.logFile.exists() || this.logFile.length() != this.logStoreLength)) {
             // Reset the this log index if something else started modifying the log file
-            this.index.clear();
+            clearIndex();
         }
     }
 
@@ -354,19 +424,18 @@ public LogEvent getFirstLogEvent(LogLevel from)
     {
         checkChanged();
 
-        for (int i = 0; i < this.index.size(); ++i) {
-            IndexEntry indexEntry = getIndexEntry(i);
-            if (indexEntry == null) {
-                // Generally means the log has been modify by another process during the for loop
-                break;
-            }
+        return getLogEventAt(from != null ? this.levelIndex.getFirstPosition(from) : 0);
+    }
 
-            if (isLogLevel(indexEntry, from)) {
-                return getLogEvent(i, indexEntry);
-            }
+    private LogEvent getLogEventAt(int index)
+    {
+        IndexEntry indexEntry = index >= 0 ? getIndexEntry(index) : null;
+        if (indexEntry == null) {
+            // Generally means the log has been modify by another process
+            return null;
         }
 
-        return null;
+        return getLogEvent(index, indexEntry);
     }
 
     private IndexEntry getIndexEntry(int i)
@@ -382,7 +451,7 @@ private IndexEntry getIndexEntry(int i)
                 if (this.logFile.length() == 0) {
                     // Looks like the log file was deleted/emptied by another thread
                     // Reset the index
-                    this.index.clear();
+                    clearIndex();
                 } else {
                     // Looks like the index has been modified by another thread
                     // Try to reload the index
@@ -396,38 +465,19 @@ private IndexEntry getIndexEntry(int i)
         return indexEntry;
     }
 
-    private boolean isLogLevel(IndexEntry indexEntry, LogLevel from)
-    {
-        return from == null || indexEntry.level.compareTo(from) <= 0;
-    }
-
     @Override
     public LogEvent getLastLogEvent(LogLevel from)
     {
         checkChanged();
 
-        IndexEntry lastIndexEntry = null;
-        int lastIndex = -1;
-
-        for (int i = 0; i < this.index.size(); ++i) {
-            IndexEntry indexEntry = getIndexEntry(i);
-            if (indexEntry == null) {
-                // Generally means the log has been modify by another process during the for loop
-                break;
-            }
-
-            if (isLogLevel(indexEntry, from)) {
-                lastIndexEntry = indexEntry;
-                lastIndex = i;
-            }
-        }
-
-        return lastIndexEntry != null ? getLogEvent(lastIndex, lastIndexEntry) : null;
+        return getLogEventAt(from != null ? this.levelIndex.getLastPosition(from) : this.index.size() - 1);
     }
 
     @Override
     public LogTailResult getLogEvents(LogLevel from, int offset, int limit)
     {
+        checkChanged();
+
         synchronized (this) {
             if (this.index.size() <= offset) {
                 return EmptyLogTailResult.INSTANCE;
@@ -459,28 +509,49 @@ private void getLogEvents(int toIndex, int fromIndex, LogLevel from, List<LogEve
         boolean open = open();
 
         try {
-            for (int i = fromIndex; i < toIndex; ++i) {
-                IndexEntry indexEntry = this.index.get(i);
-
-                if (isLogLevel(indexEntry, from)) {
-                    events.add(getLogEvent(i));
-                }
-            }
+            // Read each range of contiguous log events at once
+            this.levelIndex.forEachRange(from, fromIndex, toIndex,
+                (rangeStart, rangeEnd) -> readLogEvents(rangeStart, rangeEnd, events));
         } finally {
             close(open);
         }
     }
 
-    @Override
-    public boolean hasLogLevel(LogLevel from)
+    private void readLogEvents(int fromIndex, int toIndex, List<LogEvent> events) throws IOException
     {
-        for (IndexEntry indexEntry : this.index) {
-            if (isLogLevel(indexEntry, from)) {
-                return true;
+        int chunkStart = fromIndex;
+        while (chunkStart < toIndex) {
+            long startPosition = this.index.get(chunkStart).position;
+
+            // Avoid loading too much in memory at once
+            int chunkEnd = chunkStart + 1;
+            while (chunkEnd < toIndex && this.index.get(chunkEnd).position - startPosition < MAX_READ_SIZE) {
+                ++chunkEnd;
+            }
+
+            long endPosition =
+                this.index.size() > chunkEnd ? this.index.get(chunkEnd).position : this.logStore.length();
+
+            byte[] bytes = new byte[(int) (endPosition - startPosition)];
+            this.logStore.seek(startPosition);
+            this.logStore.readFully(bytes);
+
+            for (int i = chunkStart; i < chunkEnd; ++i) {
+                long position = this.index.get(i).position;
+                long nextPosition = i + 1 < chunkEnd ? this.index.get(i + 1).position : endPosition;
+
+                events.add(read(new ByteArrayInputStream(bytes, (int) (position - startPosition),
+                    (int) (nextPosition - position))));
             }
+
+            chunkStart = chunkEnd;
         }
+    }
 
-        return false;
+    @Override
+    public boolean hasLogLevel(LogLevel from)
+    {
+        return from != null ? this.levelIndex.hasLogLevel(from) : !this.index.isEmpty();
     }
 
     @Override
@@ -518,7 +589,7 @@ public void dispose() throws ComponentLifecycleException
             throw new ComponentLifecycleException("Failed to close the logger", e);
         }
 
-        this.index.clear();
+        clearIndex();
     }
 
     // Abstracts
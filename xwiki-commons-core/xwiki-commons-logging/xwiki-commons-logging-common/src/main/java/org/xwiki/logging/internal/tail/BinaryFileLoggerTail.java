@@ -0,0 +1,670 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal.tail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.Logger;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.internal.ListLogTailResult;
+import org.xwiki.logging.internal.LogLevelIndex;
+import org.xwiki.logging.tail.EmptyLogTailResult;
+import org.xwiki.logging.tail.LogTailResult;
+import org.xwiki.xstream.internal.SafeXStream;
+
+/**
+ * Read and write the log in a compact binary format.
+ * <p>
+ * The log is made of three append only files:
+ * <ul>
+ * <li>{@code .bin}: a header followed by the log events, each one stored as its size followed by its content (see
+ * {@link BinaryLogEventSerializer})</li>
+ * <li>{@code .binindex}: a fixed size entry (position in the {@code .bin} file and level) for each log event, loaded
+ * in memory (as an array of positions and a {@link LogLevelIndex}) when the log is read</li>
+ * <li>{@code .bindict}: the strings shared by the log events (see {@link LogStringDictionary})</li>
+ * </ul>
+ * The writes are buffered and flushed together (dictionary, log and then index so that an index entry never references
+ * incomplete data) when the buffers are full, when the last flush is too old (even if no new log event is received),
+ * before a read and when the log is closed.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Component(roles = BinaryFileLoggerTail.class)
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+public class BinaryFileLoggerTail extends AbstractLoggerTail implements Disposable
+{
+    /**
+     * The extension of the file containing the log events.
+     */
+    public static final String FILE_EXTENSION = ".bin";
+
+    private static final String INDEX_EXTENSION = ".binindex";
+
+    private static final String DICTIONARY_EXTENSION = ".bindict";
+
+    private static final String FAILED_STORE_LOG = "Failed to store the log";
+
+    private static final String FAILED_RETRIEVE_LOG = "Failed to retrieve log for [{}]";
+
+    private static final int MAGIC = 0x58574C47;
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = Integer.BYTES + 1;
+
+    /**
+     * The size of an index entry: the position of the log event (long) and its level (int).
+     */
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum time in milliseconds before the buffered log events are written to the files.
+     */
+    private static final long FLUSH_DELAY = 1000;
+
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    @Inject
+    private org.slf4j.Logger componentLogger;
+
+    @Inject
+    private SafeXStream xstream;
+
+    private File logFile;
+
+    private File indexFile;
+
+    private File dictionaryFile;
+
+    private boolean readonly;
+
+    private FileChannel logStore;
+
+    private FileChannel indexStore;
+
+    private FileChannel dictionaryStore;
+
+    private ByteBuffer logBuffer;
+
+    private ByteBuffer indexBuffer;
+
+    private long logStoreSize;
+
+    private long lastFlush;
+
+    private final LogFlushTask flushTask = new LogFlushTask(this::flushIfIdle);
+
+    private LogStringDictionary dictionary;
+
+    private BinaryLogEventSerializer serializer;
+
+    /**
+     * The position of each log event in the log file.
+     */
+    private long[] positions;
+
+    private int size;
+
+    private LogLevelIndex levelIndex;
+
+    private class BinaryFileLoggerTailIterator implements Iterator<LogEvent>
+    {
+        private int current;
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.current < size();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return getLogEvent(this.current++);
+        }
+    }
+
+    /**
+     * @param path the base path of the log
+     * @return true of a log has been stored at this location
+     */
+    public static boolean exist(Path path)
+    {
+        return AbstractFileLoggerTail.exist(path, FILE_EXTENSION);
+    }
+
+    /**
+     * @param path the base path of the log
+     * @return the last time the log stored at this location was modified, 0 if there is none
+     */
+    public static long lastModified(Path path)
+    {
+        return AbstractFileLoggerTail.lastModified(path, FILE_EXTENSION);
+    }
+
+    /**
+     * Delete the log stored at this location, if any.
+     *
+     * @param path the base path of the log
+     * @throws IOException when failing to delete the log files
+     */
+    public static void delete(Path path) throws IOException
+    {
+        AbstractFileLoggerTail.delete(path, FILE_EXTENSION, INDEX_EXTENSION, DICTIONARY_EXTENSION);
+    }
+
+    /**
+     * @param path the base path of the log
+     * @param readonly true of the log is readonly
+     * @throws IOException when failing to create the log files
+     */
+    public void initialize(Path path, boolean readonly) throws IOException
+    {
+        synchronized (this) {
+            this.flushTask.cancel();
+
+            this.logFile = AbstractFileLoggerTail.getLogFile(path, FILE_EXTENSION);
+            this.logFile.getParentFile().mkdirs();
+
+            String baseName =
+                this.logFile.getName().substring(0, this.logFile.getName().length() - FILE_EXTENSION.length());
+            this.indexFile = new File(this.logFile.getParentFile(), baseName + INDEX_EXTENSION);
+            this.dictionaryFile = new File(this.logFile.getParentFile(), baseName + DICTIONARY_EXTENSION);
+
+            this.readonly = readonly;
+
+            reset();
+
+            if (!readonly) {
+                // Overwrite the current log if it exist
+                this.logStore = openWrite(this.logFile);
+                this.indexStore = openWrite(this.indexFile);
+                this.dictionaryStore = openWrite(this.dictionaryFile);
+
+                this.logBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+                this.indexBuffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 1024);
+
+                this.logBuffer.putInt(MAGIC);
+                this.logBuffer.put(VERSION);
+                this.logStoreSize = HEADER_SIZE;
+                this.lastFlush = System.currentTimeMillis();
+
+                // Don't wait for the next log event to write the buffered ones
+                this.flushTask.start(FLUSH_DELAY);
+            } else {
+                refresh();
+            }
+        }
+    }
+
+    private static FileChannel openWrite(File file) throws IOException
+    {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void reset()
+    {
+        this.positions = new long[1024];
+        this.size = 0;
+        this.levelIndex = new LogLevelIndex();
+        this.dictionary = new LogStringDictionary();
+        this.serializer = new BinaryLogEventSerializer(this.xstream, this.dictionary);
+    }
+
+    private void addEntry(long position, LogLevel level)
+    {
+        if (this.size == this.positions.length) {
+            this.positions = Arrays.copyOf(this.positions, this.positions.length * 2);
+        }
+        this.positions[this.size] = position;
+        this.levelIndex.add(this.size, level);
+        ++this.size;
+    }
+
+    /**
+     * Load the log events added by another writer since the last call.
+     */
+    private void refresh()
+    {
+        if (!this.readonly) {
+            return;
+        }
+
+        long indexSize = this.indexFile.length();
+        long loadedSize = (long) this.size * INDEX_ENTRY_SIZE;
+
+        if (indexSize < loadedSize) {
+            // The log has been overwritten
+            reset();
+            loadedSize = 0;
+        }
+
+        // Ignore the end of an entry being written
+        indexSize -= indexSize % INDEX_ENTRY_SIZE;
+
+        if (indexSize > loadedSize) {
+            loadIndex(loadedSize, indexSize);
+        }
+
+        // The log is always written before the index
+        if (this.size > 0 && this.logFile.length() <= this.positions[this.size - 1]) {
+            // Looks like the log file was deleted/emptied by something else
+            reset();
+        }
+    }
+
+    private void loadIndex(long loadedSize, long indexSize)
+    {
+        try {
+            // The log is always written before the index so its header is there
+            if (loadedSize == 0 && !checkHeader()) {
+                this.componentLogger.warn("Unsupported log file [{}]", this.logFile);
+
+                return;
+            }
+
+            // The dictionary is always written before the index
+            try (FileChannel channel = FileChannel.open(this.dictionaryFile.toPath(), StandardOpenOption.READ)) {
+                this.dictionary.load(channel);
+            }
+
+            try (FileChannel channel = FileChannel.open(this.indexFile.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, loadedSize, indexSize - loadedSize);
+                while (map.hasRemaining()) {
+                    addEntry(map.getLong(), LEVELS[map.getInt()]);
+                }
+            }
+        } catch (Exception e) {
+            this.componentLogger.warn("Failed to read log index file [{}]: {}", this.indexFile,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private boolean checkHeader() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(this.logFile.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+        }
+
+        return header.getInt(0) == MAGIC && header.get(Integer.BYTES) == VERSION;
+    }
+
+    private boolean open() throws IOException
+    {
+        if (this.logStore == null) {
+            this.logStore = FileChannel.open(this.logFile.toPath(), StandardOpenOption.READ);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void close(boolean open) throws IOException
+    {
+        if (open) {
+            this.logStore.close();
+            this.logStore = null;
+        }
+    }
+
+    @Override
+    public void log(LogEvent logEvent)
+    {
+        // We can't store this log since it has a good chance of creating a infinite loop
+        // We don't use #equals for performance reason, it works because it's the exact same String instance
+        if (FAILED_STORE_LOG != logEvent.getMessage()) {
+            synchronized (this) {
+                if (this.logBuffer != null) {
+                    try {
+                        writeLog(logEvent);
+                    } catch (Exception e) {
+                        this.componentLogger.error(Logger.ROOT_MARKER, FAILED_STORE_LOG, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeLog(LogEvent logEvent) throws IOException
+    {
+        byte[] event = this.serializer.serialize(logEvent);
+        int eventSize = event.length;
+
+        if (this.logBuffer.remaining() < Integer.BYTES + eventSize) {
+            flushBuffers();
+        }
+
+        long position = this.logStoreSize;
+        if (this.logBuffer.remaining() < Integer.BYTES + eventSize) {
+            // Too big to be buffered
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + eventSize);
+            buffer.putInt(eventSize);
+            buffer.put(event);
+            buffer.flip();
+            write(buffer, this.logStore);
+        } else {
+            this.logBuffer.putInt(eventSize);
+            this.logBuffer.put(event);
+        }
+        this.logStoreSize += Integer.BYTES + eventSize;
+
+        if (!this.indexBuffer.hasRemaining()) {
+            flushBuffers();
+        }
+        this.indexBuffer.putLong(position);
+        this.indexBuffer.putInt(logEvent.getLevel().ordinal());
+
+        addEntry(position, logEvent.getLevel());
+
+        // Group commit
+        if (System.currentTimeMillis() - this.lastFlush > FLUSH_DELAY) {
+            flushBuffers();
+        }
+    }
+
+    private void flushIfIdle()
+    {
+        synchronized (this) {
+            if (this.indexBuffer != null && this.indexBuffer.position() > 0
+                && System.currentTimeMillis() - this.lastFlush >= FLUSH_DELAY) {
+                try {
+                    flushBuffers();
+                } catch (Exception e) {
+                    this.componentLogger.error(Logger.ROOT_MARKER, FAILED_STORE_LOG, e);
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer, FileChannel channel) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void flushBuffers() throws IOException
+    {
+        if (this.logBuffer != null) {
+            // Make sure the index never reference data which is not yet written
+            this.dictionary.flush(this.dictionaryStore);
+
+            this.logBuffer.flip();
+            write(this.logBuffer, this.logStore);
+            this.logBuffer.clear();
+
+            this.indexBuffer.flip();
+            write(this.indexBuffer, this.indexStore);
+            this.indexBuffer.clear();
+
+            this.lastFlush = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public LogEvent getLogEvent(int index)
+    {
+        synchronized (this) {
+            refresh();
+
+            return readLog(index);
+        }
+    }
+
+    private LogEvent readLog(int index)
+    {
+        if (index < 0 || index >= this.size) {
+            return null;
+        }
+
+        try {
+            flushBuffers();
+
+            boolean open = open();
+
+            try {
+                return readLog(this.positions[index]);
+            } finally {
+                close(open);
+            }
+        } catch (Exception e) {
+            this.componentLogger.error(FAILED_RETRIEVE_LOG, this.logFile, e);
+
+            return null;
+        }
+    }
+
+    private LogEvent readLog(long position) throws IOException
+    {
+        ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+        read(sizeBuffer, position);
+
+        ByteBuffer event = ByteBuffer.allocate(sizeBuffer.getInt(0));
+        read(event, position + Integer.BYTES);
+
+        return this.serializer.unserialize(event.array());
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (this.logStore.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file [" + this.logFile + "]");
+            }
+        }
+    }
+
+    @Override
+    public LogEvent getFirstLogEvent(LogLevel from)
+    {
+        synchronized (this) {
+            refresh();
+
+            return readLog(from != null ? this.levelIndex.getFirstPosition(from) : 0);
+        }
+    }
+
+    @Override
+    public LogEvent getLastLogEvent(LogLevel from)
+    {
+        synchronized (this) {
+            refresh();
+
+            return readLog(from != null ? this.levelIndex.getLastPosition(from) : this.size - 1);
+        }
+    }
+
+    @Override
+    public LogTailResult getLogEvents(LogLevel from, int offset, int limit)
+    {
+        synchronized (this) {
+            refresh();
+
+            if (this.size <= offset) {
+                return EmptyLogTailResult.INSTANCE;
+            }
+
+            int fromIndex = Math.max(offset, 0);
+            int toIndex = fromIndex + limit;
+            if (toIndex <= fromIndex || toIndex > this.size) {
+                toIndex = this.size;
+            }
+
+            List<LogEvent> events = new ArrayList<>(toIndex - fromIndex);
+
+            try {
+                flushBuffers();
+
+                boolean open = open();
+
+                try {
+                    // Read each range of contiguous log events at once
+                    this.levelIndex.forEachRange(from, fromIndex, toIndex,
+                        (rangeStart, rangeEnd) -> readLogs(rangeStart, rangeEnd, events));
+                } finally {
+                    close(open);
+                }
+            } catch (Exception e) {
+                this.componentLogger.error(FAILED_RETRIEVE_LOG, this.logFile, e);
+            }
+
+            return new ListLogTailResult(events);
+        }
+    }
+
+    private void readLogs(int fromIndex, int toIndex, List<LogEvent> events) throws IOException
+    {
+        int chunkStart = fromIndex;
+        while (chunkStart < toIndex) {
+            long startPosition = this.positions[chunkStart];
+
+            // Avoid loading too much in memory at once
+            int chunkEnd = chunkStart + 1;
+            while (chunkEnd < toIndex && this.positions[chunkEnd] - startPosition < BUFFER_SIZE) {
+                ++chunkEnd;
+            }
+
+            long endPosition = chunkEnd < this.size ? this.positions[chunkEnd] : this.logStore.size();
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (endPosition - startPosition));
+            read(buffer, startPosition);
+            buffer.flip();
+
+            for (int i = chunkStart; i < chunkEnd; ++i) {
+                buffer.position((int) (this.positions[i] - startPosition));
+                byte[] event = new byte[buffer.getInt()];
+                buffer.get(event);
+
+                events.add(this.serializer.unserialize(event));
+            }
+
+            chunkStart = chunkEnd;
+        }
+    }
+
+    @Override
+    public boolean hasLogLevel(LogLevel from)
+    {
+        synchronized (this) {
+            refresh();
+
+            return from != null ? this.levelIndex.hasLogLevel(from) : this.size > 0;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        synchronized (this) {
+            refresh();
+
+            return this.size;
+        }
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        return new BinaryFileLoggerTailIterator();
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        synchronized (this) {
+            flushBuffers();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this) {
+            this.flushTask.cancel();
+
+            flushBuffers();
+
+            this.logBuffer = null;
+            this.indexBuffer = null;
+
+            closeStore(this.logStore);
+            this.logStore = null;
+            closeStore(this.indexStore);
+            this.indexStore = null;
+            closeStore(this.dictionaryStore);
+            this.dictionaryStore = null;
+
+            // Switch to read only mode to follow the log if it's written again
+            this.readonly = true;
+        }
+    }
+
+    private void closeStore(FileChannel store) throws IOException
+    {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        try {
+            close();
+        } catch (Exception e) {
+            throw new ComponentLifecycleException("Failed to close the logger", e);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal.tail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Marker;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogUtils;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.marker.BeginTranslationMarker;
+import org.xwiki.logging.marker.EndTranslationMarker;
+import org.xwiki.logging.marker.TranslationMarker;
+import org.xwiki.xstream.internal.SafeXStream;
+
+/**
+ * Write and read {@link LogEvent}s in a compact binary format.
+ * <p>
+ * The message format and translation keys are stored in a {@link LogStringDictionary}, the most common argument types
+ * are written directly and anything else (custom markers, other argument types, throwables) is stored as XStream XML.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class BinaryLogEventSerializer
+{
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private static final byte MARKER_NONE = 0;
+
+    private static final byte MARKER_TRANSLATION = 1;
+
+    private static final byte MARKER_BEGIN_TRANSLATION = 2;
+
+    private static final byte MARKER_END_TRANSLATION = 3;
+
+    private static final byte MARKER_OBJECT = 4;
+
+    private static final byte VALUE_NULL = 0;
+
+    private static final byte VALUE_STRING = 1;
+
+    private static final byte VALUE_INTEGER = 2;
+
+    private static final byte VALUE_LONG = 3;
+
+    private static final byte VALUE_BOOLEAN = 4;
+
+    private static final byte VALUE_DOUBLE = 5;
+
+    private static final byte VALUE_OBJECT = 6;
+
+    private final SafeXStream xstream;
+
+    private final LogStringDictionary dictionary;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    /**
+     * @param xstream the XStream instance used to serialize the values which don't have a dedicated binary format
+     * @param dictionary the dictionary used to store the message formats and translation keys
+     */
+    BinaryLogEventSerializer(SafeXStream xstream, LogStringDictionary dictionary)
+    {
+        this.xstream = xstream;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param logEvent the event to serialize
+     * @return the serialized event
+     * @throws IOException when failing to serialize the event
+     */
+    byte[] serialize(LogEvent logEvent) throws IOException
+    {
+        this.buffer.reset();
+
+        write(logEvent, new DataOutputStream(this.buffer));
+
+        return this.buffer.toByteArray();
+    }
+
+    /**
+     * @param bytes the serialized event
+     * @return the event
+     * @throws IOException when failing to unserialize the event
+     */
+    LogEvent unserialize(byte[] bytes) throws IOException
+    {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private void write(LogEvent logEvent, DataOutput output) throws IOException
+    {
+        output.writeByte(logEvent.getLevel().ordinal());
+        output.writeLong(logEvent.getTimeStamp());
+        writeDictionaryString(logEvent.getMessage(), output);
+        writeMarker(logEvent.getMarker(), output);
+
+        Object[] arguments = logEvent.getArgumentArray();
+        if (arguments != null) {
+            output.writeInt(arguments.length);
+            for (Object argument : arguments) {
+                writeValue(argument, output);
+            }
+        } else {
+            output.writeInt(-1);
+        }
+
+        writeObject(logEvent.getThrowable(), output);
+    }
+
+    private LogEvent read(DataInput input) throws IOException
+    {
+        LogLevel level = LEVELS[input.readByte()];
+        long timeStamp = input.readLong();
+        String message = readDictionaryString(input);
+        Marker marker = readMarker(input);
+
+        Object[] arguments;
+        int argumentsLength = input.readInt();
+        if (argumentsLength >= 0) {
+            arguments = new Object[argumentsLength];
+            for (int i = 0; i < argumentsLength; ++i) {
+                arguments[i] = readValue(input);
+            }
+        } else {
+            arguments = null;
+        }
+
+        Throwable throwable = (Throwable) readObject(input);
+
+        return LogUtils.newLogEvent(marker, level, message, arguments, throwable, timeStamp);
+    }
+
+    private void writeDictionaryString(String value, DataOutput output) throws IOException
+    {
+        output.writeInt(value != null ? this.dictionary.getIdentifier(value) : -1);
+    }
+
+    private String readDictionaryString(DataInput input) throws IOException
+    {
+        int identifier = input.readInt();
+
+        return identifier >= 0 ? this.dictionary.get(identifier) : null;
+    }
+
+    private void writeMarker(Marker marker, DataOutput output) throws IOException
+    {
+        if (marker == null) {
+            output.writeByte(MARKER_NONE);
+        } else if (marker.getClass() == TranslationMarker.class && !marker.hasReferences()) {
+            output.writeByte(MARKER_TRANSLATION);
+            writeDictionaryString(((TranslationMarker) marker).getTranslationKey(), output);
+        } else if (marker.getClass() == BeginTranslationMarker.class && isSingleReference(marker)) {
+            output.writeByte(MARKER_BEGIN_TRANSLATION);
+            writeDictionaryString(((TranslationMarker) marker).getTranslationKey(), output);
+        } else if (marker.getClass() == EndTranslationMarker.class && isSingleReference(marker)) {
+            output.writeByte(MARKER_END_TRANSLATION);
+            writeDictionaryString(((TranslationMarker) marker).getTranslationKey(), output);
+        } else {
+            output.writeByte(MARKER_OBJECT);
+            writeObject(marker, output);
+        }
+    }
+
+    private boolean isSingleReference(Marker marker)
+    {
+        int references = 0;
+        for (Marker reference : (Iterable<Marker>) marker::iterator) {
+            if (reference != LogEvent.MARKER_BEGIN && reference != LogEvent.MARKER_END) {
+                return false;
+            }
+            ++references;
+        }
+
+        return references == 1;
+    }
+
+    private Marker readMarker(DataInput input) throws IOException
+    {
+        switch (input.readByte()) {
+            case MARKER_TRANSLATION:
+                return new TranslationMarker(readDictionaryString(input));
+            case MARKER_BEGIN_TRANSLATION:
+                return new BeginTranslationMarker(readDictionaryString(input));
+            case MARKER_END_TRANSLATION:
+                return new EndTranslationMarker(readDictionaryString(input));
+            case MARKER_OBJECT:
+                return (Marker) readObject(input);
+            default:
+                return null;
+        }
+    }
+
+    private void writeValue(Object value, DataOutput output) throws IOException
+    {
+        if (value == null) {
+            output.writeByte(VALUE_NULL);
+        } else if (value.getClass() == String.class) {
+            output.writeByte(VALUE_STRING);
+            writeString((String) value, output);
+        } else if (value.getClass() == Integer.class) {
+            output.writeByte(VALUE_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value.getClass() == Long.class) {
+            output.writeByte(VALUE_LONG);
+            output.writeLong((Long) value);
+        } else if (value.getClass() == Boolean.class) {
+            output.writeByte(VALUE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value.getClass() == Double.class) {
+            output.writeByte(VALUE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else {
+            output.writeByte(VALUE_OBJECT);
+            writeObject(value, output);
+        }
+    }
+
+    private Object readValue(DataInput input) throws IOException
+    {
+        Object value;
+
+        switch (input.readByte()) {
+            case VALUE_STRING:
+                value = readString(input);
+                break;
+            case VALUE_INTEGER:
+                value = input.readInt();
+                break;
+            case VALUE_LONG:
+                value = input.readLong();
+                break;
+            case VALUE_BOOLEAN:
+                value = input.readBoolean();
+                break;
+            case VALUE_DOUBLE:
+                value = input.readDouble();
+                break;
+            case VALUE_OBJECT:
+                value = readObject(input);
+                break;
+            default:
+                value = null;
+        }
+
+        return value;
+    }
+
+    private void writeObject(Object value, DataOutput output) throws IOException
+    {
+        writeString(value != null ? this.xstream.toXML(value) : null, output);
+    }
+
+    private Object readObject(DataInput input) throws IOException
+    {
+        String xml = readString(input);
+
+        return xml != null ? this.xstream.fromXML(xml) : null;
+    }
+
+    private void writeString(String value, DataOutput output) throws IOException
+    {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            output.writeInt(-1);
+        }
+    }
+
+    private String readString(DataInput input) throws IOException
+    {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal.tail;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Regularly write the buffered log events of a log, whether it receives new log events or not.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class LogFlushTask
+{
+    /**
+     * Shared by all the logs since the flush itself is very quick.
+     */
+    private static ScheduledExecutorService executor;
+
+    private final Runnable flush;
+
+    private Future<?> future;
+
+    /**
+     * @param flush the flush of the log buffers
+     */
+    public LogFlushTask(Runnable flush)
+    {
+        this.flush = flush;
+    }
+
+    private static synchronized ScheduledExecutorService getExecutor()
+    {
+        if (executor == null) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("XWiki log flush")
+                .daemon(true).priority(Thread.MIN_PRIORITY).build();
+            ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+            // Don't keep closed logs in the queue until their next scheduled execution
+            scheduledExecutor.setRemoveOnCancelPolicy(true);
+
+            executor = scheduledExecutor;
+        }
+
+        return executor;
+    }
+
+    /**
+     * @param delay the delay between two flushes in milliseconds
+     */
+    public synchronized void start(long delay)
+    {
+        cancel();
+
+        this.future = getExecutor().scheduleWithFixedDelay(this.flush, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop flushing the log.
+     */
+    public synchronized void cancel()
+    {
+        if (this.future != null) {
+            this.future.cancel(false);
+            this.future = null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal.tail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append only file associating an identifier to each distinct string (message formats, translation keys) used in a
+ * binary log so that each string is stored only once.
+ * <p>
+ * Each entry is stored as the size of the UTF-8 bytes (int) followed by the bytes. The identifier of an entry is its
+ * index in the file.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+final class LogStringDictionary
+{
+    private static final int INT_SIZE = Integer.BYTES;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private final Map<String, Integer> identifiers = new HashMap<>();
+
+    /**
+     * The entries not yet written to the file.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(1024);
+
+    /**
+     * The position in the file of the first entry not yet loaded.
+     */
+    private long loadedPosition;
+
+    /**
+     * @param value the string
+     * @return the identifier of the string, added to the dictionary if it's not already there
+     */
+    int getIdentifier(String value)
+    {
+        Integer identifier = this.identifiers.get(value);
+
+        if (identifier == null) {
+            identifier = this.strings.size();
+
+            this.strings.add(value);
+            this.identifiers.put(value, identifier);
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (this.pending.remaining() < INT_SIZE + bytes.length) {
+                ByteBuffer newPending =
+                    ByteBuffer.allocate(Math.max(this.pending.capacity() * 2, this.pending.position() + INT_SIZE
+                        + bytes.length));
+                this.pending.flip();
+                newPending.put(this.pending);
+                this.pending = newPending;
+            }
+            this.pending.putInt(bytes.length);
+            this.pending.put(bytes);
+        }
+
+        return identifier;
+    }
+
+    /**
+     * @param identifier the identifier of the string
+     * @return the string associated with the passed identifier, null if it's unknown
+     */
+    String get(int identifier)
+    {
+        return identifier < this.strings.size() ? this.strings.get(identifier) : null;
+    }
+
+    /**
+     * Load the entries added to the file since the last call.
+     *
+     * @param channel the channel of the dictionary file
+     * @throws IOException when failing to read the file
+     */
+    void load(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        if (size <= this.loadedPosition) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - this.loadedPosition));
+        while (buffer.hasRemaining() && channel.read(buffer, this.loadedPosition + buffer.position()) >= 0) {
+            // Continue until the buffer is full
+        }
+        buffer.flip();
+
+        // Only read complete entries
+        while (buffer.remaining() >= INT_SIZE && buffer.remaining() >= INT_SIZE + buffer.getInt(buffer.position())) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+
+            this.strings.add(new String(bytes, StandardCharsets.UTF_8));
+            this.loadedPosition += INT_SIZE + bytes.length;
+        }
+    }
+
+    /**
+     * Write the pending entries to the file.
+     *
+     * @param channel the channel of the dictionary file
+     * @throws IOException when failing to write the file
+     */
+    void flush(FileChannel channel) throws IOException
+    {
+        if (this.pending.position() > 0) {
+            this.pending.flip();
+            while (this.pending.hasRemaining()) {
+                channel.write(this.pending);
+            }
+            this.pending.clear();
+        }
+    }
+}
@@ -70,6 +70,28 @@ public static boolean exist(Path path)
         return exist(path, FILE_EXTENSION);
     }
 
+    /**
+     * @param path the base path of the log
+     * @return the last time the log stored at this location was modified, 0 if there is none
+     * @since 12.4RC1
+     */
+    public static long lastModified(Path path)
+    {
+        return lastModified(path, FILE_EXTENSION);
+    }
+
+    /**
+     * Delete the log stored at this location, if any.
+     *
+     * @param path the base path of the log
+     * @throws IOException when failing to delete the log files
+     * @since 12.4RC1
+     */
+    public static void delete(Path path) throws IOException
+    {
+        delete(path, FILE_EXTENSION, INDEX_EXTENSION);
+    }
+
     @Override
     protected LogEvent read(Reader reader)
     {
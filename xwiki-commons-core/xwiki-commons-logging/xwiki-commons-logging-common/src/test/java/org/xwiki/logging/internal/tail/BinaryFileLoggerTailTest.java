@@ -0,0 +1,340 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal.tail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.marker.BeginTranslationMarker;
+import org.xwiki.logging.marker.TranslationMarker;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.XWikiTempDir;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.xstream.internal.SafeXStream;
+import org.xwiki.xstream.internal.XStreamUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link BinaryFileLoggerTail}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList({ SafeXStream.class, XStreamUtils.class })
+public class BinaryFileLoggerTailTest
+{
+    @InjectMockComponents
+    private BinaryFileLoggerTail tail;
+
+    @InjectMockComponents
+    private BinaryFileLoggerTail reader;
+
+    @XWikiTempDir
+    private File tmpDir;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(org.xwiki.test.LogLevel.WARN);
+
+    @AfterEach
+    public void afterEach() throws Exception
+    {
+        this.tail.close();
+    }
+
+    private File getLogFile()
+    {
+        return new File(this.tmpDir, "log" + BinaryFileLoggerTail.FILE_EXTENSION);
+    }
+
+    @Test
+    public void writeread() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.error("error0");
+        this.tail.error("error1");
+
+        assertEquals("error0", this.tail.getLogEvent(0).getMessage());
+        assertEquals("error1", this.tail.getLogEvent(1).getMessage());
+        assertNull(this.tail.getLogEvent(2));
+        assertTrue(BinaryFileLoggerTail.exist(new File(this.tmpDir, "log").toPath()));
+    }
+
+    @Test
+    public void writereadArguments() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        Exception exception = new Exception("exception");
+
+        this.tail.error(new TranslationMarker("translation.key"), "message {} {} {} {} {} {} {}", "string", 42, 42L,
+            true, 4.2, null, Arrays.asList("list"), exception);
+        this.tail.info(new BeginTranslationMarker("begin.key"), "message {} {} {} {} {} {} {}", "string", 42, 42L,
+            true, 4.2, null, Arrays.asList("list"));
+
+        this.tail.close();
+
+        this.reader.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        LogEvent event = this.reader.getLogEvent(0);
+        assertEquals(LogLevel.ERROR, event.getLevel());
+        assertEquals("message {} {} {} {} {} {} {}", event.getMessage());
+        assertEquals("translation.key", ((TranslationMarker) event.getMarker()).getTranslationKey());
+        assertArrayEquals(new Object[] { "string", 42, 42L, true, 4.2, null, Arrays.asList("list") },
+            event.getArgumentArray());
+        assertEquals("exception", event.getThrowable().getMessage());
+
+        event = this.reader.getLogEvent(1);
+        assertEquals(LogLevel.INFO, event.getLevel());
+        assertEquals(BeginTranslationMarker.class, event.getMarker().getClass());
+        assertEquals("begin.key", ((TranslationMarker) event.getMarker()).getTranslationKey());
+        assertTrue(event.getMarker().contains(LogEvent.MARKER_BEGIN));
+        assertNull(event.getThrowable());
+    }
+
+    @Test
+    public void readonly() throws IOException, ComponentLifecycleException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.error("error0");
+        this.tail.error("error1");
+
+        this.tail.dispose();
+
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        assertEquals("error0", this.tail.getLogEvent(0).getMessage());
+        assertEquals("error1", this.tail.getLogEvent(1).getMessage());
+        assertEquals(2, this.tail.getLogEvents(0, -1).stream().count());
+
+        this.tail.error("error2");
+
+        assertNull(this.tail.getLogEvent(2));
+    }
+
+    @Test
+    public void readWhileWriting() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+        this.reader.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        this.tail.error("error0");
+
+        // Not flushed yet
+        assertEquals(0, this.reader.size());
+
+        this.tail.flush();
+
+        assertEquals(1, this.reader.size());
+        assertEquals("error0", this.reader.getLogEvent(0).getMessage());
+
+        this.tail.warn("warn0");
+        this.tail.error("error1");
+        this.tail.flush();
+
+        assertEquals(3, this.reader.size());
+        assertEquals("error1", this.reader.getLastLogEvent(LogLevel.ERROR).getMessage());
+        assertEquals("warn0", this.reader.getLogEvent(1).getMessage());
+
+        // Overwrite the log
+        this.tail.close();
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+        this.tail.info("info0");
+        this.tail.flush();
+
+        assertEquals(1, this.reader.size());
+        assertEquals("info0", this.reader.getLogEvent(0).getMessage());
+        assertFalse(this.reader.hasLogLevel(LogLevel.WARN));
+    }
+
+    @Test
+    public void flushWhenIdle() throws IOException, InterruptedException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+        this.reader.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        this.tail.error("error0");
+
+        // No other log event is needed to write the buffered one
+        for (int i = 0; i < 100 && this.reader.size() == 0; ++i) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(1, this.reader.size());
+        assertEquals("error0", this.reader.getLogEvent(0).getMessage());
+    }
+
+    @Test
+    public void getFirstLogEvent() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        assertNull(this.tail.getFirstLogEvent());
+        assertNull(this.tail.getFirstLogEvent(LogLevel.ERROR));
+
+        this.tail.info("info0");
+        this.tail.info("info1");
+        this.tail.warn("warn0");
+        this.tail.warn("warn1");
+        this.tail.error("error0");
+        this.tail.error("error1");
+
+        assertEquals("info0", this.tail.getFirstLogEvent().getMessage());
+        assertEquals("info0", this.tail.getFirstLogEvent(LogLevel.TRACE).getMessage());
+        assertEquals("info0", this.tail.getFirstLogEvent(LogLevel.INFO).getMessage());
+        assertEquals("warn0", this.tail.getFirstLogEvent(LogLevel.WARN).getMessage());
+        assertEquals("error0", this.tail.getFirstLogEvent(LogLevel.ERROR).getMessage());
+    }
+
+    @Test
+    public void getLastLogEvent() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        assertNull(this.tail.getLastLogEvent());
+        assertNull(this.tail.getLastLogEvent(LogLevel.ERROR));
+
+        this.tail.error("error0");
+        this.tail.error("error1");
+        this.tail.warn("warn0");
+        this.tail.warn("warn1");
+        this.tail.info("info0");
+        this.tail.info("info1");
+
+        assertEquals("info1", this.tail.getLastLogEvent().getMessage());
+        assertEquals("info1", this.tail.getLastLogEvent(LogLevel.TRACE).getMessage());
+        assertEquals("info1", this.tail.getLastLogEvent(LogLevel.INFO).getMessage());
+        assertEquals("warn1", this.tail.getLastLogEvent(LogLevel.WARN).getMessage());
+        assertEquals("error1", this.tail.getLastLogEvent(LogLevel.ERROR).getMessage());
+    }
+
+    @Test
+    public void getLogEvents() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        assertEquals(0, this.tail.getLogEvents(null).stream().count());
+        assertEquals(0, this.tail.getLogEvents(LogLevel.DEBUG).stream().count());
+
+        this.tail.info("info0");
+        this.tail.warn("warn0");
+        this.tail.error("error0");
+        this.tail.info("info1");
+        this.tail.warn("warn1");
+        this.tail.error("error1");
+        this.tail.info("info2");
+        this.tail.warn("warn2");
+        this.tail.error("error2");
+
+        assertEquals(9, this.tail.getLogEvents(null).stream().count());
+        assertEquals(9, this.tail.getLogEvents(LogLevel.DEBUG).stream().count());
+        assertEquals(9, this.tail.getLogEvents(LogLevel.INFO).stream().count());
+        assertEquals(6, this.tail.getLogEvents(LogLevel.WARN).stream().count());
+        assertEquals(3, this.tail.getLogEvents(LogLevel.ERROR).stream().count());
+        assertEquals(Arrays.asList("error1", "error2"),
+            this.tail.getLogEvents(LogLevel.ERROR, 3, 6).stream().map(LogEvent::getMessage)
+                .collect(Collectors.toList()));
+
+        assertEquals(9, this.tail.getLogEvents(0, -1).stream().count());
+        assertEquals(6, this.tail.getLogEvents(3, -1).stream().count());
+        assertEquals(3, this.tail.getLogEvents(0, 3).stream().count());
+        assertEquals(3, this.tail.getLogEvents(3, 3).stream().count());
+        assertEquals(6, this.tail.getLogEvents(3, 42).stream().count());
+        assertEquals(9, this.tail.getLogEvents(-1, -1).stream().count());
+    }
+
+    @Test
+    public void getDeleteLog() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.info("info");
+
+        this.tail.close();
+
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        assertEquals("info", this.tail.getLogEvent(0).getMessage());
+
+        getLogFile().delete();
+
+        assertNull(this.tail.getLogEvent(0));
+    }
+
+    @Test
+    public void getModifiedLog() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.info("info");
+
+        this.tail.close();
+
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        assertEquals("info", this.tail.getLogEvent(0).getMessage());
+
+        try (FileOutputStream fw = new FileOutputStream(getLogFile(), false)) {
+            fw.flush();
+        }
+
+        assertNull(this.tail.getLogEvent(0));
+    }
+
+    @Test
+    public void readInvalidHeader() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.info("info");
+
+        this.tail.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(getLogFile(), "rw")) {
+            file.writeInt(42);
+        }
+
+        this.reader.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        assertEquals(0, this.reader.size());
+        assertNull(this.reader.getLogEvent(0));
+
+        assertEquals("Unsupported log file [" + getLogFile() + "]", this.logCapture.getMessage(0));
+        this.logCapture.ignoreAllMessages();
+    }
+}
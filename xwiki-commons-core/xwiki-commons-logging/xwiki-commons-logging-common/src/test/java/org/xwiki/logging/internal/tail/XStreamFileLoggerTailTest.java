@@ -22,11 +22,14 @@
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.XWikiTempDir;
 import org.xwiki.test.junit5.mockito.ComponentTest;
@@ -177,6 +180,39 @@ public void getLogEvents() throws IOException
         assertEquals(9, this.tail.getLogEvents(-1, -1).stream().count());
     }
 
+    @Test
+    public void getLogEventsWithLevel() throws IOException
+    {
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), false);
+
+        this.tail.info("info0");
+        this.tail.error("error0");
+        this.tail.warn("warn0");
+        this.tail.info("info1");
+        this.tail.info("info2");
+        this.tail.error("error1");
+        this.tail.error("error2");
+        this.tail.info("info3");
+
+        assertEquals(Arrays.asList("error0", "warn0", "error1", "error2"), this.tail.getLogEvents(LogLevel.WARN)
+            .stream().map(LogEvent::getMessage).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("warn0", "error1"), this.tail.getLogEvents(LogLevel.WARN, 2, 4).stream()
+            .map(LogEvent::getMessage).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("info2", "error1", "error2", "info3"), this.tail.getLogEvents(4, 42).stream()
+            .map(LogEvent::getMessage).collect(Collectors.toList()));
+        assertTrue(this.tail.hasLogLevel(LogLevel.WARN));
+
+        this.tail.close();
+
+        this.tail.initialize(new File(this.tmpDir, "log").toPath(), true);
+
+        assertEquals(Arrays.asList("error1", "error2"), this.tail.getLogEvents(LogLevel.ERROR, 3, 5).stream()
+            .map(LogEvent::getMessage).collect(Collectors.toList()));
+        assertEquals("error0", this.tail.getFirstLogEvent(LogLevel.WARN).getMessage());
+        assertEquals("error2", this.tail.getLastLogEvent(LogLevel.WARN).getMessage());
+        assertEquals("info3", this.tail.getLastLogEvent(null).getMessage());
+    }
+
     @Test
     public void getDeleteLog() throws IOException
     {
@@ -36,7 +36,9 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.LoggerConfiguration;
 import org.xwiki.logging.LoggerManager;
+import org.xwiki.logging.internal.tail.BinaryFileLoggerTail;
 import org.xwiki.logging.internal.tail.XStreamFileLoggerTail;
 import org.xwiki.logging.tail.LoggerTail;
 import org.xwiki.observation.EventListener;
@@ -57,6 +59,8 @@
 @Singleton
 public class DefaultLoggerManager implements LoggerManager, Initializable
 {
+    private static final String BINARY_FORMAT = "binary";
+
     /**
      * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners.
      */
@@ -66,6 +70,12 @@ public class DefaultLoggerManager implements LoggerManager, Initializable
     @Inject
     private Provider<XStreamFileLoggerTail> loggerTailProvider;
 
+    @Inject
+    private Provider<BinaryFileLoggerTail> binaryLoggerTailProvider;
+
+    @Inject
+    private Provider<LoggerConfiguration> configurationProvider;
+
     /**
      * The logger.
      */
@@ -230,8 +240,35 @@ protected LoggerContext getLoggerContext()
     @Override
     public LoggerTail createLoggerTail(Path path, boolean readonly) throws IOException
     {
-        if (readonly && !XStreamFileLoggerTail.exist(path)) {
-            return new LogQueue();
+        boolean binary;
+        if (readonly) {
+            boolean binaryExist = BinaryFileLoggerTail.exist(path);
+            boolean xstreamExist = XStreamFileLoggerTail.exist(path);
+
+            if (!binaryExist && !xstreamExist) {
+                return new LogQueue();
+            }
+
+            // Both formats could be there if the log was written before the format was changed, the newest one wins
+            binary = binaryExist && (!xstreamExist
+                || BinaryFileLoggerTail.lastModified(path) >= XStreamFileLoggerTail.lastModified(path));
+        } else {
+            binary = BINARY_FORMAT.equals(this.configurationProvider.get().getLoggerTailFormat());
+
+            // Make sure a reader won't find an outdated log in the other format
+            if (binary) {
+                XStreamFileLoggerTail.delete(path);
+            } else {
+                BinaryFileLoggerTail.delete(path);
+            }
+        }
+
+        if (binary) {
+            BinaryFileLoggerTail loggerTail = this.binaryLoggerTailProvider.get();
+
+            loggerTail.initialize(path, readonly);
+
+            return loggerTail;
         } else {
             XStreamFileLoggerTail loggerTail = this.loggerTailProvider.get();
 
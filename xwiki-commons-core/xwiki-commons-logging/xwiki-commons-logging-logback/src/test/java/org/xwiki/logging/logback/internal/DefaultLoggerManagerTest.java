@@ -31,6 +31,7 @@
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.event.LogQueueListener;
+import org.xwiki.logging.internal.tail.BinaryFileLoggerTail;
 import org.xwiki.logging.internal.tail.XStreamFileLoggerTail;
 import org.xwiki.observation.internal.DefaultObservationManager;
 import org.xwiki.test.XWikiTempDirUtil;
@@ -287,4 +288,21 @@ public void createLoggerTail() throws Exception
 
         Assert.assertTrue(this.loggerManager.createLoggerTail(logFile.toPath(), true) instanceof XStreamFileLoggerTail);
     }
+
+    @Test
+    public void createLoggerTailDeletesOtherFormat() throws Exception
+    {
+        this.mocker.registerMockComponent(SafeXStream.class);
+
+        File logFile = new File(XWikiTempDirUtil.createTemporaryDirectory(), "log");
+        File binaryLogFile = new File(logFile.getParentFile(), "log.bin");
+        binaryLogFile.createNewFile();
+
+        Assert.assertTrue(this.loggerManager.createLoggerTail(logFile.toPath(), true) instanceof BinaryFileLoggerTail);
+
+        this.loggerManager.createLoggerTail(logFile.toPath(), false);
+
+        Assert.assertFalse(binaryLogFile.exists());
+        Assert.assertTrue(this.loggerManager.createLoggerTail(logFile.toPath(), true) instanceof XStreamFileLoggerTail);
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.List;
+
+import org.xwiki.observation.event.Event;
+import org.xwiki.stability.Unstable;
+
+/**
+ * An {@link EventListener} which is not called in the thread notifying the event: the {@link ObservationManager}
+ * stores the matching events in a bounded queue dedicated to the listener and they are delivered later, in order, by a
+ * small pool of background threads.
+ * <p>
+ * Since the listener is called from another thread it should not rely on anything attached to the thread which
+ * produced the event (execution context, thread locals, etc.).
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Unstable
+public interface AsyncEventListener extends EventListener
+{
+    /**
+     * The default maximum number of events waiting to be delivered to the listener.
+     */
+    int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * What to do with a new event when the listener queue is full.
+     *
+     * @version $Id$
+     */
+    enum QueueFullPolicy
+    {
+        /**
+         * Block the thread notifying the event until there is room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Forget the event.
+         */
+        DISCARD,
+
+        /**
+         * Deliver the events waiting in the queue and then the new event synchronously in the thread notifying the
+         * event. The events are still delivered in order and one batch at a time, so the notifying thread first waits
+         * for the end of the delivery in progress, if any.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * @return the maximum number of events waiting to be delivered to the listener
+     */
+    default int getQueueSize()
+    {
+        return DEFAULT_QUEUE_SIZE;
+    }
+
+    /**
+     * @return the maximum number of events passed to a single {@link #onEvents(List)} call
+     */
+    default int getMaxBatchSize()
+    {
+        return 1;
+    }
+
+    /**
+     * @return what to do with a new event when the listener queue is full
+     */
+    default QueueFullPolicy getQueueFullPolicy()
+    {
+        return QueueFullPolicy.BLOCK;
+    }
+
+    /**
+     * Called with the events taken from the listener queue, in the order they were notified. By default each event is
+     * passed to {@link #onEvent(Event, Object, Object)}.
+     *
+     * @param events the events to handle, at most {@link #getMaxBatchSize()}
+     */
+    default void onEvents(List<QueuedEvent> events)
+    {
+        for (QueuedEvent event : events) {
+            onEvent(event.getEvent(), event.getSource(), event.getData());
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.observation.event.Event;
+import org.xwiki.stability.Unstable;
 
 /**
  * The main orchestrator for event notification. To receive events create a component implementing the
@@ -88,4 +89,18 @@
      * @see #notify(org.xwiki.observation.event.Event, Object, Object)
      */
     void notify(Event event, Object source);
+
+    /**
+     * Indicate if notifying an event of the passed class could reach some listener. Can be used to avoid creating
+     * events nobody is waiting for.
+     *
+     * @param eventClass the class of the event
+     * @return true if some listener could be called when notifying an event of the passed class
+     * @since 12.4RC1
+     */
+    @Unstable
+    default boolean hasListener(Class<? extends Event> eventClass)
+    {
+        return true;
+    }
 }
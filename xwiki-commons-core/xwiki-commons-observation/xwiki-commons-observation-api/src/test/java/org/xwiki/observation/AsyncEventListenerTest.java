@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.observation.AsyncEventListener.QueueFullPolicy;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link AsyncEventListener}.
+ *
+ * @version $Id$
+ */
+public class AsyncEventListenerTest
+{
+    static class TestAsyncEventListener extends AbstractEventListener implements AsyncEventListener
+    {
+        final List<Object> received = new ArrayList<>();
+
+        TestAsyncEventListener()
+        {
+            super("name", AllEvent.ALLEVENT);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.received.add(event);
+            this.received.add(source);
+            this.received.add(data);
+        }
+    }
+
+    @Test
+    public void defaults()
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener();
+
+        assertEquals(AsyncEventListener.DEFAULT_QUEUE_SIZE, listener.getQueueSize());
+        assertEquals(1, listener.getMaxBatchSize());
+        assertSame(QueueFullPolicy.BLOCK, listener.getQueueFullPolicy());
+    }
+
+    @Test
+    public void onEvents()
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener();
+
+        Event event1 = new ActionExecutionEvent("action1");
+        Event event2 = new ActionExecutionEvent("action2");
+
+        listener.onEvents(Arrays.asList(new QueuedEvent(event1, "source1", "data1"),
+            new QueuedEvent(event2, "source2", null)));
+
+        assertEquals(Arrays.asList(event1, "source1", "data1", event2, "source2", null), listener.received);
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.observation.AsyncEventListener;
+import org.xwiki.observation.AsyncEventListener.QueueFullPolicy;
+import org.xwiki.observation.QueuedEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Deliver events to {@link AsyncEventListener}s from a small pool of background threads. Each listener has its own
+ * bounded queue which is drained by at most one thread at a time so that a listener receives the events in the order
+ * they were notified, including when some of them are delivered in the notifying thread because the queue is full.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class AsyncEventDispatcher
+{
+    /**
+     * Indicate if the current thread is delivering events, in which case it should never block on a full queue or wait
+     * for another delivery since it might be the one supposed to drain it.
+     */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<>();
+
+    private final Map<String, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final Logger logger;
+
+    /**
+     * The queue of events of a given listener.
+     *
+     * @version $Id$
+     */
+    private final class ListenerQueue implements Runnable
+    {
+        private final AsyncEventListener listener;
+
+        private final int maxBatchSize;
+
+        private final QueueFullPolicy queueFullPolicy;
+
+        private final BlockingQueue<QueuedEvent> queue;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Held by the thread delivering the events of the queue.
+         */
+        private final ReentrantLock deliveryLock = new ReentrantLock();
+
+        private final AtomicLong delivered = new AtomicLong();
+
+        private final AtomicLong discarded = new AtomicLong();
+
+        ListenerQueue(AsyncEventListener listener)
+        {
+            this.listener = listener;
+            this.maxBatchSize = Math.max(1, listener.getMaxBatchSize());
+            this.queueFullPolicy = listener.getQueueFullPolicy();
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, listener.getQueueSize()));
+        }
+
+        void add(QueuedEvent event)
+        {
+            if (!this.queue.offer(event)) {
+                onQueueFull(event);
+            }
+
+            schedule();
+        }
+
+        private void onQueueFull(QueuedEvent event)
+        {
+            if (this.queueFullPolicy == QueueFullPolicy.DISCARD) {
+                this.discarded.incrementAndGet();
+
+                logger.debug("The queue of listener [{}] is full, discarding event [{}]", this.listener.getName(),
+                    event.getEvent());
+            } else if (this.queueFullPolicy == QueueFullPolicy.CALLER_RUNS || DELIVERING.get() == Boolean.TRUE) {
+                deliverInCurrentThread(event);
+            } else {
+                // Make sure someone is draining the queue before waiting for it
+                schedule();
+
+                try {
+                    this.queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    this.discarded.incrementAndGet();
+
+                    logger.warn("Interrupted while waiting for room in the queue of listener [{}]."
+                        + " Discarding event [{}]", this.listener.getName(), event.getEvent());
+                }
+            }
+        }
+
+        private void schedule()
+        {
+            if (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // The dispatcher has been disposed, deliver what's left in the current thread
+                    this.scheduled.set(false);
+
+                    deliverInCurrentThread(null);
+                }
+            }
+        }
+
+        /**
+         * Deliver the events waiting in the queue and then the passed event in the current thread.
+         *
+         * @param event the event to deliver after the queued ones, {@code null} if there is none
+         */
+        private void deliverInCurrentThread(QueuedEvent event)
+        {
+            Boolean delivering = DELIVERING.get();
+
+            if (delivering == Boolean.TRUE) {
+                // Waiting for another delivery could end up in a deadlock
+                if (!this.deliveryLock.tryLock()) {
+                    if (event != null) {
+                        this.discarded.incrementAndGet();
+
+                        logger.warn("Discarding event [{}] since the queue of listener [{}] is full and is being"
+                            + " drained by another thread", event.getEvent(), this.listener.getName());
+                    }
+
+                    return;
+                }
+            } else {
+                this.deliveryLock.lock();
+            }
+
+            DELIVERING.set(Boolean.TRUE);
+
+            try {
+                // Deliver the events already waiting first to keep the order
+                for (List<QueuedEvent> batch = poll(); !batch.isEmpty(); batch = poll()) {
+                    deliver(batch);
+                }
+
+                if (event != null) {
+                    deliver(Collections.singletonList(event));
+                }
+            } finally {
+                if (delivering == null) {
+                    DELIVERING.remove();
+                }
+
+                this.deliveryLock.unlock();
+            }
+        }
+
+        private List<QueuedEvent> poll()
+        {
+            List<QueuedEvent> batch = new ArrayList<>(Math.min(this.maxBatchSize, this.queue.size()));
+            this.queue.drainTo(batch, this.maxBatchSize);
+
+            return batch;
+        }
+
+        @Override
+        public void run()
+        {
+            this.deliveryLock.lock();
+            DELIVERING.set(Boolean.TRUE);
+
+            try {
+                List<QueuedEvent> batch = poll();
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+            } finally {
+                DELIVERING.remove();
+                this.deliveryLock.unlock();
+
+                // Give the other listeners a chance before handling the next batch
+                this.scheduled.set(false);
+                if (!this.queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        private void deliver(List<QueuedEvent> batch)
+        {
+            try {
+                this.listener.onEvents(batch);
+            } catch (Exception e) {
+                // protect from bad listeners
+                logger.error("Failed to send events [{}] to listener [{}]", batch, this.listener, e);
+            }
+
+            this.delivered.addAndGet(batch.size());
+        }
+    }
+
+    /**
+     * @param threads the maximum number of threads delivering events
+     * @param logger the logger to use to log delivery errors
+     */
+    public AsyncEventDispatcher(int threads, Logger logger)
+    {
+        this.logger = logger;
+
+        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+            .namingPattern("XWiki async event listener %d").daemon(true).priority(Thread.MIN_PRIORITY).build();
+        this.executor =
+            new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Add the event to the queue of the passed listener.
+     *
+     * @param listener the listener to notify
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    public void dispatch(AsyncEventListener listener, Event event, Object source, Object data)
+    {
+        getQueue(listener).add(new QueuedEvent(event, source, data));
+    }
+
+    private ListenerQueue getQueue(AsyncEventListener listener)
+    {
+        ListenerQueue queue = this.queues.get(listener.getName());
+
+        if (queue == null || queue.listener != listener) {
+            queue = this.queues.compute(listener.getName(),
+                (name, current) -> current != null && current.listener == listener ? current
+                    : new ListenerQueue(listener));
+        }
+
+        return queue;
+    }
+
+    /**
+     * Forget about the passed listener. The events already in its queue are still delivered.
+     *
+     * @param listenerName the name of the listener
+     */
+    public void removeListener(String listenerName)
+    {
+        this.queues.remove(listenerName);
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the number of events waiting to be delivered to the listener
+     */
+    public int getQueueSize(String listenerName)
+    {
+        ListenerQueue queue = this.queues.get(listenerName);
+
+        return queue != null ? queue.queue.size() : 0;
+    }
+
+    /**
+     * @return the number of events waiting to be delivered indexed by listener name
+     */
+    public Map<String, Integer> getQueueSizes()
+    {
+        Map<String, Integer> sizes = new HashMap<>(this.queues.size());
+        this.queues.forEach((name, queue) -> sizes.put(name, queue.queue.size()));
+
+        return sizes;
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the number of events delivered to the listener
+     */
+    public long getDeliveredEvents(String listenerName)
+    {
+        ListenerQueue queue = this.queues.get(listenerName);
+
+        return queue != null ? queue.delivered.get() : 0;
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the number of events discarded because the queue of the listener was full
+     */
+    public long getDiscardedEvents(String listenerName)
+    {
+        ListenerQueue queue = this.queues.get(listenerName);
+
+        return queue != null ? queue.discarded.get() : 0;
+    }
+
+    /**
+     * Stop the threads delivering events once all queued events have been delivered.
+     */
+    public void dispose()
+    {
+        this.executor.shutdown();
+    }
+}
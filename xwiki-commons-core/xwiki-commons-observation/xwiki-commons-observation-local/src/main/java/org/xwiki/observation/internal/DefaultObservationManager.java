@@ -20,7 +20,6 @@
 package org.xwiki.observation.internal;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,6 +27,7 @@
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -37,6 +37,8 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.observation.AsyncEventListener;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.AllEvent;
@@ -53,8 +55,13 @@
  */
 @Component
 @Singleton
-public class DefaultObservationManager implements ObservationManager
+public class DefaultObservationManager implements ObservationManager, Disposable
 {
+    /**
+     * The maximum number of threads used to deliver events to {@link AsyncEventListener}s.
+     */
+    private static final int ASYNC_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
     /**
      * @see #getListenersByEvent()
      */
@@ -65,6 +72,18 @@ public class DefaultObservationManager implements ObservationManager
      */
     private volatile Map<String, EventListener> listenersByName;
 
+    /**
+     * The listeners to call for each concrete event class, {@link AllEvent} listeners included. Each entry is computed
+     * the first time an event of that class is notified and the whole table is dropped as soon as a listener or an
+     * event is added or removed, so that {@link #notify(Event, Object, Object)} only has to iterate an immutable array.
+     */
+    private volatile Map<Class<? extends Event>, RegisteredListener[]> dispatchTable = new ConcurrentHashMap<>();
+
+    /**
+     * @see #getAsyncEventDispatcher()
+     */
+    private volatile AsyncEventDispatcher asyncEventDispatcher;
+
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
      */
@@ -84,9 +103,10 @@ public class DefaultObservationManager implements ObservationManager
     private static class RegisteredListener
     {
         /**
-         * Events of a given type associated with a given listener.
+         * Events of a given type associated with a given listener. Never modified in place but replaced by a new array
+         * so that it can be iterated without any lock.
          */
-        private List<Event> events = new ArrayList<>();
+        private volatile Event[] events = new Event[0];
 
         /**
          * Listener associated with the events.
@@ -108,17 +128,17 @@ public class DefaultObservationManager implements ObservationManager
         /**
          * @param event the event to add
          */
-        void addEvent(Event event)
+        synchronized void addEvent(Event event)
         {
-            this.events.add(event);
+            this.events = ArrayUtils.add(this.events, event);
         }
 
         /**
          * @param event the event to remove
          */
-        void removeEvent(Event event)
+        synchronized void removeEvent(Event event)
         {
-            this.events.remove(event);
+            this.events = ArrayUtils.removeElement(this.events, event);
         }
     }
 
@@ -173,6 +193,31 @@ private synchronized void initializeListeners()
         }
     }
 
+    /**
+     * @return the component in charge of delivering events to {@link AsyncEventListener}s
+     * @since 12.4RC1
+     */
+    public AsyncEventDispatcher getAsyncEventDispatcher()
+    {
+        if (this.asyncEventDispatcher == null) {
+            synchronized (this) {
+                if (this.asyncEventDispatcher == null) {
+                    this.asyncEventDispatcher = new AsyncEventDispatcher(ASYNC_THREADS, this.logger);
+                }
+            }
+        }
+
+        return this.asyncEventDispatcher;
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.asyncEventDispatcher != null) {
+            this.asyncEventDispatcher.dispose();
+        }
+    }
+
     @Override
     public void addListener(EventListener eventListener)
     {
@@ -229,6 +274,8 @@ private void addListenerInernal(EventListener eventListener)
                 }
             }
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
@@ -242,6 +289,12 @@ public void removeListener(String listenerName)
                 this.listenersByEvent.remove(entry.getKey());
             }
         }
+
+        invalidateDispatchTable();
+
+        if (this.asyncEventDispatcher != null) {
+            this.asyncEventDispatcher.removeListener(listenerName);
+        }
     }
 
     @Override
@@ -258,6 +311,8 @@ public void addEvent(String listenerName, Event event)
         } else {
             listeners.put(listenerName, new RegisteredListener(this.getListener(listenerName), event));
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
@@ -268,6 +323,8 @@ public void removeEvent(String listenerName, Event event)
         if (listener != null) {
             listener.removeEvent(event);
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
@@ -279,17 +336,8 @@ public EventListener getListener(String listenerName)
     @Override
     public void notify(Event event, Object source, Object data)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = getListenersByEvent().get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
-        }
-
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
-        }
+        // Find all listeners for this event, including the ones listening to all events
+        notify(getDispatchListeners(event.getClass()), event, source, data);
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
         // at runtime. Thus ideally we should make this Manager an Event Listener itself. However in order to avoid
@@ -310,14 +358,19 @@ public void notify(Event event, Object source, Object data)
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private void notify(RegisteredListener[] listeners, Event event, Object source, Object data)
     {
         for (RegisteredListener listener : listeners) {
             // Verify that one of the events matches and send the first matching event
             for (Event listenerEvent : listener.events) {
                 if (listenerEvent.matches(event)) {
                     try {
-                        listener.listener.onEvent(event, source, data);
+                        if (listener.listener instanceof AsyncEventListener) {
+                            getAsyncEventDispatcher().dispatch((AsyncEventListener) listener.listener, event, source,
+                                data);
+                        } else {
+                            listener.listener.onEvent(event, source, data);
+                        }
                     } catch (Exception e) {
                         // protect from bad listeners
                         this.logger.error("Failed to send event [{}] to listener [{}]",
@@ -337,6 +390,53 @@ public void notify(Event event, Object source)
         notify(event, source, null);
     }
 
+    @Override
+    public boolean hasListener(Class<? extends Event> eventClass)
+    {
+        return getDispatchListeners(eventClass).length > 0;
+    }
+
+    /**
+     * @param eventClass the class of the notified event
+     * @return the listeners to try for the passed event class, first the ones registered for this exact class and then
+     *         the ones registered for {@link AllEvent}
+     */
+    private RegisteredListener[] getDispatchListeners(Class<? extends Event> eventClass)
+    {
+        RegisteredListener[] listeners = this.dispatchTable.get(eventClass);
+
+        if (listeners == null) {
+            // Make sure listeners are initialized before remembering the table to fill
+            Map<Class<? extends Event>, Map<String, RegisteredListener>> listenersMap = getListenersByEvent();
+            Map<Class<? extends Event>, RegisteredListener[]> table = this.dispatchTable;
+
+            List<RegisteredListener> listenersList = new ArrayList<>();
+            Map<String, RegisteredListener> regListeners = listenersMap.get(eventClass);
+            if (regListeners != null) {
+                listenersList.addAll(regListeners.values());
+            }
+            Map<String, RegisteredListener> allEventRegListeners = listenersMap.get(AllEvent.class);
+            if (allEventRegListeners != null) {
+                listenersList.addAll(allEventRegListeners.values());
+            }
+
+            listeners = listenersList.toArray(new RegisteredListener[listenersList.size()]);
+
+            // If the listeners were modified in the meantime the table has been replaced and this entry is simply lost
+            table.put(eventClass, listeners);
+        }
+
+        return listeners;
+    }
+
+    /**
+     * Forget all the computed dispatch entries after a modification of the registered listeners or events.
+     */
+    private void invalidateDispatchTable()
+    {
+        this.dispatchTable = new ConcurrentHashMap<>();
+    }
+
     /**
      * A Component has been modified (added or removed) and we update our cache of Event Listeners if that Component is
      * an Event Listener.
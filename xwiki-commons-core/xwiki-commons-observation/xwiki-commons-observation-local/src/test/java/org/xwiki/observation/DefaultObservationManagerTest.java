@@ -29,6 +29,7 @@
 import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.ApplicationStartedEvent;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.internal.DefaultObservationManager;
 import org.xwiki.test.LogLevel;
@@ -38,12 +39,15 @@
 import org.xwiki.test.mockito.MockitoComponentManager;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -200,6 +204,98 @@ public void registerListenerForAllEvents()
         verify(listener).onEvent(event, "some source", "some data");
     }
 
+    /**
+     * Verify that listeners registered or removed after an event has already been notified are taken into account.
+     */
+    @Test
+    public void notifyAfterListenersModification()
+    {
+        EventListener listener = mock(EventListener.class, "listener");
+        EventListener allListener = mock(EventListener.class, "allListener");
+        Event event = new ActionExecutionEvent("action");
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+        when(allListener.getName()).thenReturn("myalllistener");
+        when(allListener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT));
+
+        this.manager.notify(event, "source1");
+
+        this.manager.addListener(listener);
+        this.manager.notify(event, "source2");
+        verify(listener).onEvent(event, "source2", null);
+
+        this.manager.addListener(allListener);
+        this.manager.notify(event, "source3");
+        verify(listener).onEvent(event, "source3", null);
+        verify(allListener).onEvent(event, "source3", null);
+
+        this.manager.removeListener("mylistener");
+        this.manager.notify(event, "source4");
+        verify(listener, never()).onEvent(event, "source4", null);
+        verify(allListener).onEvent(event, "source4", null);
+
+        this.manager.removeEvent("myalllistener", AllEvent.ALLEVENT);
+        this.manager.notify(event, "source5");
+        verify(allListener, never()).onEvent(event, "source5", null);
+
+        this.manager.addEvent("myalllistener", new ActionExecutionEvent("action"));
+        this.manager.notify(event, "source6");
+        verify(allListener).onEvent(event, "source6", null);
+    }
+
+    @Test
+    public void hasListener()
+    {
+        EventListener listener = mock(EventListener.class, "listener");
+        EventListener allListener = mock(EventListener.class, "allListener");
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(new ActionExecutionEvent("action")));
+        when(allListener.getName()).thenReturn("myalllistener");
+        when(allListener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT));
+
+        assertFalse(this.manager.hasListener(ActionExecutionEvent.class));
+
+        this.manager.addListener(listener);
+
+        assertTrue(this.manager.hasListener(ActionExecutionEvent.class));
+        assertFalse(this.manager.hasListener(ApplicationStartedEvent.class));
+
+        this.manager.addListener(allListener);
+
+        assertTrue(this.manager.hasListener(ApplicationStartedEvent.class));
+
+        this.manager.removeListener("myalllistener");
+
+        assertFalse(this.manager.hasListener(ApplicationStartedEvent.class));
+    }
+
+    @Test
+    public void notifyAsyncListener() throws InterruptedException
+    {
+        AsyncEventListener listener = mock(AsyncEventListener.class);
+        Event event = new ActionExecutionEvent("action");
+
+        when(listener.getName()).thenReturn("myasynclistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+        when(listener.getMaxBatchSize()).thenReturn(1);
+        when(listener.getQueueSize()).thenReturn(10);
+        when(listener.getQueueFullPolicy()).thenReturn(AsyncEventListener.QueueFullPolicy.BLOCK);
+
+        this.manager.addListener(listener);
+        this.manager.notify(event, "source", "data");
+
+        verify(listener, timeout(10000)).onEvents(argThat(events -> events.size() == 1
+            && events.get(0).getEvent() == event && "source".equals(events.get(0).getSource())));
+        verify(listener, never()).onEvent(any(Event.class), any(), any());
+
+        this.manager.removeListener("myasynclistener");
+        this.manager.dispose();
+
+        assertTrue(this.manager.getAsyncEventDispatcher().getQueueSizes().isEmpty());
+    }
+
     /**
      * Verify that a warning is logged is we try to register a listener with the same name.
      */
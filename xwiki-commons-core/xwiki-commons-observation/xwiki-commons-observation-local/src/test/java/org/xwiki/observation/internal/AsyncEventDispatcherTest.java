@@ -0,0 +1,329 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.AsyncEventListener;
+import org.xwiki.observation.QueuedEvent;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link AsyncEventDispatcher}.
+ *
+ * @version $Id$
+ */
+public class AsyncEventDispatcherTest
+{
+    private Logger logger = mock(Logger.class);
+
+    private AsyncEventDispatcher dispatcher;
+
+    private static class TestAsyncEventListener extends AbstractEventListener implements AsyncEventListener
+    {
+        private final int batchSize;
+
+        private final QueueFullPolicy policy;
+
+        private final CountDownLatch blocker = new CountDownLatch(1);
+
+        private final Thread testThread = Thread.currentThread();
+
+        private final List<List<Event>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        TestAsyncEventListener(int batchSize, QueueFullPolicy policy)
+        {
+            super("test", AllEvent.ALLEVENT);
+
+            this.batchSize = batchSize;
+            this.policy = policy;
+        }
+
+        @Override
+        public int getQueueSize()
+        {
+            return 2;
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return this.batchSize;
+        }
+
+        @Override
+        public QueueFullPolicy getQueueFullPolicy()
+        {
+            return this.policy;
+        }
+
+        @Override
+        public void onEvents(List<QueuedEvent> events)
+        {
+            // Only block the delivery threads
+            if (Thread.currentThread() != this.testThread) {
+                try {
+                    this.blocker.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            List<Event> batch = new ArrayList<>();
+            for (QueuedEvent event : events) {
+                batch.add(event.getEvent());
+            }
+            this.batches.add(batch);
+            this.threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            throw new RuntimeException("error");
+        }
+
+        List<Event> getEvents(int expected) throws InterruptedException
+        {
+            for (int i = 0; i < 1000 && count() < expected; ++i) {
+                Thread.sleep(10);
+            }
+
+            List<Event> events = new ArrayList<>();
+            synchronized (this.batches) {
+                this.batches.forEach(events::addAll);
+            }
+
+            return events;
+        }
+
+        private int count()
+        {
+            synchronized (this.batches) {
+                return this.batches.stream().mapToInt(List::size).sum();
+            }
+        }
+    }
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.dispatcher = new AsyncEventDispatcher(2, this.logger);
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        this.dispatcher.dispose();
+    }
+
+    @Test
+    public void dispatchInAnotherThreadInOrder() throws InterruptedException
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.BLOCK);
+        listener.blocker.countDown();
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            Event event = new ActionExecutionEvent("action" + i);
+            events.add(event);
+            this.dispatcher.dispatch(listener, event, null, null);
+        }
+
+        assertEquals(events, listener.getEvents(100));
+        assertEquals(100, listener.batches.size());
+        for (int i = 0; i < 1000 && this.dispatcher.getDeliveredEvents("test") < 100; ++i) {
+            Thread.sleep(10);
+        }
+        assertNotSame(Thread.currentThread(), listener.threads.get(0));
+        assertEquals(100, this.dispatcher.getDeliveredEvents("test"));
+        assertEquals(0, this.dispatcher.getQueueSize("test"));
+        assertEquals(0, this.dispatcher.getDiscardedEvents("test"));
+    }
+
+    @Test
+    public void dispatchBatches() throws InterruptedException
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(10, AsyncEventListener.QueueFullPolicy.BLOCK);
+
+        Event event1 = new ActionExecutionEvent("action1");
+        Event event2 = new ActionExecutionEvent("action2");
+        Event event3 = new ActionExecutionEvent("action3");
+
+        // The first event is taken by the delivery thread which waits, the next ones stay in the queue
+        this.dispatcher.dispatch(listener, event1, null, null);
+        for (int i = 0; i < 1000 && this.dispatcher.getQueueSize("test") > 0; ++i) {
+            Thread.sleep(10);
+        }
+        this.dispatcher.dispatch(listener, event2, null, null);
+        this.dispatcher.dispatch(listener, event3, null, null);
+
+        assertEquals(2, this.dispatcher.getQueueSizes().get("test"));
+
+        listener.blocker.countDown();
+
+        assertEquals(Arrays.asList(event1, event2, event3), listener.getEvents(3));
+        assertEquals(Arrays.asList(Arrays.asList(event1), Arrays.asList(event2, event3)), listener.batches);
+    }
+
+    @Test
+    public void dispatchWhenQueueFullWithDiscard() throws InterruptedException
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.DISCARD);
+
+        Event event1 = new ActionExecutionEvent("action1");
+        this.dispatcher.dispatch(listener, event1, null, null);
+        for (int i = 0; i < 1000 && this.dispatcher.getQueueSize("test") > 0; ++i) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 5; ++i) {
+            this.dispatcher.dispatch(listener, new ActionExecutionEvent("discarded" + i), null, null);
+        }
+
+        assertEquals(3, this.dispatcher.getDiscardedEvents("test"));
+
+        listener.blocker.countDown();
+
+        assertEquals(3, listener.getEvents(3).size());
+    }
+
+    @Test
+    public void dispatchWhenQueueFullWithCallerRuns() throws Exception
+    {
+        TestAsyncEventListener listener =
+            new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.CALLER_RUNS);
+
+        Event event1 = new ActionExecutionEvent("action1");
+        Event event2 = new ActionExecutionEvent("action2");
+        Event event3 = new ActionExecutionEvent("action3");
+        Event event4 = new ActionExecutionEvent("action4");
+
+        this.dispatcher.dispatch(listener, event1, null, null);
+        for (int i = 0; i < 1000 && this.dispatcher.getQueueSize("test") > 0; ++i) {
+            Thread.sleep(10);
+        }
+        this.dispatcher.dispatch(listener, event2, null, null);
+        this.dispatcher.dispatch(listener, event3, null, null);
+
+        // Release the delivery thread only once the notifying thread waits for it
+        Thread testThread = Thread.currentThread();
+        Thread releaser = new Thread(() -> {
+            for (int i = 0; i < 1000 && testThread.getState() != Thread.State.WAITING; ++i) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            listener.blocker.countDown();
+        });
+        releaser.start();
+
+        // The queue is full: the new event is delivered in the current thread, after the delivery in progress and the
+        // events waiting in the queue
+        this.dispatcher.dispatch(listener, event4, null, null);
+
+        releaser.join();
+
+        assertEquals(Arrays.asList(event1, event2, event3, event4), listener.getEvents(4));
+        assertNotSame(Thread.currentThread(), listener.threads.get(0));
+        assertSame(Thread.currentThread(), listener.threads.get(3));
+        assertEquals(0, this.dispatcher.getDiscardedEvents("test"));
+    }
+
+    @Test
+    public void dispatchWhenListenerFails() throws InterruptedException
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.BLOCK)
+        {
+            @Override
+            public void onEvents(List<QueuedEvent> events)
+            {
+                super.onEvents(events);
+
+                throw new RuntimeException("error");
+            }
+        };
+        listener.blocker.countDown();
+
+        Event event = new ActionExecutionEvent("action");
+        this.dispatcher.dispatch(listener, event, null, null);
+
+        assertEquals(Arrays.asList(event), listener.getEvents(1));
+        for (int i = 0; i < 1000 && this.dispatcher.getDeliveredEvents("test") == 0; ++i) {
+            Thread.sleep(10);
+        }
+        verify(this.logger).error(eq("Failed to send events [{}] to listener [{}]"), any(), eq(listener),
+            any(RuntimeException.class));
+    }
+
+    @Test
+    public void dispatchAfterDispose() throws InterruptedException
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.BLOCK);
+        listener.blocker.countDown();
+
+        this.dispatcher.dispose();
+
+        Event event = new ActionExecutionEvent("action");
+        this.dispatcher.dispatch(listener, event, null, null);
+
+        assertEquals(Arrays.asList(event), listener.batches.get(0));
+        assertSame(Thread.currentThread(), listener.threads.get(0));
+    }
+
+    @Test
+    public void removeListener()
+    {
+        TestAsyncEventListener listener = new TestAsyncEventListener(1, AsyncEventListener.QueueFullPolicy.BLOCK);
+        listener.blocker.countDown();
+
+        this.dispatcher.dispatch(listener, new ActionExecutionEvent("action"), null, null);
+        this.dispatcher.removeListener("test");
+
+        assertTrue(this.dispatcher.getQueueSizes().isEmpty());
+        assertEquals(0, this.dispatcher.getQueueSize("test"));
+        assertEquals(0, this.dispatcher.getDeliveredEvents("test"));
+        assertEquals(0, this.dispatcher.getDiscardedEvents("test"));
+    }
+}
@@ -22,6 +22,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Configuration properties for the Velocity module.
@@ -47,4 +48,15 @@
      *         in the Velocity Context and the value is the tool's class name)
      */
     Properties getTools();
+
+    /**
+     * @return the maximum number of parsed scripts kept in memory by each Velocity engine to avoid parsing again the
+     *         same script, 0 to disable the cache
+     * @since 12.4RC1
+     */
+    @Unstable
+    default int getTemplateCacheSize()
+    {
+        return 0;
+    }
 }
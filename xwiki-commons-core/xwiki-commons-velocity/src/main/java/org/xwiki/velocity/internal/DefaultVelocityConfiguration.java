@@ -65,6 +65,11 @@ public class DefaultVelocityConfiguration implements Initializable, VelocityConf
      */
     private static final String PREFIX = "velocity.";
 
+    /**
+     * The default maximum number of parsed scripts kept in memory by each Velocity engine.
+     */
+    private static final int DEFAULT_TEMPLATE_CACHE_SIZE = 100;
+
     /**
      * Used to find out if deprecated log is enabled by default.
      */
@@ -192,4 +197,12 @@ public Properties getTools()
 
         return props;
     }
+
+    @Override
+    public int getTemplateCacheSize()
+    {
+        Integer size = this.configuration.getProperty(PREFIX + "templateCache.size", Integer.class);
+
+        return size != null ? size : DEFAULT_TEMPLATE_CACHE_SIZE;
+    }
 }
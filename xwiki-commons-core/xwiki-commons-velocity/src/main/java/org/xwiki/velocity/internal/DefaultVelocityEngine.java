@@ -19,6 +19,7 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
@@ -29,6 +30,7 @@
 
 import javax.inject.Inject;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -104,6 +106,13 @@ public Reader getResourceReader(String source, String encoding)
 
             this.counter = 1;
 
+            if (templateCache != null) {
+                // Parsed scripts are directly injected in the template so make sure it's initialized (template scope,
+                // etc.) by processing an empty script
+                this.template.setResourceLoader(new SingletonResourceReader(new StringReader("")));
+                this.template.process();
+            }
+
             if (globalEntry != null) {
                 // Inject global macros
                 this.template.getMacros().putAll(globalEntry.getTemplate().getMacros());
@@ -176,6 +185,11 @@ int decrementCounter()
 
     private TemplateEntry globalEntry;
 
+    /**
+     * The parsed scripts, null when the cache is disabled.
+     */
+    private VelocityTemplateCache templateCache;
+
     @Override
     public void initialize(Properties overridingProperties) throws XWikiVelocityException
     {
@@ -198,9 +212,28 @@ public void initialize(Properties overridingProperties) throws XWikiVelocityExce
 
         this.runtimeInstance = runtime;
 
+        // A parsed script can only be reused if the macros it defines are local to the macro namespace (and the
+        // rendering looks for them there first)
+        int templateCacheSize = this.velocityConfiguration.getTemplateCacheSize();
+        if (templateCacheSize > 0 && runtime.getBoolean(RuntimeConstants.VM_PERM_INLINE_LOCAL, false)
+            && runtime.getBoolean(RuntimeConstants.VM_PERM_ALLOW_INLINE_REPLACE_GLOBAL, false)) {
+            this.templateCache = new VelocityTemplateCache(templateCacheSize);
+        } else {
+            this.templateCache = null;
+        }
+
         this.globalEntry = new TemplateEntry("");
     }
 
+    /**
+     * @return the cache of parsed scripts or null if the cache is disabled
+     * @since 12.4RC1
+     */
+    public VelocityTemplateCache getTemplateCache()
+    {
+        return this.templateCache;
+    }
+
     /**
      * @param runtime the Velocity engine against which to initialize Velocity properties
      * @param configurationProperties the Velocity properties coming from XWiki's configuration
@@ -271,11 +304,8 @@ public boolean evaluate(Context context, Writer out, String namespace, Reader so
                 templateEntry = this.globalEntry;
             }
 
-            // Set source
-            templateEntry.getTemplate().setResourceLoader(new SingletonResourceReader(source));
-
             // Compile the template
-            templateEntry.getTemplate().process();
+            process(templateEntry, source);
 
             // Execute the velocity script
             templateEntry.getTemplate().merge(context != null ? context : this.velocityContextFactory.createContext(),
@@ -299,6 +329,21 @@ public boolean evaluate(Context context, Writer out, String namespace, Reader so
         }
     }
 
+    private void process(TemplateEntry templateEntry, Reader source) throws IOException
+    {
+        if (this.templateCache != null) {
+            // Reuse the already parsed script when possible
+            templateEntry.getTemplate().setData(this.templateCache.getDocument(templateEntry.getNamespace(),
+                templateEntry.getTemplate(), IOUtils.toString(source), this.runtimeInstance));
+        } else {
+            // Set source
+            templateEntry.getTemplate().setResourceLoader(new SingletonResourceReader(source));
+
+            // Compile the template
+            templateEntry.getTemplate().process();
+        }
+    }
+
     @Override
     @Deprecated
     public void clearMacroNamespace(String namespace)
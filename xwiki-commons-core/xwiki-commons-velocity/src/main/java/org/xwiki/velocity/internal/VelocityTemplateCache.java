@@ -0,0 +1,291 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.velocity.Template;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * A bounded (least recently used) cache of the scripts parsed by a {@link DefaultVelocityEngine}.
+ * <p>
+ * A parsed script is only valid for the Velocity runtime which produced it. The result of the parsing also depends on
+ * the macros known when parsing it so the key contains the script source, the macro namespace and the names of the
+ * macros available in that namespace. The script source itself is not kept in the cache, only its length and a
+ * cryptographic hash of its content.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+public class VelocityTemplateCache
+{
+    /**
+     * The key of a parsed script in the cache.
+     *
+     * @version $Id$
+     */
+    private static final class TemplateKey
+    {
+        private final String namespace;
+
+        private final int sourceLength;
+
+        private final byte[] sourceHash;
+
+        private final Set<String> macros;
+
+        private final int hashCode;
+
+        /**
+         * @param namespace the macro namespace
+         * @param source the source of the script
+         * @param macroNames the names of the macros available in the macro namespace
+         */
+        TemplateKey(String namespace, String source, Collection<String> macroNames)
+        {
+            this.namespace = namespace;
+            this.sourceLength = source.length();
+            this.sourceHash = DigestUtils.sha256(source);
+            this.macros = new HashSet<>(macroNames);
+
+            this.hashCode = Objects.hash(namespace, this.sourceLength, Arrays.hashCode(this.sourceHash), this.macros);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof TemplateKey) {
+                TemplateKey other = (TemplateKey) obj;
+
+                return this.hashCode == other.hashCode && this.sourceLength == other.sourceLength
+                    && this.namespace.equals(other.namespace) && Arrays.equals(this.sourceHash, other.sourceHash)
+                    && this.macros.equals(other.macros);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A parsed script.
+     *
+     * @version $Id$
+     */
+    private static final class CachedTemplate
+    {
+        private final SimpleNode document;
+
+        private final Map<String, Object> macros;
+
+        /**
+         * @param document the root node of the parsed script
+         * @param macros the macros defined by the script
+         */
+        CachedTemplate(SimpleNode document, Map<String, Object> macros)
+        {
+            this.document = document;
+            this.macros = macros;
+        }
+
+        /**
+         * @return the root node of the parsed script
+         */
+        SimpleNode getDocument()
+        {
+            return this.document;
+        }
+
+        /**
+         * @return the macros defined by the script
+         */
+        Map<String, Object> getMacros()
+        {
+            return this.macros;
+        }
+    }
+
+    private final int maxSize;
+
+    private final LRUMap<TemplateKey, CachedTemplate> templates;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of parsed scripts to keep
+     */
+    public VelocityTemplateCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.templates = new LRUMap<>(maxSize);
+    }
+
+    /**
+     * @param key the key of the parsed script
+     * @return the parsed script or null if it's not in the cache
+     */
+    private CachedTemplate get(TemplateKey key)
+    {
+        CachedTemplate template;
+        synchronized (this.templates) {
+            // LRUMap#get modifies the order of the entries
+            template = this.templates.get(key);
+        }
+
+        if (template != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+
+        return template;
+    }
+
+    /**
+     * @param key the key of the parsed script
+     * @param template the parsed script
+     */
+    private void put(TemplateKey key, CachedTemplate template)
+    {
+        synchronized (this.templates) {
+            this.templates.put(key, template);
+        }
+    }
+
+    /**
+     * Return the parsed script, parsing it and storing it in the cache if needed. The macros defined by the script are
+     * registered in the passed namespace template.
+     *
+     * @param namespace the macro namespace
+     * @param namespaceTemplate the template holding the macros of the namespace
+     * @param source the source of the script
+     * @param runtime the Velocity runtime used to parse the script
+     * @return the root node of the parsed script
+     * @throws ParseErrorException when failing to parse the script
+     * @throws TemplateInitException when failing to initialize the parsed script
+     */
+    SimpleNode getDocument(String namespace, Template namespaceTemplate, String source, RuntimeServices runtime)
+        throws ParseErrorException, TemplateInitException
+    {
+        Map<String, Object> namespaceMacros = namespaceTemplate.getMacros();
+
+        TemplateKey key = new TemplateKey(namespace, source, namespaceMacros.keySet());
+
+        CachedTemplate cachedTemplate = get(key);
+
+        if (cachedTemplate == null) {
+            // Parse the script in a dedicated template knowing the same macros as the namespace
+            Template template = new Template();
+            template.setName(namespace);
+            template.setRuntimeServices(runtime);
+            template.getMacros().putAll(namespaceMacros);
+            try {
+                template.setData(runtime.parse(new StringReader(source), template));
+            } catch (ParseException e) {
+                // Same error as Template#process()
+                throw new ParseErrorException(e, namespace);
+            }
+            template.initDocument();
+
+            // Only keep the macros defined by the script
+            Map<String, Object> scriptMacros = new HashMap<>(template.getMacros());
+            scriptMacros.entrySet().removeIf(entry -> namespaceMacros.get(entry.getKey()) == entry.getValue());
+
+            cachedTemplate = new CachedTemplate((SimpleNode) template.getData(), scriptMacros);
+
+            put(key, cachedTemplate);
+        }
+
+        // Register the macros defined by the script in the namespace
+        namespaceMacros.putAll(cachedTemplate.getMacros());
+
+        return cachedTemplate.getDocument();
+    }
+
+    /**
+     * Remove all the parsed scripts from the cache.
+     */
+    public void clear()
+    {
+        synchronized (this.templates) {
+            this.templates.clear();
+        }
+    }
+
+    /**
+     * @return the number of parsed scripts currently in the cache
+     */
+    public int getSize()
+    {
+        synchronized (this.templates) {
+            return this.templates.size();
+        }
+    }
+
+    /**
+     * @return the maximum number of parsed scripts kept in the cache
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of times a parsed script was found in the cache
+     */
+    public long getHitCount()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of times a script had to be parsed
+     */
+    public long getMissCount()
+    {
+        return this.misses.get();
+    }
+}
@@ -19,11 +19,19 @@
  */
 package org.xwiki.velocity.introspection;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.reflect.TypeUtils;
 import org.apache.velocity.runtime.RuntimeServices;
@@ -58,11 +66,32 @@
 // TODO: Implement TypeConversionHandler instead
 public class MethodArgumentsUberspector extends AbstractChainableUberspector implements RuntimeServicesAware
 {
+    /**
+     * The maximum number of calls for which the conversion plans are kept, for a given type of target object.
+     */
+    private static final int CONVERSION_PLANS_SIZE = 100;
+
     /**
      * The component used to convert method arguments to formal parameter types.
      */
     private ConverterManager converterManager;
 
+    /**
+     * The methods (and the conversions to apply to their arguments) which could match a call, to avoid looking at all
+     * the methods of the class each time. The plans are attached to the type of the target object so that they don't
+     * prevent it from being unloaded (e.g. when uninstalling an extension) and the types of the arguments are only
+     * weakly referenced.
+     */
+    private final ClassValue<Map<MethodKey, List<ConversionPlan>>> conversionPlans =
+        new ClassValue<Map<MethodKey, List<ConversionPlan>>>()
+        {
+            @Override
+            protected Map<MethodKey, List<ConversionPlan>> computeValue(Class<?> type)
+            {
+                return new LRUMap<>(CONVERSION_PLANS_SIZE);
+            }
+        };
+
     @Override
     public void setRuntimeServices(RuntimeServices runtimeServices)
     {
@@ -138,14 +167,11 @@ public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
      */
     private Object[] convertArguments(Object obj, String methodName, Object[] args)
     {
-        for (Method method : obj.getClass().getMethods()) {
-            if (method.getName().equalsIgnoreCase(methodName)
-                && (method.getGenericParameterTypes().length == args.length || method.isVarArgs())) {
-                try {
-                    return convertArguments(args, method.getGenericParameterTypes(), method.isVarArgs());
-                } catch (Exception e) {
-                    // Ignore and try the next method.
-                }
+        for (ConversionPlan plan : getConversionPlans(obj.getClass(), methodName, args)) {
+            try {
+                return plan.convert(args, this.converterManager);
+            } catch (Exception e) {
+                // Ignore and try the next method.
             }
         }
 
@@ -153,34 +179,179 @@ private Object[] convertArguments(Object obj, String methodName, Object[] args)
     }
 
     /**
-     * Tries to convert the given arguments to match the specified formal parameters types.
-     * <p>
-     * Throws a runtime exception if the conversion fails.
+     * @param type the type of the object the method is invoked on
+     * @param methodName the method we're looking for
+     * @param args the method arguments
+     * @return the conversion plans of the methods which could accept the passed arguments
+     */
+    private List<ConversionPlan> getConversionPlans(Class<?> type, String methodName, Object[] args)
+    {
+        MethodKey key = new MethodKey(methodName, args);
+        Map<MethodKey, List<ConversionPlan>> typePlans = this.conversionPlans.get(type);
+
+        List<ConversionPlan> plans;
+        synchronized (typePlans) {
+            // LRUMap#get modifies the order of the entries
+            plans = typePlans.get(key);
+        }
+
+        if (plans == null) {
+            plans = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (method.getName().equalsIgnoreCase(methodName)
+                    && (method.getGenericParameterTypes().length == args.length || method.isVarArgs())) {
+                    try {
+                        plans.add(new ConversionPlan(method, args));
+                    } catch (Exception e) {
+                        // Ignore and try the next method.
+                    }
+                }
+            }
+
+            synchronized (typePlans) {
+                typePlans.put(key, plans);
+            }
+        }
+
+        return plans;
+    }
+
+    /**
+     * The key of the conversion plans cache of a type: the name of the method and the types of the arguments.
      *
-     * @param arguments the method actual arguments
-     * @param parameterTypes the method formal parameter types
-     * @param isVarArgs true if the method contains a varargs (ie the last parameter is a varargs)
-     * @return a new array of arguments where some values have been converted to match the formal method parameter types
+     * @version $Id$
      */
-    private Object[] convertArguments(Object[] arguments, Type[] parameterTypes, boolean isVarArgs)
+    private static final class MethodKey
     {
-        Object[] convertedArguments = Arrays.copyOf(arguments, arguments.length);
-        for (int i = 0; i < arguments.length; i++) {
-            // Try to convert the argument if it's not null and if it doesn't match the parameter type.
-            // If the method is a varargs then extract the type from the vararg array
-            Type expectedType;
-            if (isVarArgs && i >= parameterTypes.length - 1) {
-                expectedType = ((Class<?>) parameterTypes[parameterTypes.length - 1]).getComponentType();
-            } else {
-                expectedType = parameterTypes[i];
+        private final String methodName;
+
+        /**
+         * The types of the arguments, weakly referenced since they don't necessarily come from the same class loader as
+         * the type of the object on which the method is called.
+         */
+        private final Reference<?>[] argumentTypes;
+
+        private final int hashCode;
+
+        MethodKey(String methodName, Object[] arguments)
+        {
+            this.methodName = methodName;
+            this.argumentTypes = new Reference<?>[arguments.length];
+            int argumentsHashCode = 1;
+            for (int i = 0; i < arguments.length; ++i) {
+                Class<?> argumentType = arguments[i] != null ? arguments[i].getClass() : null;
+                this.argumentTypes[i] = argumentType != null ? new WeakReference<>(argumentType) : null;
+                argumentsHashCode = 31 * argumentsHashCode + Objects.hashCode(argumentType);
             }
 
-            if (arguments[i] != null && !TypeUtils.isInstance(arguments[i], expectedType)) {
-                convertedArguments[i] = this.converterManager.convert(expectedType, arguments[i]);
+            this.hashCode = Objects.hash(methodName, argumentsHashCode);
+        }
+
+        private boolean argumentTypesEquals(Reference<?>[] otherArgumentTypes)
+        {
+            if (this.argumentTypes.length != otherArgumentTypes.length) {
+                return false;
+            }
+
+            for (int i = 0; i < this.argumentTypes.length; ++i) {
+                Reference<?> argumentType = this.argumentTypes[i];
+                Reference<?> otherArgumentType = otherArgumentTypes[i];
+
+                if (argumentType == null || otherArgumentType == null) {
+                    if (argumentType != otherArgumentType) {
+                        return false;
+                    }
+                } else if (argumentType.get() == null || argumentType.get() != otherArgumentType.get()) {
+                    // A collected type can't match anything anymore
+                    return false;
+                }
             }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
         }
 
-        return convertedArguments;
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof MethodKey) {
+                MethodKey other = (MethodKey) obj;
+
+                return this.methodName.equals(other.methodName) && argumentTypesEquals(other.argumentTypes);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * The conversions to apply to arguments of a given type to match the formal parameter types of a method.
+     *
+     * @version $Id$
+     */
+    private static final class ConversionPlan
+    {
+        /**
+         * The type to convert each argument to, {@code null} when the argument does not need to be converted.
+         */
+        private final Type[] targetTypes;
+
+        ConversionPlan(Method method, Object[] arguments)
+        {
+            Type[] parameterTypes = method.getGenericParameterTypes();
+
+            this.targetTypes = new Type[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                // Try to convert the argument if it's not null and if it doesn't match the parameter type.
+                // If the method is a varargs then extract the type from the vararg array
+                Type expectedType;
+                if (method.isVarArgs() && i >= parameterTypes.length - 1) {
+                    expectedType = TypeUtils.getArrayComponentType(parameterTypes[parameterTypes.length - 1]);
+                } else {
+                    expectedType = parameterTypes[i];
+                }
+
+                // The type variables (e.g. in generic varargs) accept anything matching their bound
+                if (expectedType instanceof TypeVariable) {
+                    expectedType = ((TypeVariable<?>) expectedType).getBounds()[0];
+                }
+
+                if (arguments[i] != null && !TypeUtils.isInstance(arguments[i], expectedType)) {
+                    this.targetTypes[i] = expectedType;
+                }
+            }
+        }
+
+        /**
+         * Tries to convert the given arguments to match the formal parameters types of the method.
+         * <p>
+         * Throws a runtime exception if the conversion fails.
+         *
+         * @param arguments the method actual arguments
+         * @param converterManager the component used to convert the arguments
+         * @return a new array of arguments where some values have been converted to match the formal method parameter
+         *         types
+         */
+        Object[] convert(Object[] arguments, ConverterManager converterManager)
+        {
+            Object[] convertedArguments = Arrays.copyOf(arguments, arguments.length);
+            for (int i = 0; i < arguments.length; i++) {
+                if (this.targetTypes[i] != null) {
+                    convertedArguments[i] = converterManager.convert(this.targetTypes[i], arguments[i]);
+                }
+            }
+
+            return convertedArguments;
+        }
     }
 
     /**
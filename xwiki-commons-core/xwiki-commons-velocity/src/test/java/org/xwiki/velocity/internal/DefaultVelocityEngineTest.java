@@ -46,6 +46,7 @@
 import org.xwiki.velocity.XWikiVelocityException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
@@ -555,6 +556,80 @@ public void evaluateSpaceGobling() throws Exception
         assertEvaluate("value\nvalueline", "#macro (testMacro)value#end#testMacro\n#testMacro()\nline");
     }
 
+    @Test
+    public void evaluateWithTemplateCache() throws Exception
+    {
+        when(this.configurationSource.getProperty("velocity.templateCache.size", Integer.class)).thenReturn(1000);
+
+        this.engine.initialize(new Properties());
+
+        VelocityTemplateCache cache = this.engine.getTemplateCache();
+
+        assertEvaluate("hello World", "#set($foo='hello')$foo World");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+
+        assertEvaluate("bye World", "#set($foo='hello')$foo World".replace("hello", "bye"));
+        assertEvaluate("hello World", "#set($foo='hello')$foo World");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // Same script in another namespace
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "othertemplate");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void evaluateMacrosWithTemplateCache() throws Exception
+    {
+        when(this.configurationSource.getProperty("velocity.templateCache.size", Integer.class)).thenReturn(1000);
+
+        this.engine.initialize(new Properties());
+
+        VelocityTemplateCache cache = this.engine.getTemplateCache();
+
+        String macroDefinition = "#macro(mymacro)value#end";
+
+        this.engine.startedUsingMacroNamespace(DEFAULT_TEMPLATE_NAME);
+        assertEvaluate("", macroDefinition);
+        assertEvaluate("value", "#mymacro()");
+        this.engine.stoppedUsingMacroNamespace(DEFAULT_TEMPLATE_NAME);
+
+        // The macros defined by a cached script are registered again in the namespace
+        this.engine.startedUsingMacroNamespace(DEFAULT_TEMPLATE_NAME);
+        assertEvaluate("", macroDefinition);
+        assertEquals(1, cache.getHitCount());
+        assertEvaluate("value", "#mymacro()");
+        assertEquals(2, cache.getHitCount());
+        this.engine.stoppedUsingMacroNamespace(DEFAULT_TEMPLATE_NAME);
+
+        // The macro is not available in other namespaces
+        assertEvaluate("#mymacro()", "#mymacro()", "othertemplate");
+    }
+
+    @Test
+    public void evaluateWithDefaultTemplateCache() throws Exception
+    {
+        // Enabled by default
+        this.engine.initialize(new Properties());
+
+        assertEquals(100, this.engine.getTemplateCache().getMaxSize());
+    }
+
+    @Test
+    public void evaluateWithTemplateCacheDisabled() throws Exception
+    {
+        when(this.configurationSource.getProperty("velocity.templateCache.size", Integer.class)).thenReturn(0);
+
+        this.engine.initialize(new Properties());
+
+        assertNull(this.engine.getTemplateCache());
+
+        assertEvaluate("hello World", "#set($foo='hello')$foo World");
+    }
+
     @Test
     public void evaluateWhenNotInitialized()
     {
@@ -131,6 +131,17 @@ public String methodWithVararg(Integer param1, Double... params)
             }
             return builder.toString();
         }
+
+        @SafeVarargs
+        public final <T> String methodWithGenericVararg(Integer param1, T... params)
+        {
+            StringBuilder builder = new StringBuilder("success");
+            for (T param : params) {
+                builder.append(' ');
+                builder.append(param);
+            }
+            return builder.toString();
+        }
     }
 
     @BeforeEach
@@ -174,6 +185,15 @@ public void getMethodWhenVarargsWithNoConversionAndTwoVarargParamsPassed() throw
         assertEquals("success 10.0 10.0", this.writer.toString());
     }
 
+    @Test
+    public void getMethodWhenGenericVarargsWithConversion() throws Exception
+    {
+        when(this.converterManager.convert(Integer.class, "10")).thenReturn(10);
+        this.engine.evaluate(this.context, this.writer, "template",
+            new StringReader("$var.methodWithGenericVararg('10', 'a', 'b')"));
+        assertEquals("success a b", this.writer.toString());
+    }
+
     @Test
     public void getMethodWhenVarargsWithConversionAndNoVarargParamPassed() throws Exception
     {
@@ -251,4 +271,25 @@ public void getMethodWithGeneric() throws Exception
             new StringReader("$var.methodWithGeneric('en, fr')"));
         assertEquals("success", this.writer.toString());
     }
+
+    @Test
+    public void getMethodWhenConversionRepeatedWithDifferentValues() throws Exception
+    {
+        when(this.converterManager.convert(Integer.class, "10")).thenReturn(10);
+        when(this.converterManager.convert(Integer.class, "20")).thenReturn(20);
+        when(this.converterManager.convert(Double.class, "20.0")).thenReturn(20.0);
+        this.engine.evaluate(this.context, this.writer, "template",
+            new StringReader("#foreach($value in ['10', '20'])$var.methodWithVararg($value, '20.0') #end"));
+        assertEquals("success 20.0 success 20.0 ", this.writer.toString());
+    }
+
+    @Test
+    public void getMethodWhenConversionFailsAndThenSucceeds() throws Exception
+    {
+        when(this.converterManager.convert(List.class, "fail")).thenThrow(new RuntimeException());
+        when(this.converterManager.convert(List.class, "test")).thenReturn(Arrays.asList("converted"));
+        this.engine.evaluate(this.context, this.writer, "template",
+            new StringReader("$var.method('fail') $var.method('test')"));
+        assertEquals("$var.method('fail') success", this.writer.toString());
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.tool.extension;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.ComponentIndex;
+
+/**
+ * Generate the index of the component descriptors declared in {@code META-INF/components.txt} so that they don't
+ * have to be discovered through reflection when the components are loaded.
+ *
+ * @version $Id$
+ * @since 12.4RC1
+ */
+@Mojo(name = "components-index", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+    requiresDependencyResolution = ResolutionScope.COMPILE, requiresProject = true, threadSafe = true)
+public class ComponentsIndexMojo extends AbstractMojo
+{
+    /**
+     * The directory containing the compiled classes and the component list.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * The current Maven project.
+     */
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    /**
+     * Skip the generation of the index.
+     */
+    @Parameter(property = "xwiki.components.index.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException
+    {
+        if (this.skip) {
+            getLog().info("Skipping components index generation");
+
+            return;
+        }
+
+        File componentList = new File(this.outputDirectory, ComponentAnnotationLoader.COMPONENT_LIST);
+        if (!componentList.exists()) {
+            getLog().debug("No component list found at [" + componentList + "]");
+
+            return;
+        }
+
+        File componentIndex = new File(this.outputDirectory, ComponentIndex.COMPONENT_INDEX);
+
+        // Use the plugin classloader as parent to make sure the component annotations are the ones known by the
+        // index generator
+        try (URLClassLoader classLoader = new URLClassLoader(getClasspath(), getClass().getClassLoader());
+            OutputStream output = new FileOutputStream(componentIndex)) {
+            int indexed = new ComponentIndex().write(Files.readAllBytes(componentList.toPath()), classLoader, output);
+
+            getLog().info("Indexed " + indexed + " component implementations in [" + componentIndex + "]");
+        } catch (Exception | LinkageError e) {
+            componentIndex.delete();
+
+            throw new MojoExecutionException("Failed to generate the components index", e);
+        }
+    }
+
+    private URL[] getClasspath() throws Exception
+    {
+        List<String> elements = this.project.getCompileClasspathElements();
+
+        URL[] urls = new URL[elements.size()];
+        for (int i = 0; i < urls.length; ++i) {
+            urls[i] = new File(elements.get(i)).toURI().toURL();
+        }
+
+        return urls;
+    }
+}